@@ -0,0 +1,147 @@
+//  Copyright 2012 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.ugent.caagt.genestacker.DiploidChromosome;
+import org.ugent.caagt.genestacker.GeneticMap;
+import org.ugent.caagt.genestacker.Genotype;
+import org.ugent.caagt.genestacker.HaldaneMapFunction;
+import org.ugent.caagt.genestacker.Haplotype;
+import org.ugent.caagt.genestacker.Plant;
+import org.ugent.caagt.genestacker.SeedLot;
+import org.ugent.caagt.genestacker.exceptions.GenestackerException;
+import org.ugent.caagt.genestacker.search.CrossingNode;
+import org.ugent.caagt.genestacker.search.CrossingScheme;
+import org.ugent.caagt.genestacker.search.PlantNode;
+import org.ugent.caagt.genestacker.search.PopulationSizeTools;
+import org.ugent.caagt.genestacker.search.SeedLotNode;
+import org.ugent.caagt.genestacker.search.bb.SeedLotConstructor;
+
+/**
+ * Generates reproducible random inputs for the benchmarks, parameterised by the number
+ * of chromosomes, the number of loci per chromosome and the heterozygosity of genotypes.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public final class BenchmarkInputs {
+
+    // fixed seed so that all runs use the same inputs
+    public static final long SEED = 42;
+
+    private BenchmarkInputs(){
+    }
+
+    /**
+     * Generate a random genotype, where each locus is heterozygous with the given probability and
+     * homozygous (for a random allele) otherwise.
+     *
+     * @param rg random generator
+     * @param chromosomes number of chromosomes
+     * @param loci number of loci per chromosome
+     * @param heterozygosity probability that a locus is heterozygous
+     * @return random genotype
+     * @throws GenestackerException if the genotype can not be created
+     */
+    public static Genotype randomGenotype(Random rg, int chromosomes, int loci, double heterozygosity)
+                                                                        throws GenestackerException{
+        List<DiploidChromosome> chroms = new ArrayList<>(chromosomes);
+        for(int c=0; c<chromosomes; c++){
+            boolean[] h1 = new boolean[loci];
+            boolean[] h2 = new boolean[loci];
+            for(int l=0; l<loci; l++){
+                h1[l] = rg.nextBoolean();
+                h2[l] = rg.nextDouble() < heterozygosity ? !h1[l] : h1[l];
+            }
+            chroms.add(new DiploidChromosome(new Haplotype(h1), new Haplotype(h2)));
+        }
+        return new Genotype(chroms);
+    }
+
+    /**
+     * Generate the homozygous genotype carrying the target allele at all loci.
+     *
+     * @param chromosomes number of chromosomes
+     * @param loci number of loci per chromosome
+     * @return ideotype
+     * @throws GenestackerException if the genotype can not be created
+     */
+    public static Genotype ideotype(int chromosomes, int loci) throws GenestackerException{
+        List<DiploidChromosome> chroms = new ArrayList<>(chromosomes);
+        for(int c=0; c<chromosomes; c++){
+            boolean[] h = new boolean[loci];
+            for(int l=0; l<loci; l++){
+                h[l] = true;
+            }
+            chroms.add(new DiploidChromosome(new Haplotype(h), new Haplotype(h)));
+        }
+        return new Genotype(chroms);
+    }
+
+    /**
+     * Generate a genetic map with random distances (between 1 and 100 cM) between consecutive loci.
+     *
+     * @param rg random generator
+     * @param chromosomes number of chromosomes
+     * @param loci number of loci per chromosome
+     * @return random genetic map
+     */
+    public static GeneticMap randomGeneticMap(Random rg, int chromosomes, int loci){
+        double[][] distances = new double[chromosomes][loci-1];
+        for(int c=0; c<chromosomes; c++){
+            for(int l=0; l<loci-1; l++){
+                distances[c][l] = 1 + rg.nextDouble() * 99;
+            }
+        }
+        return new GeneticMap(distances, new HaldaneMapFunction());
+    }
+
+    /**
+     * Create the scheme in which the given genotype is grown from an initial seed lot.
+     *
+     * @param g genotype
+     * @param popSizeTools population size tools
+     * @return initial scheme
+     */
+    public static CrossingScheme initialScheme(Genotype g, PopulationSizeTools popSizeTools){
+        SeedLotNode sln = new SeedLotNode(new SeedLot(g), 0);
+        PlantNode pn = new PlantNode(new Plant(g), 0, sln);
+        return new CrossingScheme(popSizeTools, pn);
+    }
+
+    /**
+     * Create the scheme in which the given plants are crossed and one of the offspring is grown.
+     * The given plant nodes should have been copied from the respective initial schemes so that
+     * both schemes remain untouched.
+     *
+     * @param p1 first parent
+     * @param p2 second parent
+     * @param constructor seed lot constructor
+     * @param popSizeTools population size tools
+     * @return scheme with a single crossing
+     * @throws GenestackerException if anything goes wrong while crossing the parents
+     */
+    public static CrossingScheme crossedScheme(PlantNode p1, PlantNode p2, SeedLotConstructor constructor,
+                                                PopulationSizeTools popSizeTools) throws GenestackerException{
+        CrossingNode c = new CrossingNode(p1, p2);
+        SeedLot sl = constructor.cross(p1.getPlant().getGenotype(), p2.getPlant().getGenotype());
+        SeedLotNode sln = new SeedLotNode(sl, 1, c);
+        PlantNode child = new PlantNode(new Plant(sl.getGenotypes().iterator().next()), 1, sln);
+        return new CrossingScheme(popSizeTools, child);
+    }
+
+}
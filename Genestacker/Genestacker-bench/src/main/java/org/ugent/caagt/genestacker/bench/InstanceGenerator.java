@@ -0,0 +1,156 @@
+//  Copyright 2012 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.ugent.caagt.genestacker.DiploidChromosome;
+import org.ugent.caagt.genestacker.GeneticMap;
+import org.ugent.caagt.genestacker.Genotype;
+import org.ugent.caagt.genestacker.HaldaneMapFunction;
+import org.ugent.caagt.genestacker.Haplotype;
+import org.ugent.caagt.genestacker.Plant;
+import org.ugent.caagt.genestacker.exceptions.GenestackerException;
+import org.ugent.caagt.genestacker.io.GenestackerInput;
+import org.ugent.caagt.genestacker.io.GenestackerInputXMLWriter;
+
+/**
+ * Generates synthetic Gene Stacker problem instances. The ideotype is homozygous for the target
+ * allele at all loci. Initial plants are homozygous lines that carry the target allele at each locus
+ * with probability 1 - <code>difficulty</code>, where every target allele is guaranteed to occur in
+ * at least one initial plant so that the ideotype can always be obtained. Distances between
+ * consecutive loci are drawn uniformly from a given range (in cM). Instances can be written to an
+ * XML file that can be used as input for the command line application or for the
+ * {@link SearchBenchmarkRunner}.
+ * <p>
+ * Usage: <code>InstanceGenerator &lt;output-file&gt; &lt;plants&gt; &lt;chromosomes&gt; &lt;loci-per-chromosome&gt;
+ * &lt;min-distance&gt; &lt;max-distance&gt; &lt;difficulty&gt; [&lt;seed&gt;]</code>
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class InstanceGenerator {
+
+    // number of initial plants
+    private final int numPlants;
+    // number of chromosomes and loci per chromosome
+    private final int numChromosomes;
+    private final int numLociPerChromosome;
+    // range of distances between consecutive loci (cM)
+    private final double minDistance;
+    private final double maxDistance;
+    // probability that a target allele is absent in an initial plant
+    private final double difficulty;
+
+    public InstanceGenerator(int numPlants, int numChromosomes, int numLociPerChromosome,
+                             double minDistance, double maxDistance, double difficulty){
+        if(numPlants < 1 || numChromosomes < 1 || numLociPerChromosome < 1){
+            throw new IllegalArgumentException("Number of plants, chromosomes and loci per chromosome should be positive.");
+        }
+        if(!(minDistance >= 0.0 && maxDistance >= minDistance)){
+            throw new IllegalArgumentException("Invalid distance range: [" + minDistance + ", " + maxDistance + "].");
+        }
+        if(!(difficulty >= 0.0 && difficulty <= 1.0)){
+            throw new IllegalArgumentException("Difficulty should be a probability between 0.0 and 1.0.");
+        }
+        this.numPlants = numPlants;
+        this.numChromosomes = numChromosomes;
+        this.numLociPerChromosome = numLociPerChromosome;
+        this.minDistance = minDistance;
+        this.maxDistance = maxDistance;
+        this.difficulty = difficulty;
+    }
+
+    /**
+     * Generate a random instance.
+     *
+     * @param rg random generator
+     * @return generated instance
+     * @throws GenestackerException if the genotypes can not be created
+     */
+    public GenestackerInput generate(Random rg) throws GenestackerException{
+        // draw target alleles for each initial plant (flattened over all chromosomes)
+        int numLoci = numChromosomes * numLociPerChromosome;
+        boolean[][] targets = new boolean[numPlants][numLoci];
+        for(int p=0; p<numPlants; p++){
+            for(int l=0; l<numLoci; l++){
+                targets[p][l] = rg.nextDouble() >= difficulty;
+            }
+        }
+        // make sure that each target allele occurs in at least one plant
+        for(int l=0; l<numLoci; l++){
+            boolean present = false;
+            for(int p=0; p<numPlants && !present; p++){
+                present = targets[p][l];
+            }
+            if(!present){
+                targets[rg.nextInt(numPlants)][l] = true;
+            }
+        }
+        // create homozygous initial plants
+        List<Plant> plants = new ArrayList<>(numPlants);
+        for(int p=0; p<numPlants; p++){
+            List<DiploidChromosome> chroms = new ArrayList<>(numChromosomes);
+            for(int c=0; c<numChromosomes; c++){
+                boolean[] h = new boolean[numLociPerChromosome];
+                System.arraycopy(targets[p], c*numLociPerChromosome, h, 0, numLociPerChromosome);
+                chroms.add(new DiploidChromosome(new Haplotype(h), new Haplotype(h)));
+            }
+            plants.add(new Plant(new Genotype(chroms)));
+        }
+        // create genetic map
+        double[][] distances = new double[numChromosomes][numLociPerChromosome-1];
+        for(int c=0; c<numChromosomes; c++){
+            for(int l=0; l<numLociPerChromosome-1; l++){
+                distances[c][l] = minDistance + rg.nextDouble() * (maxDistance - minDistance);
+            }
+        }
+        GeneticMap map = new GeneticMap(distances, new HaldaneMapFunction());
+        return new GenestackerInput(plants, BenchmarkInputs.ideotype(numChromosomes, numLociPerChromosome), map);
+    }
+
+    /**
+     * Generate a random instance and write it to the given XML file.
+     *
+     * @param rg random generator
+     * @param outputFile output file
+     * @return generated instance
+     * @throws GenestackerException if the instance can not be created
+     * @throws IOException if the file can not be written
+     */
+    public GenestackerInput write(Random rg, File outputFile) throws GenestackerException, IOException{
+        GenestackerInput input = generate(rg);
+        List<Plant> plants = input.getInitialPlants();
+        new GenestackerInputXMLWriter().write(plants.toArray(new Plant[plants.size()]),
+                                              input.getIdeotype(), input.getGeneticMap(), outputFile);
+        return input;
+    }
+
+    public static void main(String[] args) throws GenestackerException, IOException{
+        if(args.length != 7 && args.length != 8){
+            System.err.println("Usage: InstanceGenerator <output-file> <plants> <chromosomes> <loci-per-chromosome>"
+                                + " <min-distance> <max-distance> <difficulty> [<seed>]");
+            System.exit(1);
+        }
+        InstanceGenerator gen = new InstanceGenerator(Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                                                      Integer.parseInt(args[3]), Double.parseDouble(args[4]),
+                                                      Double.parseDouble(args[5]), Double.parseDouble(args[6]));
+        long seed = args.length == 8 ? Long.parseLong(args[7]) : BenchmarkInputs.SEED;
+        gen.write(new Random(seed), new File(args[0]));
+    }
+
+}
@@ -0,0 +1,87 @@
+//  Copyright 2012 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+package org.ugent.caagt.genestacker.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ugent.caagt.genestacker.search.CrossingSchemeDescriptor;
+import org.ugent.caagt.genestacker.search.DefaultDominatesRelation;
+import org.ugent.caagt.genestacker.search.GenericParetoFrontier;
+
+/**
+ * Benchmarks registration of random scheme descriptors in a Pareto frontier, using the default
+ * dominates relation. Reported times are per registered descriptor.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParetoFrontierBenchmark {
+
+    // number of registered descriptors per invocation
+    private static final int NUM_DESCRIPTORS = 1000;
+
+    // maximum number of generations of the generated descriptors (affects the frontier size)
+    @Param({"4", "8"})
+    public int maxGenerations;
+
+    // input
+    private CrossingSchemeDescriptor[] descriptors;
+
+    @Setup
+    public void setUp(){
+        Random rg = new Random(BenchmarkInputs.SEED);
+        descriptors = new CrossingSchemeDescriptor[NUM_DESCRIPTORS];
+        for(int i=0; i<NUM_DESCRIPTORS; i++){
+            int gen = 1 + rg.nextInt(maxGenerations);
+            int crossings = gen + rg.nextInt(3*gen);
+            long pop = 10 + rg.nextInt(10000);
+            double lpa = rg.nextDouble() < 0.5 ? 0.0 : rg.nextDouble();
+            descriptors[i] = new CrossingSchemeDescriptor(gen, crossings, 1 + rg.nextInt(4), pop, pop * gen, lpa, rg.nextInt(gen+1));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_DESCRIPTORS)
+    public int register(){
+        GenericParetoFrontier<CrossingSchemeDescriptor, CrossingSchemeDescriptor> frontier
+                = new GenericParetoFrontier<CrossingSchemeDescriptor, CrossingSchemeDescriptor>(new DefaultDominatesRelation()) {
+            @Override
+            public CrossingSchemeDescriptor inferDescriptor(CrossingSchemeDescriptor desc){
+                return desc;
+            }
+        };
+        for(CrossingSchemeDescriptor desc : descriptors){
+            frontier.register(desc);
+        }
+        return frontier.getNumSchemes();
+    }
+
+}
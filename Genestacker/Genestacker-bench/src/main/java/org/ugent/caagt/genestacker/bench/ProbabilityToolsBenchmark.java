@@ -0,0 +1,76 @@
+//  Copyright 2012 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+package org.ugent.caagt.genestacker.bench;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ugent.caagt.genestacker.util.ProbabilityTools;
+
+/**
+ * Benchmarks the computation of the probability to obtain a number of targets with given
+ * minimum occurrences, as used to compute the required population sizes.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProbabilityToolsBenchmark {
+
+    // number of distinct targets
+    @Param({"1", "2", "4"})
+    public int targets;
+
+    // minimum number of occurrences of each target
+    @Param({"1", "2"})
+    public int minOcc;
+
+    // number of trials (population size)
+    @Param({"50", "500"})
+    public long n;
+
+    // input
+    private ProbabilityTools tools;
+    private double[] probs;
+    private int[] occ;
+
+    @Setup
+    public void setUp(){
+        tools = new ProbabilityTools();
+        probs = new double[targets];
+        Arrays.fill(probs, 0.5 / targets);
+        occ = new int[targets];
+        Arrays.fill(occ, minOcc);
+    }
+
+    @Benchmark
+    public double computeProbMinOcc(){
+        return tools.computeProbMinOcc(probs, occ, n);
+    }
+
+}
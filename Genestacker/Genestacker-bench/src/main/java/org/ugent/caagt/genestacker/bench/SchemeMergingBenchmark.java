@@ -0,0 +1,119 @@
+//  Copyright 2012 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+package org.ugent.caagt.genestacker.bench;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ugent.caagt.genestacker.GeneticMap;
+import org.ugent.caagt.genestacker.Genotype;
+import org.ugent.caagt.genestacker.SeedLot;
+import org.ugent.caagt.genestacker.exceptions.GenestackerException;
+import org.ugent.caagt.genestacker.search.CrossingScheme;
+import org.ugent.caagt.genestacker.search.CrossingSchemeAlternatives;
+import org.ugent.caagt.genestacker.search.DefaultDominatesRelation;
+import org.ugent.caagt.genestacker.search.DefaultPopulationSizeTools;
+import org.ugent.caagt.genestacker.search.PlantNode;
+import org.ugent.caagt.genestacker.search.PopulationSizeTools;
+import org.ugent.caagt.genestacker.search.bb.BranchAndBoundSolutionManager;
+import org.ugent.caagt.genestacker.search.bb.DefaultSeedLotConstructor;
+import org.ugent.caagt.genestacker.search.bb.MergeFirstSchemeMerger;
+import org.ugent.caagt.genestacker.search.bb.SeedLotConstructor;
+
+/**
+ * Benchmarks crossing scheme construction and merging. Two schemes are created by crossing
+ * three random initial plants (A x B and B x C, so that plant B can be reused when merging),
+ * after which the final plants of both schemes are crossed and the schemes are merged.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SchemeMergingBenchmark {
+
+    @Param({"1", "2"})
+    public int chromosomes;
+
+    @Param({"2", "4"})
+    public int loci;
+
+    @Param({"0.5", "1.0"})
+    public double heterozygosity;
+
+    // input
+    private PopulationSizeTools popSizeTools;
+    private GeneticMap map;
+    private BranchAndBoundSolutionManager solManager;
+    private CrossingSchemeAlternatives scheme1, scheme2;
+    private SeedLot seedLot;
+    private PlantNode mergedFinalPlant;
+
+    @Setup
+    public void setUp() throws GenestackerException{
+        Random rg = new Random(BenchmarkInputs.SEED);
+        popSizeTools = new DefaultPopulationSizeTools(0.95);
+        map = BenchmarkInputs.randomGeneticMap(rg, chromosomes, loci);
+        Genotype ideotype = BenchmarkInputs.ideotype(chromosomes, loci);
+        solManager = new BranchAndBoundSolutionManager(new DefaultDominatesRelation(), ideotype, popSizeTools,
+                                                        null, null, null, null, false);
+        SeedLotConstructor constructor = new DefaultSeedLotConstructor(map);
+        // initial schemes
+        CrossingScheme a = BenchmarkInputs.initialScheme(BenchmarkInputs.randomGenotype(rg, chromosomes, loci, heterozygosity), popSizeTools);
+        CrossingScheme b = BenchmarkInputs.initialScheme(BenchmarkInputs.randomGenotype(rg, chromosomes, loci, heterozygosity), popSizeTools);
+        CrossingScheme c = BenchmarkInputs.initialScheme(BenchmarkInputs.randomGenotype(rg, chromosomes, loci, heterozygosity), popSizeTools);
+        // cross A x B and B x C
+        scheme1 = new CrossingSchemeAlternatives(BenchmarkInputs.crossedScheme(
+                a.getFinalPlantNode().deepUpwardsCopy(), b.getFinalPlantNode().deepUpwardsCopy(), constructor, popSizeTools));
+        scheme2 = new CrossingSchemeAlternatives(BenchmarkInputs.crossedScheme(
+                b.getFinalPlantNode().deepUpwardsCopy(), c.getFinalPlantNode().deepUpwardsCopy(), constructor, popSizeTools));
+        seedLot = constructor.cross(scheme1.getFinalPlant().getGenotype(), scheme2.getFinalPlant().getGenotype());
+        // final plant of a merged scheme, used to benchmark scheme construction
+        List<CrossingSchemeAlternatives> merged = combineSchemes();
+        if(merged.isEmpty()){
+            throw new IllegalStateException("Merging did not produce any scheme.");
+        }
+        mergedFinalPlant = merged.get(0).getAlternatives().get(0).getFinalPlantNode();
+    }
+
+    @Benchmark
+    public List<CrossingSchemeAlternatives> combineSchemes() throws GenestackerException{
+        return new MergeFirstSchemeMerger(scheme1, scheme2, map, solManager, seedLot).combineSchemes();
+    }
+
+    @Benchmark
+    public CrossingScheme constructScheme(){
+        return new CrossingScheme(popSizeTools, mergedFinalPlant);
+    }
+
+    @Benchmark
+    public CrossingScheme copyAndConstructScheme() throws GenestackerException{
+        return new CrossingScheme(popSizeTools, mergedFinalPlant.deepUpwardsCopy());
+    }
+
+}
@@ -0,0 +1,267 @@
+//  Copyright 2012 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.bench;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.apache.commons.cli.ParseException;
+import org.ugent.caagt.genestacker.cli.Main;
+import org.ugent.caagt.genestacker.exceptions.GenestackerException;
+import org.ugent.caagt.genestacker.io.GenestackerInput;
+import org.ugent.caagt.genestacker.io.GenestackerInputParser;
+import org.ugent.caagt.genestacker.search.ParetoFrontier;
+import org.ugent.caagt.genestacker.search.bb.BranchAndBound;
+import org.ugent.caagt.genestacker.search.bb.heuristics.Heuristic;
+import org.ugent.caagt.genestacker.util.GenestackerConstants;
+
+/**
+ * Runs the branch and bound engine end-to-end on a collection of input files, for each combination
+ * of the given heuristic presets and thread counts, and writes one CSV line per run with the wall
+ * time, the number of expanded schemes (total and per second), the peak heap usage and the size of
+ * the resulting Pareto frontier. The presets are those of the command line application (best,
+ * better, default, faster and fastest), which also creates and runs the engines. Input files can be taken from <code>data/examples</code>
+ * or generated with the {@link InstanceGenerator}.
+ * <p>
+ * Usage: <code>SearchBenchmarkRunner &lt;output-csv&gt; &lt;max-gen&gt; &lt;success-prob&gt;
+ * &lt;runtime-limit (s, -1 for none)&gt; &lt;presets (comma separated)&gt; &lt;threads (comma separated)&gt;
+ * &lt;input-file&gt; [&lt;input-file&gt; ...]</code>
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class SearchBenchmarkRunner {
+
+    // CSV header
+    public static final String CSV_HEADER = "instance,preset,threads,wall_time_ms,expansions,expansions_per_second,"
+                                            + "peak_heap_bytes,frontier_size";
+
+    /**
+     * Heuristic presets, selected with the respective options of the command line application.
+     */
+    public enum Preset {
+
+        BEST("-best"),
+        BETTER("-better"),
+        DEFAULT(null),
+        FASTER("-faster"),
+        FASTEST("-fastest");
+
+        // command line option (null for the default heuristics)
+        private final String option;
+
+        private Preset(String option){
+            this.option = option;
+        }
+
+        public String getOption(){
+            return option;
+        }
+
+    }
+
+    /**
+     * Results of a single benchmark run.
+     */
+    public static class Result {
+
+        private final long wallTime;
+        private final long expansions;
+        private final long peakHeap;
+        private final int frontierSize;
+
+        public Result(long wallTime, long expansions, long peakHeap, int frontierSize){
+            this.wallTime = wallTime;
+            this.expansions = expansions;
+            this.peakHeap = peakHeap;
+            this.frontierSize = frontierSize;
+        }
+
+        public long getWallTime(){
+            return wallTime;
+        }
+
+        public long getExpansions(){
+            return expansions;
+        }
+
+        public double getExpansionsPerSecond(){
+            return wallTime > 0 ? 1000.0 * expansions / wallTime : 0.0;
+        }
+
+        public long getPeakHeap(){
+            return peakHeap;
+        }
+
+        public int getFrontierSize(){
+            return frontierSize;
+        }
+
+    }
+
+    // maximum number of generations
+    private final int maxGen;
+    // success probability
+    private final double successProb;
+    // runtime limit per run (ms)
+    private final long runtimeLimit;
+
+    public SearchBenchmarkRunner(int maxGen, double successProb, long runtimeLimit){
+        this.maxGen = maxGen;
+        this.successProb = successProb;
+        this.runtimeLimit = runtimeLimit;
+    }
+
+    /**
+     * Parse the options of the command line application for the given heuristic preset.
+     *
+     * @param preset heuristic preset
+     * @return command line application with parsed options
+     * @throws ParseException if the options are invalid
+     */
+    public Main configure(Preset preset) throws ParseException{
+        List<String> options = new ArrayList<>();
+        options.add("-g");
+        options.add(Integer.toString(maxGen));
+        options.add("-s");
+        options.add(Double.toString(successProb));
+        if(preset.getOption() != null){
+            options.add(preset.getOption());
+        }
+        Main main = new Main();
+        main.parseSearchOptions(options.toArray(new String[options.size()]));
+        return main;
+    }
+
+    /**
+     * Run the branch and bound engine on the given input, using the given heuristic preset and number of threads.
+     * The engine is created and, in case of two consecutive runs (h3s1 or h3s2), prepared for the second run by
+     * the command line application.
+     *
+     * @param input problem input
+     * @param preset heuristic preset
+     * @param numThreads number of threads
+     * @return benchmark results
+     * @throws GenestackerException if anything goes wrong during the search
+     * @throws ParseException if the options of the preset are invalid
+     */
+    public Result run(GenestackerInput input, Preset preset, int numThreads) throws GenestackerException, ParseException{
+        Main main = configure(preset);
+        BranchAndBound engine = main.createBranchAndBound(input, null);
+
+        resetPeakHeapUsage();
+        ParetoFrontier frontier;
+        long wallTime;
+        long expansions;
+        if(!main.dualRun()){
+            frontier = engine.search(runtimeLimit, numThreads);
+            wallTime = engine.getStop() - engine.getStart();
+            expansions = engine.getNumExpandedSchemes();
+        } else {
+            // first run with h3
+            Heuristic h3heur = main.enableFirstRunHeuristic(engine);
+            frontier = engine.search(runtimeLimit, numThreads);
+            wallTime = engine.getStop() - engine.getStart();
+            expansions = engine.getNumExpandedSchemes();
+            long run2timeLimit = GenestackerConstants.NO_RUNTIME_LIMIT;
+            if(runtimeLimit != GenestackerConstants.NO_RUNTIME_LIMIT){
+                run2timeLimit = runtimeLimit - wallTime;
+            }
+            if(run2timeLimit == GenestackerConstants.NO_RUNTIME_LIMIT || run2timeLimit > 0){
+                // second run without h3, seeded with the solutions of the first run
+                main.prepareSecondRun(engine, h3heur, input, frontier);
+                frontier = engine.search(run2timeLimit, numThreads);
+                wallTime += engine.getStop() - engine.getStart();
+                expansions += engine.getNumExpandedSchemes();
+            }
+        }
+        return new Result(wallTime, expansions, getPeakHeapUsage(), frontier.getNumSchemes());
+    }
+
+    private static List<MemoryPoolMXBean> heapPools(){
+        List<MemoryPoolMXBean> pools = new ArrayList<>();
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()){
+            if(pool.getType() == MemoryType.HEAP){
+                pools.add(pool);
+            }
+        }
+        return pools;
+    }
+
+    private static void resetPeakHeapUsage(){
+        System.gc();
+        for(MemoryPoolMXBean pool : heapPools()){
+            pool.resetPeakUsage();
+        }
+    }
+
+    private static long getPeakHeapUsage(){
+        long peak = 0;
+        for(MemoryPoolMXBean pool : heapPools()){
+            peak += pool.getPeakUsage().getUsed();
+        }
+        return peak;
+    }
+
+    public static void main(String[] args) throws GenestackerException, IOException, ParseException{
+        if(args.length < 7){
+            System.err.println("Usage: SearchBenchmarkRunner <output-csv> <max-gen> <success-prob> <runtime-limit (s, -1 for none)>"
+                                + " <presets (comma separated)> <threads (comma separated)> <input-file> [<input-file> ...]");
+            System.exit(1);
+        }
+        int maxGen = Integer.parseInt(args[1]);
+        double successProb = Double.parseDouble(args[2]);
+        long runtimeLimit = Long.parseLong(args[3]);
+        if(runtimeLimit != GenestackerConstants.NO_RUNTIME_LIMIT){
+            runtimeLimit *= 1000;
+        }
+        List<Preset> presets = new ArrayList<>();
+        for(String p : args[4].split(",")){
+            presets.add(Preset.valueOf(p.trim().toUpperCase()));
+        }
+        List<Integer> threads = new ArrayList<>();
+        for(String t : args[5].split(",")){
+            threads.add(Integer.parseInt(t.trim()));
+        }
+        SearchBenchmarkRunner runner = new SearchBenchmarkRunner(maxGen, successProb, runtimeLimit);
+        GenestackerInputParser parser = new GenestackerInputParser();
+        try(PrintWriter out = new PrintWriter(new FileWriter(args[0]))){
+            out.println(CSV_HEADER);
+            for(int i=6; i<args.length; i++){
+                File inputFile = new File(args[i]);
+                GenestackerInput input = parser.parse(inputFile);
+                for(Preset preset : presets){
+                    for(int numThreads : threads){
+                        Result res = runner.run(input, preset, numThreads);
+                        String line = String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%.2f,%d,%d",
+                                                    inputFile.getName(), preset.name().toLowerCase(), numThreads,
+                                                    res.getWallTime(), res.getExpansions(), res.getExpansionsPerSecond(),
+                                                    res.getPeakHeap(), res.getFrontierSize());
+                        out.println(line);
+                        out.flush();
+                        System.out.println(line);
+                    }
+                }
+            }
+        }
+    }
+
+}
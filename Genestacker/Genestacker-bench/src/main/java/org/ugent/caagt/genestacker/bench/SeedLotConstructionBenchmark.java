@@ -0,0 +1,100 @@
+//  Copyright 2012 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+package org.ugent.caagt.genestacker.bench;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ugent.caagt.genestacker.GeneticMap;
+import org.ugent.caagt.genestacker.Genotype;
+import org.ugent.caagt.genestacker.SeedLot;
+import org.ugent.caagt.genestacker.exceptions.GenestackerException;
+import org.ugent.caagt.genestacker.search.bb.DefaultSeedLotConstructor;
+import org.ugent.caagt.genestacker.search.bb.heuristics.HeuristicSeedLotConstructor;
+
+/**
+ * Benchmarks seed lot construction with the default and heuristic seed lot constructors.
+ * A new constructor is created for every crossing so that cached gametes are not reused.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeedLotConstructionBenchmark {
+
+    @Param({"1", "2"})
+    public int chromosomes;
+
+    @Param({"2", "3", "4"})
+    public int loci;
+
+    @Param({"0.5", "1.0"})
+    public double heterozygosity;
+
+    // input
+    private GeneticMap map;
+    private Genotype parent1, parent2, ideotype;
+    private Set<Genotype> desiredChildren;
+
+    @Setup
+    public void setUp() throws GenestackerException{
+        Random rg = new Random(BenchmarkInputs.SEED);
+        map = BenchmarkInputs.randomGeneticMap(rg, chromosomes, loci);
+        parent1 = BenchmarkInputs.randomGenotype(rg, chromosomes, loci, heterozygosity);
+        parent2 = BenchmarkInputs.randomGenotype(rg, chromosomes, loci, heterozygosity);
+        ideotype = BenchmarkInputs.ideotype(chromosomes, loci);
+        // desired children for partial crossings: every other child genotype
+        desiredChildren = new HashSet<>();
+        Iterator<Genotype> it = new DefaultSeedLotConstructor(map).cross(parent1, parent2).getGenotypes().iterator();
+        while(it.hasNext()){
+            desiredChildren.add(it.next());
+            if(it.hasNext()){
+                it.next();
+            }
+        }
+    }
+
+    @Benchmark
+    public SeedLot cross() throws GenestackerException{
+        return new DefaultSeedLotConstructor(map).cross(parent1, parent2);
+    }
+
+    @Benchmark
+    public SeedLot partialCross() throws GenestackerException{
+        return new DefaultSeedLotConstructor(map).partialCross(parent1, parent2, desiredChildren);
+    }
+
+    @Benchmark
+    public SeedLot heuristicCross() throws GenestackerException{
+        return new HeuristicSeedLotConstructor(map, ideotype).cross(parent1, parent2);
+    }
+
+}
@@ -0,0 +1,240 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+
+package org.ugent.caagt.genestacker.cli;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.compress.archivers.ArchiveException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.ugent.caagt.genestacker.exceptions.GenestackerException;
+import org.ugent.caagt.genestacker.io.GenestackerInput;
+import org.ugent.caagt.genestacker.search.ParetoFrontier;
+import org.ugent.caagt.genestacker.search.bb.BranchAndBound;
+import org.ugent.caagt.genestacker.search.bb.BranchAndBoundBatch;
+import org.ugent.caagt.genestacker.search.bb.GeneticMapCache;
+import org.ugent.caagt.genestacker.search.bb.heuristics.Heuristic;
+import org.ugent.caagt.genestacker.search.bb.heuristics.ProfilingHeuristics;
+import org.ugent.caagt.genestacker.util.GenestackerConstants;
+import org.ugent.caagt.genestacker.util.TimeFormatting;
+
+/**
+ * Batch mode of the command line interface (option <code>-batch</code>), which runs searches with the same
+ * options for several input files, e.g. with different ideotypes for the same initial plants. All arguments
+ * except the last one are input files and the last argument is an output directory, in which a ZIP package
+ * is created for each input file. The searches are run concurrently by a {@link BranchAndBoundBatch},
+ * sharing the available threads as well as genetic maps, gametes and unfiltered seed lots. All other options
+ * are parsed by {@link Main}, which also creates the engines.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class BatchCommand {
+
+    // name of option
+    public static final String OPTION = "batch";
+
+    // logger
+    private static final Logger logger = LogManager.getLogger(BatchCommand.class);
+
+    // parsed search options
+    private final Main main;
+
+    // input files and output directory
+    private List<String> inputFiles;
+    private String outputDir;
+
+    BatchCommand(Main main){
+        this.main = main;
+    }
+
+    static Option createOption(){
+        return new Option(OPTION, OPTION, false, "run a batch of searches with the same options for several input files, e.g. with different"
+                                                + " ideotypes for the same initial plants: all arguments except the last one are input files"
+                                                + " and the last argument is an output directory, in which a ZIP package is created for each"
+                                                + " input file; searches are run concurrently, sharing the available threads as well as"
+                                                + " genetic maps, gametes and unfiltered seed lots (cannot be combined with -prog,--progress,"
+                                                + " -beam,--beam-search, -id,--iterative-deepening or -coord,--coordinator)");
+    }
+
+    /**
+     * Parse the input files and output directory, and check for options that are not supported in batch mode.
+     *
+     * @param cmd parsed command line
+     * @throws ParseException if the arguments or options are invalid in batch mode
+     */
+    void parseArguments(CommandLine cmd) throws ParseException {
+        String[] args = cmd.getArgs();
+        if(args != null && args.length >= 2){
+            inputFiles = Arrays.asList(args).subList(0, args.length-1);
+            outputDir = args[args.length-1];
+        } else {
+            throw new ParseException("At least one <input-file> and an <output-dir> expected in batch mode.");
+        }
+        if(cmd.hasOption("beam-search")){
+            throw new ParseException("Option -beam,--beam-search cannot be combined with -batch,--batch.");
+        }
+        if(cmd.hasOption("iterative-deepening")){
+            throw new ParseException("Option -id,--iterative-deepening cannot be combined with -batch,--batch.");
+        }
+        if(cmd.hasOption("coordinator")){
+            throw new ParseException("Option -coord,--coordinator cannot be combined with -batch,--batch.");
+        }
+        if(cmd.hasOption("progress")){
+            throw new ParseException("Option -prog,--progress cannot be combined with -batch,--batch.");
+        }
+    }
+
+    /**
+     * Run a batch of searches for all input files, sharing the available threads as well as genetic maps,
+     * gametes and unfiltered seed lots, and create a ZIP package for each input file in the output directory.
+     *
+     * @throws GenestackerException if any search fails
+     * @throws IOException if any IO errors occur
+     * @throws ArchiveException if a ZIP package can not be created
+     */
+    void run() throws GenestackerException, IOException, ArchiveException{
+        // check if input files exist
+        for(String f : inputFiles){
+            if(!Files.exists(Paths.get(f))){
+                throw new FileNotFoundException("Could not find input file '" + f + "'.");
+            }
+        }
+        
+        // determine output files, named after the input files
+        File outputDirectory = new File(outputDir);
+        if(outputDirectory.exists() && !outputDirectory.isDirectory()){
+            throw new FileAlreadyExistsException("Output '" + outputDir + "' is not a directory.");
+        }
+        List<String> outputFiles = new ArrayList<>();
+        for(String f : inputFiles){
+            String name = new File(f).getName();
+            if(name.lastIndexOf('.') > 0){
+                name = name.substring(0, name.lastIndexOf('.'));
+            }
+            String out = new File(outputDirectory, name + ".zip").getPath();
+            if(outputFiles.contains(out)){
+                throw new FileAlreadyExistsException("Input files with the same name '" + name + "' would have the same output file.");
+            }
+            if(Files.exists(Paths.get(out))){
+                throw new FileAlreadyExistsException("Output file '" + out + "' already exists.");
+            }
+            outputFiles.add(out);
+        }
+        Files.createDirectories(outputDirectory.toPath());
+        
+        // share genetic maps, gametes and unfiltered seed lots among the searches
+        if(main.getGeneticMapCache() == null){
+            main.setGeneticMapCache(new GeneticMapCache());
+        }
+        GeneticMapCache geneticMapCache = main.getGeneticMapCache();
+        
+        /*********************/
+        /* PARSE INPUT FILES */
+        /*********************/
+        
+        logger.info("Parsing {} input files ...", inputFiles.size());
+        List<GenestackerInput> inputs = new ArrayList<>();
+        for(String f : inputFiles){
+            inputs.add(main.parseInput(f));
+        }
+        
+        /**************************/
+        /* RUN BATCH OF B&B RUNS  */
+        /**************************/
+        
+        // emit JFR events if a flight recording has been requested
+        main.enableFlightRecorderEvents();
+        
+        logger.info("Running batch of {} Branch and Bound searches {} ...", inputs.size(), main.formatActivatedHeuristicsInfo());
+        BranchAndBoundBatch bbBatch = new BranchAndBoundBatch(main.getNumThreads());
+        for(int i=0; i<inputs.size(); i++){
+            GenestackerInput input = inputs.get(i);
+            BranchAndBound engine = main.createBranchAndBound(input, outputFiles.get(i));
+            if(main.defaultSeedLotConstructor()){
+                // seed lots created by the default seed lot constructor only depend on the parents and map
+                engine.setUnfilteredSeedLotCache(geneticMapCache.getSeedLotCache(input.getGeneticMap()));
+            }
+            bbBatch.addSearch(engine, main.getRuntimeLimit());
+        }
+        long start = System.currentTimeMillis();
+        List<ParetoFrontier> frontiers;
+        if(!main.dualRun()){
+            
+            // ### single run  ###
+            
+            frontiers = bbBatch.run();
+            
+        } else {
+            
+            // two consecutive runs of each search: first with h3, second without h3 (h3s1 or h3s2)
+            
+            // first run: enable h3 heuristic
+            List<Heuristic> h3heurs = new ArrayList<>();
+            for(BranchAndBound engine : bbBatch.getSearches()){
+                h3heurs.add(main.enableFirstRunHeuristic(engine));
+            }
+            main.announceRun(1);
+            frontiers = bbBatch.run();
+            
+            // second run (only for searches with time left): disable h3
+            BranchAndBoundBatch secondRuns = new BranchAndBoundBatch(main.getNumThreads());
+            List<Integer> secondRunIndices = new ArrayList<>();
+            for(int i=0; i<inputs.size(); i++){
+                BranchAndBound engine = bbBatch.getSearches().get(i);
+                long run2timeLimit = GenestackerConstants.NO_RUNTIME_LIMIT;
+                if(main.getRuntimeLimit() != GenestackerConstants.NO_RUNTIME_LIMIT){
+                    run2timeLimit = main.getRuntimeLimit() - (engine.getStop() - engine.getStart());
+                }
+                if(run2timeLimit == GenestackerConstants.NO_RUNTIME_LIMIT || run2timeLimit > 0){
+                    main.prepareSecondRun(engine, h3heurs.get(i), inputs.get(i), frontiers.get(i));
+                    secondRuns.addSearch(engine, run2timeLimit);
+                    secondRunIndices.add(i);
+                }
+            }
+            main.announceRun(2);
+            List<ParetoFrontier> secondFrontiers = secondRuns.run();
+            for(int j=0; j<secondRunIndices.size(); j++){
+                frontiers.set(secondRunIndices.get(j), secondFrontiers.get(j));
+            }
+        }
+        
+        // print total runtime of the batch
+        logger.info("Total runtime = {}", TimeFormatting.formatTime(System.currentTimeMillis() - start));
+        
+        // output results of each search
+        for(int i=0; i<inputs.size(); i++){
+            // print heuristics profile
+            if(main.profileHeuristics()){
+                logger.info("Heuristics profile ({}):\n{}", inputFiles.get(i),
+                            ((ProfilingHeuristics) bbBatch.getSearches().get(i).getHeuristics()).formatProfile());
+            }
+            System.out.println("");
+            System.out.println("### Input file " + inputFiles.get(i) + " ###");
+            main.output(frontiers.get(i), outputFiles.get(i));
+        }
+    }
+
+}
@@ -0,0 +1,159 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.cli;
+
+import java.io.File;
+import java.io.IOException;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+import org.apache.commons.compress.archivers.ArchiveException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.ugent.caagt.genestacker.exceptions.GenestackerException;
+import org.ugent.caagt.genestacker.io.BinaryFormat;
+import org.ugent.caagt.genestacker.io.BinaryFormatConverter;
+import org.ugent.caagt.genestacker.io.GenestackerInputBinaryReader;
+import org.ugent.caagt.genestacker.io.ParetoFrontierBinaryReader;
+import org.ugent.caagt.genestacker.io.ZIPWriter;
+
+/**
+ * Command line interface of the <code>convert</code> subcommand, which converts input files and results
+ * between the XML formats and the compact binary formats. The direction of the conversion is determined
+ * by the type of the input file.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class ConvertCommand {
+
+    // name of subcommand
+    public static final String NAME = "convert";
+
+    // logger
+    private Logger logger;
+
+    // options
+    private Options options;
+
+    // parameter values
+    private File inputFile;
+    private File outputFile;
+
+    public void run(String[] args){
+        // load default log settings
+        Configurator.initialize("config", null, "log4j2.xml");
+        logger = LogManager.getLogger(ConvertCommand.class);
+        // setup and parse options
+        setupOptions();
+        try {
+            CommandLine cmd = new PosixParser().parse(options, args);
+            if(cmd.hasOption("help")){
+                printHelp();
+                System.exit(0);
+            }
+            parseOptions(cmd);
+        } catch (ParseException ex){
+            logger.error("Invalid usage: {}", ex.getMessage());
+            printHelp();
+            System.exit(1);
+        }
+        // convert
+        try {
+            BinaryFormatConverter converter = new BinaryFormatConverter();
+            if(GenestackerInputBinaryReader.isBinaryInput(inputFile)){
+                logger.info("Converting binary input to XML ...");
+                converter.inputToXML(inputFile, outputFile);
+            } else if(ParetoFrontierBinaryReader.isBinaryResults(inputFile)){
+                logger.info("Converting binary results to ZIP package ...");
+                int numSchemes = converter.resultsToZIP(inputFile, outputFile);
+                logger.info("Converted {} scheme(s)", numSchemes);
+            } else if(inputFile.getName().endsWith(".zip")){
+                logger.info("Converting ZIP package to binary results ...");
+                int numSchemes = converter.resultsToBinary(inputFile, outputFile);
+                logger.info("Converted {} scheme(s)", numSchemes);
+            } else {
+                logger.info("Converting XML input to binary format ...");
+                converter.inputToBinary(inputFile, outputFile);
+            }
+            logger.info("Output written to {}", outputFile);
+        } catch (GenestackerException ex){
+            logger.error("Fatal error occurred while converting {}", inputFile, ex);
+            System.exit(1);
+        } catch (IOException | ArchiveException ex){
+            logger.error("Input/output error: {}", ex.getMessage());
+            System.exit(1);
+        } catch (Exception ex){
+            // unexpected error (catch-all)
+            logger.error("Unexpected error", ex);
+            System.exit(1);
+        }
+    }
+
+    private void setupOptions(){
+        Option helpOption = new Option("help", "help", false, "print help");
+        options = new Options();
+        options.addOption(helpOption);
+    }
+
+    private void printHelp(){
+        System.out.println("");
+        System.out.println("usage:\tgenestacker " + NAME + " <input> <output>");
+        System.out.println("");
+        System.out.println("\tConverts an XML input file to the binary input format (" + BinaryFormat.INPUT_EXTENSION + ") and vice versa," +
+                           "\n\tor the crossing schemes in a ZIP package to the binary result format (" + BinaryFormat.RESULTS_EXTENSION + ")" +
+                           "\n\tand vice versa. ZIP packages created from binary results only contain the XML" +
+                           "\n\tdescriptions of the schemes; diagrams can not be restored.");
+        System.out.println("");
+        System.out.println("\texample: The following commands convert the input file 'input.xml' to 'input" + BinaryFormat.INPUT_EXTENSION + "'" +
+                           "\n\tand the results in 'output.zip' to 'output" + BinaryFormat.RESULTS_EXTENSION + "'.");
+        System.out.println("");
+        System.out.println("\t\tgenestacker " + NAME + " input.xml input" + BinaryFormat.INPUT_EXTENSION);
+        System.out.println("\t\tgenestacker " + NAME + " output.zip output" + BinaryFormat.RESULTS_EXTENSION);
+        System.out.println("");
+        HelpFormatter f = new HelpFormatter();
+        f.setWidth(100);
+        f.setSyntaxPrefix("");
+        f.printHelp("Options:", options);
+        System.out.println("");
+    }
+
+    private void parseOptions(CommandLine cmd) throws ParseException {
+        // check for <input> and <output> arguments
+        if(cmd.getArgs().length != 2){
+            throw new ParseException("Expected <input> and <output> arguments.");
+        }
+        inputFile = new File(cmd.getArgs()[0]);
+        if(!inputFile.isFile()){
+            throw new ParseException("Input file " + inputFile + " does not exist.");
+        }
+        String output = cmd.getArgs()[1];
+        try {
+            if(ParetoFrontierBinaryReader.isBinaryResults(inputFile)){
+                output = ZIPWriter.formatOutputFile(output);
+            }
+        } catch (IOException ex){
+            throw new ParseException("Could not read input file " + inputFile + ": " + ex.getMessage());
+        }
+        outputFile = new File(output);
+        if(outputFile.exists()){
+            throw new ParseException("Output file " + outputFile + " already exists.");
+        }
+    }
+
+}
@@ -0,0 +1,296 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.cli;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.ugent.caagt.genestacker.search.bb.GeneticMapCache;
+import org.ugent.caagt.genestacker.util.TimeFormatting;
+
+/**
+ * Command line interface of the <code>daemon</code> subcommand, which keeps a single JVM running and executes
+ * searches submitted as job files to a spool directory. This avoids paying JVM startup, class loading and JIT
+ * warm-up for every search, which dominates the runtime of small instances. Jobs that use the same genetic map
+ * share the map's recombination probabilities and the gametes generated by the default seed lot constructor
+ * (see {@link GeneticMapCache}).
+ * <p>
+ * A job file has extension <code>.job</code> and contains the arguments of a regular Gene Stacker run,
+ * one argument per line. Pending jobs are claimed in order of their file name, by renaming them to
+ * <code>.running</code>, and are renamed to <code>.done</code> or <code>.failed</code> when finished.
+ * Creating a file named <code>stop</code> in the spool directory shuts down the daemon after all running
+ * jobs have completed.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class DaemonCommand {
+
+    // name of subcommand
+    public static final String NAME = "daemon";
+
+    // job file extensions
+    private static final String JOB_EXTENSION = ".job";
+    private static final String RUNNING_EXTENSION = ".running";
+    private static final String DONE_EXTENSION = ".done";
+    private static final String FAILED_EXTENSION = ".failed";
+    // name of stop file
+    private static final String STOP_FILE = "stop";
+
+    // interval at which the spool directory is scanned if no changes are reported (seconds)
+    private static final long POLL_INTERVAL = 5;
+
+    // logger
+    private Logger logger;
+
+    // options
+    private Options options;
+
+    // parameter values
+    private Path spoolDir;
+    private int numJobs;
+    private int maxMaps;
+
+    public void run(String[] args){
+        // load default log settings
+        Configurator.initialize("config", null, Main.DEFAULT_LOG_SETTINGS);
+        logger = LogManager.getLogger(DaemonCommand.class);
+        // setup and parse options
+        setupOptions();
+        try {
+            CommandLine cmd = new PosixParser().parse(options, args);
+            if(cmd.hasOption("help")){
+                printHelp();
+                System.exit(0);
+            }
+            parseOptions(cmd);
+        } catch (ParseException ex){
+            logger.error("Invalid usage: {}", ex.getMessage());
+            printHelp();
+            System.exit(1);
+        }
+        // process jobs until stopped
+        try {
+            serve();
+        } catch (IOException ex){
+            logger.error("Input/output error: {}", ex.getMessage());
+            System.exit(1);
+        } catch (InterruptedException ex){
+            logger.error("Daemon interrupted");
+            System.exit(1);
+        }
+    }
+
+    private void serve() throws IOException, InterruptedException {
+        GeneticMapCache mapCache = new GeneticMapCache(maxMaps, GeneticMapCache.DEFAULT_MAX_GAMETE_CACHE_SIZE);
+        ExecutorService jobPool = Executors.newFixedThreadPool(numJobs);
+        Path stopFile = spoolDir.resolve(STOP_FILE);
+        try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+            spoolDir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            logger.info("Waiting for jobs in {} ({} concurrent job(s)) ...", spoolDir, numJobs);
+            while(!Files.exists(stopFile)){
+                // claim and submit all pending jobs (also rescans periodically in case events were lost)
+                submitPendingJobs(jobPool, mapCache);
+                WatchKey key = watcher.poll(POLL_INTERVAL, TimeUnit.SECONDS);
+                if(key != null){
+                    key.pollEvents();
+                    key.reset();
+                }
+            }
+            logger.info("Stop requested, waiting for running jobs to complete ...");
+        } finally {
+            jobPool.shutdown();
+            jobPool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        Files.deleteIfExists(stopFile);
+        logger.info("Daemon stopped");
+    }
+
+    private void submitPendingJobs(ExecutorService jobPool, final GeneticMapCache mapCache) throws IOException {
+        List<Path> jobs = new ArrayList<>();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(spoolDir, "*" + JOB_EXTENSION)) {
+            for(Path job : dir){
+                jobs.add(job);
+            }
+        }
+        Collections.sort(jobs);
+        for(Path job : jobs){
+            // claim job
+            final Path running = replaceExtension(job, RUNNING_EXTENSION);
+            try {
+                Files.move(job, running, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException ex){
+                // already claimed or removed
+                continue;
+            }
+            final String name = job.getFileName().toString();
+            jobPool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    runJob(name, running, mapCache);
+                }
+            });
+        }
+    }
+
+    private void runJob(String name, Path running, GeneticMapCache mapCache){
+        logger.info("Starting job {}", name);
+        long start = System.currentTimeMillis();
+        int exitCode = 1;
+        try {
+            // read arguments (one per line)
+            List<String> args = new ArrayList<>();
+            for(String line : Files.readAllLines(running, StandardCharsets.UTF_8)){
+                if(!line.trim().isEmpty()){
+                    args.add(line.trim());
+                }
+            }
+            // run search
+            Main main = new Main();
+            main.setGeneticMapCache(mapCache);
+            // verbosity options apply per job, unless jobs run concurrently
+            main.setLogSettingsMode(true, numJobs > 1);
+            exitCode = main.runSearch(args.toArray(new String[args.size()]));
+        } catch (IOException ex){
+            logger.error("Could not read job {}: {}", name, ex.getMessage());
+        } catch (RuntimeException ex){
+            logger.error("Unexpected error in job " + name, ex);
+        } finally {
+            if(numJobs == 1){
+                // restore daemon log settings
+                Main.reloadLogSettings(Main.DEFAULT_LOG_SETTINGS);
+            }
+        }
+        // report result
+        String time = TimeFormatting.formatTime(System.currentTimeMillis() - start);
+        if(exitCode == 0){
+            logger.info("Finished job {} in {}", name, time);
+        } else {
+            logger.warn("Job {} failed after {}", name, time);
+        }
+        try {
+            Files.move(running, replaceExtension(running, exitCode == 0 ? DONE_EXTENSION : FAILED_EXTENSION),
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex){
+            logger.error("Could not mark job {} as finished: {}", name, ex.getMessage());
+        }
+    }
+
+    private Path replaceExtension(Path file, String extension){
+        String name = file.getFileName().toString();
+        return file.resolveSibling(name.substring(0, name.lastIndexOf('.')) + extension);
+    }
+
+    private void setupOptions(){
+        Option numJobsOption = OptionBuilder.withLongOpt("jobs")
+                                                  .hasArg()
+                                                  .withArgName("n")
+                                                  .withDescription("maximum number of jobs run concurrently, defaults to 1; each job uses the number of"
+                                                                    + " threads specified with its own -thr,--num-threads option")
+                                                  .create("j");
+        Option maxMapsOption = OptionBuilder.withLongOpt("max-maps")
+                                                  .hasArg()
+                                                  .withArgName("n")
+                                                  .withDescription("maximum number of distinct genetic maps for which gametes are kept in memory,"
+                                                                    + " defaults to " + GeneticMapCache.DEFAULT_MAX_MAPS)
+                                                  .create("maps");
+        Option helpOption = new Option("help", "help", false, "print help");
+        options = new Options();
+        options.addOption(numJobsOption);
+        options.addOption(maxMapsOption);
+        options.addOption(helpOption);
+    }
+
+    private void printHelp(){
+        System.out.println("");
+        System.out.println("usage:\tgenestacker " + NAME + " [options] <spool-dir>");
+        System.out.println("");
+        System.out.println("\tRuns searches submitted as job files to the spool directory, in a single JVM. A job file" +
+                           "\n\thas extension " + JOB_EXTENSION + " and contains the arguments of a regular Gene Stacker run, one" +
+                           "\n\targument per line. Relative paths are resolved against the working directory of the" +
+                           "\n\tdaemon. Write job files under a different name first and then rename them, so that" +
+                           "\n\tthey are never read while incomplete. Jobs are claimed in order of their file name and" +
+                           "\n\trenamed to " + RUNNING_EXTENSION + ", " + DONE_EXTENSION + " or " + FAILED_EXTENSION + ". Create a file named '" + STOP_FILE + "'" +
+                           "\n\tin the spool directory to stop the daemon once all running jobs have completed. When" +
+                           "\n\tseveral jobs run concurrently, the results they print may be interleaved and the" +
+                           "\n\tverbosity options of jobs (-v, -vv, -d) are ignored, as log settings apply to the entire" +
+                           "\n\tdaemon; when jobs run one at a time, these options apply to the job in which they occur.");
+        System.out.println("");
+        System.out.println("\texample: The following commands start a daemon and submit a job equivalent to");
+        System.out.println("\t'genestacker -g 3 -s 0.9 input.xml output'.");
+        System.out.println("");
+        System.out.println("\t\tgenestacker " + NAME + " -j 2 spool &");
+        System.out.println("\t\tprintf '%s\\n' -g 3 -s 0.9 input.xml output > spool/job1.tmp");
+        System.out.println("\t\tmv spool/job1.tmp spool/job1" + JOB_EXTENSION);
+        System.out.println("");
+        HelpFormatter f = new HelpFormatter();
+        f.setWidth(100);
+        f.setSyntaxPrefix("");
+        f.printHelp("Options:", options);
+        System.out.println("");
+    }
+
+    private void parseOptions(CommandLine cmd) throws ParseException {
+        // check for <spool-dir> argument
+        if(cmd.getArgs().length != 1){
+            throw new ParseException("Expected <spool-dir> argument.");
+        }
+        spoolDir = Paths.get(cmd.getArgs()[0]).toAbsolutePath();
+        if(!Files.isDirectory(spoolDir)){
+            throw new ParseException("Spool directory " + spoolDir + " does not exist.");
+        }
+        numJobs = parsePositiveInt(cmd, "jobs", "j", 1);
+        maxMaps = parsePositiveInt(cmd, "max-maps", "maps", GeneticMapCache.DEFAULT_MAX_MAPS);
+    }
+
+    private int parsePositiveInt(CommandLine cmd, String longOpt, String opt, int defaultValue) throws ParseException {
+        if(!cmd.hasOption(longOpt)){
+            return defaultValue;
+        }
+        try {
+            int value = Integer.parseInt(cmd.getOptionValue(longOpt));
+            if(!(value > 0)){
+                throw new NumberFormatException();
+            }
+            return value;
+        } catch(NumberFormatException ex){
+            throw new ParseException("Parameter -" + opt + ",--" + longOpt + " should be a positive integer.");
+        }
+    }
+
+}
@@ -3,10 +3,14 @@ package org.ugent.caagt.genestacker.cli;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URISyntaxException;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -23,6 +27,7 @@ import org.apache.commons.cli.PosixParser;
 import org.apache.commons.compress.archivers.ArchiveException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.LoggerContext;
 import org.apache.logging.log4j.core.config.Configurator;
 import org.ugent.caagt.genestacker.Haplotype;
 import org.ugent.caagt.genestacker.Plant;
@@ -41,6 +46,13 @@ import org.ugent.caagt.genestacker.util.TimeFormatting;
 public class Main
 {
     
+    // default log settings file
+    static final String DEFAULT_LOG_SETTINGS = "log4j2.xml";
+    
+    // options rejected in tasks received from a coordinator (files written outside of the output, network access)
+    private static final List<String> REMOTE_TASK_EXCLUDED_OPTIONS = Arrays.asList("coordinator", BatchCommand.OPTION, "progress",
+                                                                                   "intermediate-output");
+    
     // logger
     private Logger logger = LogManager.getLogger(Main.class);
     
@@ -64,6 +76,8 @@ public class Main
     private double successProb;
     private String outputFile;
     private String inputFile;
+    // batch mode: several input files, output directory (null if not in batch mode)
+    private BatchCommand batch = null;
     // constraints
     private List<Constraint> constraints;
     private NumberOfSeedsPerCrossing numSeeds;
@@ -92,10 +106,37 @@ public class Main
     private boolean minimizePopSizeOnly;
     private int numThreads;
     private boolean writeIntermediateOutput;
+    private boolean profileHeuristics;
+    private boolean collectMetrics;     // only reported in verbose mode
+    
+    // log settings applied by the daemon (see setLogSettingsMode)
+    private boolean reloadLogSettings = false;
+    private boolean logSettingsShared = false;
+    private boolean noDiagrams;
+    private boolean binaryOutput;
+    private String progressTarget = null;
+    private long progressInterval = 1000;
+    private boolean anytime;
+    private int anytimeBeamWidth = BranchAndBound.DEFAULT_ANYTIME_BEAM_WIDTH;
+    private boolean symmetryReduction;
+    private int beamWidth = 0;
+    private boolean iterativeDeepening;
+    private int coordinatorPort = -1;
+    private String coordinatorAddress = null;
+    private boolean remoteTask = false;
     
     // total runtime (ms)
     private long totalRuntime;
     
+    // genetic maps and gametes shared with other searches (daemon mode), null if not shared
+    private GeneticMapCache geneticMapCache = null;
+    
+    // bounds shared with searches in other JVMs (distributed mode), null if not shared
+    private SharedBounds sharedBounds = null;
+    
+    // arguments of this run
+    private String[] args;
+    
     /**
      * Run Gene Stacker software from command line.
      * 
@@ -107,6 +148,121 @@ public class Main
     }
     
     private void run(String args[]){
+        // delegate render subcommand
+        if(args.length > 0 && args[0].equals(RenderCommand.NAME)){
+            new RenderCommand().run(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        // delegate convert subcommand
+        if(args.length > 0 && args[0].equals(ConvertCommand.NAME)){
+            new ConvertCommand().run(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        // delegate daemon subcommand
+        if(args.length > 0 && args[0].equals(DaemonCommand.NAME)){
+            new DaemonCommand().run(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        // delegate worker subcommand
+        if(args.length > 0 && args[0].equals(WorkerCommand.NAME)){
+            new WorkerCommand().run(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        // run search
+        int exitCode = runSearch(args);
+        if(exitCode != 0){
+            System.exit(exitCode);
+        }
+    }
+    
+    /**
+     * Share genetic maps and gametes with other searches run in the same JVM.
+     * 
+     * @param geneticMapCache shared genetic maps and gametes
+     */
+    void setGeneticMapCache(GeneticMapCache geneticMapCache){
+        this.geneticMapCache = geneticMapCache;
+    }
+    
+    GeneticMapCache getGeneticMapCache(){
+        return geneticMapCache;
+    }
+    
+    int getNumThreads(){
+        return numThreads;
+    }
+    
+    long getRuntimeLimit(){
+        return runtimeLimit;
+    }
+    
+    boolean profileHeuristics(){
+        return profileHeuristics;
+    }
+    
+    /**
+     * Returns whether engines use the default seed lot constructor (no heuristic h5 or h5c), which creates
+     * seed lots that only depend on the parents and the genetic map.
+     */
+    boolean defaultSeedLotConstructor(){
+        return !h5 && !h5c;
+    }
+    
+    /**
+     * Indicates how log settings are applied when this run is executed by the {@link DaemonCommand}. If
+     * <code>reload</code> is <code>true</code>, the log settings of the previous run are replaced by those
+     * requested with the verbosity options of this run. If <code>shared</code> is <code>true</code>, other
+     * runs are executed concurrently in the same JVM and the verbosity options are ignored, as log settings
+     * apply to the entire JVM.
+     * 
+     * @param reload replace the log settings of the previous run
+     * @param shared log settings are shared with concurrent runs
+     */
+    void setLogSettingsMode(boolean reload, boolean shared){
+        reloadLogSettings = reload;
+        logSettingsShared = shared;
+    }
+    
+    /**
+     * Replace the current log settings with the given settings file from the classpath.
+     * 
+     * @param logSettings log settings file
+     */
+    static void reloadLogSettings(String logSettings){
+        try {
+            LoggerContext context = (LoggerContext) LogManager.getContext(false);
+            context.setConfigLocation(Main.class.getResource("/" + logSettings).toURI());
+        } catch (URISyntaxException ex){
+            throw new IllegalArgumentException("Invalid log settings file " + logSettings, ex);
+        }
+    }
+    
+    /**
+     * Share bounds with searches run in other JVMs (see {@link WorkerCommand}).
+     * 
+     * @param sharedBounds shared bounds
+     */
+    void setSharedBounds(SharedBounds sharedBounds){
+        this.sharedBounds = sharedBounds;
+    }
+    
+    /**
+     * Indicates that the arguments of this run have been received from a coordinator (see {@link WorkerCommand}).
+     * Options that write files outside of the output or open network connections are then rejected.
+     */
+    void setRemoteTask(){
+        remoteTask = true;
+    }
+    
+    /**
+     * Parse the given arguments and run the search, without terminating the JVM, so that
+     * searches can also be run as jobs submitted to a daemon (see {@link DaemonCommand}).
+     * 
+     * @param args arguments to be parsed using Apache commons CLI
+     * @return exit code, 0 if successful
+     */
+    int runSearch(String args[]){
+        this.args = args;
         // setup options
         setupOptions();
         // parse special options only
@@ -115,11 +271,13 @@ public class Main
             CommandLineParser parser = new ExtendedPosixParser(true);
             // parse special options
             CommandLine cmd = parser.parse(checkFirstOptions, args, false);
-            parseSpecialOptions(cmd);
+            if(parseSpecialOptions(cmd)){
+                return 0;
+            }
         } catch (ParseException ex) {
             logger.error("Invalid usage: {}", ex.getMessage());
             printHelp();
-            System.exit(1);
+            return 1;
         }
         // go ahead and parse full options
         try {
@@ -127,33 +285,64 @@ public class Main
             CommandLineParser parser = new PosixParser();
             // parse options
             CommandLine cmd = parser.parse(allOptions, args);
-            parseOptions(cmd);
+            if(remoteTask){
+                for(String option : REMOTE_TASK_EXCLUDED_OPTIONS){
+                    if(cmd.hasOption(option)){
+                        throw new ParseException("Option --" + option + " is not accepted in tasks received from a coordinator.");
+                    }
+                }
+            }
+            parseOptions(cmd, true);
         } catch (ParseException ex){
             logger.error("Invalid usage: {}", ex.getMessage());
             printHelp();
-            System.exit(1);
+            return 1;
         }
         // run search engine
         try {
             // check config file
             checkConfigFile();
-            // run engine
-            search();
+            // run engine(s)
+            if(batch != null){
+                batch.run();
+            } else {
+                search();
+            }
+            return 0;
         } catch (GenestackerException ex){
             // report genestacker errors
             logger.error("Fatal error occurred while running Gene Stacker", ex);            
-            System.exit(1);
+            return 1;
         } catch (IOException | ArchiveException ex){
             // report IO errors
             logger.error("Input/output error: {}", ex.getMessage());            
-            System.exit(1);
+            return 1;
         } catch (Exception ex){
             // unexpected error (catch-all)
             logger.error("Unexpected error", ex);
-            System.exit(1);
+            return 1;
         }
     }
     
+    /**
+     * Parse the given search options without running a search, so that engines can be created for inputs
+     * parsed elsewhere (e.g. in benchmarks) in exactly the same way as in the command line application,
+     * see {@link #createBranchAndBound(GenestackerInput, String)}. The arguments <code>&lt;input-file&gt;</code>
+     * and <code>&lt;output&gt;</code> are omitted.
+     * 
+     * @param options options to be parsed using Apache commons CLI, including heuristic presets
+     * @throws ParseException if the options are invalid
+     */
+    public void parseSearchOptions(String... options) throws ParseException {
+        this.args = options;
+        setupOptions();
+        CommandLine cmd = new PosixParser().parse(allOptions, options);
+        if(cmd.getArgs().length > 0 || cmd.hasOption(BatchCommand.OPTION)){
+            throw new ParseException("Only search options are expected.");
+        }
+        parseOptions(cmd, false);
+    }
+    
     private void checkConfigFile() throws GenestackerException {
         // try to read config file entries
         GenestackerResourceBundle.getConfig("dot.path");
@@ -309,6 +498,12 @@ public class Main
                                                   .withArgName("f")
                                                   .withDescription("output file format used for graphs created by Graphviz (pdf, eps, ps, svg, png, bmp, jpg or gif), defaults to pdf")
                                                   .create("gf");
+        Option noDiagramsOption = new Option("nd", "no-diagrams", false, "do not render diagrams of the constructed schedules, but only write the XML descriptions"
+                                                                      + " and Graphviz sources to the output ZIP package, so that Graphviz is not required; diagrams can"
+                                                                      + " be added afterwards using the \"render\" subcommand (see genestacker render -help)");
+        Option binaryOutputOption = new Option("bin", "binary-output", false, "also write the constructed schedules in the compact binary result format, to a file"
+                                                                          + " with the same name as the output ZIP package and extension " + BinaryFormat.RESULTS_EXTENSION
+                                                                          + " (see genestacker convert -help)");
         Option noColorOption = new Option("nc", "no-color", false, "produce greyscale graphs instead of the default colored graphs");
         Option kosambiOption = new Option("k", "kosambi", false, "use the Kosambi mapping function to translate genetic distances into crossover probabilities, instead of"
                                                                + " the default Haldane mapping function");
@@ -330,20 +525,86 @@ public class Main
         Option versionOption = new Option("version", "version", false, "print Gene Stacker version (ignores other options)");
         Option helpOption = new Option("help", "help", false, "print help (overrides -version, ignores other options)");
         Option intOutputOption = new Option("int", "intermediate-output", false, "create and update intermediate ZIP package whenever the current Pareto frontier has changed,"
-                                                                                + " where a suffix \"-int\" is appended to the output file name for this intermediate file; note that this"
-                                                                                + " is expected to slow down the application (intermediate output file is deleted if the search completes)");
+                                                                                + " where a suffix \"-int\" is appended to the output file name for this intermediate file; the file is"
+                                                                                + " written in the background, merging bursts of updates (intermediate output file is deleted if the search completes)");
+        Option profileHeuristicsOption = new Option("prof", "profile-heuristics", false, "record the number of invocations, the runtime and the number of prunes"
+                                                                                + " of each applied heuristic and print a report after the search has completed; heuristics"
+                                                                                + " are dynamically reordered so that cheap and selective heuristics are evaluated first");
+        Option progressOption = OptionBuilder.withLongOpt("progress")
+                                                  .hasArg()
+                                                  .withArgName("target")
+                                                  .withDescription("stream search progress and Pareto frontier updates as newline-delimited JSON to the given file,"
+                                                                    + " or to a local socket specified as tcp:<port>; written from a background thread"
+                                                                    + " which never blocks the search")
+                                                  .create("prog");
+        Option anytimeOption = new Option("any", "anytime", false, "anytime mode: before running branch and bound, quickly construct initial solutions with a greedy"
+                                                                + " beam search that retains the partial schemes closest to the ideotype in each step; these"
+                                                                + " solutions are returned if the runtime limit is exceeded before better solutions are found"
+                                                                + " and tighten the bounds used for pruning");
+        Option anytimeBeamWidthOption = OptionBuilder.withLongOpt("anytime-beam-width")
+                                                  .hasArg()
+                                                  .withArgName("w")
+                                                  .withDescription("number of partial schemes retained in each step of the greedy construction (only used in"
+                                                                    + " combination with -any,--anytime), defaults to " + BranchAndBound.DEFAULT_ANYTIME_BEAM_WIDTH)
+                                                  .create("anyw");
+        Option symmetryReductionOption = new Option("sym", "symmetry-reduction", false, "skip symmetric extensions in branch and bound: initial"
+                                                                + " plants with duplicate genotypes are discarded and crossings of plants with the same"
+                                                                + " genotype are skipped when both plants are selfed anyway (only identical genotypes"
+                                                                + " are detected, crossing schemes are not canonicalised)");
+        Option coordinatorOption = OptionBuilder.withLongOpt("coordinator")
+                                                  .hasArg()
+                                                  .withArgName("[address:]port")
+                                                  .withDescription("coordinate a distributed search: workers started with 'genestacker " + WorkerCommand.NAME
+                                                                    + " <host>:<port>', e.g. in other JVMs or on other machines, run a beam search and exact"
+                                                                    + " searches with fewer generations for the same problem alongside the coordinator's"
+                                                                    + " own search (which is not partitioned), while all nodes share their"
+                                                                    + " solutions to prune against the best solutions found by any node; listens on the"
+                                                                    + " loopback interface unless an address is given (e.g. 0.0.0.0 for all interfaces),"
+                                                                    + " and only accepts workers that know the token set in the " + WorkerCommand.TOKEN_VARIABLE
+                                                                    + " environment variable (a random token is generated and logged if not set) (cannot be"
+                                                                    + " combined with -batch,--batch or -minp,--min-pop-size-only)")
+                                                  .create("coord");
+        Option iterativeDeepeningOption = new Option("id", "iterative-deepening", false, "run branch and bound with an increasing maximum number of"
+                                                                + " generations, up to the value of -g,--max-gen; solutions with few generations are found"
+                                                                + " quickly and bound the search for deeper schemes, while seed lots are reused across"
+                                                                + " depths (two consecutive runs with heuristic h3 are not performed at each depth)");
+        Option beamSearchOption = OptionBuilder.withLongOpt("beam-search")
+                                                  .hasArg()
+                                                  .withArgName("w")
+                                                  .withDescription("run a beam search instead of branch and bound, retaining the w most promising partial"
+                                                                    + " schemes in each generation; this approximates the Pareto frontier with bounded"
+                                                                    + " memory and runtime, but is not exhaustive (cannot be combined with -batch,--batch)")
+                                                  .create("beam");
+        Option progressIntervalOption = OptionBuilder.withLongOpt("progress-interval")
+                                                  .hasArg()
+                                                  .withArgName("ms")
+                                                  .withDescription("interval in milliseconds between subsequent progress lines (only used in combination"
+                                                                    + " with -prog,--progress), defaults to 1000")
+                                                  .create("progi");
         
         miscOptions = new Options();
         miscOptions.addOption(graphFileFormatOption);
+        miscOptions.addOption(noDiagramsOption);
+        miscOptions.addOption(binaryOutputOption);
         miscOptions.addOption(noColorOption);
         miscOptions.addOption(kosambiOption);
         miscOptions.addOption(treeOption);
         miscOptions.addOption(runtimeLimitOption);
+        miscOptions.addOption(anytimeOption);
+        miscOptions.addOption(anytimeBeamWidthOption);
+        miscOptions.addOption(symmetryReductionOption);
+        miscOptions.addOption(beamSearchOption);
+        miscOptions.addOption(iterativeDeepeningOption);
+        miscOptions.addOption(coordinatorOption);
         miscOptions.addOption(minPopSizeOnlyOption);
         miscOptions.addOption(numThreadsOption);
         miscOptions.addOption(versionOption);
         miscOptions.addOption(helpOption);
         miscOptions.addOption(intOutputOption);
+        miscOptions.addOption(profileHeuristicsOption);
+        miscOptions.addOption(progressOption);
+        miscOptions.addOption(progressIntervalOption);
+        miscOptions.addOption(BatchCommand.createOption());
         // indicate which options have to be checked prior to the other options
         checkFirstOptions = new Options();
         checkFirstOptions.addOption(versionOption);
@@ -380,17 +641,23 @@ public class Main
     }
     
     // parse "special" options that ignore all other (possibly required) options
-    private void parseSpecialOptions(CommandLine cmd) {
+    /**
+     * Handle special options (help and version).
+     * 
+     * @return <code>true</code> if a special option has been handled, in which case no search is run
+     */
+    private boolean parseSpecialOptions(CommandLine cmd) {
         // check help
         if(cmd.hasOption("help")){
             printHelp();
-            System.exit(0);
+            return true;
         }
         // check version
         if(cmd.hasOption("version")){
             printVersion();
-            System.exit(0);
+            return true;
         }
+        return false;
     }
     
     private void printVersion(){
@@ -414,6 +681,23 @@ public class Main
         System.out.println("");
 	System.out.println("\t\tgenestacker --max-gen 3 --success-prob 0.9 input.xml output");
         System.out.println("");
+        System.out.println("\tDiagrams of a ZIP package created with option -nd,--no-diagrams can be rendered afterwards with");
+        System.out.println("");
+        System.out.println("\t\tgenestacker " + RenderCommand.NAME + " [options] <zip-file> [<output>]");
+        System.out.println("");
+        System.out.println("\tInput files and results can be converted from and to the compact binary formats with");
+        System.out.println("");
+        System.out.println("\t\tgenestacker " + ConvertCommand.NAME + " <input> <output>");
+        System.out.println("");
+        System.out.println("\tSearches with the same options for several input files (e.g. different ideotypes for the same" +
+                           "\n\tinitial plants) can be run as a batch, sharing threads and intermediate results, with");
+        System.out.println("");
+        System.out.println("\t\tgenestacker -batch [options] <input-file> ... <output-dir>");
+        System.out.println("");
+        System.out.println("\tMany searches can be run in a single JVM by submitting them to a daemon (see genestacker " + DaemonCommand.NAME + " -help)");
+        System.out.println("");
+        System.out.println("\t\tgenestacker " + DaemonCommand.NAME + " [options] <spool-dir>");
+        System.out.println("");
         
         HelpFormatter f = new HelpFormatter();
         f.setWidth(100);
@@ -443,15 +727,20 @@ public class Main
         
     }
     
-    private void parseOptions(CommandLine cmd) throws ParseException {
-        
-        // check for <input-file> argument
-        String[] args = cmd.getArgs();
-        if(args != null && args.length == 2){
-            inputFile = args[0];
-            outputFile = args[1];
-        } else {
-            throw new ParseException("Two arguments <input-file> and <output> expected.");
+    private void parseOptions(CommandLine cmd, boolean requireArguments) throws ParseException {
+        
+        // check for <input-file> argument (or several input files in batch mode)
+        if(requireArguments){
+            String[] args = cmd.getArgs();
+            if(cmd.hasOption(BatchCommand.OPTION)){
+                batch = new BatchCommand(this);
+                batch.parseArguments(cmd);
+            } else if(args != null && args.length == 2){
+                inputFile = args[0];
+                outputFile = args[1];
+            } else {
+                throw new ParseException("Two arguments <input-file> and <output> expected.");
+            }
         }
         
         // init constraints
@@ -732,19 +1021,33 @@ public class Main
         
         // ### parse verbosity options
         
+        // search metrics are logged in verbose mode only
+        collectMetrics = cmd.hasOption("debug") || cmd.hasOption("very-verbose") || cmd.hasOption("verbose");
         // check for -debug, -very-verbose and -verbose in this order
+        String logSettings;
         if(cmd.hasOption("debug")){
-            // load debug log settings
-            Configurator.initialize("config", null, "log4j2-debug.xml");
+            // debug log settings
+            logSettings = "log4j2-debug.xml";
         } else if (cmd.hasOption("very-verbose")){
-            // load very verbose log settings
-            Configurator.initialize("config", null, "log4j2-very-verbose.xml");
+            // very verbose log settings
+            logSettings = "log4j2-very-verbose.xml";
         } else if (cmd.hasOption("verbose")){
-            // load verbose log settings
-            Configurator.initialize("config", null, "log4j2-verbose.xml");
+            // verbose log settings
+            logSettings = "log4j2-verbose.xml";
         } else {
-            // load default log settings
-            Configurator.initialize("config", null, "log4j2.xml");
+            // default log settings
+            logSettings = DEFAULT_LOG_SETTINGS;
+        }
+        if(logSettingsShared){
+            if(!logSettings.equals(DEFAULT_LOG_SETTINGS)){
+                logger.warn("Verbosity options ignored: log settings are shared with concurrently running jobs");
+            }
+        } else if(reloadLogSettings){
+            // replace log settings of previous run
+            reloadLogSettings(logSettings);
+        } else {
+            // load log settings
+            Configurator.initialize("config", null, logSettings);
         }
         
         // ### parse misc options
@@ -777,6 +1080,12 @@ public class Main
             }
         }
         
+        // check for -no-diagrams
+        noDiagrams = cmd.hasOption("no-diagrams");
+        
+        // check for -binary-output
+        binaryOutput = cmd.hasOption("binary-output");
+        
         // check for -no-color
         graphColorScheme = GraphColorScheme.COLORED;
         if(cmd.hasOption("no-color")){
@@ -807,9 +1116,67 @@ public class Main
             }
         }
         
+        // check for anytime mode
+        anytime = cmd.hasOption("anytime");
+        if(cmd.hasOption("anytime-beam-width")){
+            try {
+                anytimeBeamWidth = Integer.parseInt(cmd.getOptionValue("anytime-beam-width"));
+                if(!(anytimeBeamWidth > 0)){
+                    throw new NumberFormatException();
+                }
+            } catch(NumberFormatException ex){
+                throw new ParseException("Parameter -anyw,--anytime-beam-width should be a positive integer.");
+            }
+        }
+        
+        // check for symmetry reduction
+        symmetryReduction = cmd.hasOption("symmetry-reduction");
+        
+        // check for beam search
+        if(cmd.hasOption("beam-search")){
+            try {
+                beamWidth = Integer.parseInt(cmd.getOptionValue("beam-search"));
+                if(!(beamWidth > 0)){
+                    throw new NumberFormatException();
+                }
+            } catch(NumberFormatException ex){
+                throw new ParseException("Parameter -beam,--beam-search should be a positive integer.");
+            }
+        }
+        
+        // check for iterative deepening
+        iterativeDeepening = cmd.hasOption("iterative-deepening");
+        if(iterativeDeepening && beamWidth > 0){
+            throw new ParseException("Option -id,--iterative-deepening cannot be combined with -beam,--beam-search.");
+        }
+        
         // check for min-pop-size-only
         minimizePopSizeOnly = cmd.hasOption("min-pop-size-only");
         
+        // check for coordinator
+        if(cmd.hasOption("coordinator")){
+            if(minimizePopSizeOnly){
+                throw new ParseException("Option -coord,--coordinator cannot be combined with -minp,--min-pop-size-only.");
+            }
+            // [<address>:]<port>
+            String address = cmd.getOptionValue("coordinator");
+            int sep = address.lastIndexOf(':');
+            if(sep >= 0){
+                coordinatorAddress = address.substring(0, sep);
+                if(coordinatorAddress.isEmpty()){
+                    throw new ParseException("Parameter -coord,--coordinator should be formatted as [<address>:]<port>.");
+                }
+            }
+            try {
+                coordinatorPort = Integer.parseInt(address.substring(sep+1));
+                if(!(coordinatorPort > 0 && coordinatorPort < 65536)){
+                    throw new NumberFormatException();
+                }
+            } catch(NumberFormatException ex){
+                throw new ParseException("Parameter -coord,--coordinator should be formatted as [<address>:]<port>, with a valid port number.");
+            }
+        }
+        
         // set num threads to be used as cross workers
         if(cmd.hasOption("num-threads")){
             try {
@@ -837,6 +1204,22 @@ public class Main
         // check for intermediate-output
         writeIntermediateOutput = cmd.hasOption("intermediate-output");
         
+        // check for profile-heuristics
+        profileHeuristics = cmd.hasOption("profile-heuristics");
+        
+        // check for progress stream
+        progressTarget = cmd.getOptionValue("progress");
+        if(cmd.hasOption("progress-interval")){
+            try {
+                progressInterval = Long.parseLong(cmd.getOptionValue("progress-interval"));
+                if(!(progressInterval > 0)){
+                    throw new NumberFormatException();
+                }
+            } catch(NumberFormatException ex){
+                throw new ParseException("Parameter -progi,--progress-interval should be a positive integer.");
+            }
+        }
+        
     }
     
     private void search() throws GenestackerException, IOException, ArchiveException{
@@ -860,21 +1243,55 @@ public class Main
         /********************/
 
         logger.info("Parsing input file ...");
-        
-        GenestackerInputParser inputParser = new GenestackerInputParser();
-        GenestackerInput input = inputParser.parse(new File(inputFile), useKosambiMap);
-        if(useKosambiMap){
-            logger.info("Using Kosambi mapping function (instead of default: Haldane)");
-        }
+        GenestackerInput input = parseInput(inputFile);
         
         /************************/
         /* RUN BRANCH AND BOUND */
         /************************/
         
+        // emit JFR events if a flight recording has been requested
+        enableFlightRecorderEvents();
+        
         // init total runtime to zero milliseconds
         totalRuntime = 0;
-        // run B&B
-        ParetoFrontier frontier = runBranchAndBound(input, runtimeLimit);
+        // coordinate workers ?
+        DistributedCoordinator coordinator = null;
+        if(coordinatorPort > 0){
+            sharedBounds = new SharedBounds(createDominatesRelation());
+            InetSocketAddress address = coordinatorAddress == null
+                                        ? new InetSocketAddress(InetAddress.getLoopbackAddress(), coordinatorPort)
+                                        : new InetSocketAddress(coordinatorAddress, coordinatorPort);
+            if(address.isUnresolved()){
+                throw new IOException("Unknown coordinator address '" + coordinatorAddress + "'.");
+            }
+            // workers authenticate with a shared token
+            String token = System.getenv(WorkerCommand.TOKEN_VARIABLE);
+            if(token == null || token.isEmpty()){
+                token = WorkerCommand.generateToken();
+                logger.info("Workers should be started with {}={}", WorkerCommand.TOKEN_VARIABLE, token);
+            }
+            coordinator = new DistributedCoordinator(sharedBounds, address, token, new File(inputFile), createWorkerTasks());
+            coordinator.start();
+        }
+        // run B&B (or beam search)
+        ParetoFrontier frontier;
+        try {
+            if(beamWidth > 0){
+                frontier = runBeamSearch(input, runtimeLimit);
+            } else {
+                frontier = runBranchAndBound(input, runtimeLimit);
+            }
+        } finally {
+            if(coordinator != null){
+                coordinator.close();
+            }
+        }
+        // include solutions found by workers (every bound received from a worker belongs to one of these
+        // solutions, so no solution is lost by having pruned against it; solutions still in transit when
+        // the coordinator was closed have not been used as bounds by this search)
+        if(coordinator != null){
+            mergeWorkerSolutions(coordinator.getSolutions(), input, frontier);
+        }
         
         // print total runtime
         logger.info("Total runtime = {}", TimeFormatting.formatTime(totalRuntime));
@@ -883,23 +1300,333 @@ public class Main
         output(frontier, outputFile);
     }
     
-    private ParetoFrontier runBranchAndBound(GenestackerInput input, long timeLimit) throws GenestackerException{
+    /**
+     * Rebuild the given solutions received from workers and register them in the given Pareto frontier.
+     * Solutions that can not be rebuilt with the options of this run are skipped.
+     */
+    private void mergeWorkerSolutions(List<CrossingSchemeRecord> solutions, GenestackerInput input, ParetoFrontier frontier){
+        SeedLotConstructor seedLotConstructor = createSeedLotConstructor(input);
+        PopulationSizeTools popSizeTools = new DefaultPopulationSizeTools(successProb);
+        int numMerged = 0;
+        for(CrossingSchemeRecord solution : solutions){
+            try {
+                if(frontier.register(solution.toScheme(popSizeTools, seedLotConstructor))){
+                    numMerged++;
+                }
+            } catch (GenestackerException ex){
+                logger.warn("Skipping solution received from worker: {}", ex.getMessage());
+            }
+        }
+        logger.info("Merged {} of {} solution(s) received from workers", numMerged, solutions.size());
+    }
+    
+    /**
+     * Parse the given input file, in the XML or binary input format.
+     */
+    GenestackerInput parseInput(String inputFile) throws GenestackerException, IOException{
+        GenestackerInputParser inputParser = new GenestackerInputParser();
+        GenestackerInput input;
+        if(GenestackerInputBinaryReader.isBinaryInput(new File(inputFile))){
+            // binary input format
+            input = new GenestackerInputBinaryReader().read(new File(inputFile), useKosambiMap);
+        } else {
+            input = inputParser.parse(new File(inputFile), useKosambiMap);
+        }
+        if(useKosambiMap){
+            logger.info("Using Kosambi mapping function (instead of default: Haldane)");
+        }
+        // reuse previously loaded equal genetic map, if shared
+        if(geneticMapCache != null){
+            input = new GenestackerInput(input.getInitialPlants(), input.getIdeotype(), geneticMapCache.getMap(input.getGeneticMap()));
+        }
+        return input;
+    }
+    
+    void enableFlightRecorderEvents(){
+        if(JfrSearchEventRecorder.isRequested()){
+            try {
+                SearchEventRecorder.setRecorder(new JfrSearchEventRecorder());
+                logger.info("Emitting Java Flight Recorder events");
+            } catch (ReflectiveOperationException ex){
+                logger.warn("Java Flight Recorder events are not supported by this Java version");
+            }
+        }
+    }
+    
+    private ParetoFrontier runBranchAndBound(GenestackerInput input, long timeLimit) throws GenestackerException, IOException{
         // print applied heuristics/filters info
         logger.info("Running Branch and Bound engine {} ...", formatActivatedHeuristicsInfo());
         
-        // init dominates relation
-        DominatesRelation<CrossingSchemeDescriptor> dominatesRelation;
+        // create B&B engine
+        BranchAndBound engine = createBranchAndBound(input, outputFile);
+        // stream progress ?
+        ProgressStreamWriter progressWriter = null;
+        if(progressTarget != null){
+            progressWriter = new ProgressStreamWriter(engine, ProgressStreamWriter.openTarget(progressTarget), progressInterval);
+            logger.info("Streaming search progress to {}", progressTarget);
+        }
+        // run B&B engine
+        ParetoFrontier frontier;
+        try {
+            if(iterativeDeepening){
+                
+                // ### single run for each depth ###
+                
+                if(dualRun()){
+                    logger.warn("Consecutive runs with heuristic h3 are not performed in iterative deepening mode");
+                }
+                int maxGen = getMaxNumGen();
+                IterativeDeepening id = new IterativeDeepening(engine, Math.min(1, maxGen), maxGen);
+                long start = System.currentTimeMillis();
+                frontier = id.search(timeLimit, numThreads);
+                totalRuntime += System.currentTimeMillis() - start;
+                
+            } else if(!dualRun()){
+                
+                // ### single run  ###
+                
+                frontier = engine.search(timeLimit, numThreads);
+                totalRuntime += engine.getStop() - engine.getStart();
+                
+            } else {
+                
+                // two consecutive runs: first with h3, second without h3 (two possible versions; h3s1 or h3s2)
+                            
+                // first run: enable h3 heuristic
+                Heuristic h3heur = enableFirstRunHeuristic(engine);
+                                        
+                // run search
+                announceRun(1);
+                frontier = engine.search(timeLimit, numThreads);
+                long run1time = engine.getStop() - engine.getStart();
+                totalRuntime += run1time;
+    
+                // check if time left for second run
+                boolean timeLeft = true;
+                long run2timeLimit = GenestackerConstants.NO_RUNTIME_LIMIT;
+                if(timeLimit != GenestackerConstants.NO_RUNTIME_LIMIT){
+                    run2timeLimit = timeLimit - run1time;
+                    timeLeft = run2timeLimit > 0;
+                }
+                if(timeLeft){
+                    // second run:  disable h3
+                    prepareSecondRun(engine, h3heur, input, frontier);
+                    // second run
+                    announceRun(2);
+                    frontier = engine.search(run2timeLimit, numThreads);
+                    long run2time = engine.getStop() - engine.getStart();
+                    totalRuntime += run2time;
+                }
+            }
+        } finally {
+            if(progressWriter != null){
+                progressWriter.close();
+            }
+        }
+        
+        // print heuristics profile
+        if(profileHeuristics){
+            logger.info("Heuristics profile:\n{}", ((ProfilingHeuristics) engine.getHeuristics()).formatProfile());
+        }
+        
+        return frontier;
+    }
+    
+    private ParetoFrontier runBeamSearch(GenestackerInput input, long timeLimit) throws GenestackerException, IOException{
+        // print applied heuristics/filters info
+        logger.info("Running beam search engine (beam width: {}) {} ...", beamWidth, formatActivatedHeuristicsInfo());
+        if(anytime || symmetryReduction || dualRun()){
+            logger.warn("Anytime mode, symmetry reduction and consecutive runs with heuristic h3 are ignored in beam search");
+        }
+        
+        // create beam search engine
+        BeamSearch engine = createBeamSearch(input);
+        // stream progress ?
+        ProgressStreamWriter progressWriter = null;
+        if(progressTarget != null){
+            progressWriter = new ProgressStreamWriter(engine, ProgressStreamWriter.openTarget(progressTarget), progressInterval);
+            logger.info("Streaming search progress to {}", progressTarget);
+        }
+        // run beam search
+        ParetoFrontier frontier;
+        try {
+            frontier = engine.search(timeLimit, numThreads);
+            totalRuntime += engine.getStop() - engine.getStart();
+        } finally {
+            if(progressWriter != null){
+                progressWriter.close();
+            }
+        }
+        
+        // print heuristics profile
+        if(profileHeuristics){
+            logger.info("Heuristics profile:\n{}", ((ProfilingHeuristics) engine.getHeuristics()).formatProfile());
+        }
+        
+        return frontier;
+    }
+    
+    /**
+     * Enable heuristic h3 for the first of two consecutive runs.
+     * 
+     * @return added heuristic, to be removed before the second run
+     */
+    public Heuristic enableFirstRunHeuristic(BranchAndBound engine){
+        Heuristic h3heur = new OptimalSubschemeHeuristic(engine.getDominatesRelation());
+        Heuristics heuristics = engine.getHeuristics();
+        heuristics.addHeuristic(h3heur);
+        engine.setHeuristics(heuristics);
+        return h3heur;
+    }
+    
+    /**
+     * Report the start of the first (with heuristic h3) or second (without h3) of two consecutive runs.
+     * 
+     * @param run 1 or 2
+     */
+    void announceRun(int run){
+        h3 = run == 1;
+        logger.info("Run {} {} ...", run, formatActivatedHeuristicsInfo(true, run == 2 && h3s2 ? " + extra seed lot filtering" : ""));
+    }
+    
+    /**
+     * Prepare the second of two consecutive runs: disable heuristic h3 and start from the Pareto frontier found in
+     * the first run (in case of h3s2 only, also restrict the seed lots to the haplotypes occurring in this frontier).
+     */
+    public void prepareSecondRun(BranchAndBound engine, Heuristic h3heur, GenestackerInput input, ParetoFrontier frontier){
+        Heuristics heuristics = engine.getHeuristics();
+        heuristics.removeHeuristic(h3heur);
+        engine.setHeuristics(heuristics);
+        // in case of h3s2 only: add extra seed lot filter based on haplotypes occurring in the solutions found in the first run
+        if(h3s2){
+            // gather occurring haplotypes
+            List<Set<Haplotype>> haplotypes = gatherHaplotypes(input, frontier);
+            // set additional filter
+            List<SeedLotFilter> seedLotFilters = engine.getSeedLotFilters();
+            seedLotFilters.add(new RestrictedHaplotypesSeedLotFilter(haplotypes));
+            engine.setSeedLotFilters(seedLotFilters); // note: this will (and should!) clear the engine's seed lot cache as a side effect
+        }
+        // set initial Pareto frontier
+        engine.setInitialFrontier(frontier);
+    }
+    
+    /**
+     * Create a B&B engine for the given input, configured according to the specified options.
+     * 
+     * @param outputFile output ZIP package, used to name the intermediate output file
+     */
+    public BranchAndBound createBranchAndBound(GenestackerInput input, String outputFile){
+        DominatesRelation<CrossingSchemeDescriptor> dominatesRelation = createDominatesRelation();
+        SeedLotConstructor seedLotConstructor = createSeedLotConstructor(input);
+        PopulationSizeTools popSizeTools = new DefaultPopulationSizeTools(successProb);
+        
+        // create B&B engine
+        BranchAndBound engine = new BranchAndBound(input, graphFileFormat, graphColorScheme, popSizeTools, constraints, numSeeds,
+                                                    createHeuristics(input, dominatesRelation, popSizeTools), createSeedLotFilters(input),
+                                                    createInitialPlantFilter(input), seedLotConstructor, dominatesRelation, homozygousIdeotypeParents);
+        // write intermediate output files ?
+        if(writeIntermediateOutput){
+            engine.enableIntermediateOutput(getIntermediateOutputFileName(outputFile));
+            engine.setRenderDiagrams(!noDiagrams);
+        }
+        // anytime mode ?
+        if(anytime){
+            engine.enableAnytimeMode(anytimeBeamWidth);
+        }
+        // symmetry reduction ?
+        engine.setSymmetryReduction(symmetryReduction);
+        // share bounds with other JVMs ?
+        engine.setSharedBounds(sharedBounds);
+        engine.getMetrics().setEnabled(collectMetrics);
+        return engine;
+    }
+    
+    /**
+     * Create a beam search engine for the given input, configured according to the specified options.
+     */
+    private BeamSearch createBeamSearch(GenestackerInput input){
+        DominatesRelation<CrossingSchemeDescriptor> dominatesRelation = createDominatesRelation();
+        SeedLotConstructor seedLotConstructor = createSeedLotConstructor(input);
+        PopulationSizeTools popSizeTools = new DefaultPopulationSizeTools(successProb);
+        
+        // create beam search engine
+        BeamSearch engine = new BeamSearch(input, graphFileFormat, graphColorScheme, popSizeTools, constraints, numSeeds,
+                                createHeuristics(input, dominatesRelation, popSizeTools), createSeedLotFilters(input),
+                                createInitialPlantFilter(input), seedLotConstructor, dominatesRelation, homozygousIdeotypeParents,
+                                beamWidth);
+        // share bounds with other JVMs ?
+        engine.setSharedBounds(sharedBounds);
+        engine.getMetrics().setEnabled(collectMetrics);
+        return engine;
+    }
+    
+    /**
+     * Create the tasks handed out to the workers of a distributed search: a beam search, followed by exact
+     * searches with 1, 2, ... generations less than the maximum number of generations of this run. Each task
+     * consists of the options of this run, except for those that are specific to this run (e.g. number of
+     * threads, progress and output options) or that are set by the task itself.
+     * <p>
+     * The tasks complement the search of this run with quickly found solutions that serve as shared bounds;
+     * they do not partition it. The search tree of branch and bound can not be split into independent subtrees,
+     * as every scheme taken from the queue is crossed with all schemes that have been expanded before, so each
+     * part of the queue would need all schemes expanded by any node.
+     */
+    private List<List<String>> createWorkerTasks(){
+        // options not passed on to workers
+        Set<String> excluded = new HashSet<>(Arrays.asList("coordinator", "max-gen", "num-threads", "progress", "progress-interval",
+                                                           "intermediate-output", "binary-output", "no-diagrams", "iterative-deepening",
+                                                           "beam-search", "anytime", "anytime-beam-width"));
+        List<String> base = new ArrayList<>();
+        int i = 0;
+        while(i < args.length){
+            String arg = args[i];
+            Option option = arg.startsWith("-") && arg.length() > 1 ? allOptions.getOption(arg.split("=", 2)[0]) : null;
+            if(option != null){
+                boolean inlineValue = arg.contains("=");
+                boolean keep = !excluded.contains(option.getLongOpt());
+                if(keep){
+                    base.add(arg);
+                }
+                if(option.hasArg() && !inlineValue && i+1 < args.length){
+                    i++;
+                    if(keep){
+                        base.add(args[i]);
+                    }
+                }
+            } else if(arg.startsWith("-")){
+                // unknown option, passed on as is
+                base.add(arg);
+            }
+            // positional arguments (input and output) are set by the workers
+            i++;
+        }
+        base.add("-nd");
+        int maxGen = getMaxNumGen();
+        List<List<String>> tasks = new ArrayList<>();
+        List<String> beam = new ArrayList<>(base);
+        beam.addAll(Arrays.asList("-g", Integer.toString(maxGen), "-beam", Integer.toString(BeamSearch.DEFAULT_BEAM_WIDTH)));
+        tasks.add(beam);
+        for(int g=1; g<maxGen; g++){
+            List<String> task = new ArrayList<>(base);
+            task.addAll(Arrays.asList("-g", Integer.toString(g)));
+            tasks.add(task);
+        }
+        return tasks;
+    }
+    
+    private DominatesRelation<CrossingSchemeDescriptor> createDominatesRelation(){
         if(minimizePopSizeOnly){
-            // only minimize population size (ignore linkage phase ambiguity and number of generations)
-            dominatesRelation = new PopulationSizeOnlyDominatesRelation();
             // print warning
             logger.warn("Option -minp,--min-pop-size-only set: minimizing population size only");
+            // only minimize population size (ignore linkage phase ambiguity and number of generations)
+            return new PopulationSizeOnlyDominatesRelation();
         } else {
             // default dominates relation taking into account pop size, linkage phase ambiguity and number of generations
-            dominatesRelation = new DefaultDominatesRelation();
+            return new DefaultDominatesRelation();
         }
-                
-        // init seed lot filters
+    }
+    
+    private List<SeedLotFilter> createSeedLotFilters(GenestackerInput input){
         List<SeedLotFilter> seedLotFilters = new ArrayList<>();
         if(h2a){
             seedLotFilters.add(new ImprovementSeedLotFilter(new WeakGenotypeImprovement(input.getIdeotype())));
@@ -907,14 +1634,19 @@ public class Main
         if(h2b){
             seedLotFilters.add(new ImprovementSeedLotFilter(new StrongGenotypeImprovement(input.getIdeotype(), input.getGeneticMap())));
         }
-        
-        // init initial plant filter
-        InitialPlantFilter initialPlantFilter = null;
+        return seedLotFilters;
+    }
+    
+    private InitialPlantFilter createInitialPlantFilter(GenestackerInput input){
         if(h0){
-            initialPlantFilter = new InitialPlantFilter(new DefaultDuplicatePlantFilter(), new DefaultPlantImprovement(new WeakGenotypeImprovement(input.getIdeotype())));
+            return new InitialPlantFilter(new DefaultDuplicatePlantFilter(), new DefaultPlantImprovement(new WeakGenotypeImprovement(input.getIdeotype())));
+        } else {
+            return null;
         }
-        
-        // init other heuristics
+    }
+    
+    private Heuristics createHeuristics(GenestackerInput input, DominatesRelation<CrossingSchemeDescriptor> dominatesRelation,
+                                        PopulationSizeTools popSizeTools){
         List<Heuristic> heurList = new ArrayList<>();
         if(h1a){
             heurList.add(new ImprovementOverAncestorsHeuristic(new DefaultPlantImprovement(new WeakGenotypeImprovement(input.getIdeotype()))));
@@ -934,8 +1666,19 @@ public class Main
             heurList.add(new TreeHeuristic(input.getIdeotype()));
         }
         
-        Heuristics heuristics = new Heuristics(heurList);
+        // heuristic population size bound applied?
+        if(h6){
+            heurList.add(new HeuristicPopulationSizeBound(input.getInitialPlants(), input.getIdeotype(), input.getGeneticMap(), popSizeTools));
+        }
         
+        if(profileHeuristics){
+            return new ProfilingHeuristics(heurList);
+        } else {
+            return new Heuristics(heurList);
+        }
+    }
+    
+    private SeedLotConstructor createSeedLotConstructor(GenestackerInput input){
         SeedLotConstructor seedLotConstructor;
         if(h5 || h5c){
             // heuristic seed lot constructor
@@ -952,80 +1695,14 @@ public class Main
             }
         } else {
             // default seed lot constructor
-            seedLotConstructor = new DefaultSeedLotConstructor(input.getGeneticMap());
-        }
-        
-        // initialize population size tools
-        PopulationSizeTools popSizeTools = new DefaultPopulationSizeTools(successProb);
-        
-        // initialize heuristic population size bound if applied
-        if(h6){
-            heuristics.addHeuristic(new HeuristicPopulationSizeBound(input.getInitialPlants(), input.getIdeotype(), input.getGeneticMap(), popSizeTools));
-        }
-
-        // create B&B engine
-        BranchAndBound engine = new BranchAndBound(input, graphFileFormat, graphColorScheme, popSizeTools, constraints, numSeeds, heuristics,
-                                                    seedLotFilters, initialPlantFilter, seedLotConstructor, dominatesRelation, homozygousIdeotypeParents);
-        // write intermediate output files ?
-        if(writeIntermediateOutput){
-            engine.enableIntermediateOutput(getIntermediateOutputFileName());
-        }
-        // run B&B engine
-        ParetoFrontier frontier;
-        if(!dualRun()){
-            
-            // ### single run  ###
-            
-            frontier = engine.search(timeLimit, numThreads);
-            totalRuntime += engine.getStop() - engine.getStart();
-            
-        } else {
-            
-            // two consecutive runs: first with h3, second without h3 (two possible versions; h3s1 or h3s2)
-                        
-            // first run: enable h3 heuristic
-            Heuristic h3heur = new OptimalSubschemeHeuristic(dominatesRelation);
-            heuristics.addHeuristic(h3heur);
-            h3 = true;
-            engine.setHeuristics(heuristics);
-                                    
-            // run search
-            logger.info("Run 1 {} ...", formatActivatedHeuristicsInfo(true, ""));
-            frontier = engine.search(timeLimit, numThreads);
-            long run1time = engine.getStop() - engine.getStart();
-            totalRuntime += run1time;
-
-            // check if time left for second run
-            boolean timeLeft = true;
-            long run2timeLimit = GenestackerConstants.NO_RUNTIME_LIMIT;
-            if(timeLimit != GenestackerConstants.NO_RUNTIME_LIMIT){
-                run2timeLimit = timeLimit - run1time;
-                timeLeft = run2timeLimit > 0;
-            }
-            if(timeLeft){
-                // second run:  disable h3
-                heuristics.removeHeuristic(h3heur);
-                h3 = false;
-                engine.setHeuristics(heuristics);
-                // in case of h3s2 only: add extra seed lot filter based on haplotypes occurring in the solutions found in the first run
-                if(h3s2){
-                    // gather occurring haplotypes
-                    List<Set<Haplotype>> haplotypes = gatherHaplotypes(input, frontier);
-                    // set additional filter
-                    seedLotFilters.add(new RestrictedHaplotypesSeedLotFilter(haplotypes));
-                    engine.setSeedLotFilters(seedLotFilters); // note: this will (and should!) clear the engine's seed lot cache as a side effect
-                }
-                // set initial Pareto frontier
-                engine.setInitialFrontier(frontier);
-                // second run
-                logger.info("Run 2 {} ...", formatActivatedHeuristicsInfo(true, h3s2 ? " + extra seed lot filtering" : ""));
-                frontier = engine.search(run2timeLimit, numThreads);
-                long run2time = engine.getStop() - engine.getStart();
-                totalRuntime += run2time;
+            if(geneticMapCache != null){
+                // share gametes with other searches using the same map
+                seedLotConstructor = new DefaultSeedLotConstructor(input.getGeneticMap(), geneticMapCache.getGameteCache(input.getGeneticMap()));
+            } else {
+                seedLotConstructor = new DefaultSeedLotConstructor(input.getGeneticMap());
             }
         }
-        
-        return frontier;
+        return seedLotConstructor;
     }
     
     /**
@@ -1080,14 +1757,26 @@ public class Main
         return "[heuristics: " + heuristicsString + suffix + "]";
     }
     
-    private String formatActivatedHeuristicsInfo(){
+    String formatActivatedHeuristicsInfo(){
         return formatActivatedHeuristicsInfo(false, "");
     }
 
+    /**
+     * Returns the maximum number of generations, as specified by the constraints.
+     */
+    private int getMaxNumGen(){
+        for(Constraint c : constraints){
+            if(c instanceof MaxNumGenerations){
+                return ((MaxNumGenerations) c).getMaxNumGenerations();
+            }
+        }
+        throw new IllegalStateException("Maximum number of generations not set.");
+    }
+    
     /**
      * Returns whether we will perform two consecutive runs of the algorithm, depending on the heuristics that have been set.
      */
-    private boolean dualRun(){
+    public boolean dualRun(){
         return h3s1 || h3s2;
     }
     
@@ -1128,7 +1817,7 @@ public class Main
      * Output the results, both on the terminal as well as in a ZIP file.
      * If the solution is empty, a message is printed and no ZIP file is generated.
      */
-    private void output(ParetoFrontier frontier, String outputFile) throws IOException, ArchiveException, GenestackerException {
+    void output(ParetoFrontier frontier, String outputFile) throws IOException, ArchiveException, GenestackerException {
         System.out.println("");
         System.out.println("# Results:");
         // any solutions found ?
@@ -1152,18 +1841,30 @@ public class Main
             System.out.println("");
             // generate ZIP package
             logger.info("Generating output file ...");
-            new ZIPWriter().createZIP(frontier, graphFileFormat, graphColorScheme, outputFile);
+            ZIPWriter zipWriter = new ZIPWriter();
+            zipWriter.setRenderDiagrams(!noDiagrams);
+            zipWriter.createZIP(frontier, graphFileFormat, graphColorScheme, outputFile);
+            // write binary results if requested
+            if(binaryOutput){
+                String binaryOutputFile = getBinaryOutputFileName(outputFile);
+                logger.info("Writing binary results to {} ...", binaryOutputFile);
+                new ParetoFrontierBinaryWriter().write(frontier, new File(binaryOutputFile));
+            }
             // remove intermediate output file if generated
             if(writeIntermediateOutput){
                 logger.info("Deleting intermediate output file ...");
-                new File(getIntermediateOutputFileName()).delete();
+                new File(getIntermediateOutputFileName(outputFile)).delete();
             }
         } else {
             System.out.println("\n!! NO SOLUTIONS FOUND !!\n");
         }
     }
     
-    private String getIntermediateOutputFileName(){
+    private String getBinaryOutputFileName(String outputFile){
+        return outputFile.substring(0, outputFile.length() - ".zip".length()) + BinaryFormat.RESULTS_EXTENSION;
+    }
+    
+    private String getIntermediateOutputFileName(String outputFile){
         return outputFile.replace(".zip", "-int.zip");
     }
     
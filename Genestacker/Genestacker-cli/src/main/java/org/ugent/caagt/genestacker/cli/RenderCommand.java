@@ -0,0 +1,171 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.cli;
+
+import java.io.File;
+import java.io.IOException;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+import org.apache.commons.compress.archivers.ArchiveException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.ugent.caagt.genestacker.exceptions.GenestackerException;
+import org.ugent.caagt.genestacker.io.GraphFileFormat;
+import org.ugent.caagt.genestacker.io.ZIPDiagramRenderer;
+import org.ugent.caagt.genestacker.io.ZIPWriter;
+
+/**
+ * Command line interface of the <code>render</code> subcommand, which renders the diagrams of a ZIP package
+ * created with option -nd,--no-diagrams, e.g. on a different machine where Graphviz is installed.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class RenderCommand {
+
+    // name of subcommand
+    public static final String NAME = "render";
+
+    // logger
+    private Logger logger;
+
+    // options
+    private Options options;
+
+    // parameter values
+    private File inputFile;
+    private File outputFile;
+    private GraphFileFormat graphFileFormat;
+    private int numThreads;
+
+    public void run(String[] args){
+        // load default log settings
+        Configurator.initialize("config", null, "log4j2.xml");
+        logger = LogManager.getLogger(RenderCommand.class);
+        // setup and parse options
+        setupOptions();
+        try {
+            CommandLine cmd = new PosixParser().parse(options, args);
+            if(cmd.hasOption("help")){
+                printHelp();
+                System.exit(0);
+            }
+            parseOptions(cmd);
+        } catch (ParseException ex){
+            logger.error("Invalid usage: {}", ex.getMessage());
+            printHelp();
+            System.exit(1);
+        }
+        // render diagrams
+        try {
+            logger.info("Rendering diagrams ...");
+            int numRendered = new ZIPDiagramRenderer(numThreads).render(inputFile, outputFile, graphFileFormat);
+            logger.info("Rendered {} diagram(s) in {}", numRendered, outputFile);
+        } catch (GenestackerException ex){
+            logger.error("Fatal error occurred while rendering diagrams", ex);
+            System.exit(1);
+        } catch (IOException | ArchiveException ex){
+            logger.error("Input/output error: {}", ex.getMessage());
+            System.exit(1);
+        } catch (Exception ex){
+            // unexpected error (catch-all)
+            logger.error("Unexpected error", ex);
+            System.exit(1);
+        }
+    }
+
+    private void setupOptions(){
+        Option graphFileFormatOption = OptionBuilder.withLongOpt("graph-file-format")
+                                                  .hasArg()
+                                                  .withArgName("f")
+                                                  .withDescription("output file format used for graphs created by Graphviz (pdf, eps, ps, svg, png, bmp, jpg or gif), defaults to pdf")
+                                                  .create("gf");
+        Option numThreadsOption = OptionBuilder.withLongOpt("num-threads")
+                                                  .hasArg()
+                                                  .withArgName("n")
+                                                  .withDescription("maximum number of diagrams rendered concurrently, defaults to the number of available threads on the machine")
+                                                  .create("thr");
+        Option helpOption = new Option("help", "help", false, "print help");
+        options = new Options();
+        options.addOption(graphFileFormatOption);
+        options.addOption(numThreadsOption);
+        options.addOption(helpOption);
+    }
+
+    private void printHelp(){
+        System.out.println("");
+        System.out.println("usage:\tgenestacker " + NAME + " [options] <zip-file> [<output>]");
+        System.out.println("");
+        System.out.println("\texample: The following command will render the diagrams of all crossing schemes contained" +
+                           "\n\tin the ZIP file 'output.zip', created with option -nd,--no-diagrams, and store the result" +
+                           "\n\tin a new ZIP file 'rendered.zip'. If no output is specified, the input file is updated.");
+        System.out.println("");
+        System.out.println("\t\tgenestacker " + NAME + " -gf svg output.zip rendered");
+        System.out.println("");
+        HelpFormatter f = new HelpFormatter();
+        f.setWidth(100);
+        f.setSyntaxPrefix("");
+        f.printHelp("Options:", options);
+        System.out.println("");
+    }
+
+    private void parseOptions(CommandLine cmd) throws ParseException {
+        // check for <zip-file> and optional <output> argument
+        if(cmd.getArgs().length < 1 || cmd.getArgs().length > 2){
+            throw new ParseException("Expected <zip-file> and optional <output> argument.");
+        }
+        inputFile = new File(cmd.getArgs()[0]);
+        if(!inputFile.isFile()){
+            throw new ParseException("ZIP file " + inputFile + " does not exist.");
+        }
+        if(cmd.getArgs().length == 2){
+            outputFile = new File(ZIPWriter.formatOutputFile(cmd.getArgs()[1]));
+        } else {
+            outputFile = inputFile;
+        }
+        // check for -graph-file-format
+        graphFileFormat = GraphFileFormat.PDF; // defaults to pdf
+        if(cmd.hasOption("graph-file-format")){
+            String format = cmd.getOptionValue("graph-file-format");
+            graphFileFormat = null;
+            for(GraphFileFormat f : GraphFileFormat.values()){
+                if(f.getFormatString().equals(format)){
+                    graphFileFormat = f;
+                }
+            }
+            if(graphFileFormat == null){
+                throw new ParseException("Unknown graph output file format: " + format);
+            }
+        }
+        // check for -num-threads
+        numThreads = Runtime.getRuntime().availableProcessors();
+        if(cmd.hasOption("num-threads")){
+            try {
+                numThreads = Integer.parseInt(cmd.getOptionValue("num-threads"));
+                if(!(numThreads > 0)){
+                    throw new NumberFormatException();
+                }
+            } catch(NumberFormatException ex){
+                throw new ParseException("Parameter -thr,--num-threads should be a positive integer.");
+            }
+        }
+    }
+
+}
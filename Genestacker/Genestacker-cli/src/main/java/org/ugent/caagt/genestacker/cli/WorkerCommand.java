@@ -0,0 +1,231 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.ugent.caagt.genestacker.io.DistributedWorker;
+import org.ugent.caagt.genestacker.search.DefaultDominatesRelation;
+import org.ugent.caagt.genestacker.search.bb.GeneticMapCache;
+import org.ugent.caagt.genestacker.search.bb.SharedBounds;
+
+/**
+ * Command line interface of the <code>worker</code> subcommand, which connects to a Gene Stacker run started with
+ * the <code>-coord,--coordinator</code> option, possibly on another machine. The worker runs the searches handed
+ * out by the coordinator (a beam search and searches with fewer generations), which address the same problem as
+ * the coordinator's own search without partitioning it, and shares all solutions with the coordinator and the
+ * other workers so that every node prunes against the solutions found by all nodes. The results of the worker's
+ * searches are not written; each solution is sent to the coordinator as soon as it is found, and merged into the
+ * final Pareto frontier.
+ * Searches run by the same worker share the genetic map and gametes (see {@link GeneticMapCache}).
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class WorkerCommand {
+
+    // name of subcommand
+    public static final String NAME = "worker";
+    
+    // environment variable containing the token shared by the coordinator and its workers
+    public static final String TOKEN_VARIABLE = "GENESTACKER_TOKEN";
+
+    // logger
+    private Logger logger;
+
+    // options
+    private Options options;
+
+    // parameter values
+    private String host;
+    private int port;
+    private String token;
+    private int numThreads;
+    
+    /**
+     * Generate a random token to be shared by a coordinator and its workers.
+     * 
+     * @return random token (hexadecimal)
+     */
+    public static String generateToken(){
+        byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder token = new StringBuilder();
+        for(byte b : bytes){
+            token.append(String.format("%02x", b));
+        }
+        return token.toString();
+    }
+
+    public void run(String[] args){
+        // load default log settings
+        Configurator.initialize("config", null, "log4j2.xml");
+        logger = LogManager.getLogger(WorkerCommand.class);
+        // setup and parse options
+        setupOptions();
+        try {
+            CommandLine cmd = new PosixParser().parse(options, args);
+            if(cmd.hasOption("help")){
+                printHelp();
+                System.exit(0);
+            }
+            parseOptions(cmd);
+        } catch (ParseException ex){
+            logger.error("Invalid usage: {}", ex.getMessage());
+            printHelp();
+            System.exit(1);
+        }
+        // run tasks until none are left
+        try {
+            final File outputDir = Files.createTempDirectory("genestacker-worker-output").toFile();
+            final GeneticMapCache mapCache = new GeneticMapCache(1, GeneticMapCache.DEFAULT_MAX_GAMETE_CACHE_SIZE);
+            SharedBounds bounds = new SharedBounds(new DefaultDominatesRelation());
+            DistributedWorker worker = new DistributedWorker(host, port, token, bounds, new DistributedWorker.TaskRunner() {
+                @Override
+                public void run(List<String> task, File inputFile, SharedBounds bounds) throws Exception {
+                    runTask(task, inputFile, bounds, outputDir, mapCache);
+                }
+                @Override
+                public void stop() {
+                    // coordinator has finished, abandon running task (solutions found so far have already
+                    // been sent; solutions still queued are not read by the coordinator once it has stopped)
+                    logger.info("Worker stopped");
+                    System.exit(0);
+                }
+            });
+            worker.run();
+            logger.info("No tasks left, completed {} task(s)", worker.getNumCompletedTasks());
+            Files.deleteIfExists(outputDir.toPath());
+        } catch (IOException ex){
+            logger.error("Input/output error: {}", ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // run the given task (its solutions are sent to the coordinator through the shared bounds)
+    private void runTask(List<String> task, File inputFile, SharedBounds bounds,
+                         File outputDir, GeneticMapCache mapCache) throws IOException {
+        File output = new File(outputDir, "task.zip");
+        List<String> args = new ArrayList<>(task);
+        if(numThreads > 0){
+            args.add("-thr");
+            args.add(Integer.toString(numThreads));
+        }
+        args.add(inputFile.getAbsolutePath());
+        args.add(output.getAbsolutePath());
+        try {
+            Main main = new Main();
+            main.setGeneticMapCache(mapCache);
+            main.setSharedBounds(bounds);
+            main.setRemoteTask();
+            if(main.runSearch(args.toArray(new String[args.size()])) != 0){
+                logger.warn("Task {} failed", task);
+            }
+        } finally {
+            // results are sent to the coordinator, not kept
+            Files.deleteIfExists(output.toPath());
+        }
+    }
+
+    private void setupOptions(){
+        Option numThreadsOption = OptionBuilder.withLongOpt("num-threads")
+                                                  .hasArg()
+                                                  .withArgName("n")
+                                                  .withDescription("number of threads used by each search, defaults to the number of available"
+                                                                    + " processors (or the value of OMP_NUM_THREADS)")
+                                                  .create("thr");
+        Option helpOption = new Option("help", "help", false, "print help");
+        options = new Options();
+        options.addOption(numThreadsOption);
+        options.addOption(helpOption);
+    }
+
+    private void printHelp(){
+        System.out.println("");
+        System.out.println("usage:\tgenestacker " + NAME + " [options] <host>:<port>");
+        System.out.println("");
+        System.out.println("\tConnects to a Gene Stacker run started with the -coord,--coordinator option and runs the" +
+                           "\n\tsearches handed out by the coordinator (a beam search and searches with fewer generations" +
+                           "\n\tthan the coordinator's own search), until none are left. All solutions are shared with" +
+                           "\n\tthe coordinator and the other workers as soon as they are found, so that every node" +
+                           "\n\tprunes against the best solutions found so far, and are included in the output of the" +
+                           "\n\tcoordinator. Several workers can be started on the same machine. The" +
+                           "\n\t" + TOKEN_VARIABLE + " environment variable should contain the token of the coordinator.");
+        System.out.println("");
+        System.out.println("\texample: The following commands run a search coordinated on port 5000 with a single");
+        System.out.println("\tworker running on the same machine.");
+        System.out.println("");
+        System.out.println("\t\texport " + TOKEN_VARIABLE + "=secret");
+        System.out.println("\t\tgenestacker -coord 5000 -g 4 -s 0.9 input.xml output &");
+        System.out.println("\t\tgenestacker " + NAME + " localhost:5000");
+        System.out.println("");
+        HelpFormatter f = new HelpFormatter();
+        f.setWidth(100);
+        f.setSyntaxPrefix("");
+        f.printHelp("Options:", options);
+        System.out.println("");
+    }
+
+    private void parseOptions(CommandLine cmd) throws ParseException {
+        // check for <host>:<port> argument
+        if(cmd.getArgs().length != 1){
+            throw new ParseException("Expected <host>:<port> argument.");
+        }
+        String address = cmd.getArgs()[0];
+        int sep = address.lastIndexOf(':');
+        try {
+            if(sep < 1){
+                throw new NumberFormatException();
+            }
+            host = address.substring(0, sep);
+            port = Integer.parseInt(address.substring(sep+1));
+            if(!(port > 0 && port < 65536)){
+                throw new NumberFormatException();
+            }
+        } catch(NumberFormatException ex){
+            throw new ParseException("Coordinator address should be formatted as <host>:<port>.");
+        }
+        // token shared with coordinator
+        token = System.getenv(TOKEN_VARIABLE);
+        if(token == null || token.isEmpty()){
+            throw new ParseException("Environment variable " + TOKEN_VARIABLE + " should contain the token of the coordinator.");
+        }
+        // number of threads (0: determined by each search)
+        if(cmd.hasOption("num-threads")){
+            try {
+                numThreads = Integer.parseInt(cmd.getOptionValue("num-threads"));
+                if(!(numThreads > 0)){
+                    throw new NumberFormatException();
+                }
+            } catch(NumberFormatException ex){
+                throw new ParseException("Parameter -thr,--num-threads should be a positive integer.");
+            }
+        }
+    }
+
+}
@@ -89,6 +89,10 @@ public class GeneticMap {
         this.mapFunction = mapFunction;
     }
     
+    public DistanceMapFunction getDistanceMapFunction(){
+        return mapFunction;
+    }
+    
     public double[][] getDistances(){
         return distances;
     }
@@ -14,6 +14,7 @@
 
 package org.ugent.caagt.genestacker;
 
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -49,6 +50,15 @@ public class GenotypeGroupWithSameAllelicFrequencies {
         this.genotypeProbs = genotypeProbs;
     }
     
+    /**
+     * Create a copy of this group, from which genotypes can be filtered without affecting the original group.
+     * 
+     * @return copy of this group
+     */
+    public GenotypeGroupWithSameAllelicFrequencies copy(){
+        return new GenotypeGroupWithSameAllelicFrequencies(prob, allelicFreqs, new HashMap<>(genotypeProbs));
+    }
+    
     public GenotypeAllelicFrequencies getAllelicFrequencies(){
         return allelicFreqs;
     }
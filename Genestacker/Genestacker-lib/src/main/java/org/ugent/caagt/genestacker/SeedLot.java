@@ -58,6 +58,20 @@ public class SeedLot {
         uniform = true;
     }
     
+    /**
+     * Create a copy of this seed lot, from which genotypes can be filtered without affecting the original
+     * seed lot. The genotypes themselves are shared with the original seed lot.
+     * 
+     * @return copy of this seed lot
+     */
+    public SeedLot copy(){
+        Map<GenotypeAllelicFrequencies, GenotypeGroupWithSameAllelicFrequencies> groups = new HashMap<>();
+        for(Map.Entry<GenotypeAllelicFrequencies, GenotypeGroupWithSameAllelicFrequencies> group : genotypeGroups.entrySet()){
+            groups.put(group.getKey(), group.getValue().copy());
+        }
+        return new SeedLot(uniform, groups);
+    }
+    
     /**
      * Get the remaining genotypes, after possible filtering(s).
      * 
@@ -0,0 +1,129 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.io;
+
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import org.ugent.caagt.genestacker.exceptions.BinaryFormatException;
+
+/**
+ * Constants and shared tools of the binary input and result formats. Both formats start with a magic number
+ * and format version, followed by the number of loci on each chromosome, which determines the size of all
+ * packed genotypes contained in the file (see {@link PackedGenotypeCodec}). All values are stored in big
+ * endian byte order and files are read through memory mapped buffers.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public final class BinaryFormat {
+
+    // magic numbers ("GSIN" and "GSRS")
+    public static final int INPUT_MAGIC = 0x4753494E;
+    public static final int RESULTS_MAGIC = 0x47535253;
+
+    // current format version
+    public static final short VERSION = 1;
+
+    // default file extensions
+    public static final String INPUT_EXTENSION = ".gsi";
+    public static final String RESULTS_EXTENSION = ".gsr";
+
+    private BinaryFormat(){
+    }
+
+    /**
+     * Check whether the given file starts with the given magic number.
+     *
+     * @param file file
+     * @param magic magic number
+     * @return <code>true</code> if the file starts with the given magic number
+     * @throws IOException if any IO errors occur
+     */
+    public static boolean hasMagic(File file, int magic) throws IOException {
+        if(file.length() < 4){
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == magic;
+        }
+    }
+
+    static ByteBuffer map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    static void writeHeader(DataOutput out, int magic, PackedGenotypeCodec codec) throws IOException {
+        out.writeInt(magic);
+        out.writeShort(VERSION);
+        int[] numLoci = codec.getNumLoci();
+        out.writeInt(numLoci.length);
+        for(int n : numLoci){
+            out.writeInt(n);
+        }
+    }
+
+    static PackedGenotypeCodec readHeader(ByteBuffer buf, int magic, String fileName) throws BinaryFormatException {
+        if(buf.remaining() < 10 || buf.getInt() != magic){
+            throw new BinaryFormatException("File '" + fileName + "' is not in the expected binary format.");
+        }
+        short version = buf.getShort();
+        if(version < 1 || version > VERSION){
+            throw new BinaryFormatException("File '" + fileName + "' has unsupported binary format version " + version
+                                            + " (supported up to version " + VERSION + ").");
+        }
+        int numChroms = buf.getInt();
+        if(numChroms < 0 || 4L*numChroms > buf.remaining()){
+            throw new BinaryFormatException("File '" + fileName + "' has an invalid header.");
+        }
+        int[] numLoci = new int[numChroms];
+        long numBits = 0;
+        for(int c=0; c<numChroms; c++){
+            numLoci[c] = buf.getInt();
+            numBits += 2L*numLoci[c];
+            // an encoded genotype can not be larger than the file
+            if(numLoci[c] < 0 || numBits > 8L*buf.limit()){
+                throw new BinaryFormatException("File '" + fileName + "' has an invalid header.");
+            }
+        }
+        return new PackedGenotypeCodec(numLoci);
+    }
+
+    static void writeString(DataOutput out, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer buf){
+        int length = buf.getInt();
+        // check length before allocating (corrupt or truncated file)
+        if(length < 0 || length > buf.remaining()){
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,135 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.commons.compress.archivers.ArchiveException;
+import org.apache.commons.compress.archivers.ArchiveOutputStream;
+import org.apache.commons.compress.archivers.ArchiveStreamFactory;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.ugent.caagt.genestacker.Plant;
+import org.ugent.caagt.genestacker.exceptions.BinaryFormatException;
+import org.ugent.caagt.genestacker.exceptions.GenestackerException;
+import org.ugent.caagt.genestacker.exceptions.XMLFormatException;
+
+/**
+ * Converts input files and results between the XML formats and the binary formats (see {@link BinaryFormat}).
+ * Results are converted from and to ZIP packages; as the binary format only stores the crossing schemes
+ * themselves, ZIP packages created from binary results contain the XML descriptions of all schemes but no
+ * Graphviz sources or diagrams.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class BinaryFormatConverter {
+
+    // names of crossing scheme XML files inside a ZIP package
+    private static final Pattern SCHEME_XML = Pattern.compile("(?:.*/)?scheme(\\d+)\\.xml");
+
+    /**
+     * Convert an XML input file to the binary input format.
+     *
+     * @param xmlFile XML input file
+     * @param binaryFile binary output file
+     * @throws IOException if any IO errors occur
+     * @throws XMLFormatException if the XML input file is not formatted correctly
+     */
+    public void inputToBinary(File xmlFile, File binaryFile) throws IOException, XMLFormatException {
+        GenestackerInput input = new GenestackerInputParser().parse(xmlFile);
+        new GenestackerInputBinaryWriter().write(input, binaryFile);
+    }
+
+    /**
+     * Convert a binary input file to the XML input format.
+     *
+     * @param binaryFile binary input file
+     * @param xmlFile XML output file
+     * @throws IOException if any IO errors occur
+     * @throws BinaryFormatException if the binary input file is invalid
+     * @throws GenestackerException if any problems occur with the Gene Stacker config file
+     */
+    public void inputToXML(File binaryFile, File xmlFile) throws IOException, GenestackerException {
+        GenestackerInput input = new GenestackerInputBinaryReader().read(binaryFile);
+        List<Plant> plants = input.getInitialPlants();
+        new GenestackerInputXMLWriter().write(plants.toArray(new Plant[plants.size()]), input.getIdeotype(),
+                                              input.getGeneticMap(), xmlFile);
+    }
+
+    /**
+     * Convert the crossing schemes contained in a ZIP package to the binary result format. The schemes are
+     * stored in order of their number in the ZIP package.
+     *
+     * @param zipFile ZIP package
+     * @param binaryFile binary output file
+     * @return number of converted schemes
+     * @throws IOException if any IO errors occur
+     * @throws XMLFormatException if any crossing scheme is not formatted correctly
+     */
+    public int resultsToBinary(File zipFile, File binaryFile) throws IOException, XMLFormatException {
+        CrossingSchemeXMLParser parser = new CrossingSchemeXMLParser();
+        // order scheme files by number
+        Map<Integer, CrossingSchemeRecord> schemes = new TreeMap<>();
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            for(ZipArchiveEntry e : Collections.list(zip.getEntries())){
+                Matcher m = SCHEME_XML.matcher(e.getName());
+                if(m.matches()){
+                    try (InputStream in = zip.getInputStream(e)) {
+                        schemes.put(Integer.parseInt(m.group(1)), parser.parse(in, e.getName()));
+                    }
+                }
+            }
+        }
+        new ParetoFrontierBinaryWriter().write(new ArrayList<>(schemes.values()), binaryFile);
+        return schemes.size();
+    }
+
+    /**
+     * Convert binary results to a ZIP package containing the XML description of each crossing scheme.
+     *
+     * @param binaryFile binary result file
+     * @param zipFile ZIP package to be written
+     * @return number of converted schemes
+     * @throws IOException if any IO errors occur
+     * @throws ArchiveException if the ZIP file can not be created
+     * @throws BinaryFormatException if the binary result file is invalid
+     * @throws GenestackerException if any problems occur with the Gene Stacker config file
+     */
+    public int resultsToZIP(File binaryFile, File zipFile) throws IOException, ArchiveException, GenestackerException {
+        ParetoFrontierBinaryReader reader = new ParetoFrontierBinaryReader(binaryFile);
+        CrossingSchemeXMLWriter xmlWriter = new CrossingSchemeXMLWriter();
+        String inZIPFolder = ZIPWriter.getInZIPFolder(zipFile.getName());
+        try (OutputStream out = new FileOutputStream(zipFile);
+                ArchiveOutputStream os = new ArchiveStreamFactory().createArchiveOutputStream("zip", out);) {
+            for(int i=0; i<reader.getNumSchemes(); i++){
+                os.putArchiveEntry(new ZipArchiveEntry(inZIPFolder + "/scheme" + (i+1) + ".xml"));
+                xmlWriter.write(reader.getScheme(i), os);
+                os.closeArchiveEntry();
+            }
+        }
+        return reader.getNumSchemes();
+    }
+
+}
@@ -14,15 +14,19 @@
 package org.ugent.caagt.genestacker.io;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import org.apache.commons.compress.utils.IOUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.ugent.caagt.genestacker.Genotype;
@@ -76,6 +80,10 @@ public class CrossingSchemeGraphWriter {
         DOT = dot;
     }
 
+    public GraphFileFormat getFileFormat() {
+        return fileFormat;
+    }
+
     public void setFileFormat(GraphFileFormat fileFormat) {
         this.fileFormat = fileFormat;
     }
@@ -96,6 +104,37 @@ public class CrossingSchemeGraphWriter {
      * @throws IOException if the Graphviz source file can not be written
      */
     public File write(CrossingScheme scheme, File outputFile) throws IOException {
+        
+        String dotSource = createDotSource(scheme);
+
+        /**********************************/
+        /* OUTPUT DOT SOURCE TO TEMP FILE */
+        /**********************************/
+        File dotSourceFile = Files.createTempFile("graph_", ".graphviz").toFile();
+        dotSourceFile.deleteOnExit();
+        Files.write(dotSourceFile.toPath(), dotSource.getBytes(StandardCharsets.UTF_8));
+
+        /*****************************/
+        /* RUN DOT TO CREATE DIAGRAM */
+        /*****************************/
+        byte[] graph = render(dotSource);
+        if (graph != null) {
+            Files.write(outputFile.toPath(), graph);
+        } else {
+            outputFile.delete();
+        }
+
+        // return reference to temporary dot source file
+        return dotSourceFile;
+    }
+    
+    /**
+     * Create the structure of the crossing scheme in the Graphviz definition language.
+     * 
+     * @param scheme crossing scheme
+     * @return DOT source
+     */
+    public String createDotSource(CrossingScheme scheme) {
 
         /*********************/
         /* CREATE DOT SOURCE */
@@ -294,36 +333,56 @@ public class CrossingSchemeGraphWriter {
         // finish DOT source string
         dotSource.append("}");
 
-        /**********************************/
-        /* OUTPUT DOT SOURCE TO TEMP FILE */
-        /**********************************/
-        File dotSourceFile = Files.createTempFile("graph_", ".graphviz").toFile();
-        dotSourceFile.deleteOnExit();
-        try (FileWriter fout = new FileWriter(dotSourceFile)) {
-            fout.write(dotSource.toString());
-        }
-
-        /*****************************/
-        /* RUN DOT TO CREATE DIAGRAM */
-        /*****************************/
-        String[] args = {DOT, "-T" + fileFormat, dotSourceFile.getAbsolutePath(), "-o", outputFile.getAbsolutePath()};
-        Runtime rt = Runtime.getRuntime();
+        return dotSource.toString();
+    }
+    
+    /**
+     * Render the given DOT source using the external Graphviz software, in the output file format of this writer.
+     * The source is piped to a new DOT process, from which the rendered diagram is read. This method may be called
+     * concurrently from different threads, each running a separate DOT process. Returns <code>null</code> if DOT could
+     * not be run or failed to render the diagram; in this case, a warning is logged. 
+     * 
+     * @param dotSource DOT source
+     * @return rendered diagram, <code>null</code> if rendering failed
+     * @throws IOException if the rendered diagram can not be read from DOT
+     */
+    public byte[] render(String dotSource) throws IOException {
+        ProcessBuilder pb = new ProcessBuilder(DOT, "-T" + fileFormat);
+        pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+        Process p;
         try {
             // run dot program
-            Process p = rt.exec(args);
-            // wait for completion
-            p.waitFor();
+            p = pb.start();
         } catch (IOException ex) {
             // could not run dot program, issue warning
             logger.warn("Failed to run external GraphViz software, skipping graph creation (check installation instructions and config file: ~/genestacker/config.properties)");
-            // delete file
-            outputFile.delete();
-        } catch (InterruptedException shouldNotHappen) {
-            throw new RuntimeException("[SHOULD NOT HAPPEN] Main thread was interrupted while waiting for DOT to complete writing a diagram file", shouldNotHappen);
+            return null;
+        }
+        try {
+            // pipe source to dot (dot only starts writing after reading the entire source)
+            try (OutputStream in = p.getOutputStream()) {
+                in.write(dotSource.getBytes(StandardCharsets.UTF_8));
+            } catch (IOException ex) {
+                // dot terminated early, checked below
+            }
+            // read diagram
+            byte[] graph;
+            try (InputStream out = p.getInputStream()) {
+                graph = IOUtils.toByteArray(out);
+            }
+            // wait for completion
+            int exitCode = p.waitFor();
+            if (exitCode != 0) {
+                logger.warn("External GraphViz software failed with exit code {}, skipping graph creation", exitCode);
+                return null;
+            }
+            return graph;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for DOT to render a diagram");
+        } finally {
+            p.destroy();
         }
-
-        // return reference to temporary dot source file
-        return dotSourceFile;
     }
 
 }
@@ -0,0 +1,455 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.io;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.ugent.caagt.genestacker.Genotype;
+import org.ugent.caagt.genestacker.exceptions.CrossingSchemeException;
+import org.ugent.caagt.genestacker.exceptions.GenotypeException;
+import org.ugent.caagt.genestacker.search.CrossingNode;
+import org.ugent.caagt.genestacker.search.CrossingScheme;
+import org.ugent.caagt.genestacker.search.PlantNode;
+import org.ugent.caagt.genestacker.search.PopulationSizeTools;
+import org.ugent.caagt.genestacker.search.SeedLotNode;
+import org.ugent.caagt.genestacker.search.SelfingNode;
+import org.ugent.caagt.genestacker.search.bb.SeedLotConstructor;
+
+/**
+ * Flat table representation of a crossing scheme, containing all data included in its output files: the
+ * overall properties of the scheme and one row for each seed lot, plant and crossing, where the edges of the
+ * scheme are stored as indices of the referenced rows. Records are written to XML and binary result files and
+ * can be read back from both formats, without reconstructing the actual scheme. If the genetic map is known,
+ * the scheme can be rebuilt from its record (see {@link #toScheme(PopulationSizeTools, SeedLotConstructor)}).
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class CrossingSchemeRecord {
+
+    // overall success rate, success rate per target, linkage phase ambiguity
+    private final double gamma, gammaPrime, lpa;
+    // number of generations
+    private final int numGen;
+    // total population size
+    private final long totalPopSize;
+
+    // seed lots, plants and crossings
+    private final List<SeedLot> seedLots;
+    private final List<Plant> plants;
+    private final List<Crossing> crossings;
+
+    public CrossingSchemeRecord(double gamma, double gammaPrime, double lpa, int numGen, long totalPopSize,
+                                List<SeedLot> seedLots, List<Plant> plants, List<Crossing> crossings) {
+        this.gamma = gamma;
+        this.gammaPrime = gammaPrime;
+        this.lpa = lpa;
+        this.numGen = numGen;
+        this.totalPopSize = totalPopSize;
+        this.seedLots = seedLots;
+        this.plants = plants;
+        this.crossings = crossings;
+    }
+
+    /**
+     * Create a record of the given crossing scheme.
+     *
+     * @param scheme crossing scheme
+     * @return record of the scheme
+     */
+    public static CrossingSchemeRecord of(CrossingScheme scheme){
+        // seed lots
+        Collection<SeedLotNode> seedLotNodes = scheme.getSeedLotNodes();
+        List<SeedLot> seedLots = new ArrayList<>(seedLotNodes.size());
+        Map<String, Integer> seedLotIndices = new HashMap<>();
+        for(SeedLotNode sln : seedLotNodes){
+            Map<Integer, Long> usedSeeds = sln.getSeedsTakenFromSeedLotPerGeneration();
+            int[] usedGenerations = new int[usedSeeds.size()];
+            long[] usedAmounts = new long[usedSeeds.size()];
+            int i = 0;
+            for(Map.Entry<Integer, Long> used : usedSeeds.entrySet()){
+                usedGenerations[i] = used.getKey();
+                usedAmounts[i] = used.getValue();
+                i++;
+            }
+            seedLotIndices.put(sln.getUniqueID(), seedLots.size());
+            seedLots.add(new SeedLot(sln.getUniqueID(), sln.getGeneration(), usedGenerations, usedAmounts));
+        }
+        // plants
+        Collection<PlantNode> plantNodes = scheme.getPlantNodes();
+        List<Plant> plants = new ArrayList<>(plantNodes.size());
+        Map<String, Integer> plantIndices = new HashMap<>();
+        for(PlantNode pn : plantNodes){
+            plantIndices.put(pn.getUniqueID(), plants.size());
+            plants.add(new Plant(pn.getUniqueID(), index(seedLotIndices, pn.getParent().getUniqueID()), pn.getGeneration(),
+                                 pn.getProbabilityOfPhaseKnownGenotype(), pn.getLinkagePhaseAmbiguity(),
+                                 pn.getNumDuplicates(), pn.getPlant().getGenotype()));
+        }
+        // crossings
+        Collection<CrossingNode> crossingNodes = scheme.getCrossingNodes();
+        List<Crossing> crossings = new ArrayList<>(crossingNodes.size());
+        for(CrossingNode c : crossingNodes){
+            int parent1 = index(plantIndices, c.getParent1().getUniqueID());
+            int parent2 = c.isSelfing() ? -1 : index(plantIndices, c.getParent2().getUniqueID());
+            crossings.add(new Crossing(c.getUniqueID(), parent1, parent2, index(seedLotIndices, c.getChild().getUniqueID()),
+                                       c.getNumDuplicates()));
+        }
+        return new CrossingSchemeRecord(
+                scheme.getPopulationSizeTools().getGlobalSuccessRate(),
+                scheme.getPopulationSizeTools().computeDesiredSuccessProbPerTarget(scheme.getNumTargetsFromNonUniformSeedLots()),
+                scheme.getLinkagePhaseAmbiguity(),
+                scheme.getNumGenerations(),
+                scheme.getTotalPopulationSize(),
+                seedLots, plants, crossings
+        );
+    }
+
+    /**
+     * Rebuild the crossing scheme described by this record, keeping the IDs of all nodes. Initial seed lots
+     * are uniform seed lots containing the genotype of the plants grown from them, and all other seed lots are
+     * reconstructed using the given seed lot constructor. All properties of the scheme are recomputed; the
+     * total population size should match the recorded value, so the given tools should be configured as
+     * in the search that found the scheme.
+     *
+     * @param popSizeTools population size tools used to compute the population sizes
+     * @param seedLotConstructor constructs the seed lots obtained from the crossings
+     * @return rebuilt crossing scheme
+     * @throws CrossingSchemeException if the record does not describe a valid crossing scheme, or if the
+     *                                 rebuilt scheme does not match the recorded properties
+     * @throws GenotypeException if any seed lot can not be constructed
+     */
+    public CrossingScheme toScheme(PopulationSizeTools popSizeTools, SeedLotConstructor seedLotConstructor)
+                                                        throws CrossingSchemeException, GenotypeException {
+        SchemeBuilder builder = new SchemeBuilder(seedLotConstructor);
+        // final plant is the only plant in the last generation
+        PlantNode finalPlant = null;
+        for(int i=0; i<plants.size(); i++){
+            if(plants.get(i).getGeneration() == numGen){
+                if(finalPlant != null){
+                    throw new CrossingSchemeException("Crossing scheme record contains several final plants.");
+                }
+                finalPlant = builder.plant(i);
+            }
+        }
+        if(finalPlant == null){
+            throw new CrossingSchemeException("Crossing scheme record does not contain a final plant.");
+        }
+        CrossingScheme scheme = new CrossingScheme(popSizeTools, finalPlant);
+        if(scheme.getTotalPopulationSize() != totalPopSize){
+            throw new CrossingSchemeException("Rebuilt crossing scheme has total population size " + scheme.getTotalPopulationSize()
+                                                + " instead of " + totalPopSize + ".");
+        }
+        return scheme;
+    }
+
+    private static int index(Map<String, Integer> indices, String id){
+        Integer i = indices.get(id);
+        if(i == null){
+            throw new IllegalArgumentException("Crossing scheme refers to unknown node " + id + ".");
+        }
+        return i;
+    }
+
+    // parse ID and sub ID from unique ID of the form <prefix><ID>[n<sub ID>]
+    private static long[] parseID(String uniqueID, char prefix, boolean hasSubID) throws CrossingSchemeException {
+        try {
+            if(uniqueID.isEmpty() || uniqueID.charAt(0) != prefix){
+                throw new NumberFormatException();
+            }
+            if(hasSubID){
+                int sep = uniqueID.indexOf('n');
+                if(sep < 0){
+                    throw new NumberFormatException();
+                }
+                return new long[]{Long.parseLong(uniqueID.substring(1, sep)), Integer.parseInt(uniqueID.substring(sep+1))};
+            } else {
+                return new long[]{Long.parseLong(uniqueID.substring(1))};
+            }
+        } catch (NumberFormatException ex){
+            throw new CrossingSchemeException("Crossing scheme record contains invalid node ID " + uniqueID + ".");
+        }
+    }
+
+    public double getGamma() {
+        return gamma;
+    }
+
+    public double getGammaPrime() {
+        return gammaPrime;
+    }
+
+    public double getLinkagePhaseAmbiguity() {
+        return lpa;
+    }
+
+    public int getNumGenerations() {
+        return numGen;
+    }
+
+    public long getTotalPopulationSize() {
+        return totalPopSize;
+    }
+
+    public List<SeedLot> getSeedLots() {
+        return seedLots;
+    }
+
+    public List<Plant> getPlants() {
+        return plants;
+    }
+
+    public List<Crossing> getCrossings() {
+        return crossings;
+    }
+
+    /**
+     * Rebuilds the nodes of the scheme, starting from the final plant. Every node is created once, after its
+     * ancestors. Along each path towards the initial seed lots, generations strictly decrease at every crossing
+     * and never increase at any plant, so the recursion always terminates.
+     */
+    private class SchemeBuilder {
+
+        private final SeedLotConstructor seedLotConstructor;
+        // crossing from which each seed lot is obtained (-1 for initial seed lots)
+        private final int[] parentCrossings;
+        // genotype of a plant grown from each seed lot
+        private final Genotype[] seedLotGenotypes;
+        // rebuilt nodes
+        private final SeedLotNode[] seedLotNodes;
+        private final PlantNode[] plantNodes;
+        private final CrossingNode[] crossingNodes;
+
+        public SchemeBuilder(SeedLotConstructor seedLotConstructor) throws CrossingSchemeException {
+            this.seedLotConstructor = seedLotConstructor;
+            parentCrossings = new int[seedLots.size()];
+            Arrays.fill(parentCrossings, -1);
+            for(int c=0; c<crossings.size(); c++){
+                int sl = crossings.get(c).getSeedLot();
+                checkIndex(sl, seedLots.size());
+                if(parentCrossings[sl] >= 0){
+                    throw new CrossingSchemeException("Seed lot " + seedLots.get(sl).getID() + " is obtained from several crossings.");
+                }
+                parentCrossings[sl] = c;
+            }
+            seedLotGenotypes = new Genotype[seedLots.size()];
+            for(Plant p : plants){
+                checkIndex(p.getSeedLot(), seedLots.size());
+                seedLotGenotypes[p.getSeedLot()] = p.getGenotype();
+            }
+            seedLotNodes = new SeedLotNode[seedLots.size()];
+            plantNodes = new PlantNode[plants.size()];
+            crossingNodes = new CrossingNode[crossings.size()];
+        }
+
+        public PlantNode plant(int i) throws CrossingSchemeException, GenotypeException {
+            if(plantNodes[i] == null){
+                Plant p = plants.get(i);
+                if(p.getGeneration() < seedLots.get(p.getSeedLot()).getGeneration()){
+                    throw new CrossingSchemeException("Plant " + p.getID() + " is grown before its seed lot is obtained.");
+                }
+                long[] id = parseID(p.getID(), 'p', true);
+                plantNodes[i] = new PlantNode(new org.ugent.caagt.genestacker.Plant(p.getGenotype()), p.getGeneration(),
+                                              seedLot(p.getSeedLot()), id[0], (int) id[1], p.getNumDuplicates());
+            }
+            return plantNodes[i];
+        }
+
+        private SeedLotNode seedLot(int i) throws CrossingSchemeException, GenotypeException {
+            if(seedLotNodes[i] == null){
+                SeedLot sl = seedLots.get(i);
+                long[] id = parseID(sl.getID(), 's', true);
+                int c = parentCrossings[i];
+                if(c < 0){
+                    // initial seed lot
+                    seedLotNodes[i] = new SeedLotNode(new org.ugent.caagt.genestacker.SeedLot(seedLotGenotypes[i]),
+                                                      sl.getGeneration(), id[0], (int) id[1]);
+                } else {
+                    CrossingNode crossing = crossing(c, sl.getGeneration());
+                    org.ugent.caagt.genestacker.SeedLot seeds = crossing.isSelfing()
+                            ? seedLotConstructor.self(crossing.getParent1().getPlant().getGenotype())
+                            : seedLotConstructor.cross(crossing.getParent1().getPlant().getGenotype(),
+                                                       crossing.getParent2().getPlant().getGenotype());
+                    seedLotNodes[i] = new SeedLotNode(seeds, sl.getGeneration(), crossing, id[0], (int) id[1]);
+                }
+            }
+            return seedLotNodes[i];
+        }
+
+        private CrossingNode crossing(int i, int childGen) throws CrossingSchemeException, GenotypeException {
+            if(crossingNodes[i] == null){
+                Crossing c = crossings.get(i);
+                checkIndex(c.getParent1(), plants.size());
+                if(!c.isSelfing()){
+                    checkIndex(c.getParent2(), plants.size());
+                }
+                if(plants.get(c.getParent1()).getGeneration() != childGen-1
+                        || !c.isSelfing() && plants.get(c.getParent2()).getGeneration() != childGen-1){
+                    throw new CrossingSchemeException("Crossing " + c.getID() + " does not precede its seed lot.");
+                }
+                long[] id = parseID(c.getID(), 'c', false);
+                if(c.isSelfing()){
+                    crossingNodes[i] = new SelfingNode(id[0], c.getNumDuplicates(), plant(c.getParent1()));
+                } else {
+                    crossingNodes[i] = new CrossingNode(id[0], c.getNumDuplicates(), plant(c.getParent1()), plant(c.getParent2()));
+                }
+            }
+            return crossingNodes[i];
+        }
+
+        private void checkIndex(int index, int numRows) throws CrossingSchemeException {
+            if(index < 0 || index >= numRows){
+                throw new CrossingSchemeException("Crossing scheme record refers to unknown row " + index + ".");
+            }
+        }
+
+    }
+
+    /**
+     * Seed lot row.
+     */
+    public static class SeedLot {
+
+        private final String id;
+        private final int generation;
+        // number of seeds taken from the seed lot in each generation
+        private final int[] usedGenerations;
+        private final long[] usedAmounts;
+
+        public SeedLot(String id, int generation, int[] usedGenerations, long[] usedAmounts) {
+            this.id = id;
+            this.generation = generation;
+            this.usedGenerations = usedGenerations;
+            this.usedAmounts = usedAmounts;
+        }
+
+        public String getID() {
+            return id;
+        }
+
+        public int getGeneration() {
+            return generation;
+        }
+
+        public int[] getUsedGenerations() {
+            return usedGenerations;
+        }
+
+        public long[] getUsedAmounts() {
+            return usedAmounts;
+        }
+
+    }
+
+    /**
+     * Plant row, referring to the seed lot from which the plant is grown.
+     */
+    public static class Plant {
+
+        private final String id;
+        private final int seedLot;
+        private final int generation;
+        private final double obsProb, lpa;
+        private final int duplicates;
+        private final Genotype genotype;
+
+        public Plant(String id, int seedLot, int generation, double obsProb, double lpa, int duplicates, Genotype genotype) {
+            this.id = id;
+            this.seedLot = seedLot;
+            this.generation = generation;
+            this.obsProb = obsProb;
+            this.lpa = lpa;
+            this.duplicates = duplicates;
+            this.genotype = genotype;
+        }
+
+        public String getID() {
+            return id;
+        }
+
+        public int getSeedLot() {
+            return seedLot;
+        }
+
+        public int getGeneration() {
+            return generation;
+        }
+
+        public double getProbabilityOfPhaseKnownGenotype() {
+            return obsProb;
+        }
+
+        public double getLinkagePhaseAmbiguity() {
+            return lpa;
+        }
+
+        public int getNumDuplicates() {
+            return duplicates;
+        }
+
+        public Genotype getGenotype() {
+            return genotype;
+        }
+
+    }
+
+    /**
+     * Crossing row, referring to its parent plants and the produced seed lot.
+     */
+    public static class Crossing {
+
+        private final String id;
+        // second parent is -1 for selfings
+        private final int parent1, parent2;
+        private final int seedLot;
+        private final int duplicates;
+
+        public Crossing(String id, int parent1, int parent2, int seedLot, int duplicates) {
+            this.id = id;
+            this.parent1 = parent1;
+            this.parent2 = parent2;
+            this.seedLot = seedLot;
+            this.duplicates = duplicates;
+        }
+
+        public String getID() {
+            return id;
+        }
+
+        public boolean isSelfing() {
+            return parent2 < 0;
+        }
+
+        public int getParent1() {
+            return parent1;
+        }
+
+        public int getParent2() {
+            return parent2;
+        }
+
+        public int getSeedLot() {
+            return seedLot;
+        }
+
+        public int getNumDuplicates() {
+            return duplicates;
+        }
+
+    }
+
+}
@@ -0,0 +1,179 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.io;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.ugent.caagt.genestacker.exceptions.GenotypeException;
+import org.ugent.caagt.genestacker.exceptions.XMLFormatException;
+
+/**
+ * Parses crossing scheme XML files, as created by the {@link CrossingSchemeXMLWriter}, into scheme records.
+ * References to seed lots and plants are resolved to row indices of the record, which requires that seed
+ * lots are listed before plants and plants before crossings, as in all files created by Gene Stacker.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class CrossingSchemeXMLParser {
+
+    // creates XML stream readers
+    private final XMLInputFactory factory;
+
+    public CrossingSchemeXMLParser(){
+        factory = XMLInputFactory.newInstance();
+    }
+
+    public CrossingSchemeRecord parse(File xmlFile) throws IOException, XMLFormatException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(xmlFile))) {
+            return parse(in, xmlFile.getName());
+        }
+    }
+
+    /**
+     * Parse a crossing scheme from the given input stream. The stream is not closed.
+     *
+     * @param in input stream
+     * @param name name of the parsed file (used in error messages)
+     * @return scheme record
+     * @throws IOException if any IO errors occur
+     * @throws XMLFormatException if the crossing scheme is not formatted correctly
+     */
+    public CrossingSchemeRecord parse(InputStream in, String name) throws IOException, XMLFormatException {
+        try {
+            XMLStreamReader xml = factory.createXMLStreamReader(in);
+            try {
+                double gamma = 0.0, gammaPrime = 0.0, lpa = 0.0;
+                int numGen = 0;
+                long totalPopSize = 0;
+                boolean root = false;
+                // rows and indices of referenced IDs
+                List<CrossingSchemeRecord.SeedLot> seedLots = new ArrayList<>();
+                List<CrossingSchemeRecord.Plant> plants = new ArrayList<>();
+                List<CrossingSchemeRecord.Crossing> crossings = new ArrayList<>();
+                Map<String, Integer> seedLotIndices = new HashMap<>();
+                Map<String, Integer> plantIndices = new HashMap<>();
+                while(xml.hasNext()){
+                    if(xml.next() == XMLStreamConstants.START_ELEMENT){
+                        switch(xml.getLocalName()){
+                            case "crossing_scheme":
+                                gamma = Double.parseDouble(attribute(xml, "gamma"));
+                                gammaPrime = Double.parseDouble(attribute(xml, "gammaPrime"));
+                                lpa = Double.parseDouble(attribute(xml, "lpa"));
+                                numGen = Integer.parseInt(attribute(xml, "numGen"));
+                                totalPopSize = Long.parseLong(attribute(xml, "totalPopSize"));
+                                root = true;
+                                break;
+                            case "seedlot":
+                                seedLotIndices.put(attribute(xml, "id"), seedLots.size());
+                                seedLots.add(parseSeedLot(xml));
+                                break;
+                            case "plant":
+                                String plantID = attribute(xml, "id");
+                                int seedLot = index(seedLotIndices, attribute(xml, "seedlot"));
+                                int generation = Integer.parseInt(attribute(xml, "generation"));
+                                double obsProb = Double.parseDouble(attribute(xml, "obsProb"));
+                                double plantLPA = Double.parseDouble(attribute(xml, "lpa"));
+                                int duplicates = Integer.parseInt(attribute(xml, "duplicates"));
+                                plantIndices.put(plantID, plants.size());
+                                plants.add(new CrossingSchemeRecord.Plant(plantID, seedLot, generation, obsProb, plantLPA, duplicates,
+                                                                          GenestackerInputParser.parsePlantGenotype(xml, "plant")));
+                                break;
+                            case "crossing":
+                                crossings.add(new CrossingSchemeRecord.Crossing(
+                                        attribute(xml, "id"),
+                                        index(plantIndices, attribute(xml, "plant1")),
+                                        index(plantIndices, attribute(xml, "plant2")),
+                                        index(seedLotIndices, attribute(xml, "seedlot")),
+                                        Integer.parseInt(attribute(xml, "duplicates"))
+                                ));
+                                break;
+                            case "selfing":
+                                crossings.add(new CrossingSchemeRecord.Crossing(
+                                        attribute(xml, "id"),
+                                        index(plantIndices, attribute(xml, "plant")),
+                                        -1,
+                                        index(seedLotIndices, attribute(xml, "seedlot")),
+                                        Integer.parseInt(attribute(xml, "duplicates"))
+                                ));
+                                break;
+                        }
+                    }
+                }
+                if(!root){
+                    throw new XMLFormatException("Missing root element crossing_scheme.");
+                }
+                return new CrossingSchemeRecord(gamma, gammaPrime, lpa, numGen, totalPopSize, seedLots, plants, crossings);
+            } finally {
+                xml.close();
+            }
+        } catch (XMLStreamException | XMLFormatException | GenotypeException | IllegalArgumentException ex) {
+            throw new XMLFormatException("XML file '" + name + "' contains an invalid crossing scheme:\n" + ex.getMessage());
+        }
+    }
+
+    /**
+     * Parse a seed lot element, of which the start tag has just been read. Returns after reading the
+     * corresponding end tag.
+     */
+    private CrossingSchemeRecord.SeedLot parseSeedLot(XMLStreamReader xml) throws XMLStreamException, XMLFormatException {
+        String id = attribute(xml, "id");
+        int generation = Integer.parseInt(attribute(xml, "generation"));
+        List<Integer> usedGenerations = new ArrayList<>();
+        List<Long> usedAmounts = new ArrayList<>();
+        int event = xml.next();
+        while(!(event == XMLStreamConstants.END_ELEMENT && xml.getLocalName().equals("seedlot"))){
+            if(event == XMLStreamConstants.START_ELEMENT && xml.getLocalName().equals("used_seeds")){
+                usedGenerations.add(Integer.parseInt(attribute(xml, "generation")));
+                usedAmounts.add(Long.parseLong(attribute(xml, "amount")));
+            }
+            event = xml.next();
+        }
+        int[] gens = new int[usedGenerations.size()];
+        long[] amounts = new long[usedAmounts.size()];
+        for(int i=0; i<gens.length; i++){
+            gens[i] = usedGenerations.get(i);
+            amounts[i] = usedAmounts.get(i);
+        }
+        return new CrossingSchemeRecord.SeedLot(id, generation, gens, amounts);
+    }
+
+    private String attribute(XMLStreamReader xml, String name) throws XMLFormatException {
+        String value = xml.getAttributeValue(null, name);
+        if(value == null){
+            throw new XMLFormatException("Element " + xml.getLocalName() + " has no attribute " + name + ".");
+        }
+        return value;
+    }
+
+    private int index(Map<String, Integer> indices, String id) throws XMLFormatException {
+        Integer i = indices.get(id);
+        if(i == null){
+            throw new XMLFormatException("Reference to unknown node " + id + ".");
+        }
+        return i;
+    }
+
+}
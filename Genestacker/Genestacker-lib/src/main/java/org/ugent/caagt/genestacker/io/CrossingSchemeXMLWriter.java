@@ -14,124 +14,188 @@
 
 package org.ugent.caagt.genestacker.io;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Map;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.TransformerException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import org.ugent.caagt.genestacker.exceptions.GenestackerException;
-import org.ugent.caagt.genestacker.search.CrossingNode;
 import org.ugent.caagt.genestacker.search.CrossingScheme;
-import org.ugent.caagt.genestacker.search.PlantNode;
-import org.ugent.caagt.genestacker.search.SeedLotNode;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
 /**
- * Responsible for writing crossing schemes to XML files.
+ * Responsible for writing crossing schemes to XML files. The XML representation is streamed
+ * element by element, without building an intermediate document, so that it can be written
+ * directly into a ZIP package. Attributes are written in alphabetical order, preceded by the
+ * namespace declaration, which corresponds to the layout produced by the default transformer.
  * 
  * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
  */
 public class CrossingSchemeXMLWriter extends XMLWriter {
 
+    // XML schema instance namespace
+    private static final String XSI_NAMESPACE = "http://www.w3.org/2001/XMLSchema-instance";
+    
     // location of xml schema
     private final String XML_SCHEMA;
     
+    // creates XML stream writers
+    private final XMLOutputFactory factory;
+    
     public CrossingSchemeXMLWriter() throws GenestackerException{
         XML_SCHEMA = GenestackerResourceBundle.getConfig("crossingscheme.xml.schema");
+        factory = XMLOutputFactory.newInstance();
     }
     
     public void write(CrossingScheme scheme, File outputFile) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile))) {
+            write(scheme, out);
+        }
+    }
+    
+    /**
+     * Write the XML representation of the given scheme to an output stream, e.g. directly into a ZIP
+     * package. The stream is flushed but not closed.
+     * 
+     * @param scheme crossing scheme
+     * @param out output stream
+     * @throws IOException if the XML representation can not be written
+     */
+    public void write(CrossingScheme scheme, OutputStream out) throws IOException {
+        write(CrossingSchemeRecord.of(scheme), out);
+    }
+    
+    /**
+     * Write the XML representation of the given scheme record to an output stream. The stream is flushed
+     * but not closed.
+     * 
+     * @param scheme crossing scheme record
+     * @param out output stream
+     * @throws IOException if the XML representation can not be written
+     */
+    public void write(CrossingSchemeRecord scheme, OutputStream out) throws IOException {
         try {
-            // create document
-            Document xml = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+            writeDeclaration(out);
+            XMLStreamWriter xml = factory.createXMLStreamWriter(out, "UTF-8");
             
-            // create root element crossing_scheme
-            Element schemeEl = xml.createElement("crossing_scheme");
-            schemeEl.setAttribute("xmlns:xsi", "http://www.w3.org/2001/XMLSchema-instance");
-            schemeEl.setAttribute("xsi:noNamespaceSchemaLocation", XML_SCHEMA);
-            schemeEl.setAttribute("gamma", "" + scheme.getPopulationSizeTools().getGlobalSuccessRate());
-            schemeEl.setAttribute("gammaPrime", "" + scheme.getPopulationSizeTools().computeDesiredSuccessProbPerTarget(scheme.getNumTargetsFromNonUniformSeedLots()));
-            schemeEl.setAttribute("numGen", "" + scheme.getNumGenerations());
-            schemeEl.setAttribute("totalPopSize", "" + scheme.getTotalPopulationSize());
-            schemeEl.setAttribute("lpa", "" + scheme.getLinkagePhaseAmbiguity());
-            xml.appendChild(schemeEl);
+            // write root element crossing_scheme
+            xml.writeStartElement("crossing_scheme");
+            xml.writeNamespace("xsi", XSI_NAMESPACE);
+            xml.writeAttribute("gamma", "" + scheme.getGamma());
+            xml.writeAttribute("gammaPrime", "" + scheme.getGammaPrime());
+            xml.writeAttribute("lpa", "" + scheme.getLinkagePhaseAmbiguity());
+            xml.writeAttribute("numGen", "" + scheme.getNumGenerations());
+            xml.writeAttribute("totalPopSize", "" + scheme.getTotalPopulationSize());
+            xml.writeAttribute("xsi", XSI_NAMESPACE, "noNamespaceSchemaLocation", XML_SCHEMA);
             
             /************/
             /* SEEDLOTS */
             /************/
             
-            Element seedlotsEl = xml.createElement("seedlots");
-            schemeEl.appendChild(seedlotsEl);
-            // create seedlot elements
-            for(SeedLotNode sln : scheme.getSeedLotNodes()){
-                Element seedlotEl = xml.createElement("seedlot");
-                seedlotEl.setAttribute("id", sln.getUniqueID());
-                seedlotEl.setAttribute("generation", sln.getGeneration() + "");
-                seedlotsEl.appendChild(seedlotEl);
-                // create "used_seeds" child elements for this seed lot
-                Map<Integer, Long> usedSeeds = sln.getSeedsTakenFromSeedLotPerGeneration();
-                for(int g : usedSeeds.keySet()){
-                    Element usedSeedsEl = xml.createElement("used_seeds");
-                    usedSeedsEl.setAttribute("generation", "" + g);
-                    usedSeedsEl.setAttribute("amount", "" + usedSeeds.get(g));
-                    seedlotEl.appendChild(usedSeedsEl);
+            List<CrossingSchemeRecord.SeedLot> seedLots = scheme.getSeedLots();
+            writeContainerStart(xml, "seedlots", seedLots.isEmpty());
+            for(CrossingSchemeRecord.SeedLot sl : seedLots){
+                // write "used_seeds" child elements for this seed lot
+                int[] usedGenerations = sl.getUsedGenerations();
+                long[] usedAmounts = sl.getUsedAmounts();
+                indent(xml, 2);
+                if(usedGenerations.length == 0){
+                    xml.writeEmptyElement("seedlot");
+                } else {
+                    xml.writeStartElement("seedlot");
+                }
+                xml.writeAttribute("generation", sl.getGeneration() + "");
+                xml.writeAttribute("id", sl.getID());
+                for(int i=0; i<usedGenerations.length; i++){
+                    indent(xml, 3);
+                    xml.writeEmptyElement("used_seeds");
+                    xml.writeAttribute("amount", "" + usedAmounts[i]);
+                    xml.writeAttribute("generation", "" + usedGenerations[i]);
+                }
+                if(usedGenerations.length > 0){
+                    indent(xml, 2);
+                    xml.writeEndElement();
                 }
             }
+            writeContainerEnd(xml, seedLots.isEmpty());
             
             /**********/
             /* PLANTS */
             /**********/
             
-            Element plantsEl = xml.createElement("plants");
-            schemeEl.appendChild(plantsEl);
-            // create plant elements
-            for(PlantNode pn : scheme.getPlantNodes()){
-                Element plantEl = xml.createElement("plant");
-                plantEl.setAttribute("id", pn.getUniqueID());
-                plantEl.setAttribute("seedlot", pn.getParent().getUniqueID());
-                plantEl.setAttribute("generation", pn.getGeneration() + "");
-                plantEl.setAttribute("obsProb", "" + pn.getProbabilityOfPhaseKnownGenotype());
-                plantEl.setAttribute("lpa", "" + pn.getLinkagePhaseAmbiguity());
-                plantEl.setAttribute("duplicates", "" + pn.getNumDuplicates());
-                plantsEl.appendChild(plantEl);
-                // add genotype to plant
-                Element genotypeEl = createGenotypeElement(pn.getPlant().getGenotype(), xml);
-                plantEl.appendChild(genotypeEl);
+            List<CrossingSchemeRecord.Plant> plants = scheme.getPlants();
+            writeContainerStart(xml, "plants", plants.isEmpty());
+            for(CrossingSchemeRecord.Plant p : plants){
+                indent(xml, 2);
+                xml.writeStartElement("plant");
+                xml.writeAttribute("duplicates", "" + p.getNumDuplicates());
+                xml.writeAttribute("generation", p.getGeneration() + "");
+                xml.writeAttribute("id", p.getID());
+                xml.writeAttribute("lpa", "" + p.getLinkagePhaseAmbiguity());
+                xml.writeAttribute("obsProb", "" + p.getProbabilityOfPhaseKnownGenotype());
+                xml.writeAttribute("seedlot", seedLots.get(p.getSeedLot()).getID());
+                // write genotype of plant
+                writeGenotypeElement(p.getGenotype(), xml, 3);
+                indent(xml, 2);
+                xml.writeEndElement();
             }
+            writeContainerEnd(xml, plants.isEmpty());
             
             /*************/
             /* CROSSINGS */
             /*************/
             
-            Element crossingsEl = xml.createElement("crossings");
-            schemeEl.appendChild(crossingsEl);
-            // create crossing elements
-            for(CrossingNode crossing : scheme.getCrossingNodes()){
-                Element crossingEl;
+            List<CrossingSchemeRecord.Crossing> crossings = scheme.getCrossings();
+            writeContainerStart(xml, "crossings", crossings.isEmpty());
+            for(CrossingSchemeRecord.Crossing crossing : crossings){
+                indent(xml, 2);
                 if(crossing.isSelfing()){
-                    crossingEl = xml.createElement("selfing");
-                    crossingEl.setAttribute("plant", crossing.getParent1().getUniqueID());
+                    xml.writeEmptyElement("selfing");
+                    xml.writeAttribute("duplicates", "" + crossing.getNumDuplicates());
+                    xml.writeAttribute("id", crossing.getID());
+                    xml.writeAttribute("plant", plants.get(crossing.getParent1()).getID());
                 } else {
-                    crossingEl = xml.createElement("crossing");
-                    crossingEl.setAttribute("plant1", crossing.getParent1().getUniqueID());
-                    crossingEl.setAttribute("plant2", crossing.getParent2().getUniqueID());
+                    xml.writeEmptyElement("crossing");
+                    xml.writeAttribute("duplicates", "" + crossing.getNumDuplicates());
+                    xml.writeAttribute("id", crossing.getID());
+                    xml.writeAttribute("plant1", plants.get(crossing.getParent1()).getID());
+                    xml.writeAttribute("plant2", plants.get(crossing.getParent2()).getID());
                 }
-                crossingEl.setAttribute("seedlot", crossing.getChild().getUniqueID());
-                crossingEl.setAttribute("id", crossing.getUniqueID());
-                crossingEl.setAttribute("duplicates", "" + crossing.getNumDuplicates());
-                crossingsEl.appendChild(crossingEl);
+                xml.writeAttribute("seedlot", seedLots.get(crossing.getSeedLot()).getID());
             }
+            writeContainerEnd(xml, crossings.isEmpty());
             
-            /*********************/
-            /* WRITE XML TO FILE */
-            /*********************/
-            
-            writeXML(xml, outputFile);
+            // close root element
+            indent(xml, 0);
+            xml.writeEndElement();
+            xml.flush();
+            xml.close();
+            out.write(LINE_SEPARATOR.getBytes(StandardCharsets.UTF_8));
+            out.flush();
             
-        } catch (ParserConfigurationException | TransformerException ex) {
+        } catch (XMLStreamException ex) {
            throw new IOException("Failed to write crossing scheme xml representation.", ex);
         }
     }
+    
+    private void writeContainerStart(XMLStreamWriter xml, String name, boolean empty) throws XMLStreamException {
+        indent(xml, 1);
+        if(empty){
+            xml.writeEmptyElement(name);
+        } else {
+            xml.writeStartElement(name);
+        }
+    }
+    
+    private void writeContainerEnd(XMLStreamWriter xml, boolean empty) throws XMLStreamException {
+        if(!empty){
+            indent(xml, 1);
+            xml.writeEndElement();
+        }
+    }
+    
 }
@@ -0,0 +1,420 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.ugent.caagt.genestacker.exceptions.BinaryFormatException;
+import org.ugent.caagt.genestacker.search.CrossingScheme;
+import org.ugent.caagt.genestacker.search.CrossingSchemeDescriptor;
+import org.ugent.caagt.genestacker.search.bb.SharedBounds;
+
+/**
+ * Coordinates a distributed search over TCP. The coordinator accepts connections of workers (see
+ * {@link DistributedWorker}), which may run in other JVMs on the same or other machines, and sends them the
+ * input file. Each worker repeatedly asks for the next task, i.e. a list of arguments that describes a
+ * complete search for the same problem (e.g. a beam search, or a search with fewer generations), until all
+ * tasks have been completed; as workers only take a new task when they are idle, fast workers automatically
+ * take over the tasks that have not yet been claimed by slow ones. The tasks form a portfolio of searches that
+ * run alongside the coordinator's own search, which is not partitioned. If a worker disconnects before its
+ * task has been completed, the task is handed out again. Workers that ask for a task while none are queued
+ * wait until all running tasks have been completed, so that they can take over any task that is handed out
+ * again.
+ * <p>
+ * All solutions found by any node are shared as bounds (see {@link SharedBounds}): the descriptors of local
+ * solutions of the coordinator are broadcast to all workers, and workers send each solution they find together
+ * with its descriptor. The coordinator stores a received solution (see {@link #getSolutions()}) before its
+ * descriptor is registered in the coordinator's shared bounds and forwarded to all other workers, so that no
+ * search ever prunes against a bound of which the solution can not be merged into the coordinator's results.
+ * Workers that connect later first receive all bounds known so far.
+ * <p>
+ * Workers run the tasks they receive, so only workers that know the coordinator's token are accepted (see
+ * {@link DistributedProtocol}). By default, the coordinator only listens on the loopback interface; to accept
+ * workers on other machines, it should explicitly be bound to another address. Messages are not encrypted.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class DistributedCoordinator implements SharedBounds.Listener, Closeable {
+
+    // logger
+    private Logger logger = LogManager.getLogger(DistributedCoordinator.class);
+
+    // shared bounds
+    private final SharedBounds bounds;
+
+    // time within which connecting workers should authenticate (ms)
+    private static final int HANDSHAKE_TIMEOUT = 10000;
+
+    // server socket
+    private final ServerSocket server;
+
+    // token shared with the workers
+    private final String token;
+
+    // input file
+    private final String inputName;
+    private final byte[] input;
+
+    // tasks that have not yet been handed out (also used to synchronize task assignment)
+    private final Deque<List<String>> tasks;
+    // number of tasks handed out and not yet completed
+    private int numRunningTasks;
+    // workers waiting for a task
+    private final List<WorkerConnection> idleWorkers;
+
+    // connected workers
+    private final List<WorkerConnection> workers;
+
+    // solutions received from workers
+    private final List<CrossingSchemeRecord> solutions;
+
+    // closed ?
+    private volatile boolean closed;
+
+    /**
+     * Create a coordinator that listens on the given port of the loopback interface.
+     *
+     * @param bounds bounds shared with the local search
+     * @param port port on which workers connect, 0 to use any free port
+     * @param token token shared with the workers (not empty)
+     * @param inputFile input file sent to all workers
+     * @param tasks tasks handed out to the workers, in the given order
+     * @throws IOException if the input file can not be read or the server socket can not be opened
+     */
+    public DistributedCoordinator(SharedBounds bounds, int port, String token, File inputFile, List<List<String>> tasks) throws IOException {
+        this(bounds, new InetSocketAddress(InetAddress.getLoopbackAddress(), port), token, inputFile, tasks);
+    }
+
+    /**
+     * Create a coordinator that listens on the given address.
+     *
+     * @param bounds bounds shared with the local search
+     * @param address address on which workers connect, with port 0 to use any free port
+     * @param token token shared with the workers (not empty)
+     * @param inputFile input file sent to all workers
+     * @param tasks tasks handed out to the workers, in the given order
+     * @throws IOException if the input file can not be read or the server socket can not be opened
+     */
+    public DistributedCoordinator(SharedBounds bounds, InetSocketAddress address, String token,
+                                  File inputFile, List<List<String>> tasks) throws IOException {
+        if(token == null || token.isEmpty()){
+            throw new IllegalArgumentException("Token should not be empty.");
+        }
+        this.bounds = bounds;
+        this.token = token;
+        this.inputName = inputFile.getName();
+        this.input = Files.readAllBytes(inputFile.toPath());
+        this.tasks = new LinkedList<>(tasks);
+        idleWorkers = new ArrayList<>();
+        workers = new CopyOnWriteArrayList<>();
+        solutions = new ArrayList<>();
+        server = new ServerSocket();
+        server.bind(address);
+    }
+
+    /**
+     * Get the port on which the coordinator listens.
+     *
+     * @return port
+     */
+    public int getPort(){
+        return server.getLocalPort();
+    }
+
+    public int getNumWorkers(){
+        return workers.size();
+    }
+
+    public int getNumRemainingTasks(){
+        synchronized(tasks){
+            return tasks.size();
+        }
+    }
+
+    public int getNumRunningTasks(){
+        synchronized(tasks){
+            return numRunningTasks;
+        }
+    }
+
+    /**
+     * Get all solutions received from workers so far, in the order in which they have been received (i.e.
+     * solutions may dominate each other). Every bound received from a worker is the descriptor of one of
+     * these solutions.
+     *
+     * @return records of the received solutions
+     */
+    public List<CrossingSchemeRecord> getSolutions(){
+        synchronized(solutions){
+            return new ArrayList<>(solutions);
+        }
+    }
+
+    /**
+     * Hand out queued tasks to idle workers. If all tasks have been completed, idle workers are informed that
+     * no tasks are left. Should be called while holding the lock on the task queue.
+     */
+    private void assignTasks(){
+        while(!idleWorkers.isEmpty() && !tasks.isEmpty()){
+            idleWorkers.remove(0).assign(tasks.poll());
+        }
+        if(tasks.isEmpty() && numRunningTasks == 0){
+            for(WorkerConnection w : idleWorkers){
+                w.writer.send(DistributedProtocol.NO_TASK);
+            }
+            idleWorkers.clear();
+        }
+    }
+
+    /**
+     * Start accepting workers, in a background thread.
+     */
+    public void start(){
+        bounds.addListener(this);
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while(!closed){
+                    try {
+                        Socket socket = server.accept();
+                        WorkerConnection worker = new WorkerConnection(socket);
+                        Thread t = new Thread(worker, "genestacker-coordinator-" + socket.getRemoteSocketAddress());
+                        t.setDaemon(true);
+                        t.start();
+                    } catch (IOException ex){
+                        if(!closed){
+                            logger.warn("Failed to accept worker: {}", ex.getMessage());
+                        }
+                    }
+                }
+            }
+        }, "genestacker-coordinator");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        logger.info("Coordinating workers on {}:{} ({} task(s))", server.getInetAddress().getHostAddress(), getPort(), getNumRemainingTasks());
+    }
+
+    /**
+     * Broadcast the descriptor of a solution found by the local search to all workers, if it is a new bound.
+     */
+    @Override
+    public void localSolutionAdded(CrossingScheme solution, boolean newBound) {
+        if(newBound){
+            CrossingSchemeDescriptor bound = solution.getDescriptor();
+            for(WorkerConnection w : workers){
+                w.sendBound(bound);
+            }
+        }
+    }
+
+    /**
+     * Stop all workers and close the server socket.
+     *
+     * @throws IOException if the server socket can not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        bounds.removeListener(this);
+        server.close();
+        for(WorkerConnection w : workers){
+            w.stop();
+        }
+    }
+
+    /**
+     * Connection with a single worker. Messages from the worker are handled by the thread that runs this
+     * connection, while all messages to the worker are written by a separate writer thread.
+     */
+    private class WorkerConnection implements Runnable {
+
+        // socket
+        private final Socket socket;
+        // output stream
+        private final DataOutputStream out;
+        // writes queued messages to the worker (after authentication)
+        private final DistributedMessageWriter writer;
+        // task handed out to the worker and not yet completed (guarded by the lock on the task queue)
+        private List<String> task;
+
+        public WorkerConnection(Socket socket) throws IOException {
+            this.socket = socket;
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            writer = new DistributedMessageWriter(out, socket);
+        }
+
+        @Override
+        public void run() {
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                // authenticate worker (and prove own identity) before sending anything else
+                socket.setSoTimeout(HANDSHAKE_TIMEOUT);
+                int version = in.readInt();
+                if(version != DistributedProtocol.VERSION){
+                    throw new IOException("unsupported protocol version " + version);
+                }
+                byte[] workerChallenge = DistributedProtocol.readChallenge(in);
+                byte[] challenge = DistributedProtocol.createChallenge();
+                out.write(challenge);
+                out.write(DistributedProtocol.respond(token, DistributedProtocol.COORDINATOR_ROLE, workerChallenge));
+                out.flush();
+                DistributedProtocol.verifyResponse(in, token, DistributedProtocol.WORKER_ROLE, challenge);
+                socket.setSoTimeout(0);
+                // send input and all bounds known so far (bounds broadcast in the meantime are
+                // queued after the input, as the worker is only registered after queueing the input)
+                writer.start("genestacker-coordinator-writer-" + socket.getRemoteSocketAddress());
+                writer.sendInput(inputName, input);
+                workers.add(this);
+                for(CrossingSchemeDescriptor b : bounds.getBounds()){
+                    writer.sendBound(b);
+                }
+                logger.info("Worker {} connected", socket.getRemoteSocketAddress());
+                // handle requests
+                while(!closed){
+                    byte type = in.readByte();
+                    if(type == DistributedProtocol.READY){
+                        // previous task (if any) has been completed
+                        synchronized(tasks){
+                            if(task != null){
+                                task = null;
+                                numRunningTasks--;
+                            }
+                            idleWorkers.add(this);
+                            assignTasks();
+                        }
+                    } else if(type == DistributedProtocol.SOLUTION){
+                        CrossingSchemeDescriptor bound = DistributedProtocol.readDescriptor(in);
+                        receiveSolution(bound, DistributedProtocol.readBytes(in));
+                    } else {
+                        throw new IOException("unexpected message type " + type);
+                    }
+                }
+            } catch (EOFException ex){
+                if(!closed){
+                    logger.info("Worker {} disconnected", socket.getRemoteSocketAddress());
+                }
+            } catch (IOException ex){
+                if(!closed){
+                    logger.warn("Lost connection with worker {}: {}", socket.getRemoteSocketAddress(), ex.getMessage());
+                }
+            } finally {
+                workers.remove(this);
+                // hand out unfinished task again
+                synchronized(tasks){
+                    idleWorkers.remove(this);
+                    if(task != null){
+                        if(!closed){
+                            logger.warn("Task {} of worker {} is handed out again", task, socket.getRemoteSocketAddress());
+                        }
+                        tasks.addFirst(task);
+                        task = null;
+                        numRunningTasks--;
+                        assignTasks();
+                    }
+                }
+                writer.close();
+                if(!closed){
+                    closeQuietly();
+                }
+            }
+        }
+
+        /**
+         * Store a solution received from the worker and register its descriptor as a bound, which is forwarded
+         * to all other workers. The solution is stored before the bound is registered, so that the coordinator
+         * holds the solution of every bound used for pruning. Invalid solutions are ignored, and their
+         * descriptors are never registered.
+         */
+        private void receiveSolution(CrossingSchemeDescriptor bound, byte[] bytes){
+            List<CrossingSchemeRecord> received;
+            try {
+                received = new ParetoFrontierBinaryReader(bytes, "solution").getSchemes();
+                if(received.size() != 1
+                        || received.get(0).getNumGenerations() != bound.getNumGenerations()
+                        || received.get(0).getTotalPopulationSize() != bound.getTotalPopSize()){
+                    throw new BinaryFormatException("Solution does not match its descriptor.");
+                }
+            } catch (BinaryFormatException ex){
+                logger.warn("Ignoring invalid solution from worker {}: {}", socket.getRemoteSocketAddress(), ex.getMessage());
+                return;
+            }
+            synchronized(solutions){
+                solutions.addAll(received);
+            }
+            logger.debug("Received solution {} from worker {}", bound, socket.getRemoteSocketAddress());
+            if(bounds.registerRemote(bound)){
+                // forward to other workers
+                for(WorkerConnection w : workers){
+                    if(w != this){
+                        w.sendBound(bound);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Hand out the given task to the worker. Should be called while holding the lock on the task queue.
+         */
+        private void assign(List<String> task){
+            this.task = task;
+            numRunningTasks++;
+            writer.sendTask(task);
+            logger.info("Assigned task {} to worker {}", task, socket.getRemoteSocketAddress());
+        }
+
+        /**
+         * Queue a bound to be sent to the worker. Does not block.
+         */
+        public void sendBound(CrossingSchemeDescriptor bound){
+            writer.sendBound(bound);
+        }
+
+        /**
+         * Queue a stop message, after which the connection is closed. Does not block.
+         */
+        public void stop(){
+            writer.send(DistributedProtocol.STOP);
+            writer.close();
+        }
+
+        private void closeQuietly(){
+            try {
+                socket.close();
+            } catch (IOException ex){
+                // ignore
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,165 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.ugent.caagt.genestacker.search.CrossingSchemeDescriptor;
+
+/**
+ * Writes the messages sent over a single connection of a distributed search from a dedicated thread. Messages are
+ * encoded by the sending thread and queued, so that threads that send messages (e.g. a search thread reporting
+ * a new solution) never block on the connection. The output stream is flushed whenever the queue is empty. After
+ * the writer has been closed, all queued messages are still written before the given connection is closed.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+final class DistributedMessageWriter implements Runnable {
+
+    // logger
+    private Logger logger = LogManager.getLogger(DistributedMessageWriter.class);
+
+    // marks the end of the queue
+    private static final byte[] END = new byte[0];
+
+    // output stream
+    private final DataOutputStream out;
+    // closed after all messages have been written
+    private final Closeable connection;
+    // queued messages
+    private final BlockingQueue<byte[]> queue;
+
+    /**
+     * Create a writer for the given connection. The writer should be started in a separate thread.
+     *
+     * @param out output stream of the connection
+     * @param connection closed after all queued messages have been written, or when writing fails
+     */
+    DistributedMessageWriter(DataOutputStream out, Closeable connection){
+        this.out = out;
+        this.connection = connection;
+        queue = new LinkedBlockingQueue<>();
+    }
+
+    /**
+     * Start writing queued messages in a new daemon thread with the given name.
+     */
+    void start(String name){
+        Thread t = new Thread(this, name);
+        t.setDaemon(true);
+        t.start();
+    }
+
+    void send(byte type){
+        queue.add(new byte[]{type});
+    }
+
+    void sendInput(String name, byte[] input){
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream msg = new DataOutputStream(bytes);
+            msg.writeByte(DistributedProtocol.INPUT);
+            msg.writeUTF(name);
+            DistributedProtocol.writeBytes(msg, input);
+            queue.add(bytes.toByteArray());
+        } catch (IOException ex){
+            // not thrown by in-memory streams
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    void sendBound(CrossingSchemeDescriptor bound){
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream msg = new DataOutputStream(bytes);
+            msg.writeByte(DistributedProtocol.BOUND);
+            DistributedProtocol.writeDescriptor(msg, bound);
+            queue.add(bytes.toByteArray());
+        } catch (IOException ex){
+            // not thrown by in-memory streams
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    void sendSolution(CrossingSchemeDescriptor desc, byte[] solution){
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream msg = new DataOutputStream(bytes);
+            msg.writeByte(DistributedProtocol.SOLUTION);
+            DistributedProtocol.writeDescriptor(msg, desc);
+            DistributedProtocol.writeBytes(msg, solution);
+            queue.add(bytes.toByteArray());
+        } catch (IOException ex){
+            // not thrown by in-memory streams
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    void sendTask(List<String> task){
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream msg = new DataOutputStream(bytes);
+            msg.writeByte(DistributedProtocol.TASK);
+            DistributedProtocol.writeStrings(msg, task);
+            queue.add(bytes.toByteArray());
+        } catch (IOException ex){
+            // not thrown by in-memory streams
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Close the connection after all messages queued so far have been written. Does not block.
+     */
+    void close(){
+        queue.add(END);
+    }
+
+    @Override
+    public void run() {
+        try {
+            while(true){
+                byte[] msg = queue.take();
+                if(msg == END){
+                    break;
+                }
+                out.write(msg);
+                if(queue.isEmpty()){
+                    out.flush();
+                }
+            }
+            out.flush();
+        } catch (IOException ex){
+            // connection lost (reported by the reading side)
+            logger.debug("Failed to send message: {}", ex.getMessage());
+        } catch (InterruptedException ex){
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                connection.close();
+            } catch (IOException ex){
+                // ignore
+            }
+        }
+    }
+
+}
@@ -0,0 +1,177 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.ugent.caagt.genestacker.search.CrossingSchemeDescriptor;
+
+/**
+ * Messages exchanged between a {@link DistributedCoordinator} and its {@link DistributedWorker}s. Every message
+ * starts with a single byte that identifies its type, followed by the message content. Bounds are sent as
+ * compact, fixed size encodings of scheme descriptors (36 bytes). Workers never send bare bounds: each solution
+ * found by a worker is sent together with its descriptor, so that the coordinator holds every solution before
+ * its descriptor is used to prune any search.
+ * <p>
+ * When a worker connects, both sides prove that they know the shared token before any other message is
+ * exchanged: each side sends a random challenge and the other side responds with an HMAC of that challenge,
+ * keyed with the token, so that the token itself is never sent. The size of all variable length messages is
+ * limited, so that a peer can not cause arbitrarily large allocations.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+final class DistributedProtocol {
+
+    // protocol version, sent by workers when connecting
+    static final int VERSION = 4;
+
+    // size of authentication challenges and responses (bytes)
+    static final int CHALLENGE_SIZE = 32;
+    // maximum size of byte arrays (e.g. input file, solutions)
+    static final int MAX_BYTES = 256*1024*1024;
+    // maximum number of strings in a list (e.g. task arguments)
+    static final int MAX_STRINGS = 4096;
+
+    // roles included in authentication responses (a response of the coordinator can not be replayed by a worker)
+    static final byte COORDINATOR_ROLE = 1;
+    static final byte WORKER_ROLE = 2;
+
+    // random challenges
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    // coordinator to worker: input file (name and content)
+    static final byte INPUT = 1;
+    // coordinator to worker: task (list of arguments)
+    static final byte TASK = 2;
+    // coordinator to worker: no tasks left
+    static final byte NO_TASK = 3;
+    // coordinator to worker: stop immediately
+    static final byte STOP = 4;
+    // worker to coordinator: ready for next task
+    static final byte READY = 5;
+    // coordinator to worker: new bound
+    static final byte BOUND = 6;
+    // worker to coordinator: new solution (descriptor, followed by the solution in the binary result format)
+    static final byte SOLUTION = 7;
+
+    private DistributedProtocol(){
+    }
+
+    static void writeDescriptor(DataOutput out, CrossingSchemeDescriptor desc) throws IOException {
+        out.writeInt(desc.getNumGenerations());
+        out.writeInt(desc.getNumCrossings());
+        out.writeInt(desc.getMaxCrossingsWithPlant());
+        out.writeLong(desc.getMaxPopSizePerGeneration());
+        out.writeLong(desc.getTotalPopSize());
+        out.writeDouble(desc.getLinkagePhaseAmbiguity());
+        out.writeInt(desc.getNumTargetsFromNonUniformSeedLots());
+    }
+
+    static CrossingSchemeDescriptor readDescriptor(DataInput in) throws IOException {
+        int numGen = in.readInt();
+        int numCrossings = in.readInt();
+        int maxCrossingsWithPlant = in.readInt();
+        long maxPopSizePerGen = in.readLong();
+        long totalPopSize = in.readLong();
+        double lpa = in.readDouble();
+        int numTargetsFromNonUniformSeedLots = in.readInt();
+        return new CrossingSchemeDescriptor(numGen, numCrossings, maxCrossingsWithPlant, maxPopSizePerGen,
+                                            totalPopSize, lpa, numTargetsFromNonUniformSeedLots);
+    }
+
+    static void writeStrings(DataOutput out, List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for(String s : strings){
+            out.writeUTF(s);
+        }
+    }
+
+    static List<String> readStrings(DataInput in) throws IOException {
+        int n = in.readInt();
+        if(n < 0 || n > MAX_STRINGS){
+            throw new IOException("invalid number of strings " + n);
+        }
+        List<String> strings = new ArrayList<>(n);
+        for(int i=0; i<n; i++){
+            strings.add(in.readUTF());
+        }
+        return strings;
+    }
+
+    static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static byte[] readBytes(DataInput in) throws IOException {
+        int length = in.readInt();
+        if(length < 0 || length > MAX_BYTES){
+            throw new IOException("invalid message size " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    static byte[] createChallenge(){
+        byte[] challenge = new byte[CHALLENGE_SIZE];
+        RANDOM.nextBytes(challenge);
+        return challenge;
+    }
+
+    static byte[] readChallenge(DataInput in) throws IOException {
+        byte[] challenge = new byte[CHALLENGE_SIZE];
+        in.readFully(challenge);
+        return challenge;
+    }
+
+    /**
+     * Compute the response to the given challenge, i.e. the HMAC of the role and challenge keyed with the token.
+     */
+    static byte[] respond(String token, byte role, byte[] challenge){
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(token.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            mac.update(role);
+            return mac.doFinal(challenge);
+        } catch (GeneralSecurityException ex){
+            // HmacSHA256 is supported by every Java platform
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Read a response to the given challenge and check that it has been computed with the same token.
+     *
+     * @throws IOException if the response is invalid
+     */
+    static void verifyResponse(DataInput in, String token, byte role, byte[] challenge) throws IOException {
+        byte[] response = new byte[CHALLENGE_SIZE];
+        in.readFully(response);
+        if(!MessageDigest.isEqual(response, respond(token, role, challenge))){
+            throw new IOException("authentication failed (invalid token)");
+        }
+    }
+
+}
@@ -0,0 +1,245 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.ugent.caagt.genestacker.search.CrossingScheme;
+import org.ugent.caagt.genestacker.search.bb.SharedBounds;
+
+/**
+ * Worker of a distributed search, which connects to a {@link DistributedCoordinator} over TCP. After receiving
+ * the input file, the worker repeatedly requests a task and runs it with the given {@link TaskRunner}, until no
+ * tasks are left or the coordinator stops the worker. All bounds received from the coordinator are registered
+ * as remote bounds in the given shared bounds. Every solution found by the worker's searches is sent to the
+ * coordinator as soon as it is registered, together with its descriptor; the coordinator merges the solution
+ * into its results and forwards the descriptor to all other nodes as a bound. As solutions are not held back
+ * until a task ends, a worker may be stopped at any time without losing a solution that has been used as a
+ * bound by another node. Tasks are only accepted from a coordinator that knows the same token as the worker
+ * (see {@link DistributedProtocol}).
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class DistributedWorker implements SharedBounds.Listener {
+
+    /**
+     * Runs the tasks received from the coordinator.
+     */
+    public interface TaskRunner {
+
+        /**
+         * Run the given task, using the given shared bounds. All solutions found by the task should be registered
+         * as local bounds (see {@link SharedBounds#registerLocal(CrossingScheme)}), through which they are sent to
+         * the coordinator.
+         *
+         * @param task list of arguments describing the task
+         * @param inputFile local copy of the input file
+         * @param bounds shared bounds
+         * @throws Exception if the task fails
+         */
+        public void run(List<String> task, File inputFile, SharedBounds bounds) throws Exception;
+
+        /**
+         * Called when the coordinator has stopped the worker, possibly while a task is running. The task can be
+         * abandoned immediately, as its solutions have already been sent when they were found.
+         */
+        public void stop();
+
+    }
+
+    // logger
+    private Logger logger = LogManager.getLogger(DistributedWorker.class);
+
+    // address of coordinator
+    private final String host;
+    private final int port;
+
+    // token shared with the coordinator
+    private final String token;
+
+    // shared bounds
+    private final SharedBounds bounds;
+
+    // task runner
+    private final TaskRunner runner;
+
+    // writes messages to the coordinator (only while connected)
+    private DistributedMessageWriter writer;
+
+    // number of completed tasks
+    private int numCompletedTasks;
+
+    // set when all tasks have been run, after which the connection is closed
+    private volatile boolean finished;
+
+    /**
+     * Create a worker that connects to the coordinator at the given address.
+     *
+     * @param host host of the coordinator
+     * @param port port of the coordinator
+     * @param token token shared with the coordinator (not empty)
+     * @param bounds shared bounds
+     * @param runner runs the received tasks
+     */
+    public DistributedWorker(String host, int port, String token, SharedBounds bounds, TaskRunner runner){
+        if(token == null || token.isEmpty()){
+            throw new IllegalArgumentException("Token should not be empty.");
+        }
+        this.host = host;
+        this.port = port;
+        this.token = token;
+        this.bounds = bounds;
+        this.runner = runner;
+    }
+
+    public int getNumCompletedTasks(){
+        return numCompletedTasks;
+    }
+
+    /**
+     * Connect to the coordinator and run tasks until no tasks are left or the worker is stopped.
+     *
+     * @throws IOException if the connection with the coordinator fails
+     */
+    public void run() throws IOException {
+        Path dir = Files.createTempDirectory("genestacker-worker");
+        File inputFile = null;
+        try (Socket socket = new Socket(host, port)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            // mutual authentication: tasks are only accepted from a coordinator that knows the token
+            byte[] challenge = DistributedProtocol.createChallenge();
+            out.writeInt(DistributedProtocol.VERSION);
+            out.write(challenge);
+            out.flush();
+            byte[] coordinatorChallenge = DistributedProtocol.readChallenge(in);
+            DistributedProtocol.verifyResponse(in, token, DistributedProtocol.COORDINATOR_ROLE, challenge);
+            out.write(DistributedProtocol.respond(token, DistributedProtocol.WORKER_ROLE, coordinatorChallenge));
+            out.flush();
+            // receive input
+            if(in.readByte() != DistributedProtocol.INPUT){
+                throw new IOException("Input expected from coordinator.");
+            }
+            inputFile = dir.resolve(new File(in.readUTF()).getName()).toFile();
+            Files.write(inputFile.toPath(), DistributedProtocol.readBytes(in));
+            logger.info("Connected to coordinator {}:{}", host, port);
+            // send messages from a separate thread so that searches never block on the connection
+            writer = new DistributedMessageWriter(out, socket);
+            writer.start("genestacker-worker-writer");
+            // handle messages from coordinator in background
+            final BlockingQueue<List<String>> tasks = new LinkedBlockingQueue<>();
+            final List<String> noTask = Collections.emptyList();
+            Thread reader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while(true){
+                            byte type = in.readByte();
+                            if(type == DistributedProtocol.BOUND){
+                                bounds.registerRemote(DistributedProtocol.readDescriptor(in));
+                            } else if(type == DistributedProtocol.TASK){
+                                tasks.add(DistributedProtocol.readStrings(in));
+                            } else if(type == DistributedProtocol.NO_TASK){
+                                tasks.add(noTask);
+                            } else if(type == DistributedProtocol.STOP){
+                                logger.info("Stopped by coordinator");
+                                tasks.add(noTask);
+                                runner.stop();
+                                return;
+                            } else {
+                                throw new IOException("unexpected message type " + type);
+                            }
+                        }
+                    } catch (IOException ex){
+                        if(!finished){
+                            logger.warn("Lost connection with coordinator: {}", ex.getMessage());
+                            tasks.add(noTask);
+                            runner.stop();
+                        }
+                    }
+                }
+            }, "genestacker-worker");
+            reader.setDaemon(true);
+            reader.start();
+            // send local solutions to coordinator
+            bounds.addListener(this);
+            try {
+                // request and run tasks
+                while(true){
+                    writer.send(DistributedProtocol.READY);
+                    List<String> task = tasks.take();
+                    if(task == noTask){
+                        break;
+                    }
+                    logger.info("Running task {} ...", task);
+                    try {
+                        runner.run(task, inputFile, bounds);
+                    } catch (Exception ex){
+                        logger.error("Task {} failed", task, ex);
+                    }
+                    numCompletedTasks++;
+                }
+            } catch (InterruptedException ex){
+                Thread.currentThread().interrupt();
+            } finally {
+                finished = true;
+                bounds.removeListener(this);
+                writer.close();
+            }
+        } finally {
+            if(inputFile != null){
+                Files.deleteIfExists(inputFile.toPath());
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    /**
+     * Queue a solution found by a local search to be sent to the coordinator, in the binary result format
+     * (see {@link ParetoFrontierBinaryWriter}). Also sent if its descriptor is not a new bound (e.g. a different
+     * solution with the same descriptor as a known bound), as the solution may still belong to the final Pareto
+     * frontier. Does not block.
+     */
+    @Override
+    public void localSolutionAdded(CrossingScheme solution, boolean newBound) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            new ParetoFrontierBinaryWriter().write(Collections.singletonList(CrossingSchemeRecord.of(solution)), bytes);
+        } catch (IOException ex){
+            // not thrown by in-memory streams
+            throw new IllegalStateException(ex);
+        }
+        if(bytes.size() > DistributedProtocol.MAX_BYTES){
+            logger.warn("Solution is too large to be sent ({} bytes)", bytes.size());
+        } else {
+            writer.sendSolution(solution.getDescriptor(), bytes.toByteArray());
+        }
+    }
+
+}
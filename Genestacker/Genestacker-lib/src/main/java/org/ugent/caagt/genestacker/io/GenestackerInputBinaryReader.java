@@ -0,0 +1,99 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.ugent.caagt.genestacker.GeneticMap;
+import org.ugent.caagt.genestacker.Genotype;
+import org.ugent.caagt.genestacker.KosambiMapFunction;
+import org.ugent.caagt.genestacker.Plant;
+import org.ugent.caagt.genestacker.exceptions.BinaryFormatException;
+import org.ugent.caagt.genestacker.exceptions.GenotypeException;
+
+/**
+ * Reads Gene Stacker input from a file in the binary input format (see {@link GenestackerInputBinaryWriter}).
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class GenestackerInputBinaryReader {
+
+    /**
+     * Check whether the given file is in the binary input format.
+     *
+     * @param file input file
+     * @return <code>true</code> if the file starts with the magic number of the binary input format
+     * @throws IOException if any IO errors occur
+     */
+    public static boolean isBinaryInput(File file) throws IOException {
+        return BinaryFormat.hasMagic(file, BinaryFormat.INPUT_MAGIC);
+    }
+
+    public GenestackerInput read(File inputFile) throws IOException, BinaryFormatException {
+        return read(inputFile, false);
+    }
+
+    /**
+     * Read the given binary file and return an instance of GenestackerInput.
+     *
+     * @param inputFile binary file containing the input
+     * @param useKosambiMap indicates whether to use the Kosambi mapping function
+     *                      instead of the default Haldane map to convert distances
+     *                      to crossover rates
+     * @return Gene Stacker input
+     * @throws IOException if any IO errors occur
+     * @throws BinaryFormatException if the file is not in the binary input format or contains invalid input
+     */
+    public GenestackerInput read(File inputFile, boolean useKosambiMap) throws IOException, BinaryFormatException {
+        ByteBuffer buf = BinaryFormat.map(inputFile);
+        PackedGenotypeCodec codec = BinaryFormat.readHeader(buf, BinaryFormat.INPUT_MAGIC, inputFile.getName());
+        try {
+            // genetic map
+            int numChroms = codec.getNumLoci().length;
+            double[][] dist = new double[numChroms][];
+            for(int c=0; c<numChroms; c++){
+                int numDist = buf.getInt();
+                if(numDist < 0 || 8L*numDist > buf.remaining()){
+                    throw new BufferUnderflowException();
+                }
+                dist[c] = new double[numDist];
+                for(int d=0; d<dist[c].length; d++){
+                    dist[c][d] = buf.getDouble();
+                }
+            }
+            GeneticMap map = useKosambiMap ? new GeneticMap(dist, new KosambiMapFunction()) : new GeneticMap(dist);
+            // ideotype
+            Genotype ideotype = codec.decode(buf);
+            // initial plants
+            int numPlants = buf.getInt();
+            if(numPlants <= 0 || (long) numPlants * codec.getNumBytes() > buf.remaining()){
+                throw new BinaryFormatException();
+            }
+            List<Plant> plants = new ArrayList<>(numPlants);
+            for(int i=0; i<numPlants; i++){
+                plants.add(new Plant(codec.decode(buf)));
+            }
+            return new GenestackerInput(plants, ideotype, map);
+        } catch (BufferUnderflowException | IllegalArgumentException | GenotypeException | BinaryFormatException ex) {
+            String msg = ex.getMessage() == null ? "unexpected end of file or invalid value" : ex.getMessage();
+            throw new BinaryFormatException("Binary file '" + inputFile.getName() + "' contains invalid input:\n" + msg);
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import org.ugent.caagt.genestacker.Plant;
+
+/**
+ * Writes Gene Stacker input in the binary input format. The file contains the header (see {@link BinaryFormat}),
+ * the genetic map distances of each chromosome, the packed ideotype, the number of initial plants and the
+ * packed initial plants, so that every plant can be located directly from its index.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class GenestackerInputBinaryWriter {
+
+    /**
+     * Write the given input to a binary file. The genetic map function is not stored; it is specified
+     * when reading the file, as for XML input.
+     *
+     * @param input Gene Stacker input
+     * @param outputFile output file
+     * @throws IOException if any IO errors occur
+     */
+    public void write(GenestackerInput input, File outputFile) throws IOException {
+        PackedGenotypeCodec codec = PackedGenotypeCodec.forGenotype(input.getIdeotype());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outputFile)))) {
+            BinaryFormat.writeHeader(out, BinaryFormat.INPUT_MAGIC, codec);
+            // genetic map
+            double[][] dist = input.getGeneticMap().getDistances();
+            for(int c=0; c<dist.length; c++){
+                out.writeInt(dist[c].length);
+                for(int d=0; d<dist[c].length; d++){
+                    out.writeDouble(dist[c][d]);
+                }
+            }
+            // ideotype
+            out.write(codec.encode(input.getIdeotype()));
+            // initial plants
+            List<Plant> plants = input.getInitialPlants();
+            out.writeInt(plants.size());
+            for(Plant p : plants){
+                out.write(codec.encode(p.getGenotype()));
+            }
+        }
+    }
+
+}
@@ -18,35 +18,51 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.XMLConstants;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.Source;
-import javax.xml.transform.stream.StreamSource;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
-import javax.xml.validation.Validator;
 import org.ugent.caagt.genestacker.DiploidChromosome;
 import org.ugent.caagt.genestacker.GeneticMap;
 import org.ugent.caagt.genestacker.Genotype;
 import org.ugent.caagt.genestacker.Haplotype;
 import org.ugent.caagt.genestacker.KosambiMapFunction;
 import org.ugent.caagt.genestacker.Plant;
+import org.ugent.caagt.genestacker.exceptions.GenestackerException;
 import org.ugent.caagt.genestacker.exceptions.GenotypeException;
 import org.ugent.caagt.genestacker.exceptions.XMLFormatException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
+import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
 
 /**
- * Responsible of parsing XML files containing the input for Gene Stacker.
+ * Responsible of parsing XML files containing the input for Gene Stacker. The file is read in a single
+ * streaming pass, in which it is validated against the XML schema (compiled only once and shared by all
+ * parsers) while plants, ideotype and genetic map are read, without building an intermediate document.
  * 
  * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
  */
 public class GenestackerInputParser {
 
+    // compiled XML schema (thread safe, shared by all parsers)
+    private static Schema schema;
+    
+    private static synchronized Schema getSchema() throws SAXException {
+        if(schema == null){
+            SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            URL schemaURL = GenestackerInputParser.class.getResource("/genestacker_input.xsd");
+            schema = schemaFactory.newSchema(schemaURL);
+        }
+        return schema;
+    }
+    
     public GenestackerInput parse(File xmlFile) throws IOException, XMLFormatException {
         return parse(xmlFile, false);
     }
@@ -67,169 +83,227 @@ public class GenestackerInputParser {
         
         try {
             
-            // validate XML against schema
-            SchemaFactory factory = SchemaFactory.newInstance("http://www.w3.org/2001/XMLSchema");
-            URL schemaURL = GenestackerInputParser.class.getResource("/genestacker_input.xsd");
-            Schema schema = factory.newSchema(schemaURL);
-            Validator validator = schema.newValidator();
-            Source source = new StreamSource(xmlFile);
-            validator.validate(source);
-            
-            // create DOM document
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            DocumentBuilder db = dbf.newDocumentBuilder();
-            Document doc = db.parse(xmlFile);
+            // validating parser
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.setSchema(getSchema());
             
-            // initialize initial plant list
-            List<Plant> plants = new ArrayList<>();
-            
-            // parse initial plants
-            NodeList plantEls = doc.getDocumentElement().getElementsByTagName("plant");
-            if(plantEls != null && plantEls.getLength() > 0){
-                for(int i=0; i<plantEls.getLength(); i++){
-                    Element plantEl = (Element) plantEls.item(i);
-                    Genotype g = parsePlantGenotype(plantEl);
-                    Plant p = new Plant(g);
-                    plants.add(p);
-                }
-            } else {
-                throw new XMLFormatException();
-            }
-            
-            // parse ideotype
-            Genotype ideotype;
-            NodeList ideotypeEls = doc.getDocumentElement().getElementsByTagName("ideotype");
-            if(ideotypeEls != null && ideotypeEls.getLength() == 1){
-                Element ideotypeEl = (Element) ideotypeEls.item(0);
-                ideotype = parsePlantGenotype(ideotypeEl);
-            } else {
-                throw new XMLFormatException();
-            }
-            
-            // parse genetic map
-            GeneticMap map;
-            NodeList geneticMapEls = doc.getDocumentElement().getElementsByTagName("genetic_map");
-            if(geneticMapEls != null && geneticMapEls.getLength() == 1){
-                Element geneticMapEl = (Element) geneticMapEls.item(0);
-                map = parseGeneticMap(geneticMapEl, useKosambiMap);
-            } else {
-                throw new XMLFormatException();
-            }
+            // validate and parse in a single pass
+            InputHandler handler = new InputHandler(useKosambiMap);
+            factory.newSAXParser().parse(xmlFile, handler);
             
             // return GenestackerInput instance
-            return new GenestackerInput(plants, ideotype, map);
+            return handler.getInput();
             
-        } catch (ParserConfigurationException | SAXException | XMLFormatException | GenotypeException ex) {
+        } catch (SAXException | XMLFormatException ex) {
             throw new XMLFormatException("XML file '" + xmlFile.getName() + "' contains invalid input:\n" + ex.getMessage());
+        } catch (ParserConfigurationException ex){
+            throw new IOException("Failed to create XML parser", ex);
         }
         
     }
     
-    private Genotype parsePlantGenotype(Element plantEl) throws XMLFormatException, GenotypeException {
-        // parse genotype
-        NodeList genotypeEls = plantEl.getElementsByTagName("genotype");
-        if(genotypeEls != null && genotypeEls.getLength() == 1){
-            Element genotypeEl = (Element) genotypeEls.item(0);
-            // init chrom list
-            List<DiploidChromosome> chroms = new ArrayList<>();
-            // parse chromosomes
-            NodeList chromEls = genotypeEl.getElementsByTagName("chromosome");
-            if(chromEls != null && chromEls.getLength() > 0){
-                for(int i=0; i<chromEls.getLength(); i++){
-                    Element chromEl = (Element) chromEls.item(i);
-                    // get haplotypes
-                    NodeList homEls = chromEl.getElementsByTagName("haplotype");
-                    if(homEls != null && homEls.getLength() == 2){
-                        Element homEl1 = (Element) homEls.item(0);
-                        Element homEl2 = (Element) homEls.item(1);
-                        Haplotype hom1 = parseHaplotype(homEl1);
-                        Haplotype hom2 = parseHaplotype(homEl2);
-                        // create diploid chromosomes
-                        DiploidChromosome chrom = new DiploidChromosome(hom1, hom2);
-                        chroms.add(chrom);
-                    } else {
-                        throw new XMLFormatException();
-                    }
+    /**
+     * Parse the genotype of a plant element, of which the start tag has just been read. Returns after
+     * reading the corresponding end tag. Also used to parse genotypes contained in crossing scheme files.
+     */
+    static Genotype parsePlantGenotype(XMLStreamReader xml, String plantElement) throws XMLStreamException, XMLFormatException, GenotypeException {
+        // init chrom list
+        List<DiploidChromosome> chroms = new ArrayList<>();
+        // haplotypes of current chromosome
+        Haplotype[] haps = new Haplotype[2];
+        int numHaps = 0;
+        int event = xml.next();
+        while(!(event == XMLStreamConstants.END_ELEMENT && xml.getLocalName().equals(plantElement))){
+            if(event == XMLStreamConstants.START_ELEMENT){
+                switch(xml.getLocalName()){
+                    case "chromosome":
+                        numHaps = 0;
+                        break;
+                    case "haplotype":
+                        if(numHaps == 2){
+                            throw new XMLFormatException();
+                        }
+                        haps[numHaps++] = parseHaplotype(xml.getAttributeValue(null, "targets"));
+                        break;
                 }
-            } else {
-                throw new XMLFormatException();
+            } else if(event == XMLStreamConstants.END_ELEMENT && xml.getLocalName().equals("chromosome")){
+                // create diploid chromosome
+                if(numHaps != 2){
+                    throw new XMLFormatException();
+                }
+                chroms.add(new DiploidChromosome(haps[0], haps[1]));
             }
-            // create and return genotype
-            Genotype g = new Genotype(chroms);
-            return g;
-        } else {
+            event = xml.next();
+        }
+        if(chroms.isEmpty()){
             throw new XMLFormatException();
         }
+        // create and return genotype
+        return new Genotype(chroms);
     }
     
-    private Haplotype parseHaplotype(Element hapEl) throws XMLFormatException, GenotypeException {
-        // get targets attribute
-        String targetString = hapEl.getAttribute("targets");
-        boolean[] targets = new boolean[targetString.length()];
+    private static Haplotype parseHaplotype(String targetString) throws XMLFormatException, GenotypeException {
         // parse targets
-        if(targetString != null && targetString.length()>0){
-            for(int i=0; i<targetString.length(); i++){
-                char c = targetString.charAt(i);
-                boolean targetPresent;
-                switch(c){
-                    case '0':   targetPresent = false;
-                                break;
-                    case '1':   targetPresent = true;
-                                break;
-                    default:    throw new XMLFormatException();
-                }
-                targets[i] = targetPresent;
-            }
-        } else {
+        if(targetString == null || targetString.length() == 0){
             throw new XMLFormatException();
         }
+        boolean[] targets = new boolean[targetString.length()];
+        for(int i=0; i<targetString.length(); i++){
+            switch(targetString.charAt(i)){
+                case '0':   targets[i] = false;
+                            break;
+                case '1':   targets[i] = true;
+                            break;
+                default:    throw new XMLFormatException();
+            }
+        }
         // create and return haplotype
-        Haplotype hom = new Haplotype(targets);
-        return hom;
+        return new Haplotype(targets);
     }
     
-    private GeneticMap parseGeneticMap(Element geneticMapEl, boolean useKosambiMap) throws XMLFormatException {
-        List<List<Double>> distancesPerChrom = new ArrayList<>();
-        // get distances per chromosome
-        NodeList distOnChromEls = geneticMapEl.getElementsByTagName("distances_on_chromosome");
-        if(distOnChromEls != null && distOnChromEls.getLength() > 0){
-            for(int i=0; i<distOnChromEls.getLength(); i++){
-                Element distOnChromEl = (Element) distOnChromEls.item(i);
-                // parse distances
-                NodeList distEls = distOnChromEl.getElementsByTagName("dist");
-                if(distEls != null && distEls.getLength() > 0){
-                    List<Double> distances = new ArrayList<>();
-                    for(int j=0; j<distEls.getLength(); j++){
-                        Element distEl = (Element) distEls.item(j);
-                        double dist = Double.parseDouble(distEl.getAttribute("cM"));
-                        distances.add(dist);
-                    }
-                    distancesPerChrom.add(distances);
-                } else {
-                    // add empty dist list (pnly one target on this chromosome)
-                    distancesPerChrom.add(new ArrayList<Double>());
+    /**
+     * Builds plants, ideotype and genetic map from the SAX events of a validating parser. Validation errors
+     * abort parsing; invalid content that is not covered by the schema is reported in the same way.
+     */
+    private static class InputHandler extends DefaultHandler {
+        
+        // use Kosambi instead of Haldane map function
+        private final boolean useKosambiMap;
+        
+        // parsed input
+        private final List<Plant> plants;
+        private Genotype ideotype;
+        private GeneticMap map;
+        private int numIdeotypes, numMaps;
+        
+        // chromosomes of current genotype
+        private List<DiploidChromosome> chroms;
+        // haplotypes of current chromosome
+        private final Haplotype[] haps;
+        private int numHaps;
+        
+        // distances per chromosome of genetic map
+        private List<double[]> distancesPerChrom;
+        // distances on current chromosome
+        private double[] distances;
+        private int numDistances;
+        
+        public InputHandler(boolean useKosambiMap){
+            this.useKosambiMap = useKosambiMap;
+            plants = new ArrayList<>();
+            haps = new Haplotype[2];
+            distances = new double[16];
+        }
+        
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            try {
+                switch(localName){
+                    case "plant":
+                    case "ideotype":
+                        chroms = new ArrayList<>();
+                        break;
+                    case "chromosome":
+                        numHaps = 0;
+                        break;
+                    case "haplotype":
+                        if(chroms == null || numHaps == 2){
+                            throw new XMLFormatException();
+                        }
+                        haps[numHaps++] = parseHaplotype(attributes.getValue("targets"));
+                        break;
+                    case "genetic_map":
+                        distancesPerChrom = new ArrayList<>();
+                        break;
+                    case "distances_on_chromosome":
+                        numDistances = 0;
+                        break;
+                    case "dist":
+                        String cM = attributes.getValue("cM");
+                        if(cM == null){
+                            throw new XMLFormatException();
+                        }
+                        if(numDistances == distances.length){
+                            distances = Arrays.copyOf(distances, 2*distances.length);
+                        }
+                        distances[numDistances++] = Double.parseDouble(cM);
+                        break;
                 }
+            } catch (GenestackerException | NumberFormatException ex){
+                throw new SAXException(ex.getMessage(), ex);
+            }
+        }
+        
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            try {
+                switch(localName){
+                    case "chromosome":
+                        // create diploid chromosome
+                        if(numHaps != 2){
+                            throw new XMLFormatException();
+                        }
+                        chroms.add(new DiploidChromosome(haps[0], haps[1]));
+                        break;
+                    case "plant":
+                        // store initial plant
+                        plants.add(new Plant(createGenotype()));
+                        break;
+                    case "ideotype":
+                        ideotype = createGenotype();
+                        numIdeotypes++;
+                        break;
+                    case "distances_on_chromosome":
+                        // store distances (empty if only one target on this chromosome)
+                        distancesPerChrom.add(Arrays.copyOf(distances, numDistances));
+                        break;
+                    case "genetic_map":
+                        map = createGeneticMap();
+                        numMaps++;
+                        break;
+                }
+            } catch (GenestackerException ex){
+                throw new SAXException(ex.getMessage(), ex);
             }
-        } else {
-            throw new XMLFormatException();
         }
-        // convert to 2D array
-        double[][] distArray = new double[distancesPerChrom.size()][];
-        for(int i=0; i<distancesPerChrom.size(); i++){
-            List<Double> distancesOnChrom = distancesPerChrom.get(i);
-            distArray[i]  = new double[distancesOnChrom.size()];
-            for(int j=0; j<distancesOnChrom.size(); j++){
-                distArray[i][j] = distancesOnChrom.get(j);
+        
+        private Genotype createGenotype() throws XMLFormatException, GenotypeException {
+            if(chroms.isEmpty()){
+                throw new XMLFormatException();
+            }
+            Genotype g = new Genotype(chroms);
+            chroms = null;
+            return g;
+        }
+        
+        private GeneticMap createGeneticMap() throws XMLFormatException {
+            if(distancesPerChrom.isEmpty()){
+                throw new XMLFormatException();
             }
+            double[][] distArray = distancesPerChrom.toArray(new double[distancesPerChrom.size()][]);
+            if(useKosambiMap){
+                // Kosambi map function
+                return new GeneticMap(distArray, new KosambiMapFunction());
+            } else {
+                // default map function (Haldane)
+                return new GeneticMap(distArray);
+            }
+        }
+        
+        @Override
+        public void error(SAXParseException ex) throws SAXException {
+            // schema violation
+            throw ex;
         }
         
-        if(useKosambiMap){
-            // Kosambi map function
-            return new GeneticMap(distArray, new KosambiMapFunction());
-        } else {
-            // default map function (Haldane)
-            return new GeneticMap(distArray);
+        public GenestackerInput getInput() throws XMLFormatException {
+            if(plants.isEmpty() || numIdeotypes != 1 || numMaps != 1){
+                throw new XMLFormatException();
+            }
+            return new GenestackerInput(plants, ideotype, map);
         }
+        
     }
     
 }
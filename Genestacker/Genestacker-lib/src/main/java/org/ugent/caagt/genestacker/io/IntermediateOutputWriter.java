@@ -0,0 +1,235 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.commons.compress.archivers.ArchiveException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.ugent.caagt.genestacker.exceptions.GenestackerException;
+import org.ugent.caagt.genestacker.search.CrossingScheme;
+import org.ugent.caagt.genestacker.search.ParetoFrontier;
+
+/**
+ * Writes intermediate ZIP packages from a background thread, so that the search never waits for output to be
+ * written. When the frontier is updated, only a snapshot of its schemes is taken on the calling thread. Bursts of
+ * updates are coalesced: while a package is being written, only the most recent snapshot is retained and written
+ * next. Output files of schemes that were already contained in the previous package are reused instead of being
+ * created again (in particular, Graphviz is not run again for these schemes). Each package is first written to
+ * a temporary file which is then moved to the output file, so that the output file is always a complete package.
+ * When closed, pending output is completed within a bounded amount of time, after which it is abandoned.
+ * 
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class IntermediateOutputWriter implements Closeable {
+    
+    // logger
+    private Logger logger = LogManager.getLogger(IntermediateOutputWriter.class);
+    
+    // maximum time (in seconds) to wait for pending output when closing
+    private static final long CLOSE_TIMEOUT = 60;
+    
+    // output file and name of folder inside ZIP
+    private final File outputFile;
+    private final String inZIPFolder;
+    // graph file format
+    private final GraphFileFormat format;
+    // writers
+    private final ZIPWriter zipWriter;
+    private final CrossingSchemeGraphWriter graphWriter;
+    private final CrossingSchemeXMLWriter xmlWriter;
+    
+    // background thread
+    private final ExecutorService executor;
+    // thread pool in which diagrams are rendered
+    private final ExecutorService renderPool;
+    // most recent snapshot which has not yet been written
+    private final AtomicReference<Map<Integer, Set<CrossingScheme>>> pending;
+    // set when a write task has been submitted that has not yet completed
+    private final AtomicBoolean scheduled;
+    
+    // output files of schemes in the last written package (background thread only)
+    private Map<CrossingScheme, ZIPWriter.SchemeFiles> rendered;
+    
+    /**
+     * Create an intermediate output writer.
+     * 
+     * @param outputFile output file name (extension ".zip" is appended if not already contained in the file name)
+     * @param format graph file format
+     * @param colorScheme graph color scheme
+     * @throws GenestackerException if any problems occur with the Gene Stacker config file
+     */
+    public IntermediateOutputWriter(String outputFile, GraphFileFormat format, GraphColorScheme colorScheme) throws GenestackerException{
+        this(outputFile, format, colorScheme, new ZIPWriter());
+    }
+    
+    /**
+     * Create an intermediate output writer that writes packages with the given ZIP writer.
+     * 
+     * @param outputFile output file name (extension ".zip" is appended if not already contained in the file name)
+     * @param format graph file format
+     * @param colorScheme graph color scheme
+     * @param zipWriter ZIP writer used to render schemes and write packages
+     * @throws GenestackerException if any problems occur with the Gene Stacker config file
+     */
+    IntermediateOutputWriter(String outputFile, GraphFileFormat format, GraphColorScheme colorScheme,
+                             ZIPWriter zipWriter) throws GenestackerException{
+        String fileName = ZIPWriter.formatOutputFile(outputFile);
+        this.outputFile = new File(fileName);
+        inZIPFolder = ZIPWriter.getInZIPFolder(fileName);
+        this.format = format;
+        this.zipWriter = zipWriter;
+        graphWriter = new CrossingSchemeGraphWriter(format, colorScheme);
+        xmlWriter = new CrossingSchemeXMLWriter();
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "genestacker-intermediate-output");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        renderPool = zipWriter.createRenderPool();
+        pending = new AtomicReference<>();
+        scheduled = new AtomicBoolean(false);
+        rendered = new HashMap<>();
+    }
+    
+    /**
+     * Enable or disable rendering of diagrams (enabled by default); should be set before the first update.
+     * 
+     * @param renderDiagrams <code>true</code> if diagrams should be rendered
+     */
+    public void setRenderDiagrams(boolean renderDiagrams){
+        zipWriter.setRenderDiagrams(renderDiagrams);
+    }
+    
+    /**
+     * Schedule an update of the intermediate output file with the schemes currently contained in the given frontier.
+     * Returns immediately. The frontier should not be modified concurrently with this call.
+     * 
+     * @param frontier current Pareto frontier
+     */
+    public void update(ParetoFrontier frontier){
+        // snapshot (new map and sets)
+        pending.set(frontier.getSchemes());
+        if(scheduled.compareAndSet(false, true)){
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    writePending();
+                }
+            });
+        }
+    }
+    
+    /**
+     * Write the pending snapshot(s), until no more snapshots are pending (background thread only).
+     */
+    private void writePending(){
+        while(!Thread.currentThread().isInterrupted()){
+            Map<Integer, Set<CrossingScheme>> schemes = pending.getAndSet(null);
+            if(schemes == null){
+                scheduled.set(false);
+                // recheck: snapshot may have been set after getAndSet and before clearing the flag
+                if(pending.get() == null || !scheduled.compareAndSet(false, true)){
+                    return;
+                }
+            } else {
+                try {
+                    write(schemes);
+                } catch (IOException | ArchiveException | RuntimeException ex){
+                    logger.warn("Failed to write intermediate output file {}: {}", outputFile, ex.getMessage());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Write a package containing the given schemes, reusing the output files of previously written schemes.
+     */
+    private void write(Map<Integer, Set<CrossingScheme>> schemes) throws IOException, ArchiveException {
+        Map<CrossingScheme, ZIPWriter.SchemeFiles> newRendered = new HashMap<>();
+        List<ZIPWriter.SchemeFiles> files = new ArrayList<>();
+        int reused = 0;
+        for(Map.Entry<Integer, Set<CrossingScheme>> gen : schemes.entrySet()){
+            for(CrossingScheme s : gen.getValue()){
+                ZIPWriter.SchemeFiles f = rendered.get(s);
+                if(f == null){
+                    f = zipWriter.render(s, graphWriter, xmlWriter, renderPool);
+                } else {
+                    reused++;
+                }
+                newRendered.put(s, f);
+                files.add(f);
+            }
+        }
+        rendered = newRendered;
+        // write to temporary file in same directory and move to output file
+        Path out = outputFile.getAbsoluteFile().toPath();
+        Path tmp = Files.createTempFile(out.getParent(), out.getFileName().toString(), ".tmp");
+        try {
+            zipWriter.writeZIP(files, format, tmp.toFile(), inZIPFolder);
+            try {
+                Files.move(tmp, out, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex){
+                Files.move(tmp, out, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        logger.info("Updated intermediate output file {} ({} scheme(s), {} reused).", outputFile, files.size(), reused);
+    }
+    
+    /**
+     * Wait until all pending updates have been written and stop the background thread. If the pending updates
+     * are not completed within a bounded amount of time, or if the calling thread is interrupted, they are
+     * abandoned and the last completely written package is retained.
+     */
+    @Override
+    public void close(){
+        executor.shutdown();
+        try {
+            if(!executor.awaitTermination(CLOSE_TIMEOUT, TimeUnit.SECONDS)){
+                logger.warn("Intermediate output file {} not updated within {} seconds, pending update abandoned.",
+                            outputFile, CLOSE_TIMEOUT);
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException ex){
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        } finally {
+            renderPool.shutdownNow();
+        }
+    }
+    
+}
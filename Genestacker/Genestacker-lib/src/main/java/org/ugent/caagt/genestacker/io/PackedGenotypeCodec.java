@@ -0,0 +1,140 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.io;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.ugent.caagt.genestacker.DiploidChromosome;
+import org.ugent.caagt.genestacker.Genotype;
+import org.ugent.caagt.genestacker.Haplotype;
+import org.ugent.caagt.genestacker.exceptions.GenotypeException;
+
+/**
+ * Encodes genotypes with a fixed number of chromosomes and loci as packed bit strings, used by the binary
+ * input and result formats. For every chromosome, the targets of the first haplotype are followed by those
+ * of the second haplotype, using one bit per locus. The bit string is padded to a whole number of bytes,
+ * so that all genotypes with the same layout have the same encoded size.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class PackedGenotypeCodec {
+
+    // number of loci on each chromosome
+    private final int[] numLoci;
+    // size of an encoded genotype (bytes)
+    private final int numBytes;
+
+    /**
+     * Create a codec for genotypes with the given number of loci on each chromosome.
+     *
+     * @param numLoci number of loci on each chromosome
+     */
+    public PackedGenotypeCodec(int[] numLoci){
+        this.numLoci = numLoci.clone();
+        int numBits = 0;
+        for(int n : numLoci){
+            numBits += 2*n;
+        }
+        numBytes = (numBits + 7) / 8;
+    }
+
+    /**
+     * Create a codec for genotypes with the same layout as the given genotype.
+     *
+     * @param genotype genotype
+     * @return codec for genotypes with the same number of chromosomes and loci
+     */
+    public static PackedGenotypeCodec forGenotype(Genotype genotype){
+        List<DiploidChromosome> chroms = genotype.getChromosomes();
+        int[] numLoci = new int[chroms.size()];
+        for(int c=0; c<numLoci.length; c++){
+            numLoci[c] = chroms.get(c).nrOfLoci();
+        }
+        return new PackedGenotypeCodec(numLoci);
+    }
+
+    public int[] getNumLoci(){
+        return numLoci.clone();
+    }
+
+    public int getNumBytes(){
+        return numBytes;
+    }
+
+    /**
+     * Encode the given genotype.
+     *
+     * @param genotype genotype with the layout of this codec
+     * @return packed targets
+     * @throws IllegalArgumentException if the number of chromosomes or loci does not correspond to this codec
+     */
+    public byte[] encode(Genotype genotype){
+        List<DiploidChromosome> chroms = genotype.getChromosomes();
+        if(chroms.size() != numLoci.length){
+            throw new IllegalArgumentException("Genotype has " + chroms.size() + " chromosome(s), expected " + numLoci.length + ".");
+        }
+        byte[] packed = new byte[numBytes];
+        int bit = 0;
+        for(int c=0; c<numLoci.length; c++){
+            for(Haplotype hap : chroms.get(c).getHaplotypes()){
+                if(hap.nrOfLoci() != numLoci[c]){
+                    throw new IllegalArgumentException("Chromosome " + c + " has " + hap.nrOfLoci() + " loci, expected " + numLoci[c] + ".");
+                }
+                for(int l=0; l<numLoci[c]; l++){
+                    if(hap.targetPresent(l)){
+                        packed[bit >> 3] |= 0x80 >>> (bit & 7);
+                    }
+                    bit++;
+                }
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * Decode a genotype starting at the current position of the given buffer. The position of the
+     * buffer is advanced by the size of an encoded genotype.
+     *
+     * @param buf buffer
+     * @return decoded genotype
+     * @throws GenotypeException if the encoded genotype is invalid
+     * @throws BufferUnderflowException if the buffer does not contain a complete encoded genotype
+     */
+    public Genotype decode(ByteBuffer buf) throws GenotypeException {
+        if(buf.remaining() < numBytes){
+            throw new BufferUnderflowException();
+        }
+        int start = buf.position();
+        List<DiploidChromosome> chroms = new ArrayList<>(numLoci.length);
+        int bit = 0;
+        for(int c=0; c<numLoci.length; c++){
+            Haplotype[] haps = new Haplotype[2];
+            for(int h=0; h<2; h++){
+                boolean[] targets = new boolean[numLoci[c]];
+                for(int l=0; l<numLoci[c]; l++){
+                    targets[l] = (buf.get(start + (bit >> 3)) & (0x80 >>> (bit & 7))) != 0;
+                    bit++;
+                }
+                haps[h] = new Haplotype(targets);
+            }
+            chroms.add(new DiploidChromosome(haps[0], haps[1]));
+        }
+        buf.position(start + numBytes);
+        return new Genotype(chroms);
+    }
+
+}
@@ -0,0 +1,196 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.ugent.caagt.genestacker.exceptions.BinaryFormatException;
+import org.ugent.caagt.genestacker.exceptions.GenotypeException;
+
+/**
+ * Reads schedules from a file in the binary result format (see {@link ParetoFrontierBinaryWriter}). The file
+ * is memory mapped when the reader is created, after which individual schemes are decoded on demand.
+ * Schemes can be read concurrently by different threads.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class ParetoFrontierBinaryReader {
+
+    // file name (for error messages)
+    private final String fileName;
+    // mapped file contents (or contents read from memory)
+    private final ByteBuffer buf;
+    // genotype layout
+    private final PackedGenotypeCodec codec;
+    // offset of each scheme
+    private final long[] offsets;
+
+    /**
+     * Open the given binary result file.
+     *
+     * @param file binary result file
+     * @throws IOException if any IO errors occur
+     * @throws BinaryFormatException if the file is not in the binary result format
+     */
+    public ParetoFrontierBinaryReader(File file) throws IOException, BinaryFormatException {
+        this(BinaryFormat.map(file), file.getName());
+    }
+
+    /**
+     * Read binary results from memory, e.g. results received over a network connection.
+     *
+     * @param bytes contents in the binary result format
+     * @param name name used to refer to the contents in error messages
+     * @throws BinaryFormatException if the contents are not in the binary result format
+     */
+    public ParetoFrontierBinaryReader(byte[] bytes, String name) throws BinaryFormatException {
+        this(ByteBuffer.wrap(bytes), name);
+    }
+
+    private ParetoFrontierBinaryReader(ByteBuffer buf, String fileName) throws BinaryFormatException {
+        this.fileName = fileName;
+        this.buf = buf;
+        codec = BinaryFormat.readHeader(buf, BinaryFormat.RESULTS_MAGIC, fileName);
+        try {
+            int numSchemes = buf.getInt();
+            if(numSchemes < 0 || 8L*numSchemes > buf.remaining()){
+                throw new BinaryFormatException();
+            }
+            offsets = new long[numSchemes];
+            for(int i=0; i<numSchemes; i++){
+                offsets[i] = buf.getLong();
+                if(offsets[i] < buf.position() || offsets[i] > buf.limit()){
+                    throw new BinaryFormatException();
+                }
+            }
+        } catch (BufferUnderflowException | BinaryFormatException ex) {
+            throw new BinaryFormatException("Binary file '" + fileName + "' contains an invalid scheme index.");
+        }
+    }
+
+    /**
+     * Check whether the given file is in the binary result format.
+     *
+     * @param file result file
+     * @return <code>true</code> if the file starts with the magic number of the binary result format
+     * @throws IOException if any IO errors occur
+     */
+    public static boolean isBinaryResults(File file) throws IOException {
+        return BinaryFormat.hasMagic(file, BinaryFormat.RESULTS_MAGIC);
+    }
+
+    public int getNumSchemes(){
+        return offsets.length;
+    }
+
+    /**
+     * Decode all schemes contained in the file.
+     *
+     * @return scheme records, in order of appearance
+     * @throws BinaryFormatException if the file contains an invalid scheme
+     */
+    public List<CrossingSchemeRecord> getSchemes() throws BinaryFormatException {
+        List<CrossingSchemeRecord> schemes = new ArrayList<>(offsets.length);
+        for(int i=0; i<offsets.length; i++){
+            schemes.add(getScheme(i));
+        }
+        return schemes;
+    }
+
+    /**
+     * Decode the scheme with the given index.
+     *
+     * @param i index of the scheme (0 &le; i &lt; number of schemes)
+     * @return scheme record
+     * @throws BinaryFormatException if the scheme is invalid
+     */
+    public CrossingSchemeRecord getScheme(int i) throws BinaryFormatException {
+        // private view of mapped contents (thread safe)
+        ByteBuffer b = buf.duplicate();
+        b.position((int) offsets[i]);
+        try {
+            // overall properties
+            double gamma = b.getDouble();
+            double gammaPrime = b.getDouble();
+            double lpa = b.getDouble();
+            int numGen = b.getInt();
+            long totalPopSize = b.getLong();
+            // seed lots
+            int numSeedLots = checkCount(b.getInt(), b);
+            List<CrossingSchemeRecord.SeedLot> seedLots = new ArrayList<>(numSeedLots);
+            for(int s=0; s<numSeedLots; s++){
+                String id = BinaryFormat.readString(b);
+                int generation = b.getInt();
+                int numUsed = checkCount(b.getInt(), b);
+                int[] usedGenerations = new int[numUsed];
+                long[] usedAmounts = new long[numUsed];
+                for(int u=0; u<numUsed; u++){
+                    usedGenerations[u] = b.getInt();
+                    usedAmounts[u] = b.getLong();
+                }
+                seedLots.add(new CrossingSchemeRecord.SeedLot(id, generation, usedGenerations, usedAmounts));
+            }
+            // plants
+            int numPlants = checkCount(b.getInt(), b);
+            List<CrossingSchemeRecord.Plant> plants = new ArrayList<>(numPlants);
+            for(int p=0; p<numPlants; p++){
+                String id = BinaryFormat.readString(b);
+                int seedLot = checkIndex(b.getInt(), numSeedLots);
+                int generation = b.getInt();
+                double obsProb = b.getDouble();
+                double plantLPA = b.getDouble();
+                int duplicates = b.getInt();
+                plants.add(new CrossingSchemeRecord.Plant(id, seedLot, generation, obsProb, plantLPA, duplicates, codec.decode(b)));
+            }
+            // crossings
+            int numCrossings = checkCount(b.getInt(), b);
+            List<CrossingSchemeRecord.Crossing> crossings = new ArrayList<>(numCrossings);
+            for(int c=0; c<numCrossings; c++){
+                String id = BinaryFormat.readString(b);
+                int parent1 = checkIndex(b.getInt(), numPlants);
+                int parent2 = b.getInt();
+                if(parent2 >= 0){
+                    checkIndex(parent2, numPlants);
+                }
+                int seedLot = checkIndex(b.getInt(), numSeedLots);
+                int duplicates = b.getInt();
+                crossings.add(new CrossingSchemeRecord.Crossing(id, parent1, parent2, seedLot, duplicates));
+            }
+            return new CrossingSchemeRecord(gamma, gammaPrime, lpa, numGen, totalPopSize, seedLots, plants, crossings);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException | GenotypeException | BinaryFormatException ex) {
+            throw new BinaryFormatException("Binary file '" + fileName + "' contains an invalid scheme at index " + i + ".");
+        }
+    }
+
+    // check number of rows (each row takes at least one byte)
+    private int checkCount(int count, ByteBuffer b) throws BinaryFormatException {
+        if(count < 0 || count > b.remaining()){
+            throw new BinaryFormatException();
+        }
+        return count;
+    }
+
+    private int checkIndex(int index, int numRows) throws BinaryFormatException {
+        if(index < 0 || index >= numRows){
+            throw new BinaryFormatException();
+        }
+        return index;
+    }
+
+}
@@ -0,0 +1,152 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.io;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.ugent.caagt.genestacker.search.CrossingScheme;
+import org.ugent.caagt.genestacker.search.ParetoFrontier;
+
+/**
+ * Writes schedules in the binary result format. After the header (see {@link BinaryFormat}), the file contains
+ * the number of schemes and the offset of each scheme in the file, followed by the schemes themselves, so that
+ * any scheme can be read directly. Every scheme is stored as a table of seed lots, plants (with packed genotypes)
+ * and crossings, in which references to parent plants and seed lots are encoded as row indices
+ * (see {@link CrossingSchemeRecord}).
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class ParetoFrontierBinaryWriter {
+
+    /**
+     * Write all schemes from the given Pareto frontier, in the same order as in the ZIP package created
+     * by the {@link ZIPWriter}.
+     *
+     * @param pf Pareto frontier
+     * @param outputFile output file
+     * @throws IOException if any IO errors occur
+     */
+    public void write(ParetoFrontier pf, File outputFile) throws IOException {
+        List<CrossingSchemeRecord> schemes = new ArrayList<>();
+        for(Map.Entry<Integer, Set<CrossingScheme>> gen : pf.getSchemes().entrySet()){
+            for(CrossingScheme s : gen.getValue()){
+                schemes.add(CrossingSchemeRecord.of(s));
+            }
+        }
+        write(schemes, outputFile);
+    }
+
+    /**
+     * Write the given scheme records. All plants should have the same number of chromosomes and loci.
+     *
+     * @param schemes scheme records
+     * @param outputFile output file
+     * @throws IOException if any IO errors occur
+     */
+    public void write(List<CrossingSchemeRecord> schemes, File outputFile) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile))) {
+            write(schemes, out);
+        }
+    }
+
+    /**
+     * Write the given scheme records to the given stream, which is flushed but not closed.
+     *
+     * @param schemes scheme records
+     * @param stream output stream
+     * @throws IOException if any IO errors occur
+     */
+    public void write(List<CrossingSchemeRecord> schemes, OutputStream stream) throws IOException {
+        // infer genotype layout
+        PackedGenotypeCodec codec = new PackedGenotypeCodec(new int[0]);
+        if(!schemes.isEmpty() && !schemes.get(0).getPlants().isEmpty()){
+            codec = PackedGenotypeCodec.forGenotype(schemes.get(0).getPlants().get(0).getGenotype());
+        }
+        // encode schemes
+        List<byte[]> blocks = new ArrayList<>(schemes.size());
+        for(CrossingSchemeRecord s : schemes){
+            blocks.add(encode(s, codec));
+        }
+        // write header, offsets and schemes
+        DataOutputStream out = new DataOutputStream(stream);
+        BinaryFormat.writeHeader(out, BinaryFormat.RESULTS_MAGIC, codec);
+        out.writeInt(blocks.size());
+        long offset = out.size() + 8L*blocks.size();
+        for(byte[] block : blocks){
+            out.writeLong(offset);
+            offset += block.length;
+        }
+        for(byte[] block : blocks){
+            out.write(block);
+        }
+        out.flush();
+    }
+
+    private byte[] encode(CrossingSchemeRecord s, PackedGenotypeCodec codec) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        // overall properties
+        out.writeDouble(s.getGamma());
+        out.writeDouble(s.getGammaPrime());
+        out.writeDouble(s.getLinkagePhaseAmbiguity());
+        out.writeInt(s.getNumGenerations());
+        out.writeLong(s.getTotalPopulationSize());
+        // seed lots
+        out.writeInt(s.getSeedLots().size());
+        for(CrossingSchemeRecord.SeedLot sl : s.getSeedLots()){
+            BinaryFormat.writeString(out, sl.getID());
+            out.writeInt(sl.getGeneration());
+            int[] usedGenerations = sl.getUsedGenerations();
+            long[] usedAmounts = sl.getUsedAmounts();
+            out.writeInt(usedGenerations.length);
+            for(int i=0; i<usedGenerations.length; i++){
+                out.writeInt(usedGenerations[i]);
+                out.writeLong(usedAmounts[i]);
+            }
+        }
+        // plants
+        out.writeInt(s.getPlants().size());
+        for(CrossingSchemeRecord.Plant p : s.getPlants()){
+            BinaryFormat.writeString(out, p.getID());
+            out.writeInt(p.getSeedLot());
+            out.writeInt(p.getGeneration());
+            out.writeDouble(p.getProbabilityOfPhaseKnownGenotype());
+            out.writeDouble(p.getLinkagePhaseAmbiguity());
+            out.writeInt(p.getNumDuplicates());
+            out.write(codec.encode(p.getGenotype()));
+        }
+        // crossings
+        out.writeInt(s.getCrossings().size());
+        for(CrossingSchemeRecord.Crossing c : s.getCrossings()){
+            BinaryFormat.writeString(out, c.getID());
+            out.writeInt(c.getParent1());
+            out.writeInt(c.getParent2());
+            out.writeInt(c.getSeedLot());
+            out.writeInt(c.getNumDuplicates());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+}
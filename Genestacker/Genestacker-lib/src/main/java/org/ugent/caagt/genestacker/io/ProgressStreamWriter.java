@@ -0,0 +1,341 @@
+//  Copyright 2012 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.io;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.ugent.caagt.genestacker.search.AbstractSearchListener;
+import org.ugent.caagt.genestacker.search.CrossingSchemeDescriptor;
+import org.ugent.caagt.genestacker.search.SearchEngine;
+import org.ugent.caagt.genestacker.search.SearchProgress;
+import org.ugent.caagt.genestacker.util.GenestackerConstants;
+
+/**
+ * <p>
+ * Search listener that streams the progress of a search engine as newline-delimited JSON, written to a file
+ * or to a local socket. All output is written from a background thread, at a fixed rate, based on the progress
+ * published by the engine (see {@link SearchEngine#getProgress()}), so that the search never blocks on I/O.
+ * If writing fails, a warning is logged and the stream is abandoned, without affecting the search.
+ * </p>
+ * <p>
+ * Each line contains a single JSON object with an <code>event</code> field:
+ * </p>
+ * <ul>
+ * <li><code>started</code>, <code>stopped</code>: start and end of a search run (runs are numbered from 1)</li>
+ * <li><code>progress</code>: elapsed time, number of dequeued, queued and previous schemes, frontier size,
+ *     throughput (dequeued schemes per second, since the previous line and overall) and an estimate of the
+ *     remaining time (<code>null</code> if unknown), based on the smoothed rate at which the queue drains and
+ *     bounded by the remaining runtime, if limited</li>
+ * <li><code>frontier</code>: descriptors of all schemes in the Pareto frontier, written whenever it has changed</li>
+ * </ul>
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class ProgressStreamWriter extends AbstractSearchListener implements Closeable {
+
+    // logger
+    private Logger logger = LogManager.getLogger(ProgressStreamWriter.class);
+
+    // prefix of targets indicating a local socket
+    public static final String SOCKET_PREFIX = "tcp:";
+
+    // smoothing factor of queue drain rate
+    private static final double DRAIN_SMOOTHING = 0.3;
+
+    // monitored engine
+    private final SearchEngine engine;
+    // output
+    private final OutputStream rawOut;
+    private final Writer out;
+    // interval between subsequent progress lines (ms)
+    private final long interval;
+    // background thread
+    private final ScheduledExecutorService executor;
+    // periodic progress task of current run
+    private volatile ScheduledFuture<?> ticker;
+
+    // state below is only accessed from the background thread
+
+    // current run
+    private int run = 0;
+    // elapsed time, number of dequeued schemes and queue size at previous progress line
+    private long prevElapsed;
+    private long prevDequeued;
+    private int prevQueueSize;
+    // smoothed queue drain rate (schemes per ms), NaN if unknown
+    private double drainRate;
+    // last written frontier version
+    private int prevFrontierVersion;
+    // set when writing has failed
+    private boolean failed = false;
+
+    /**
+     * Create a progress stream writer for the given engine. The writer registers itself as a listener of the engine.
+     *
+     * @param engine monitored search engine
+     * @param out output stream, closed when this writer is closed
+     * @param interval interval between subsequent progress lines (milliseconds)
+     */
+    public ProgressStreamWriter(SearchEngine engine, OutputStream out, long interval){
+        if(interval <= 0){
+            throw new IllegalArgumentException("Progress interval should be positive.");
+        }
+        this.engine = engine;
+        this.rawOut = out;
+        this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        this.interval = interval;
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "genestacker-progress");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        engine.addSearchListener(this);
+    }
+
+    /**
+     * Open the given target, which is either a file (created or overwritten) or a local socket,
+     * specified as <code>tcp:port</code>, to which a connection is made.
+     *
+     * @param target file name or <code>tcp:port</code>
+     * @return output stream
+     * @throws IOException if the target can not be opened
+     */
+    public static OutputStream openTarget(String target) throws IOException {
+        if(target.startsWith(SOCKET_PREFIX)){
+            int port;
+            try {
+                port = Integer.parseInt(target.substring(SOCKET_PREFIX.length()));
+            } catch (NumberFormatException ex){
+                throw new IOException("Invalid progress stream port: " + target);
+            }
+            Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            return socket.getOutputStream();
+        } else {
+            return new FileOutputStream(target);
+        }
+    }
+
+    @Override
+    public void searchStarted(){
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                run++;
+                prevElapsed = 0;
+                prevDequeued = 0;
+                prevQueueSize = 0;
+                drainRate = Double.NaN;
+                prevFrontierVersion = 0;
+                write(new StringBuilder("{\"event\":\"started\",\"run\":").append(run).append("}"));
+            }
+        });
+        try {
+            ticker = executor.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    writeProgress();
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex){
+            // writer already closed
+        }
+    }
+
+    @Override
+    public void searchStopped(){
+        ScheduledFuture<?> t = ticker;
+        if(t != null){
+            t.cancel(false);
+        }
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                writeProgress();
+                write(new StringBuilder("{\"event\":\"stopped\",\"run\":").append(run)
+                                  .append(",\"elapsed_ms\":").append(engine.getStop()-engine.getStart()).append("}"));
+            }
+        });
+    }
+
+    private void submit(Runnable task){
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException ex){
+            // writer already closed
+        }
+    }
+
+    /**
+     * Write a progress line, preceded by a frontier line if the frontier has changed.
+     */
+    private void writeProgress(){
+        SearchProgress progress = engine.getProgress();
+        if(progress == null){
+            return;
+        }
+        long elapsed = Math.max(progress.getElapsedTime(), System.currentTimeMillis()-engine.getStart());
+        // write frontier if changed
+        if(progress.getFrontierVersion() != prevFrontierVersion){
+            StringBuilder line = new StringBuilder("{\"event\":\"frontier\",\"run\":").append(run)
+                                                .append(",\"elapsed_ms\":").append(elapsed)
+                                                .append(",\"schemes\":[");
+            boolean first = true;
+            for(CrossingSchemeDescriptor d : progress.getFrontier()){
+                if(!first){
+                    line.append(',');
+                }
+                line.append("{\"generations\":").append(d.getNumGenerations())
+                    .append(",\"total_pop_size\":").append(d.getTotalPopSize())
+                    .append(",\"max_pop_size_per_generation\":").append(d.getMaxPopSizePerGeneration())
+                    .append(",\"crossings\":").append(d.getNumCrossings())
+                    .append(",\"lpa\":");
+                appendNumber(line, d.getLinkagePhaseAmbiguity());
+                line.append('}');
+                first = false;
+            }
+            line.append("]}");
+            write(line);
+            prevFrontierVersion = progress.getFrontierVersion();
+        }
+        // throughput
+        long dt = elapsed - prevElapsed;
+        double throughput = dt > 0 ? 1000.0 * (progress.getNumDequeued() - prevDequeued) / dt : Double.NaN;
+        double avgThroughput = elapsed > 0 ? 1000.0 * progress.getNumDequeued() / elapsed : Double.NaN;
+        // update smoothed drain rate of queue
+        if(dt > 0 && prevDequeued > 0){
+            double curDrainRate = (double) (prevQueueSize - progress.getQueueSize()) / dt;
+            drainRate = Double.isNaN(drainRate) ? curDrainRate : DRAIN_SMOOTHING * curDrainRate + (1-DRAIN_SMOOTHING) * drainRate;
+        }
+        // estimate remaining time
+        double eta = drainRate > 0 ? progress.getQueueSize() / drainRate : Double.NaN;
+        long limit = engine.getRuntimeLimit();
+        if(limit != GenestackerConstants.NO_RUNTIME_LIMIT){
+            long remaining = Math.max(0, limit - elapsed);
+            eta = Double.isNaN(eta) ? remaining : Math.min(eta, remaining);
+        }
+        StringBuilder line = new StringBuilder("{\"event\":\"progress\",\"run\":").append(run)
+                                            .append(",\"elapsed_ms\":").append(elapsed)
+                                            .append(",\"dequeued\":").append(progress.getNumDequeued())
+                                            .append(",\"queue_size\":").append(progress.getQueueSize())
+                                            .append(",\"previous_schemes\":").append(progress.getNumPreviousSchemes())
+                                            .append(",\"frontier_size\":").append(progress.getFrontier().size())
+                                            .append(",\"throughput\":");
+        appendNumber(line, throughput);
+        line.append(",\"avg_throughput\":");
+        appendNumber(line, avgThroughput);
+        line.append(",\"eta_ms\":");
+        appendNumber(line, Double.isNaN(eta) ? eta : Math.round(eta));
+        line.append(",\"runtime_limit_ms\":");
+        if(limit != GenestackerConstants.NO_RUNTIME_LIMIT){
+            line.append(limit);
+        } else {
+            line.append("null");
+        }
+        line.append('}');
+        write(line);
+        prevElapsed = elapsed;
+        prevDequeued = progress.getNumDequeued();
+        prevQueueSize = progress.getQueueSize();
+    }
+
+    /**
+     * Append a JSON number, or <code>null</code> if the given value is not finite.
+     */
+    private static void appendNumber(StringBuilder line, double value){
+        if(Double.isNaN(value) || Double.isInfinite(value)){
+            line.append("null");
+        } else if(value == Math.rint(value) && Math.abs(value) < 1e15){
+            line.append((long) value);
+        } else {
+            line.append(String.format(Locale.ROOT, "%.6g", value));
+        }
+    }
+
+    /**
+     * Write and flush a single line (background thread only).
+     */
+    private void write(CharSequence line){
+        if(failed){
+            return;
+        }
+        try {
+            out.append(line).append('\n');
+            out.flush();
+        } catch (IOException ex){
+            failed = true;
+            logger.warn("Failed to write progress stream, progress will no longer be reported: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Stop the background thread, after writing all pending lines, and close the output stream. If the pending
+     * lines can not be written in time, they are discarded and the background thread is interrupted. The output
+     * is only closed once the background thread has stopped; if it is still blocked on a write, the underlying
+     * stream is closed to abort that write, so that closing never blocks indefinitely.
+     *
+     * @throws IOException if the output stream can not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        engine.removeSearchListener(this);
+        ScheduledFuture<?> t = ticker;
+        if(t != null){
+            t.cancel(false);
+        }
+        executor.shutdown();
+        boolean stopped = awaitTermination(interval + 1000);
+        if(!stopped){
+            // discard pending lines
+            executor.shutdownNow();
+            stopped = awaitTermination(1000);
+        }
+        if(stopped){
+            out.close();
+        } else {
+            logger.warn("Progress stream is blocked, closing it without flushing pending output");
+            rawOut.close();
+        }
+    }
+
+    private boolean awaitTermination(long timeout){
+        try {
+            return executor.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex){
+            Thread.currentThread().interrupt();
+            return executor.isTerminated();
+        }
+    }
+
+}
@@ -15,7 +15,12 @@
 package org.ugent.caagt.genestacker.io;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
@@ -33,11 +38,17 @@ import org.w3c.dom.Element;
 /**
  * Abstract class with some general XML formatting tools, e.g. for genotypes,
  * chromosomes, haplotypes, etc. Also provides methods for writing an XML source
- * to a file.
+ * to a file, and for streaming XML with the same layout directly to an output stream.
  * 
  * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
  */
 public abstract class XMLWriter {
+    
+    // XML declaration and line separator, as written by the default transformer
+    protected static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>";
+    protected static final String LINE_SEPARATOR = System.lineSeparator();
+    // number of spaces used per indentation level
+    private static final int INDENT_AMOUNT = 2;
 
     protected Element createPlantElement(Plant plant, Document xml){
         Element plantEl = xml.createElement("plant");
@@ -77,6 +88,56 @@ public abstract class XMLWriter {
         return str.toString();
     }
      
+    /**
+     * Write the XML declaration followed by a line break directly to the given output stream,
+     * before any elements are streamed to it.
+     * 
+     * @param out output stream
+     * @throws IOException if any IO errors occur
+     */
+    protected void writeDeclaration(OutputStream out) throws IOException {
+        out.write((XML_DECLARATION + LINE_SEPARATOR).getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Start a new line at the given depth in the element tree.
+     * 
+     * @param xml XML stream writer
+     * @param depth depth of the next element (0 for the root element)
+     * @throws XMLStreamException if writing fails
+     */
+    protected void indent(XMLStreamWriter xml, int depth) throws XMLStreamException {
+        StringBuilder str = new StringBuilder(LINE_SEPARATOR);
+        for(int i=0; i<depth*INDENT_AMOUNT; i++){
+            str.append(' ');
+        }
+        xml.writeCharacters(str.toString());
+    }
+    
+    protected void writeGenotypeElement(Genotype genotype, XMLStreamWriter xml, int depth) throws XMLStreamException {
+        indent(xml, depth);
+        xml.writeStartElement("genotype");
+        List<DiploidChromosome> chroms = genotype.getChromosomes();
+        for(int c=0; c<chroms.size(); c++){
+            writeChromosomeElement(chroms.get(c), xml, depth+1);
+        }
+        indent(xml, depth);
+        xml.writeEndElement();
+    }
+    
+    protected void writeChromosomeElement(Chromosome chrom, XMLStreamWriter xml, int depth) throws XMLStreamException {
+        indent(xml, depth);
+        xml.writeStartElement("chromosome");
+        Haplotype[] haps = chrom.getHaplotypes();
+        for(int h=0; h<haps.length; h++){
+            indent(xml, depth+1);
+            xml.writeEmptyElement("haplotype");
+            xml.writeAttribute("targets", formatHaplotype(haps[h]));
+        }
+        indent(xml, depth);
+        xml.writeEndElement();
+    }
+     
     protected void writeXML(Document xml, File outputFile) throws TransformerException {
         TransformerFactory factory = TransformerFactory.newInstance();
         Transformer xmlWriter = factory.newTransformer();
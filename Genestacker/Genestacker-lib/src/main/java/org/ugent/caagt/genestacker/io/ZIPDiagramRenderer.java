@@ -0,0 +1,167 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+package org.ugent.caagt.genestacker.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.apache.commons.compress.archivers.ArchiveException;
+import org.apache.commons.compress.archivers.ArchiveOutputStream;
+import org.apache.commons.compress.archivers.ArchiveStreamFactory;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.utils.IOUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.ugent.caagt.genestacker.exceptions.GenestackerException;
+
+/**
+ * Renders the diagrams of all schedules contained in a ZIP package that has been created without
+ * diagrams (see {@link ZIPWriter#setRenderDiagrams(boolean)}), based on the included Graphviz sources.
+ * Every diagram is inserted right before the Graphviz source of the respective scheme, so that the
+ * resulting package has the same layout as a package in which the diagrams were rendered immediately.
+ * Schemes for which a diagram of the requested format is already present are skipped.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class ZIPDiagramRenderer {
+
+    // logger
+    private static final Logger logger = LogManager.getLogger(ZIPDiagramRenderer.class);
+
+    // extension of Graphviz source files
+    private static final String GRAPHVIZ_EXTENSION = ".graphviz";
+
+    // used to create the render pool
+    private final ZIPWriter zipWriter;
+
+    /**
+     * Create a diagram renderer which renders at most as many diagrams concurrently as the number of available processors.
+     */
+    public ZIPDiagramRenderer(){
+        zipWriter = new ZIPWriter();
+    }
+
+    /**
+     * Create a diagram renderer which renders at most the given number of diagrams concurrently.
+     *
+     * @param numRenderThreads maximum number of concurrent DOT processes
+     */
+    public ZIPDiagramRenderer(int numRenderThreads){
+        zipWriter = new ZIPWriter(numRenderThreads);
+    }
+
+    /**
+     * Render all missing diagrams of the schedules in the given ZIP package. The output package is first written
+     * to a temporary file in the same directory, which then replaces the output file, so that the input package
+     * may be updated in place by specifying the same file as output.
+     *
+     * @param zipFile input ZIP package
+     * @param outputFile output ZIP package (may be equal to the input package)
+     * @param format graph file format
+     * @return number of rendered diagrams
+     * @throws IOException if any IO errors occur
+     * @throws ArchiveException if the output ZIP file can not be created
+     * @throws GenestackerException if any problems occur with the Gene Stacker config file
+     */
+    public int render(File zipFile, File outputFile, GraphFileFormat format)
+            throws IOException, ArchiveException, GenestackerException {
+        // color scheme is already fixed in the Graphviz sources
+        final CrossingSchemeGraphWriter graphWriter = new CrossingSchemeGraphWriter(format, GraphColorScheme.COLORED);
+        File outputDir = outputFile.getAbsoluteFile().getParentFile();
+        File tmpFile = File.createTempFile(outputFile.getName() + "-", ".tmp", outputDir);
+        int numRendered = 0;
+        ExecutorService renderPool = zipWriter.createRenderPool();
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            List<ZipArchiveEntry> entries = Collections.list(zip.getEntries());
+            Set<String> names = new HashSet<>();
+            for (ZipArchiveEntry e : entries) {
+                names.add(e.getName());
+            }
+            // submit missing diagrams for rendering
+            Map<String, Future<byte[]>> diagrams = new HashMap<>();
+            for (ZipArchiveEntry e : entries) {
+                String name = e.getName();
+                if (name.endsWith(GRAPHVIZ_EXTENSION)) {
+                    String diagramName = getDiagramName(name, format);
+                    if (!names.contains(diagramName)) {
+                        final String dotSource = new String(read(zip, e), StandardCharsets.UTF_8);
+                        diagrams.put(diagramName, renderPool.submit(new Callable<byte[]>() {
+                            @Override
+                            public byte[] call() throws IOException {
+                                return graphWriter.render(dotSource);
+                            }
+                        }));
+                    }
+                }
+            }
+            // copy entries and insert diagrams (in original order, waiting until each diagram is rendered)
+            try (OutputStream out = new FileOutputStream(tmpFile);
+                    ArchiveOutputStream os = new ArchiveStreamFactory().createArchiveOutputStream("zip", out);) {
+                for (ZipArchiveEntry e : entries) {
+                    String name = e.getName();
+                    if (name.endsWith(GRAPHVIZ_EXTENSION)) {
+                        String diagramName = getDiagramName(name, format);
+                        Future<byte[]> diagram = diagrams.get(diagramName);
+                        if (diagram != null) {
+                            byte[] graph = ZIPWriter.getDiagram(diagram);
+                            if (graph != null) {
+                                os.putArchiveEntry(new ZipArchiveEntry(diagramName));
+                                os.write(graph);
+                                os.closeArchiveEntry();
+                                numRendered++;
+                            } else {
+                                logger.warn("Failed to render diagram {}", diagramName);
+                            }
+                        }
+                    }
+                    os.putArchiveEntry(new ZipArchiveEntry(name));
+                    os.write(read(zip, e));
+                    os.closeArchiveEntry();
+                }
+            }
+            // replace output file
+            Files.move(tmpFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            renderPool.shutdownNow();
+            tmpFile.delete();
+        }
+        return numRendered;
+    }
+
+    private String getDiagramName(String graphvizName, GraphFileFormat format){
+        return graphvizName.substring(0, graphvizName.length() - GRAPHVIZ_EXTENSION.length()) + "." + format;
+    }
+
+    private byte[] read(ZipFile zip, ZipArchiveEntry e) throws IOException {
+        try (InputStream in = zip.getInputStream(e)) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+
+}
@@ -14,33 +14,103 @@
 package org.ugent.caagt.genestacker.io;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
-import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import org.apache.commons.compress.archivers.ArchiveException;
 import org.apache.commons.compress.archivers.ArchiveOutputStream;
 import org.apache.commons.compress.archivers.ArchiveStreamFactory;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
-import org.apache.commons.compress.utils.IOUtils;
 import org.ugent.caagt.genestacker.exceptions.GenestackerException;
 import org.ugent.caagt.genestacker.search.CrossingScheme;
 import org.ugent.caagt.genestacker.search.ParetoFrontier;
 
 /**
  * Creates ZIP packages containing output files generated for schedules contained in a given Pareto frontier.
+ * Diagrams are rendered concurrently by a bounded number of DOT processes, while the files are added to the
+ * ZIP package in a fixed order, as soon as the diagram of the respective scheme is available. Rendering can
+ * also be disabled, in which case only the XML descriptions and Graphviz sources are written so that Graphviz
+ * is not required; diagrams can then be added later using a {@link ZIPDiagramRenderer}.
  *
  * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
  */
 public class ZIPWriter {
+    
+    // maximum number of concurrent DOT processes
+    private final int numRenderThreads;
+    // render diagrams or only write Graphviz sources
+    private boolean renderDiagrams = true;
+    
+    /**
+     * Create a ZIP writer which renders at most as many diagrams concurrently as the number of available processors.
+     */
+    public ZIPWriter(){
+        this(Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Create a ZIP writer which renders at most the given number of diagrams concurrently.
+     * 
+     * @param numRenderThreads maximum number of concurrent DOT processes
+     */
+    public ZIPWriter(int numRenderThreads){
+        if(numRenderThreads < 1){
+            throw new IllegalArgumentException("Number of render threads should be strictly positive.");
+        }
+        this.numRenderThreads = numRenderThreads;
+    }
+    
+    /**
+     * Enable or disable rendering of diagrams (enabled by default). If disabled, only the XML descriptions
+     * and Graphviz sources are written, which does not require Graphviz to be installed.
+     * 
+     * @param renderDiagrams <code>true</code> if diagrams should be rendered
+     */
+    public void setRenderDiagrams(boolean renderDiagrams){
+        this.renderDiagrams = renderDiagrams;
+    }
+    
+    /**
+     * Check whether diagrams are rendered.
+     * 
+     * @return <code>true</code> if diagrams are rendered
+     */
+    public boolean isRenderDiagrams(){
+        return renderDiagrams;
+    }
+    
+    /**
+     * Create a thread pool for rendering diagrams, bounding the number of concurrent DOT processes.
+     * 
+     * @return render pool, to be shut down by the caller
+     */
+    public ExecutorService createRenderPool(){
+        return Executors.newFixedThreadPool(numRenderThreads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "genestacker-render");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
 
     /**
      * Creates a ZIP package containing 3 files for every schedule in the given Pareto frontier:
      * <ul>
-     *  <li>a graph visualisation using the requested graph file format</li>
+     *  <li>a graph visualisation using the requested graph file format (omitted if rendering is disabled)</li>
      *  <li>a dot source file used to generate the visualisation</li>
      *  <li>an XML file describing the schedule</li>
      * </ul>
@@ -56,50 +126,181 @@ public class ZIPWriter {
      */
     public void createZIP(ParetoFrontier pf, GraphFileFormat format, GraphColorScheme colorScheme, String outputFile)
             throws IOException, ArchiveException, GenestackerException {
-        // format outputFile string
+        outputFile = formatOutputFile(outputFile);
+        // render all schemes
+        CrossingSchemeGraphWriter graphWriter = new CrossingSchemeGraphWriter(format, colorScheme);
+        CrossingSchemeXMLWriter xmlWriter = new CrossingSchemeXMLWriter();
+        ExecutorService renderPool = createRenderPool();
+        try {
+            List<SchemeFiles> files = new ArrayList<>();
+            for (Map.Entry<Integer, Set<CrossingScheme>> gen : pf.getSchemes().entrySet()) {
+                for (CrossingScheme s : gen.getValue()) {
+                    files.add(render(s, graphWriter, xmlWriter, renderPool));
+                }
+            }
+            // create ZIP archive
+            writeZIP(files, format, new File(outputFile), getInZIPFolder(outputFile));
+        } finally {
+            renderPool.shutdownNow();
+        }
+    }
+    
+    /**
+     * Append the extension ".zip" to the given output file name, if not already present.
+     * 
+     * @param outputFile output file name
+     * @return output file name ending with ".zip"
+     */
+    public static String formatOutputFile(String outputFile){
         if (!outputFile.endsWith(".zip")) {
             outputFile += ".zip";
         }
-        // name of folder inside ZIP (same as ZIP without extension)
+        return outputFile;
+    }
+    
+    /**
+     * Get the name of the folder inside the ZIP package, which equals the name of the ZIP file without extension.
+     * 
+     * @param outputFile output file name, ending with ".zip"
+     * @return name of folder inside ZIP
+     */
+    public static String getInZIPFolder(String outputFile){
         String inZIPFolder = outputFile.substring(0, outputFile.lastIndexOf('.'));
         if (inZIPFolder.indexOf('/') != -1) {
             inZIPFolder = inZIPFolder.substring(outputFile.lastIndexOf('/') + 1);
         }
-        // create ZIP archive
-        CrossingSchemeGraphWriter graphWriter = new CrossingSchemeGraphWriter(format, colorScheme);
-        CrossingSchemeXMLWriter xmlWriter = new CrossingSchemeXMLWriter();
-        try (OutputStream out = new FileOutputStream(new File(outputFile));
+        return inZIPFolder;
+    }
+    
+    /**
+     * Create the output files of a single scheme: its XML description, Graphviz source and graph visualisation.
+     * The Graphviz source is created on the calling thread, while the diagram is rendered asynchronously in the
+     * given render pool (if enabled). The XML description is streamed into the ZIP package when it is written.
+     * 
+     * @param s crossing scheme
+     * @param graphWriter graph writer
+     * @param xmlWriter XML writer
+     * @param renderPool thread pool in which the diagram is rendered
+     * @return output files
+     */
+    public SchemeFiles render(CrossingScheme s, final CrossingSchemeGraphWriter graphWriter, CrossingSchemeXMLWriter xmlWriter,
+                              ExecutorService renderPool) {
+        // create graphviz source
+        final String dotSource = graphWriter.createDotSource(s);
+        // render graph (if enabled)
+        Future<byte[]> graph = null;
+        if(renderDiagrams){
+            graph = renderPool.submit(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws IOException {
+                    return graphWriter.render(dotSource);
+                }
+            });
+        }
+        return new SchemeFiles(s, xmlWriter, dotSource.getBytes(StandardCharsets.UTF_8), graph);
+    }
+    
+    /**
+     * Write a ZIP package containing the given files, numbering the schemes in the given order.
+     * 
+     * @param files rendered files of all schemes
+     * @param format graph file format
+     * @param zipFile ZIP file to be written
+     * @param inZIPFolder name of the folder inside the ZIP package
+     * @throws IOException if any IO errors occur
+     * @throws ArchiveException if the ZIP file can not be created
+     */
+    public void writeZIP(List<SchemeFiles> files, GraphFileFormat format, File zipFile, String inZIPFolder)
+            throws IOException, ArchiveException {
+        try (OutputStream out = new FileOutputStream(zipFile);
                 ArchiveOutputStream os = new ArchiveStreamFactory().createArchiveOutputStream("zip", out);) {
-            // add files
             int numScheme = 0;
-            for (Map.Entry<Integer, Set<CrossingScheme>> gen : pf.getSchemes().entrySet()) {
-                Set<CrossingScheme> schemes = gen.getValue();
-                for (CrossingScheme s : schemes) {
-                    numScheme++;
-                    // create xml
-                    File xml = Files.createTempFile("scheme-", ".xml").toFile();
-                    xmlWriter.write(s, xml);
-                    // create graph
-                    File graph = Files.createTempFile("scheme-", "." + format).toFile();
-                    File graphvizSource = graphWriter.write(s, graph);
-                    // copy xml, diagram and graphviz source to zip file
-                    os.putArchiveEntry(new ZipArchiveEntry(inZIPFolder + "/scheme" + numScheme + ".xml"));
-                    IOUtils.copy(new FileInputStream(xml), os);
-                    os.closeArchiveEntry();
-                    // only copy graph if successfully created!
-                    if (graph.exists()) {
-                        os.putArchiveEntry(new ZipArchiveEntry(inZIPFolder + "/scheme" + numScheme + "." + format));
-                        IOUtils.copy(new FileInputStream(graph), os);
-                        os.closeArchiveEntry();
-                    }
-                    os.putArchiveEntry(new ZipArchiveEntry(inZIPFolder + "/scheme" + numScheme + ".graphviz"));
-                    IOUtils.copy(new FileInputStream(graphvizSource), os);
+            for (SchemeFiles f : files) {
+                numScheme++;
+                // stream xml, copy diagram and graphviz source to zip file
+                os.putArchiveEntry(new ZipArchiveEntry(inZIPFolder + "/scheme" + numScheme + ".xml"));
+                f.writeXML(os);
+                os.closeArchiveEntry();
+                // only copy graph if successfully created (waits until rendered)
+                byte[] graph = f.getGraph();
+                if (graph != null) {
+                    os.putArchiveEntry(new ZipArchiveEntry(inZIPFolder + "/scheme" + numScheme + "." + format));
+                    os.write(graph);
                     os.closeArchiveEntry();
-                    // delete temp files
-                    xml.delete();
-                    graph.delete();
                 }
+                os.putArchiveEntry(new ZipArchiveEntry(inZIPFolder + "/scheme" + numScheme + ".graphviz"));
+                os.write(f.getGraphvizSource());
+                os.closeArchiveEntry();
             }
         }
     }
+    
+    /**
+     * Wait until a diagram submitted to a render pool has been rendered.
+     * 
+     * @param diagram pending diagram
+     * @return rendered diagram, <code>null</code> if it could not be created
+     * @throws IOException if rendering failed or has been interrupted
+     */
+    static byte[] getDiagram(Future<byte[]> diagram) throws IOException {
+        try {
+            return diagram.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for diagram to be rendered");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException("Failed to render diagram", ex.getCause());
+        }
+    }
+    
+    /**
+     * Output files created for a single scheme, of which the diagram may still be rendering.
+     * The XML description is not stored but streamed directly into the ZIP package when written.
+     */
+    public static class SchemeFiles {
+        
+        // scheme and XML writer used to stream its description
+        private final CrossingScheme scheme;
+        private final CrossingSchemeXMLWriter xmlWriter;
+        // Graphviz source
+        private final byte[] graphvizSource;
+        // rendered diagram (null if not rendered)
+        private final Future<byte[]> graph;
+
+        public SchemeFiles(CrossingScheme scheme, CrossingSchemeXMLWriter xmlWriter, byte[] graphvizSource, Future<byte[]> graph) {
+            this.scheme = scheme;
+            this.xmlWriter = xmlWriter;
+            this.graphvizSource = graphvizSource;
+            this.graph = graph;
+        }
+
+        /**
+         * Stream the XML description of the scheme to the given output stream, which is not closed.
+         * 
+         * @param out output stream
+         * @throws IOException if the XML description can not be written
+         */
+        public void writeXML(OutputStream out) throws IOException {
+            xmlWriter.write(scheme, out);
+        }
+
+        public byte[] getGraphvizSource() {
+            return graphvizSource;
+        }
+        
+        /**
+         * Get the rendered diagram, waiting until rendering has completed.
+         * 
+         * @return rendered diagram, <code>null</code> if it was not rendered or could not be created
+         * @throws IOException if rendering failed or has been interrupted
+         */
+        public byte[] getGraph() throws IOException {
+            return graph == null ? null : getDiagram(graph);
+        }
+        
+    }
+    
 }
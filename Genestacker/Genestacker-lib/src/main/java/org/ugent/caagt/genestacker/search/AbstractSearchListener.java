@@ -20,7 +20,7 @@ package org.ugent.caagt.genestacker.search;
  *
  * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
  */
-public class AbstractSearchListener implements SearchListener {
+public class AbstractSearchListener implements SearchListener, SearchMetricsListener {
 
     @Override
     public void searchMessage(String message) {
@@ -36,5 +36,10 @@ public class AbstractSearchListener implements SearchListener {
     public void searchStopped(){
         // ignore event
     }
+    
+    @Override
+    public void searchMetrics(SearchMetrics metrics){
+        // ignore event
+    }
 
 }
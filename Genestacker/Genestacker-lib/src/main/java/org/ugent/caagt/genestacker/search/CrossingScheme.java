@@ -702,6 +702,51 @@ public class CrossingScheme {
         return hash;
     }
     
+    /**
+     * Compute a 64 bit structural fingerprint of this crossing scheme, which is consistent with
+     * {@link #equals(Object)}: equivalent schemes always have the same fingerprint. The fingerprint
+     * is much more discriminative than {@link #hashCode()}, so that it can be used to quickly skip
+     * schemes that certainly differ. As fingerprints may collide, equal fingerprints should always be
+     * confirmed by comparing the schemes themselves. It is computed from the current structure of the
+     * scheme and is not cached.
+     *
+     * @return structural fingerprint of this crossing scheme
+     */
+    public long getFingerprint(){
+        long fp = mix(numGenerations);
+        fp = mix(fp + totalPopulationSize);
+        fp = mix(fp + numTargetsFromNonUniformSeedLots);
+        fp = mix(fp + Arrays.hashCode(popSizePerGeneration));
+        fp = mix(fp + finalPlantNode.getPlant().hashCode());
+        // combine seed lots in an order independent way, as in equals(Object)
+        long seedLots = 0;
+        for(int gen=0; gen<=numGenerations; gen++){
+            for(SeedLotNode sln : getSeedLotNodesFromGeneration(gen)){
+                long slnfp = mix(gen);
+                if(!sln.isInitialSeedLot()){
+                    // parents are unordered
+                    slnfp += mix(sln.getParentCrossing().getParent1().getPlant().hashCode())
+                           + mix(sln.getParentCrossing().getParent2().getPlant().hashCode());
+                }
+                slnfp = mix(slnfp + getChildPlants(sln).hashCode());
+                seedLots += slnfp;
+            }
+        }
+        return mix(fp + seedLots);
+    }
+
+    /**
+     * Bit mixing function used to compute fingerprints (finalizer of the SplitMix64 generator).
+     *
+     * @param z value to mix
+     * @return mixed value
+     */
+    private static long mix(long z){
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
     /**
      * Get the plants (not plant nodes!) that are grown from a seed lot node, grouped
      * per generation. Each generation number is mapped on a second map that contains
@@ -15,6 +15,7 @@
 package org.ugent.caagt.genestacker.search;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -49,6 +50,11 @@ public class CrossingSchemeAlternatives {
     // of generation 0)
     private Set<Plant> initialParents;
     
+    // bounds across all current alternatives, kept up to date when alternatives are removed
+    private int minNumGen, maxNumGen;
+    private long minPopSize, maxPopSize;
+    private double minLPA, maxLPA;
+    
     public CrossingSchemeAlternatives(List<CrossingScheme> alternatives){
         ID = genNextID();
         this.alternatives = alternatives;
@@ -86,9 +92,50 @@ public class CrossingSchemeAlternatives {
                 initialParents.add(pn.getPlant());
             }
         }
+        // these sets are shared by all alternatives and never change afterwards
+        ancestorDescriptors = Collections.unmodifiableSet(ancestorDescriptors);
+        initialParents = Collections.unmodifiableSet(initialParents);
+        
+        // compute bounds across alternatives
+        updateBounds();
         
     }
     
+    /**
+     * Recompute the minimum and maximum number of generations, population size and
+     * linkage phase ambiguity across all current alternatives.
+     */
+    private void updateBounds(){
+        minNumGen = Integer.MAX_VALUE;
+        maxNumGen = 0;
+        minPopSize = Integer.MAX_VALUE;
+        maxPopSize = 0;
+        minLPA = Double.MAX_VALUE;
+        maxLPA = 0;
+        for(CrossingScheme alt : alternatives){
+            minNumGen = Math.min(minNumGen, alt.getNumGenerations());
+            maxNumGen = Math.max(maxNumGen, alt.getNumGenerations());
+            minPopSize = Math.min(minPopSize, alt.getTotalPopulationSize());
+            maxPopSize = Math.max(maxPopSize, alt.getTotalPopulationSize());
+            minLPA = Math.min(minLPA, alt.getLinkagePhaseAmbiguity());
+            maxLPA = Math.max(maxLPA, alt.getLinkagePhaseAmbiguity());
+        }
+    }
+    
+    /**
+     * Update the bounds after removing the given alternative. Bounds are only recomputed
+     * if the removed alternative attained one of the current extreme values.
+     * 
+     * @param removed alternative that has just been removed
+     */
+    private void alternativeRemoved(CrossingScheme removed){
+        if(removed.getNumGenerations() == minNumGen || removed.getNumGenerations() == maxNumGen
+                || removed.getTotalPopulationSize() == minPopSize || removed.getTotalPopulationSize() == maxPopSize
+                || removed.getLinkagePhaseAmbiguity() == minLPA || removed.getLinkagePhaseAmbiguity() == maxLPA){
+            updateBounds();
+        }
+    }
+    
     public static void resetIDs(){
         lastID = 0;
     }
@@ -101,8 +148,14 @@ public class CrossingSchemeAlternatives {
         return ID;
     }
     
+    /**
+     * Get the current alternatives. The returned list can not be modified: alternatives
+     * should be removed through {@link #iterator()} so that bounds are kept up to date.
+     * 
+     * @return unmodifiable list of current alternatives
+     */
     public List<CrossingScheme> getAlternatives(){
-        return alternatives;
+        return Collections.unmodifiableList(alternatives);
     }
     
     public int nrOfAlternatives(){
@@ -121,8 +174,37 @@ public class CrossingSchemeAlternatives {
         return initialParents;
     }
     
+    /**
+     * Iterator over the current alternatives. Alternatives removed through this
+     * iterator are taken into account when reporting bounds across alternatives.
+     * 
+     * @return iterator over current alternatives, supporting removal
+     */
     public Iterator<CrossingScheme> iterator(){
-        return alternatives.iterator();
+        final Iterator<CrossingScheme> it = alternatives.iterator();
+        return new Iterator<CrossingScheme>() {
+            
+            // last returned alternative
+            private CrossingScheme last;
+            
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public CrossingScheme next() {
+                last = it.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                it.remove();
+                alternativeRemoved(last);
+            }
+            
+        };
     }
     
     @Override
@@ -131,62 +213,26 @@ public class CrossingSchemeAlternatives {
     }
     
     public int getMaxNumGen(){
-        int maxGen = 0;
-        for(CrossingScheme alt : alternatives){
-            if(alt.getNumGenerations() > maxGen){
-                maxGen = alt.getNumGenerations();
-            }
-        }
-        return maxGen;
+        return maxNumGen;
     }
     
     public int getMinNumGen(){
-        int minGen = Integer.MAX_VALUE;
-        for(CrossingScheme alt : alternatives){
-            if(alt.getNumGenerations() < minGen){
-                minGen = alt.getNumGenerations();
-            }
-        }
-        return minGen;
+        return minNumGen;
     }
     
     public long getMaxPopSize(){
-        long maxPop = 0;
-        for(CrossingScheme alt : alternatives){
-            if(alt.getTotalPopulationSize() > maxPop){
-                maxPop = alt.getTotalPopulationSize();
-            }
-        }
-        return maxPop;
+        return maxPopSize;
     }
     
     public long getMinPopSize(){
-        long minPop = Integer.MAX_VALUE;
-        for(CrossingScheme alt : alternatives){
-            if(alt.getTotalPopulationSize() < minPop){
-                minPop = alt.getTotalPopulationSize();
-            }
-        }
-        return minPop;
+        return minPopSize;
     }
     
     public double getMaxLinkagePhaseAmbiguity(){
-        double maxLPA = 0;
-        for(CrossingScheme alt : alternatives){
-            if(alt.getLinkagePhaseAmbiguity() > maxLPA){
-                maxLPA = alt.getLinkagePhaseAmbiguity();
-            }
-        }
         return maxLPA;
     }
     
     public double getMinLinkagePhaseAmbiguity(){
-        double minLPA = Double.MAX_VALUE;
-        for(CrossingScheme alt : alternatives){
-            if(alt.getLinkagePhaseAmbiguity() < minLPA){
-                minLPA = alt.getLinkagePhaseAmbiguity();
-            }
-        }
         return minLPA;
     }
     
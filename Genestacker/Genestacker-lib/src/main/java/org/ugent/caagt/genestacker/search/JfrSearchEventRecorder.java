@@ -0,0 +1,209 @@
+//  Copyright 2012 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records search events as Java Flight Recorder (JFR) events, named <code>org.ugent.caagt.genestacker.*</code>
+ * and listed in the category "Gene Stacker". As Gene Stacker is compiled for Java 7, the JFR event API (available
+ * as of Java 9) is accessed through reflection and event classes are created dynamically. Events are only created
+ * while a flight recording is running in which they are enabled, and are recorded without stack trace. Whether
+ * an event type is enabled is cached and only checked again whenever a flight recording changes state, so
+ * that starting an event of a disabled type does not require any reflective calls.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class JfrSearchEventRecorder extends SearchEventRecorder {
+
+    // system property used to request JFR events
+    public static final String JFR_PROPERTY = "genestacker.jfr";
+
+    // prefix of event names
+    private static final String EVENT_NAME_PREFIX = "org.ugent.caagt.genestacker.";
+    // event category
+    private static final String CATEGORY = "Gene Stacker";
+
+    // event factory and JFR event type per search event type
+    private final Object[] factories;
+    private final Object[] eventTypes;
+
+    // enabled state per search event type (replaced as a whole when a recording changes state)
+    private volatile boolean[] enabled;
+
+    // reflected JFR methods
+    private final Method isEnabled, newEvent, begin, set, commit;
+
+    /**
+     * Create a recorder, registering dynamic JFR events for all search event types.
+     *
+     * @throws ReflectiveOperationException if the JFR event API is not available
+     */
+    public JfrSearchEventRecorder() throws ReflectiveOperationException {
+        this(JfrSearchEventRecorder.class.getClassLoader());
+    }
+
+    /**
+     * Create a recorder, loading the JFR event API through the given class loader.
+     *
+     * @param loader class loader used to load the JFR event API
+     * @throws ReflectiveOperationException if the JFR event API is not available
+     */
+    JfrSearchEventRecorder(ClassLoader loader) throws ReflectiveOperationException {
+        Class<?> annotationElementClass = Class.forName("jdk.jfr.AnnotationElement", true, loader);
+        Class<?> valueDescriptorClass = Class.forName("jdk.jfr.ValueDescriptor", true, loader);
+        Class<?> eventFactoryClass = Class.forName("jdk.jfr.EventFactory", true, loader);
+        Class<?> eventTypeClass = Class.forName("jdk.jfr.EventType", true, loader);
+        Class<?> eventClass = Class.forName("jdk.jfr.Event", true, loader);
+        Class<?> nameClass = Class.forName("jdk.jfr.Name", true, loader);
+        Class<?> labelClass = Class.forName("jdk.jfr.Label", true, loader);
+        Class<?> descriptionClass = Class.forName("jdk.jfr.Description", true, loader);
+        Class<?> categoryClass = Class.forName("jdk.jfr.Category", true, loader);
+        Class<?> stackTraceClass = Class.forName("jdk.jfr.StackTrace", true, loader);
+        Class<?> flightRecorderClass = Class.forName("jdk.jfr.FlightRecorder", true, loader);
+        Class<?> listenerClass = Class.forName("jdk.jfr.FlightRecorderListener", true, loader);
+        Constructor<?> annotationElement = annotationElementClass.getConstructor(Class.class, Object.class);
+        Constructor<?> valueDescriptor = valueDescriptorClass.getConstructor(Class.class, String.class);
+        Method create = eventFactoryClass.getMethod("create", List.class, List.class);
+        Method getEventType = eventFactoryClass.getMethod("getEventType");
+        isEnabled = eventTypeClass.getMethod("isEnabled");
+        newEvent = eventFactoryClass.getMethod("newEvent");
+        begin = eventClass.getMethod("begin");
+        set = eventClass.getMethod("set", int.class, Object.class);
+        commit = eventClass.getMethod("commit");
+        // create event factories
+        SearchEventType[] types = SearchEventType.values();
+        factories = new Object[types.length];
+        eventTypes = new Object[types.length];
+        for(SearchEventType type : types){
+            List<Object> annotations = new ArrayList<>();
+            annotations.add(annotationElement.newInstance(nameClass, EVENT_NAME_PREFIX + type.getName()));
+            annotations.add(annotationElement.newInstance(labelClass, type.getLabel()));
+            annotations.add(annotationElement.newInstance(descriptionClass, type.getDescription()));
+            annotations.add(annotationElement.newInstance(categoryClass, new String[]{CATEGORY}));
+            // stack traces would mainly show reflective frames and are expensive for frequent events
+            annotations.add(annotationElement.newInstance(stackTraceClass, false));
+            List<Object> fields = new ArrayList<>();
+            for(int i=0; i<type.getNumFields(); i++){
+                fields.add(valueDescriptor.newInstance(type.getFieldType(i), type.getFieldName(i)));
+            }
+            factories[type.ordinal()] = create.invoke(null, annotations, fields);
+            eventTypes[type.ordinal()] = getEventType.invoke(factories[type.ordinal()]);
+        }
+        // check enabled event types now and whenever a recording changes state
+        updateEnabled();
+        Object listener = Proxy.newProxyInstance(loader, new Class<?>[]{listenerClass}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch(method.getName()){
+                    case "recordingStateChanged":
+                        updateEnabled();
+                        return null;
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return JfrSearchEventRecorder.class.getSimpleName() + " listener";
+                    default:
+                        return null;
+                }
+            }
+        });
+        flightRecorderClass.getMethod("addListener", listenerClass).invoke(null, listener);
+    }
+
+    /**
+     * Check which event types are enabled in any running recording.
+     */
+    private void updateEnabled(){
+        boolean[] e = new boolean[eventTypes.length];
+        try {
+            for(int i=0; i<eventTypes.length; i++){
+                e[i] = (Boolean) isEnabled.invoke(eventTypes[i]);
+            }
+        } catch (ReflectiveOperationException ex){
+            throw new IllegalStateException("Failed to check enabled JFR events.", ex);
+        }
+        enabled = e;
+    }
+
+    /**
+     * Check whether JFR events have been requested, i.e. if the JVM has been started with a flight recording
+     * (option <code>-XX:StartFlightRecording</code>) or if the system property <code>genestacker.jfr</code>
+     * is set to <code>true</code> (e.g. when recordings are started later on using <code>jcmd</code>).
+     *
+     * @return <code>true</code> if JFR events have been requested
+     */
+    public static boolean isRequested(){
+        if(Boolean.getBoolean(JFR_PROPERTY)){
+            return true;
+        }
+        for(String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()){
+            if(arg.startsWith("-XX:StartFlightRecording")){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected SearchEvent start(SearchEventType type){
+        try {
+            // skip if not enabled in any running recording
+            if(!enabled[type.ordinal()]){
+                return null;
+            }
+            Object event = newEvent.invoke(factories[type.ordinal()]);
+            begin.invoke(event);
+            return new JfrSearchEvent(event);
+        } catch (ReflectiveOperationException ex){
+            throw new IllegalStateException("Failed to start JFR event.", ex);
+        }
+    }
+
+    /**
+     * Wraps a dynamically created JFR event.
+     */
+    private final class JfrSearchEvent extends SearchEvent {
+
+        // JFR event
+        private final Object event;
+
+        public JfrSearchEvent(Object event){
+            this.event = event;
+        }
+
+        @Override
+        public void commit(Object... values){
+            try {
+                for(int i=0; i<values.length; i++){
+                    set.invoke(event, i, values[i]);
+                }
+                commit.invoke(event);
+            } catch (ReflectiveOperationException ex){
+                throw new IllegalStateException("Failed to commit JFR event.", ex);
+            }
+        }
+
+    }
+
+}
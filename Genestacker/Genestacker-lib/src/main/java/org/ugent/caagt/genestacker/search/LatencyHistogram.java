@@ -0,0 +1,172 @@
+//  Copyright 2012 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of recorded durations (in nanoseconds) with a fixed relative precision, similar to an
+ * HDR histogram. Each power of two is split into 16 equally sized buckets, so that any recorded
+ * value is retained with a relative error of at most 1/16, using a fixed amount of memory regardless
+ * of the range of recorded values. Values may be recorded concurrently.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class LatencyHistogram {
+
+    // number of bits used to split each power of two into buckets
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // total number of buckets (covers all nonnegative long values)
+    private static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    // number of recorded values per bucket
+    private final AtomicLongArray buckets;
+    // number and sum of recorded values
+    private final StripedCounter count;
+    private final StripedCounter total;
+    // largest recorded value
+    private final AtomicLong max;
+
+    public LatencyHistogram(){
+        buckets = new AtomicLongArray(NUM_BUCKETS);
+        count = new StripedCounter();
+        total = new StripedCounter();
+        max = new AtomicLong();
+    }
+
+    /**
+     * Record a duration. Negative values are recorded as zero.
+     *
+     * @param nanos duration in nanoseconds
+     */
+    public void record(long nanos){
+        if(nanos < 0){
+            nanos = 0;
+        }
+        buckets.incrementAndGet(bucketIndex(nanos));
+        count.increment();
+        total.add(nanos);
+        long curMax = max.get();
+        while(nanos > curMax && !max.compareAndSet(curMax, nanos)){
+            curMax = max.get();
+        }
+    }
+
+    /**
+     * Get the index of the bucket in which the given value is recorded.
+     */
+    private static int bucketIndex(long value){
+        if(value < SUB_BUCKETS){
+            // small values are recorded exactly
+            return (int) value;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exp - SUB_BUCKET_BITS)) & (SUB_BUCKETS-1);
+        return (exp - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Get the smallest value recorded in the bucket with the given index.
+     */
+    private static long bucketLowerBound(int index){
+        if(index < SUB_BUCKETS){
+            return index;
+        }
+        int exp = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long sub = index % SUB_BUCKETS;
+        return (SUB_BUCKETS + sub) << (exp - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * Get the number of recorded values.
+     *
+     * @return number of recorded values
+     */
+    public long getCount(){
+        return count.sum();
+    }
+
+    /**
+     * Get the sum of all recorded values.
+     *
+     * @return total duration (nanoseconds)
+     */
+    public long getTotal(){
+        return total.sum();
+    }
+
+    /**
+     * Get the mean recorded value, or zero if no values have been recorded.
+     *
+     * @return mean duration (nanoseconds)
+     */
+    public double getMean(){
+        long n = getCount();
+        return n == 0 ? 0.0 : (double) getTotal() / n;
+    }
+
+    /**
+     * Get the largest recorded value.
+     *
+     * @return maximum duration (nanoseconds)
+     */
+    public long getMax(){
+        return max.get();
+    }
+
+    /**
+     * Get an estimate of the given percentile of the recorded values, or zero if no values have been
+     * recorded. The returned value is the upper bound of the bucket containing the percentile, capped
+     * by the largest recorded value.
+     *
+     * @param percentile percentile between 0.0 and 100.0
+     * @return estimated percentile (nanoseconds)
+     */
+    public long getPercentile(double percentile){
+        long n = 0;
+        long[] counts = new long[NUM_BUCKETS];
+        for(int b=0; b<NUM_BUCKETS; b++){
+            counts[b] = buckets.get(b);
+            n += counts[b];
+        }
+        if(n == 0){
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long cumulative = 0;
+        int b = 0;
+        while(b < NUM_BUCKETS-1 && cumulative + counts[b] < rank){
+            cumulative += counts[b];
+            b++;
+        }
+        long upper = b < NUM_BUCKETS-1 ? bucketLowerBound(b+1) - 1 : Long.MAX_VALUE;
+        return Math.min(upper, getMax());
+    }
+
+    /**
+     * Discard all recorded values.
+     */
+    public void reset(){
+        for(int b=0; b<NUM_BUCKETS; b++){
+            buckets.set(b, 0);
+        }
+        count.reset();
+        total.reset();
+        max.set(0);
+    }
+
+}
@@ -76,15 +76,23 @@ public abstract class PopulationSizeTools {
      * @return map containing number of seeds taken from this seed lot, per generation
      */
     public Map<Integer, Long> computeSeedsTakenFromSeedLotPerGeneration(SeedLotNode seedLotNode){
+        SearchEvent event = SearchEventRecorder.begin(SearchEventType.POPULATION_SIZE);
         // compute seeds required for each generation in which plants are grown from this seed lot
         Map<Integer, Long> seeds = new HashMap<>();
         Map<Integer, Set<PlantNode>> children = seedLotNode.getChildren();
+        int numTargets = 0;
+        long numSeeds = 0;
         for(int g : children.keySet()){
             // compute seeds taken in generation g:
             Set<PlantNode> plantNodes = children.get(g);
             long seedsGen = computeRequiredSeedsForMultipleTargets(plantNodes);
             // store num seeds of gen in map
             seeds.put(g, seedsGen);
+            numTargets += plantNodes.size();
+            numSeeds = seedsGen > Long.MAX_VALUE - numSeeds ? Long.MAX_VALUE : numSeeds + seedsGen;
+        }
+        if(event != null){
+            event.commit(children.size(), numTargets, numSeeds);
         }
         // return map
         return seeds;
@@ -14,12 +14,15 @@
 
 package org.ugent.caagt.genestacker.search;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.MarkerManager;
 import org.ugent.caagt.genestacker.GeneticMap;
 import org.ugent.caagt.genestacker.Genotype;
 import org.ugent.caagt.genestacker.Plant;
@@ -41,6 +44,8 @@ public abstract class SearchEngine{
     
     // logger
     Logger logger = LogManager.getLogger(SearchEngine.class);
+    // log marker
+    private static final Marker VERBOSE = MarkerManager.getMarker("VERBOSE");
     
     // input
     protected Collection<Plant> initialPlants;
@@ -54,6 +59,8 @@ public abstract class SearchEngine{
     protected GraphFileFormat graphFileFormat;
     // graph color scheme for debug and intermediate output
     protected GraphColorScheme graphColorScheme;
+    // render diagrams in intermediate output (or only write Graphviz sources)
+    protected boolean renderDiagrams = true;
     
     // start, stop time
     protected long startTime, stopTime;
@@ -61,6 +68,23 @@ public abstract class SearchEngine{
     // runtime limit
     protected long runtimeLimit;
     
+    // metrics collected during the current (or last) search run
+    protected final SearchMetrics metrics;
+    
+    // progress of the current (or last) search run, published for monitoring threads
+    private volatile SearchProgress progress;
+    // minimum time between progress snapshots published while searching (ms)
+    protected static final long PROGRESS_PUBLISH_INTERVAL = 50;
+    // time at which progress was last published (ms)
+    private long progressPublished;
+    // descriptors of the current Pareto frontier, published as part of the search progress
+    protected List<CrossingSchemeDescriptor> frontierSnapshot;
+    // number of frontier updates during the current search run
+    protected int frontierVersion;
+    
+    // number of searches currently running in this JVM (shared node IDs)
+    private static int numRunningSearches = 0;
+    
     public SearchEngine(GenestackerInput input){
         this(input.getInitialPlants(), input.getIdeotype(), input.getGeneticMap());
     }
@@ -77,6 +101,17 @@ public abstract class SearchEngine{
         this.graphFileFormat = graphFileFormat;
         this.graphColorScheme = graphColorScheme;
         searchListeners = new LinkedList<>();
+        metrics = new SearchMetrics();
+    }
+    
+    /**
+     * Enable or disable rendering of diagrams in intermediate output (enabled by default). If disabled,
+     * only the XML descriptions and Graphviz sources are written, which does not require Graphviz.
+     * 
+     * @param renderDiagrams <code>true</code> if diagrams should be rendered
+     */
+    public void setRenderDiagrams(boolean renderDiagrams){
+        this.renderDiagrams = renderDiagrams;
     }
     
     /**
@@ -89,10 +124,23 @@ public abstract class SearchEngine{
      */
     public ParetoFrontier search(long runtimeLimit, int numThreads) throws GenestackerException{
         this.runtimeLimit = runtimeLimit;
+        metrics.reset();
+        progress = null;
+        progressPublished = 0;
         startTime = System.currentTimeMillis();
         logger.info(new SearchStartedMessage());
         fireSearchStarted();
-        ParetoFrontier f = runSearch(runtimeLimit, numThreads);
+        ParetoFrontier f;
+        synchronized(SearchEngine.class){
+            numRunningSearches++;
+        }
+        try {
+            f = runSearch(runtimeLimit, numThreads);
+        } finally {
+            synchronized(SearchEngine.class){
+                numRunningSearches--;
+            }
+        }
         
         // if debugging, wait for enter before finishing
         if(logger.isDebugEnabled()){
@@ -100,8 +148,10 @@ public abstract class SearchEngine{
         }
         
         stopTime = System.currentTimeMillis();
+        fireSearchMetrics();
         fireSearchStopped();
         logger.info(new SearchStoppedMessage(stopTime-startTime));
+        logger.info(VERBOSE, "Search metrics:\n{}", metrics);
         
         return f;
     }
@@ -116,6 +166,20 @@ public abstract class SearchEngine{
      */
     protected abstract ParetoFrontier runSearch(long runtimeLimit, int numThreads) throws GenestackerException;
     
+    /**
+     * Reset the IDs assigned to the nodes of newly created crossing schemes, unless other searches are running
+     * in the same JVM: these may still create nodes, of which the IDs should not collide with those of existing
+     * nodes. Should only be called from {@link #runSearch(long, int)}, before any nodes are created.
+     */
+    protected static synchronized void resetNodeIDs(){
+        if(numRunningSearches == 1){
+            SeedLotNode.resetIDs();
+            PlantNode.resetIDs();
+            CrossingNode.resetIDs();
+            CrossingSchemeAlternatives.resetIDs();
+        }
+    }
+    
     protected boolean runtimeLimitExceeded(){
         if(runtimeLimit != GenestackerConstants.NO_RUNTIME_LIMIT){
             return System.currentTimeMillis()-startTime > runtimeLimit;
@@ -142,6 +206,80 @@ public abstract class SearchEngine{
         return stopTime;
     }
     
+    /**
+     * Get the runtime limit of the current (or last) search run.
+     * 
+     * @return runtime limit (milliseconds), {@link GenestackerConstants#NO_RUNTIME_LIMIT} if no limit was set
+     */
+    public long getRuntimeLimit(){
+        return runtimeLimit;
+    }
+    
+    /**
+     * Get the most recently published progress of the current (or last) search run. May be called from
+     * any thread, and never blocks the search.
+     * 
+     * @return search progress, <code>null</code> if no progress has been published during the current run
+     */
+    public SearchProgress getProgress(){
+        return progress;
+    }
+    
+    /**
+     * Publish the progress of the current search run.
+     * 
+     * @param progress search progress
+     */
+    protected void publishProgress(SearchProgress progress){
+        this.progress = progress;
+        progressPublished = System.currentTimeMillis();
+    }
+    
+    /**
+     * Check whether a new progress snapshot should be published, i.e. whether no progress has been published
+     * during the last {@link #PROGRESS_PUBLISH_INTERVAL} milliseconds. Used by the search thread to avoid creating
+     * a snapshot for every step of the search. Snapshots published at the end of a run should not be skipped.
+     * 
+     * @return <code>true</code> if progress should be published
+     */
+    protected boolean progressDue(){
+        return System.currentTimeMillis() - progressPublished >= PROGRESS_PUBLISH_INTERVAL;
+    }
+    
+    /**
+     * Reset the frontier version and take a snapshot of the initial Pareto frontier of a new search run.
+     * 
+     * @param frontier initial Pareto frontier
+     */
+    protected void resetFrontierSnapshot(ParetoFrontier frontier){
+        frontierVersion = 0;
+        updateFrontierSnapshot(frontier);
+    }
+    
+    /**
+     * Take a snapshot of the descriptors of all schemes in the given frontier, to be published
+     * as part of the search progress, and increase the frontier version.
+     * 
+     * @param frontier current Pareto frontier
+     */
+    protected void updateFrontierSnapshot(ParetoFrontier frontier){
+        List<CrossingSchemeDescriptor> descriptors = new ArrayList<>();
+        for(CrossingScheme s : frontier.getFrontier()){
+            descriptors.add(frontier.inferDescriptor(s));
+        }
+        frontierSnapshot = descriptors;
+        frontierVersion++;
+    }
+    
+    /**
+     * Get the metrics collected during the current (or last) search run.
+     * 
+     * @return search metrics
+     */
+    public SearchMetrics getMetrics(){
+        return metrics;
+    }
+    
     public void addSearchListener(SearchListener l){
         synchronized(searchListeners){
             searchListeners.add(l);
@@ -172,6 +310,18 @@ public abstract class SearchEngine{
         }
     }
     
+    protected void fireSearchMetrics(){
+        synchronized(searchListeners){
+            Iterator<SearchListener> it = searchListeners.iterator();
+            while(it.hasNext()){
+                SearchListener l = it.next();
+                if(l instanceof SearchMetricsListener){
+                    ((SearchMetricsListener) l).searchMetrics(metrics);
+                }
+            }
+        }
+    }
+    
     protected void fireSearchStopped(){
         synchronized(searchListeners){
             Iterator<SearchListener> it = searchListeners.iterator();
@@ -0,0 +1,32 @@
+//  Copyright 2012 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search;
+
+/**
+ * Event which has been started by a {@link SearchEventRecorder} and ends when it is committed.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public abstract class SearchEvent {
+
+    /**
+     * End and record this event with the given values, which should correspond to the fields
+     * of the event type (see {@link SearchEventType}).
+     *
+     * @param values attached values
+     */
+    public abstract void commit(Object... values);
+
+}
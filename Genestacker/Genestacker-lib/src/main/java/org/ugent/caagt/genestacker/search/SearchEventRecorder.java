@@ -0,0 +1,75 @@
+//  Copyright 2012 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search;
+
+/**
+ * Records events emitted during a search (e.g. dequeueing of a scheme, construction of a seed lot), so that
+ * these can be related to profiling data. A single recorder is installed globally; by default, no recorder is
+ * installed and {@link #begin(SearchEventType)} returns <code>null</code>, so that emitting an event costs no
+ * more than a single volatile read. Events are emitted as follows:
+ * <pre>
+ * SearchEvent event = SearchEventRecorder.begin(SearchEventType.SEED_LOT_CONSTRUCTION);
+ * ...
+ * if(event != null){
+ *     event.commit(selfing, partial, seedLot.nrOfGenotypes());
+ * }
+ * </pre>
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public abstract class SearchEventRecorder {
+
+    // installed recorder (null if none)
+    private static volatile SearchEventRecorder recorder = null;
+
+    /**
+     * Install the given recorder, replacing any previously installed recorder.
+     *
+     * @param rec recorder, <code>null</code> to disable recording
+     */
+    public static void setRecorder(SearchEventRecorder rec){
+        recorder = rec;
+    }
+
+    /**
+     * Get the installed recorder.
+     *
+     * @return installed recorder, <code>null</code> if none
+     */
+    public static SearchEventRecorder getRecorder(){
+        return recorder;
+    }
+
+    /**
+     * Start an event of the given type.
+     *
+     * @param type event type
+     * @return started event, <code>null</code> if no recorder is installed or if the installed
+     *         recorder does not record events of this type at the moment
+     */
+    public static SearchEvent begin(SearchEventType type){
+        SearchEventRecorder rec = recorder;
+        return rec == null ? null : rec.start(type);
+    }
+
+    /**
+     * Start an event of the given type.
+     *
+     * @param type event type
+     * @return started event, <code>null</code> if events of this type are currently not recorded
+     */
+    protected abstract SearchEvent start(SearchEventType type);
+
+}
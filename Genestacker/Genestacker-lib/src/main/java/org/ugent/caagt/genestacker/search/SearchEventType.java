@@ -0,0 +1,89 @@
+//  Copyright 2012 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search;
+
+/**
+ * Types of events emitted during a search, see {@link SearchEventRecorder}. Each type specifies the
+ * names and types of the values that are attached to its events, in the order in which these values
+ * are passed to {@link SearchEvent#commit(Object...)}.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public enum SearchEventType {
+
+    SCHEME_DEQUEUE("SchemeDequeue", "Scheme Dequeue",
+                   "Dequeueing and extension of a partial crossing scheme",
+                   new String[]{"schemeID", "numAlternatives", "numGenerations", "populationSize", "queueSize"},
+                   new Class<?>[]{long.class, int.class, int.class, long.class, int.class}),
+    SELFING_EXPANSION("SelfingExpansion", "Selfing Expansion",
+                      "Extension of a partial crossing scheme by selfing its final plant",
+                      new String[]{"schemeID", "numGenerations", "numNewSchemes"},
+                      new Class<?>[]{long.class, int.class, int.class}),
+    CROSS_WORKER_BATCH("CrossWorkerBatch", "Cross Worker Batch",
+                       "Previous schemes combined with the current scheme by a single cross worker",
+                       new String[]{"schemeID", "numCombinedSchemes", "numNewSchemes"},
+                       new Class<?>[]{long.class, int.class, int.class}),
+    SEED_LOT_CONSTRUCTION("SeedLotConstruction", "Seed Lot Construction",
+                          "Construction of the seed lot obtained from a crossing or selfing",
+                          new String[]{"selfing", "partial", "numGenotypes"},
+                          new Class<?>[]{boolean.class, boolean.class, int.class}),
+    FRONTIER_UPDATE("FrontierUpdate", "Frontier Update",
+                    "Registration of a new solution in the Pareto frontier",
+                    new String[]{"numGenerations", "populationSize", "linkagePhaseAmbiguity", "updated", "frontierSize"},
+                    new Class<?>[]{int.class, long.class, double.class, boolean.class, int.class}),
+    POPULATION_SIZE("PopulationSize", "Population Size",
+                    "Computation of the number of seeds taken from a seed lot",
+                    new String[]{"numGenerations", "numTargets", "numSeeds"},
+                    new Class<?>[]{int.class, int.class, long.class});
+
+    // short name, label and description
+    private final String name, label, description;
+    // names and types of attached values
+    private final String[] fieldNames;
+    private final Class<?>[] fieldTypes;
+
+    private SearchEventType(String name, String label, String description, String[] fieldNames, Class<?>[] fieldTypes){
+        this.name = name;
+        this.label = label;
+        this.description = description;
+        this.fieldNames = fieldNames;
+        this.fieldTypes = fieldTypes;
+    }
+
+    public String getName(){
+        return name;
+    }
+
+    public String getLabel(){
+        return label;
+    }
+
+    public String getDescription(){
+        return description;
+    }
+
+    public int getNumFields(){
+        return fieldNames.length;
+    }
+
+    public String getFieldName(int i){
+        return fieldNames[i];
+    }
+
+    public Class<?> getFieldType(int i){
+        return fieldTypes[i];
+    }
+
+}
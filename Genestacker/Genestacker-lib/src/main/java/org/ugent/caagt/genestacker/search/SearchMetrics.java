@@ -0,0 +1,223 @@
+//  Copyright 2012 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of named counters and timers, used to collect statistics about the different phases of a search
+ * (e.g. the number of schemes pruned by each criterion, seed lot cache hits, time spent in the scheme merger).
+ * Counters and timers are created on first use and may be updated concurrently. Names are dot-separated,
+ * starting with the component that updates them (e.g. <code>seedlot.cache.hit</code>). A search engine resets
+ * its metrics at the start of each run and passes them to all search listeners that implement
+ * {@link SearchMetricsListener} when the run has stopped.
+ * <p>
+ * Metrics can be disabled, in which case all updates are ignored without looking up the counter or timer, and
+ * {@link #startTime()} does not read the clock, so that disabled metrics add no overhead to the search.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class SearchMetrics {
+
+    // counters
+    private final ConcurrentMap<String, StripedCounter> counters;
+    // timers
+    private final ConcurrentMap<String, LatencyHistogram> timers;
+    // enabled ? (default: true)
+    private volatile boolean enabled = true;
+
+    public SearchMetrics(){
+        counters = new ConcurrentHashMap<>();
+        timers = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Enable or disable the metrics. While disabled, all updates are ignored. Existing
+     * counters and timers are retained, also when the metrics are reset.
+     *
+     * @param enabled <code>true</code> if metrics are collected
+     */
+    public void setEnabled(boolean enabled){
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled(){
+        return enabled;
+    }
+
+    /**
+     * Get the counter with the given name, creating it if necessary.
+     *
+     * @param name counter name
+     * @return counter
+     */
+    public StripedCounter counter(String name){
+        StripedCounter c = counters.get(name);
+        if(c == null){
+            c = new StripedCounter();
+            StripedCounter prev = counters.putIfAbsent(name, c);
+            if(prev != null){
+                c = prev;
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Get the timer with the given name, creating it if necessary.
+     *
+     * @param name timer name
+     * @return timer
+     */
+    public LatencyHistogram timer(String name){
+        LatencyHistogram t = timers.get(name);
+        if(t == null){
+            t = new LatencyHistogram();
+            LatencyHistogram prev = timers.putIfAbsent(name, t);
+            if(prev != null){
+                t = prev;
+            }
+        }
+        return t;
+    }
+
+    /**
+     * Increase the counter with the given name by one.
+     *
+     * @param name counter name
+     */
+    public void increment(String name){
+        if(enabled){
+            counter(name).increment();
+        }
+    }
+
+    /**
+     * Increase the counter with the given name by the given amount.
+     *
+     * @param name counter name
+     * @param delta amount added to the counter
+     */
+    public void add(String name, long delta){
+        if(enabled){
+            counter(name).add(delta);
+        }
+    }
+
+    /**
+     * Record a duration for the timer with the given name.
+     *
+     * @param name timer name
+     * @param nanos duration in nanoseconds
+     */
+    public void record(String name, long nanos){
+        if(enabled){
+            timer(name).record(nanos);
+        }
+    }
+
+    /**
+     * Get the start time of a duration that is later recorded with {@link #recordSince(String, long)}.
+     *
+     * @return current value of {@link System#nanoTime()}, or 0 if the metrics are disabled
+     */
+    public long startTime(){
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record the time elapsed since the given start time for the timer with the given name.
+     *
+     * @param name timer name
+     * @param startNanos start time, obtained from {@link #startTime()}
+     */
+    public void recordSince(String name, long startNanos){
+        if(enabled){
+            timer(name).record(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Get the current value of all counters, sorted by name.
+     *
+     * @return counter values
+     */
+    public SortedMap<String, Long> getCounts(){
+        SortedMap<String, Long> counts = new TreeMap<>();
+        for(Map.Entry<String, StripedCounter> c : counters.entrySet()){
+            counts.put(c.getKey(), c.getValue().sum());
+        }
+        return counts;
+    }
+
+    /**
+     * Get all timers, sorted by name.
+     *
+     * @return timers
+     */
+    public SortedMap<String, LatencyHistogram> getTimers(){
+        return new TreeMap<>(timers);
+    }
+
+    /**
+     * Get the current value of the counter with the given name (zero if the counter does not exist).
+     *
+     * @param name counter name
+     * @return counter value
+     */
+    public long getCount(String name){
+        StripedCounter c = counters.get(name);
+        return c == null ? 0 : c.sum();
+    }
+
+    /**
+     * Discard all counters and timers.
+     */
+    public void reset(){
+        counters.clear();
+        timers.clear();
+    }
+
+    /**
+     * Create a summary of all counters and timers, one per line. Timers are summarized by their
+     * number of recorded durations, total duration, mean, median, 99th percentile and maximum.
+     *
+     * @return formatted summary
+     */
+    public String formatSummary(){
+        StringBuilder s = new StringBuilder();
+        for(Map.Entry<String, Long> c : getCounts().entrySet()){
+            s.append(String.format(Locale.ROOT, "%-45s %15d%n", c.getKey(), c.getValue()));
+        }
+        for(Map.Entry<String, LatencyHistogram> t : getTimers().entrySet()){
+            LatencyHistogram h = t.getValue();
+            s.append(String.format(Locale.ROOT, "%-45s %15d calls, total %.1f ms, mean %.1f us, p50 %.1f us, p99 %.1f us, max %.1f us%n",
+                                   t.getKey(), h.getCount(), h.getTotal() / 1e6, h.getMean() / 1e3,
+                                   h.getPercentile(50) / 1e3, h.getPercentile(99) / 1e3, h.getMax() / 1e3));
+        }
+        return s.toString();
+    }
+
+    @Override
+    public String toString(){
+        return formatSummary();
+    }
+
+}
@@ -0,0 +1,33 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search;
+
+/**
+ * Optional extension of a {@link SearchListener} that receives the metrics collected during each search run.
+ * A search engine checks whether each of its search listeners implements this interface when a run has stopped.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public interface SearchMetricsListener {
+
+    /**
+     * Called when the search has stopped, right before {@link SearchListener#searchStopped()}, with
+     * the metrics collected during the search run.
+     *
+     * @param metrics search metrics
+     */
+    public void searchMetrics(SearchMetrics metrics);
+
+}
@@ -0,0 +1,81 @@
+//  Copyright 2012 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable snapshot of the progress of a search run, published by the search engine so that it can be
+ * monitored from other threads without synchronizing with the search. The frontier is represented by the
+ * descriptors of the contained schemes only; its version is increased whenever the frontier changes.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class SearchProgress {
+
+    // time elapsed since the start of the search run (ms)
+    private final long elapsedTime;
+    // number of dequeued schemes
+    private final long numDequeued;
+    // number of queued schemes
+    private final int queueSize;
+    // number of previously considered schemes
+    private final int numPreviousSchemes;
+    // descriptors of the schemes in the current Pareto frontier
+    private final List<CrossingSchemeDescriptor> frontier;
+    // frontier version
+    private final int frontierVersion;
+
+    public SearchProgress(long elapsedTime, long numDequeued, int queueSize, int numPreviousSchemes,
+                            List<CrossingSchemeDescriptor> frontier, int frontierVersion){
+        this.elapsedTime = elapsedTime;
+        this.numDequeued = numDequeued;
+        this.queueSize = queueSize;
+        this.numPreviousSchemes = numPreviousSchemes;
+        this.frontier = Collections.unmodifiableList(frontier);
+        this.frontierVersion = frontierVersion;
+    }
+
+    public long getElapsedTime(){
+        return elapsedTime;
+    }
+
+    public long getNumDequeued(){
+        return numDequeued;
+    }
+
+    public int getQueueSize(){
+        return queueSize;
+    }
+
+    public int getNumPreviousSchemes(){
+        return numPreviousSchemes;
+    }
+
+    /**
+     * Get the descriptors of the schemes in the current Pareto frontier. These descriptors should not be modified.
+     *
+     * @return unmodifiable list of descriptors
+     */
+    public List<CrossingSchemeDescriptor> getFrontier(){
+        return frontier;
+    }
+
+    public int getFrontierVersion(){
+        return frontierVersion;
+    }
+
+}
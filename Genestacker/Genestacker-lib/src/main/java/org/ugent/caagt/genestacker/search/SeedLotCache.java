@@ -16,6 +16,7 @@ package org.ugent.caagt.genestacker.search;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.ugent.caagt.genestacker.Genotype;
 import org.ugent.caagt.genestacker.SeedLot;
 
@@ -26,11 +27,24 @@ import org.ugent.caagt.genestacker.SeedLot;
  */
 public class SeedLotCache {
 
-    private Map<Genotype, Map<Genotype, SeedLot>> cache;
+    private ConcurrentMap<Genotype, ConcurrentMap<Genotype, SeedLot>> cache;
+    
+    // metrics used to count cache hits and misses
+    private SearchMetrics metrics;
     
     public SeedLotCache(){
         // use concurrent hash map (parallel access by cross workers)
         cache = new ConcurrentHashMap<>();
+        metrics = new SearchMetrics();
+    }
+    
+    /**
+     * Set the metrics in which cache hits and misses are counted.
+     * 
+     * @param metrics search metrics
+     */
+    public void setMetrics(SearchMetrics metrics){
+        this.metrics = metrics;
     }
     
     /**
@@ -44,29 +58,55 @@ public class SeedLotCache {
      *         if this seed lot is not yet present in the cache
      */
     public SeedLot getCachedSeedLot(Genotype g1, Genotype g2){
-        SeedLot seedlot = null;
-        // check if present in cache
-        if(cache.containsKey(g1) && cache.get(g1).containsKey(g2)){
-            seedlot = cache.get(g1).get(g2);
-        } else if (cache.containsKey(g2) && cache.get(g2).containsKey(g1)){
-            seedlot = cache.get(g2).get(g1);
+        // single lookup per map (the cache may be cleared concurrently)
+        SeedLot seedlot = get(g1, g2);
+        if(seedlot == null){
+            seedlot = get(g2, g1);
         }
+        metrics.increment(seedlot != null ? "seedlot.cache.hit" : "seedlot.cache.miss");
         return seedlot;
     }
     
+    private SeedLot get(Genotype g1, Genotype g2){
+        Map<Genotype, SeedLot> seedlots = cache.get(g1);
+        return seedlots == null ? null : seedlots.get(g2);
+    }
+    
     /**
-     * Store the seed lot obtained from crossing genotype g1 with genotype g2 in the cache.
+     * Store the seed lot obtained from crossing genotype g1 with genotype g2 in the cache,
+     * unless a seed lot has already been stored for these genotypes (e.g. concurrently by
+     * another thread), in which case the latter is retained.
      * 
      * @param g1 genotype 1
      * @param g2 genotype 2
      * @param seedlot seed lot obtained by crossing the given genotypes
+     * @return the cached seed lot, which is either the given seed lot or a previously cached one
+     */
+    public SeedLot cache(Genotype g1, Genotype g2, SeedLot seedlot){
+        ConcurrentMap<Genotype, SeedLot> seedlots = cache.get(g1);
+        if(seedlots == null){
+            // use concurrent hash map (do not replace a map created concurrently by another thread)
+            ConcurrentMap<Genotype, SeedLot> created = new ConcurrentHashMap<>();
+            seedlots = cache.putIfAbsent(g1, created);
+            if(seedlots == null){
+                seedlots = created;
+            }
+        }
+        SeedLot prev = seedlots.putIfAbsent(g2, seedlot);
+        return prev != null ? prev : seedlot;
+    }
+    
+    /**
+     * Get the number of cached seed lots.
+     * 
+     * @return number of cached seed lots
      */
-    public void cache(Genotype g1, Genotype g2, SeedLot seedlot){
-        if(!cache.containsKey(g1)){
-            // use concurrent hash map
-            cache.put(g1, new ConcurrentHashMap<Genotype, SeedLot>());
+    public int size(){
+        int size = 0;
+        for(Map<Genotype, SeedLot> seedlots : cache.values()){
+            size += seedlots.size();
         }
-        cache.get(g1).put(g2, seedlot);
+        return size;
     }
     
     public void clear(){
@@ -0,0 +1,98 @@
+//  Copyright 2012 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter which may be updated concurrently by many threads with little contention. The count is
+ * spread over a number of cells (stripes), where each thread always updates the same cell, selected
+ * based on its ID. Cells are padded to avoid false sharing between threads updating adjacent cells.
+ * The total count is obtained by summing all cells; this sum is not an atomic snapshot when
+ * updates occur concurrently.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class StripedCounter {
+
+    // distance (in longs) between consecutive cells
+    private static final int PADDING = 8;
+
+    // padded cells
+    private final AtomicLongArray cells;
+    // mask used to select a cell (number of cells is a power of two)
+    private final int mask;
+
+    /**
+     * Create a counter with a number of cells based on the number of available processors.
+     */
+    public StripedCounter(){
+        this(2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a counter with the given number of cells (rounded up to a power of two).
+     *
+     * @param stripes number of cells
+     */
+    public StripedCounter(int stripes){
+        int n = 1;
+        while(n < stripes){
+            n <<= 1;
+        }
+        mask = n-1;
+        cells = new AtomicLongArray(n * PADDING);
+    }
+
+    /**
+     * Add the given value to the count.
+     *
+     * @param x value to be added
+     */
+    public void add(long x){
+        int cell = (int) Thread.currentThread().getId() & mask;
+        cells.addAndGet(cell * PADDING, x);
+    }
+
+    /**
+     * Increase the count by one.
+     */
+    public void increment(){
+        add(1);
+    }
+
+    /**
+     * Get the current count.
+     *
+     * @return sum of all cells
+     */
+    public long sum(){
+        long sum = 0;
+        for(int c=0; c<=mask; c++){
+            sum += cells.get(c * PADDING);
+        }
+        return sum;
+    }
+
+    /**
+     * Reset the count to zero.
+     */
+    public void reset(){
+        for(int c=0; c<=mask; c++){
+            cells.set(c * PADDING, 0);
+        }
+    }
+
+}
@@ -0,0 +1,215 @@
+//  Copyright 2012 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search.bb;
+
+import java.lang.ref.WeakReference;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.ugent.caagt.genestacker.search.CrossingScheme;
+import org.ugent.caagt.genestacker.search.PlantNode;
+import org.ugent.caagt.genestacker.search.SeedLotNode;
+
+/**
+ * Bounded cache of the lower bounds used to prune alignments while merging schemes (see
+ * {@link MergedSchemes#pruneAlignment(CrossingScheme, CrossingScheme, java.util.Collection, int, CrossingScheme, java.util.Collection, int)}).
+ * For a given branch (one of both merged schemes) and a given next generation of this branch to be
+ * inserted into the merged scheme, the minimum increase in population size and the best case increase
+ * in linkage phase ambiguity caused by all generations that still have to be inserted only depend on
+ * the branch itself. These bounds are therefore computed only once and reused whenever the same branch,
+ * or a structurally equivalent branch, is merged again with the same offset, which frequently occurs as
+ * the search combines descendants of the same ancestors. Branches are identified by their fingerprint
+ * (see {@link CrossingScheme#getFingerprint()}). As fingerprints may collide, each cached bound keeps a weak
+ * reference to the branch for which it was computed, and a cached bound is only reused if that branch is
+ * still alive and equal to the given branch; otherwise, the bound is recomputed. The cache may be accessed
+ * concurrently and is cleared when the number of cached bounds exceeds a given maximum.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class AlignmentBoundCache {
+
+    // default maximum number of cached bounds
+    public static final int DEFAULT_MAX_SIZE = 100000;
+
+    // cached bounds
+    private final ConcurrentMap<Key, Entry> bounds;
+
+    // current and maximum number of cached bounds
+    private final AtomicInteger size;
+    private final int maxSize;
+
+    public AlignmentBoundCache(){
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public AlignmentBoundCache(int maxSize){
+        this.maxSize = maxSize;
+        bounds = new ConcurrentHashMap<>();
+        size = new AtomicInteger();
+    }
+
+    /**
+     * Get the bounds for the given branch, where <code>nextGen</code> is the next generation
+     * of this branch to be inserted into the merged scheme (bottom up).
+     *
+     * @param branch branch being merged
+     * @param fingerprint fingerprint of the branch
+     * @param nextGen next generation of the branch to be inserted
+     * @return bounds for the remaining generations of the branch
+     */
+    public BranchBound getBound(CrossingScheme branch, long fingerprint, int nextGen){
+        Key key = new Key(fingerprint, nextGen);
+        Entry entry = bounds.get(key);
+        if(entry != null){
+            CrossingScheme cached = entry.branch.get();
+            if(cached == branch || cached != null && cached.equals(branch)){
+                return entry.bound;
+            }
+        }
+        BranchBound bound = computeBound(branch, nextGen);
+        Entry newEntry = new Entry(branch, bound);
+        if(entry == null){
+            if(bounds.putIfAbsent(key, newEntry) == null && size.incrementAndGet() > maxSize){
+                clear();
+            }
+        } else if(entry.branch.get() == null){
+            // replace bound of collected branch (a different live branch with the same fingerprint is kept)
+            bounds.replace(key, entry, newEntry);
+        }
+        return bound;
+    }
+
+    /**
+     * Compute the bounds for the given branch, where <code>nextGen</code> is the next generation
+     * of this branch to be inserted into the merged scheme (bottom up).
+     *
+     * @param branch branch being merged
+     * @param nextGen next generation of the branch to be inserted
+     * @return bounds for the remaining generations of the branch
+     */
+    public static BranchBound computeBound(CrossingScheme branch, int nextGen){
+        // combined LPA of all distinct ancestor plant nodes in generations before nextGen
+        Set<PlantNode> plants = new HashSet<>();
+        for(int gen = nextGen-1; gen >= 0; gen--){
+            plants.addAll(branch.getPlantNodesFromGeneration(gen));
+        }
+        double lpa = 0.0;
+        for(PlantNode pn : plants){
+            lpa = 1.0 - (1.0-lpa)*(1.0-pn.getLinkagePhaseAmbiguity());
+        }
+        // seeds taken from all distinct ancestor seed lot nodes, starting from nextGen
+        Set<SeedLotNode> seedLots = new HashSet<>();
+        for(int gen = nextGen; gen >= 0; gen--){
+            seedLots.addAll(branch.getSeedLotNodesFromGeneration(gen));
+        }
+        long popSize = 0;
+        for(SeedLotNode sln : seedLots){
+            popSize += sln.getSeedsTakenFromSeedLot();
+        }
+        return new BranchBound(popSize, lpa);
+    }
+
+    /**
+     * Discard all cached bounds.
+     */
+    public void clear(){
+        bounds.clear();
+        size.set(0);
+    }
+
+    /**
+     * Get the current number of cached bounds.
+     *
+     * @return number of cached bounds
+     */
+    public int size(){
+        return size.get();
+    }
+
+    /**
+     * Bounds for the remaining generations of a branch.
+     */
+    public static class BranchBound {
+
+        // minimum increase in population size
+        private final long minPopSizeIncrease;
+        // best case increase in LPA caused by the ancestor plants (excluding dangling plants)
+        private final double bestCaseLPAIncrease;
+
+        public BranchBound(long minPopSizeIncrease, double bestCaseLPAIncrease){
+            this.minPopSizeIncrease = minPopSizeIncrease;
+            this.bestCaseLPAIncrease = bestCaseLPAIncrease;
+        }
+
+        public long getMinPopSizeIncrease(){
+            return minPopSizeIncrease;
+        }
+
+        public double getBestCaseLPAIncrease(){
+            return bestCaseLPAIncrease;
+        }
+
+    }
+
+    /**
+     * Cached bound, with a weak reference to the branch for which it has been computed.
+     */
+    private static class Entry {
+
+        private final WeakReference<CrossingScheme> branch;
+        private final BranchBound bound;
+
+        public Entry(CrossingScheme branch, BranchBound bound){
+            this.branch = new WeakReference<>(branch);
+            this.bound = bound;
+        }
+
+    }
+
+    /**
+     * Cache key: branch fingerprint and next generation.
+     */
+    private static class Key {
+
+        private final long fingerprint;
+        private final int nextGen;
+
+        public Key(long fingerprint, int nextGen){
+            this.fingerprint = fingerprint;
+            this.nextGen = nextGen;
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if(!(o instanceof Key)){
+                return false;
+            }
+            Key k = (Key) o;
+            return fingerprint == k.fingerprint && nextGen == k.nextGen;
+        }
+
+        @Override
+        public int hashCode(){
+            int hash = 7;
+            hash = 59 * hash + (int) (fingerprint ^ (fingerprint >>> 32));
+            hash = 59 * hash + nextGen;
+            return hash;
+        }
+
+    }
+
+}
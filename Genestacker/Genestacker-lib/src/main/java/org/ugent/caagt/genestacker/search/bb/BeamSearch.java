@@ -0,0 +1,374 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search.bb;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.MarkerManager;
+import org.ugent.caagt.genestacker.Plant;
+import org.ugent.caagt.genestacker.SeedLot;
+import org.ugent.caagt.genestacker.exceptions.GenestackerException;
+import org.ugent.caagt.genestacker.exceptions.SearchException;
+import org.ugent.caagt.genestacker.io.GenestackerInput;
+import org.ugent.caagt.genestacker.io.GraphColorScheme;
+import org.ugent.caagt.genestacker.io.GraphFileFormat;
+import org.ugent.caagt.genestacker.search.CrossingScheme;
+import org.ugent.caagt.genestacker.search.CrossingSchemeAlternatives;
+import org.ugent.caagt.genestacker.search.CrossingSchemeDescriptor;
+import org.ugent.caagt.genestacker.search.DefaultDominatesRelation;
+import org.ugent.caagt.genestacker.search.DominatesRelation;
+import org.ugent.caagt.genestacker.search.ParetoFrontier;
+import org.ugent.caagt.genestacker.search.PlantNode;
+import org.ugent.caagt.genestacker.search.PopulationSizeTools;
+import org.ugent.caagt.genestacker.search.SearchEngine;
+import org.ugent.caagt.genestacker.search.SearchProgress;
+import org.ugent.caagt.genestacker.search.SeedLotCache;
+import org.ugent.caagt.genestacker.search.SeedLotNode;
+import org.ugent.caagt.genestacker.search.bb.heuristics.Heuristics;
+import org.ugent.caagt.genestacker.search.bb.heuristics.PlantCollectionFilter;
+import org.ugent.caagt.genestacker.search.bb.heuristics.SeedLotFilter;
+import org.ugent.caagt.genestacker.search.constraints.Constraint;
+import org.ugent.caagt.genestacker.search.constraints.NumberOfSeedsPerCrossing;
+import org.ugent.caagt.genestacker.util.TimeFormatting;
+
+/**
+ * Beam search engine which, in contrast to branch and bound, only retains a fixed number of partial schemes
+ * in each generation. Starting from the initial plants, the schemes in the current beam are extended in each
+ * step by selfing their final plant and by crossing it with the final plants of all schemes retained in
+ * previous steps (and the preceding schemes in the current beam). Of all new partial schemes, only the most
+ * promising ones with distinct final plants form the next beam, ranked by their distance to the ideotype and
+ * by the lower bounds that the solution manager computes for their extensions (see {@link IdeotypeDistanceComparator}).
+ * Extension reuses the seed lot construction, merging and pruning of branch and bound (see {@link SchemeExtender}
+ * and {@link BranchAndBoundSolutionManager}), and the schemes in the beam are extended in parallel.
+ * <p>
+ * The number of retained schemes, and thus the memory usage and runtime of the search, grows linearly with the
+ * number of generations. The returned Pareto frontier is an approximation, which is in general not exhaustive.
+ * The search stops when no new partial schemes remain, which is guaranteed if the number of generations is
+ * constrained, or when the runtime limit is exceeded.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class BeamSearch extends SearchEngine {
+
+    // logger
+    private Logger logger = LogManager.getLogger(BeamSearch.class);
+    // log marker
+    private static final Marker VERBOSE = MarkerManager.getMarker("VERBOSE");
+
+    // default beam width
+    public static final int DEFAULT_BEAM_WIDTH = 50;
+
+    // beam width
+    private final int beamWidth;
+
+    // dominates relation used by the Pareto frontier
+    private final DominatesRelation<CrossingSchemeDescriptor> dominatesRelation;
+
+    // seed lot constructor
+    private final SeedLotConstructor seedLotConstructor;
+    // seed lot cache
+    private final SeedLotCache seedLotCache;
+
+    // population size tools
+    private final PopulationSizeTools popSizeTools;
+
+    // constraints
+    private final List<Constraint> constraints;
+
+    // special constraint: maximum number of seeds per crossing (can be resolved)
+    private final NumberOfSeedsPerCrossing maxNumSeedsPerCrossing;
+
+    // heuristics
+    private final Heuristics heuristics;
+
+    // seed lot filters
+    private final List<SeedLotFilter> seedLotFilters;
+
+    // initial plant filter
+    private final PlantCollectionFilter initialPlantFilter;
+
+    // homozygous ideotype parents required ?
+    private final boolean homozygousIdeotypeParents;
+
+    // bounds shared with other searches (null if not used)
+    private SharedBounds sharedBounds;
+
+    public BeamSearch(GenestackerInput input, PopulationSizeTools popSizeTools, List<Constraint> constraints,
+                      NumberOfSeedsPerCrossing maxNumSeedsPerCrossing, Heuristics heuristics, List<SeedLotFilter> seedLotFilters,
+                      PlantCollectionFilter initialPlantFilter, SeedLotConstructor seedLotConstructor, int beamWidth){
+        this(input, GraphFileFormat.PDF, GraphColorScheme.COLORED, popSizeTools, constraints, maxNumSeedsPerCrossing,
+                heuristics, seedLotFilters, initialPlantFilter, seedLotConstructor, new DefaultDominatesRelation(), false, beamWidth);
+    }
+
+    public BeamSearch(GenestackerInput input, GraphFileFormat graphFileFormat, GraphColorScheme colorScheme,
+                      PopulationSizeTools popSizeTools, List<Constraint> constraints,
+                      NumberOfSeedsPerCrossing maxNumSeedsPerCrossing, Heuristics heuristics,
+                      List<SeedLotFilter> seedLotFilters, PlantCollectionFilter initialPlantFilter,
+                      SeedLotConstructor seedLotConstructor, DominatesRelation<CrossingSchemeDescriptor> dominatesRelation,
+                      boolean homozygousIdeotypeParents, int beamWidth){
+        super(input.getInitialPlants(), input.getIdeotype(), input.getGeneticMap(), graphFileFormat, colorScheme);
+        if(beamWidth < 1){
+            throw new IllegalArgumentException("Beam width should be positive.");
+        }
+        this.popSizeTools = popSizeTools;
+        this.constraints = constraints;
+        this.maxNumSeedsPerCrossing = maxNumSeedsPerCrossing;
+        this.heuristics = heuristics;
+        this.seedLotFilters = seedLotFilters;
+        this.initialPlantFilter = initialPlantFilter;
+        this.seedLotConstructor = seedLotConstructor;
+        this.dominatesRelation = dominatesRelation;
+        this.homozygousIdeotypeParents = homozygousIdeotypeParents;
+        this.beamWidth = beamWidth;
+        seedLotCache = new SeedLotCache();
+    }
+
+    public int getBeamWidth(){
+        return beamWidth;
+    }
+
+    public Heuristics getHeuristics(){
+        return heuristics;
+    }
+
+    /**
+     * Share bounds with other searches for the same problem, e.g. in other JVMs (see {@link SharedBounds}).
+     *
+     * @param sharedBounds shared bounds, <code>null</code> to disable sharing
+     */
+    public void setSharedBounds(SharedBounds sharedBounds){
+        this.sharedBounds = sharedBounds;
+    }
+
+    @Override
+    protected ParetoFrontier runSearch(long runtimeLimit, int numThreads) throws GenestackerException {
+
+        // reset ids (if no other searches are running)
+        resetNodeIDs();
+        // discard state of heuristics from previous runs
+        if(heuristics != null){
+            heuristics.reset();
+        }
+
+        // inform user about number of threads used (verbose)
+        logger.info(VERBOSE, "Number of threads used for extending the beam: {}", numThreads);
+        ExecutorService extPool = Executors.newFixedThreadPool(numThreads);
+        ForkJoinPool mergePool = new ForkJoinPool(numThreads);
+
+        // initialize solution manager
+        BranchAndBoundSolutionManager solManager = new BranchAndBoundSolutionManager(dominatesRelation, ideotype, popSizeTools,
+                                                                maxNumSeedsPerCrossing, constraints, heuristics, seedLotFilters, homozygousIdeotypeParents);
+        // record metrics of all components in those of this engine
+        solManager.setMetrics(metrics);
+        solManager.setSharedBounds(sharedBounds);
+        seedLotCache.setMetrics(metrics);
+        seedLotConstructor.setMetrics(metrics);
+        resetFrontierSnapshot(solManager.getFrontier());
+
+        // create scheme extender for this run
+        SchemeExtender extender = new SchemeExtender(seedLotConstructor, seedLotCache, null,
+                                                     mergePool, new AlignmentBoundCache(), metrics);
+
+        try {
+
+            // apply initial plant filter, if any
+            if(initialPlantFilter != null){
+                initialPlants = initialPlantFilter.filter(initialPlants);
+                logger.info(VERBOSE, "Retained {} initial plants", initialPlants.size());
+            }
+
+            // create initial partial schemes from initial plants
+            List<CrossingSchemeAlternatives> initialSchemes = new ArrayList<>();
+            for(Plant p : initialPlants){
+                SeedLotNode sln = new SeedLotNode(new SeedLot(p.getGenotype()), 0);
+                PlantNode pn = new PlantNode(p, 0, sln);
+                initialSchemes.add(new CrossingSchemeAlternatives(new CrossingScheme(popSizeTools, pn)));
+            }
+            registerNewSchemes(initialSchemes, solManager);
+
+            // select initial beam, retain all initial schemes for crossing
+            IdeotypeDistanceComparator comp = new IdeotypeDistanceComparator(ideotype, solManager);
+            List<CrossingSchemeAlternatives> beam = selectBeam(initialSchemes, comp, solManager);
+            List<CrossingSchemeAlternatives> retained = new ArrayList<>();
+            for(CrossingSchemeAlternatives s : initialSchemes){
+                if(s.nrOfAlternatives() > 0 && !beam.contains(s)){
+                    retained.add(s);
+                }
+            }
+
+            long numExtended = 0;
+            int step = 0;
+            while(!beam.isEmpty() && !runtimeLimitExceeded()){
+                step++;
+                // extend schemes in beam in parallel
+                List<Future<List<CrossingSchemeAlternatives>>> results = new ArrayList<>();
+                for(int i=0; i<beam.size(); i++){
+                    List<CrossingSchemeAlternatives> partners = new ArrayList<>(retained);
+                    partners.addAll(beam.subList(0, i));
+                    results.add(extPool.submit(new BeamWorker(beam.get(i), partners, extender, solManager)));
+                }
+                // collect new schemes in a fixed order
+                List<CrossingSchemeAlternatives> newSchemes = new ArrayList<>();
+                for(Future<List<CrossingSchemeAlternatives>> r : results){
+                    try {
+                        newSchemes.addAll(r.get());
+                    } catch (InterruptedException | ExecutionException ex) {
+                        throw new SearchException("An error occured while extending the beam.", ex);
+                    }
+                }
+                numExtended += beam.size();
+                retained.addAll(beam);
+                // register new schemes and select next beam
+                registerNewSchemes(newSchemes, solManager);
+                beam = selectBeam(newSchemes, comp, solManager);
+                metrics.increment("beam.steps");
+                metrics.add("beam.schemes.created", newSchemes.size());
+                // verbose
+                logger.info(VERBOSE, "Step {}: {} new scheme(s), beam size {}, num solutions: {} - T = {}",
+                                     step, newSchemes.size(), beam.size(),
+                                     solManager.getFrontier().getNumSchemes(),
+                                     TimeFormatting.formatTime(System.currentTimeMillis()-getStart()));
+                publishProgress(new SearchProgress(System.currentTimeMillis()-getStart(), numExtended, beam.size(),
+                                                   retained.size(), frontierSnapshot, frontierVersion));
+            }
+
+            if(runtimeLimitExceeded()){
+                // info
+                logger.info("Runtime limit exceeded");
+            }
+
+        } finally {
+            // shutdown thread pools
+            extPool.shutdownNow();
+            mergePool.shutdownNow();
+        }
+
+        return solManager.getFrontier();
+    }
+
+    /**
+     * Select the next beam from the given schemes. The queue pruning heuristics are only applied to the selected
+     * schemes, in order of preference, as stateful heuristics would otherwise prune extensions of the beam
+     * based on schemes which are never extended themselves.
+     *
+     * @param schemes candidate schemes
+     * @param comp comparator used to rank the candidates
+     * @param solManager solution manager
+     * @return next beam
+     */
+    private List<CrossingSchemeAlternatives> selectBeam(List<CrossingSchemeAlternatives> schemes,
+                                                       IdeotypeDistanceComparator comp,
+                                                       BranchAndBoundSolutionManager solManager){
+        List<CrossingSchemeAlternatives> beam = new ArrayList<>();
+        Iterator<CrossingSchemeAlternatives> it = comp.select(schemes, Integer.MAX_VALUE).iterator();
+        while(beam.size() < beamWidth && it.hasNext()){
+            CrossingSchemeAlternatives scheme = it.next();
+            Iterator<CrossingScheme> altIt = scheme.iterator();
+            while(altIt.hasNext()){
+                if(solManager.pruneQueueScheme(altIt.next())){
+                    altIt.remove();
+                }
+            }
+            if(scheme.nrOfAlternatives() > 0){
+                beam.add(scheme);
+            }
+        }
+        return beam;
+    }
+
+    /**
+     * Register new schemes: solutions are added to the Pareto frontier, and alternatives that can not be
+     * extended any further are removed.
+     *
+     * @param newSchemes newly created crossing schemes
+     * @param solManager solution manager
+     */
+    private void registerNewSchemes(List<CrossingSchemeAlternatives> newSchemes, BranchAndBoundSolutionManager solManager){
+        for(CrossingSchemeAlternatives scheme : newSchemes){
+            Iterator<CrossingScheme> it = scheme.iterator();
+            while(it.hasNext()){
+                CrossingScheme alt = it.next();
+                // check if alternative is a new solution
+                if(solManager.registerSolution(alt)){
+                    updateFrontierSnapshot(solManager.getFrontier());
+                    // info
+                    logger.info("Pareto frontier updated ({} solution(s)) - T = {}",
+                                    solManager.getFrontier().getNumSchemes(),
+                                    TimeFormatting.formatTime(System.currentTimeMillis()-getStart()));
+                }
+                // check if further extension of alternative should be pruned
+                if(solManager.pruneCrossCurrentScheme(alt) && solManager.pruneSelfCurrentScheme(alt)){
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Private implementation of a worker which extends a single scheme from the beam, by selfing it and
+     * crossing it with each of the given partners.
+     */
+    private final class BeamWorker implements Callable<List<CrossingSchemeAlternatives>> {
+
+        // scheme to extend
+        private final CrossingSchemeAlternatives scheme;
+        // schemes to cross with
+        private final List<CrossingSchemeAlternatives> partners;
+        // scheme extender
+        private final SchemeExtender extender;
+        // solution manager
+        private final BranchAndBoundSolutionManager solManager;
+
+        public BeamWorker(CrossingSchemeAlternatives scheme, List<CrossingSchemeAlternatives> partners,
+                          SchemeExtender extender, BranchAndBoundSolutionManager solManager){
+            this.scheme = scheme;
+            this.partners = partners;
+            this.extender = extender;
+            this.solManager = solManager;
+        }
+
+        @Override
+        public List<CrossingSchemeAlternatives> call() throws Exception {
+            List<CrossingSchemeAlternatives> newSchemes = new ArrayList<>();
+            // self
+            if(!SchemeExtender.pruneSelfAllAlternatives(scheme, solManager)){
+                newSchemes.addAll(extender.selfScheme(scheme, map, solManager));
+            }
+            // cross with partners
+            if(!SchemeExtender.pruneCrossAllAlternatives(scheme, solManager)){
+                Iterator<CrossingSchemeAlternatives> it = partners.iterator();
+                while(it.hasNext() && !runtimeLimitExceeded()){
+                    CrossingSchemeAlternatives other = it.next();
+                    if(!SchemeExtender.pruneCrossAllAlternatives(scheme, other, solManager)){
+                        newSchemes.addAll(extender.combineSchemes(scheme, other, map, solManager));
+                    }
+                }
+            }
+            return newSchemes;
+        }
+
+    }
+
+}
@@ -21,6 +21,7 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
@@ -31,7 +32,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import org.apache.commons.compress.archivers.ArchiveException;
+import java.util.concurrent.ForkJoinPool;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.Marker;
@@ -64,6 +65,9 @@ public class BranchAndBound extends SearchEngine {
         VERY_VERBOSE.setParents(VERBOSE);
     }
     
+    // default beam width used to construct initial solutions in anytime mode
+    public static final int DEFAULT_ANYTIME_BEAM_WIDTH = 8;
+    
     // previously considered schemes (grouped by alternatives of the same scheme)
     private List<CrossingSchemeAlternatives> previousSchemes;
     // previously considered schemes (all alternatives individually contained)
@@ -71,11 +75,32 @@ public class BranchAndBound extends SearchEngine {
     // queue schemes to be considered later
     private Queue<CrossingSchemeAlternatives> schemeQueue;
     
+    // fork join pool used to parallelize the work within a single scheme merge
+    private ForkJoinPool mergePool;
+    // thread pools shared with other searches (null if created for each run)
+    private ExecutorService sharedExtensionPool = null;
+    private ForkJoinPool sharedMergePool = null;
+    // cache of bounds used to prune alignments while merging schemes
+    private AlignmentBoundCache alignmentBoundCache;
+    // extends schemes during the current search run
+    private SchemeExtender schemeExtender;
+    
     // dominates relation used by the Pareto frontier
     private DominatesRelation<CrossingSchemeDescriptor> dominatesRelation;
     
     // seed lot cache
     private SeedLotCache seedLotCache;
+    // unfiltered seed lots shared with other searches (null if not shared)
+    private SeedLotCache unfilteredSeedLotCache = null;
+    
+    // number of cross workers launched per extended scheme (at most the number of threads of the search)
+    private volatile int numCrossWorkers = Integer.MAX_VALUE;
+    
+    // beam width used to construct initial solutions before branch and bound (0 if anytime mode is disabled)
+    private int anytimeBeamWidth = 0;
+    
+    // skip symmetric extensions, i.e. duplicate initial plants and crossings of plants with the same genotype (default: false)
+    private boolean symmetryReduction = false;
     
     // seed lot constructor
     private SeedLotConstructor seedLotConstructor;
@@ -98,6 +123,9 @@ public class BranchAndBound extends SearchEngine {
     // initial Pareto frontier already known before starting the search
     private ParetoFrontier initialFrontier;
     
+    // bounds shared with other searches (null if not used)
+    private SharedBounds sharedBounds;
+    
     // initial plant filter
     private PlantCollectionFilter initialPlantFilter;
     
@@ -108,6 +136,8 @@ public class BranchAndBound extends SearchEngine {
     private boolean writeIntermediateOutput = false;
     // file name of intermediate output
     private String intermediatOutputFileName = null;
+    // background writer of intermediate output (only during search runs with intermediate output)
+    private IntermediateOutputWriter intermediateOutputWriter = null;
     
     public BranchAndBound(GenestackerInput input, PopulationSizeTools popSizeTools, List<Constraint> constraints, NumberOfSeedsPerCrossing maxNumSeedsPerCrossing,
                             Heuristics heuristics, List<SeedLotFilter> seedLotFilters, PlantCollectionFilter initialPlantFilter, SeedLotConstructor seedLotConstructor){
@@ -157,40 +187,181 @@ public class BranchAndBound extends SearchEngine {
         seedLotCache = new SeedLotCache();
     }
     
+    public Heuristics getHeuristics(){
+        return heuristics;
+    }
+    
     public void setHeuristics(Heuristics heur){
         this.heuristics = heur;
     }
     
+    public List<SeedLotFilter> getSeedLotFilters(){
+        return seedLotFilters;
+    }
+    
     public void setSeedLotFilters(List<SeedLotFilter> filters){
         this.seedLotFilters = filters;
         // IMPORTANT: upon changing the seed lot filters, the seed lot cache of this
-        //            engine is cleared because it is no longer up to date
-        seedLotCache.clear();
+        //            engine is replaced because it is no longer up to date
+        //            (a new cache is created so that a cache that has been
+        //            set from outside remains valid for its own settings)
+        seedLotCache = new SeedLotCache();
+    }
+    
+    public List<Constraint> getConstraints(){
+        return constraints;
     }
     
     public void setConstraints(List<Constraint> constraints){
         this.constraints = constraints;
         // IMPORTANT: upon changing the constraints, the seed lot cache of this
-        //            engine is cleared because it is no longer up to date
+        //            engine is replaced because it is no longer up to date
         //            (basic filtering is based constraints, e.g. max linkage phase ambiguity
         //                                                      & max pop size per gen)
-        seedLotCache.clear();
+        seedLotCache = new SeedLotCache();
+    }
+    
+    public PopulationSizeTools getPopulationSizeTools(){
+        return popSizeTools;
     }
     
     public void setPopulationSizeTools(PopulationSizeTools popSizeTools){
         this.popSizeTools = popSizeTools;
         // IMPORTANT: upon changing the population size tools,
         //            the seed lot cache of this search engine is
-        //            cleared because it is no longer up to date
+        //            replaced because it is no longer up to date
         //            (basic filtering of seed lots is based on the
         //            population size tools)
-        seedLotCache.clear();
+        seedLotCache = new SeedLotCache();
+    }
+    
+    /**
+     * Set the cache of filtered seed lots used by this engine. The cache should only contain seed lots that have
+     * been filtered according to the current constraints, population size tools and seed lot filters of this engine
+     * (see {@link BranchAndBoundSession}). It is replaced by a new, empty cache when any of these are changed.
+     * 
+     * @param seedLotCache cache of filtered seed lots
+     */
+    public void setSeedLotCache(SeedLotCache seedLotCache){
+        this.seedLotCache = seedLotCache;
+    }
+    
+    public DominatesRelation<CrossingSchemeDescriptor> getDominatesRelation(){
+        return dominatesRelation;
     }
     
     public void setInitialFrontier(ParetoFrontier frontier){
         this.initialFrontier = frontier;
     }
     
+    /**
+     * Share bounds with other searches for the same problem, e.g. in other JVMs (see {@link SharedBounds}).
+     * 
+     * @param sharedBounds shared bounds, <code>null</code> to disable sharing
+     */
+    public void setSharedBounds(SharedBounds sharedBounds){
+        this.sharedBounds = sharedBounds;
+    }
+    
+    /**
+     * Share unfiltered seed lots with other searches, e.g. for different ideotypes. Seed lots are taken from or
+     * stored in the given cache before filtering, where each search filters its own copy. The cache should only
+     * be shared among engines with a default seed lot constructor for the same genetic map, as these create
+     * seed lots that only depend on the parent genotypes.
+     * 
+     * @param unfilteredSeedLotCache shared cache of unfiltered seed lots, <code>null</code> to disable sharing
+     */
+    public void setUnfilteredSeedLotCache(SeedLotCache unfilteredSeedLotCache){
+        this.unfilteredSeedLotCache = unfilteredSeedLotCache;
+    }
+    
+    public SeedLotCache getUnfilteredSeedLotCache(){
+        return unfilteredSeedLotCache;
+    }
+    
+    /**
+     * Limit the number of cross workers launched to extend each scheme, which is by default equal to the
+     * number of threads of the search. May be changed while the search is running, e.g. to redistribute
+     * threads among concurrent searches (see {@link BranchAndBoundBatch}); the new value is applied when
+     * extending the next scheme.
+     * 
+     * @param numCrossWorkers maximum number of cross workers per extended scheme (at least one is always launched)
+     */
+    public void setNumCrossWorkers(int numCrossWorkers){
+        this.numCrossWorkers = numCrossWorkers;
+    }
+    
+    public int getNumCrossWorkers(){
+        return numCrossWorkers;
+    }
+    
+    /**
+     * Run cross workers and scheme merges in the given thread pools, shared with other concurrently
+     * running searches, instead of creating pools with the number of threads of the search for every
+     * run. Shared pools are not shut down by the search (see {@link BranchAndBoundBatch}).
+     * 
+     * @param extensionPool pool in which cross workers are run, <code>null</code> to create a pool for each run
+     * @param mergePool pool in which scheme merges are parallelized, <code>null</code> to create a pool for each run
+     */
+    public void setSharedThreadPools(ExecutorService extensionPool, ForkJoinPool mergePool){
+        sharedExtensionPool = extensionPool;
+        sharedMergePool = mergePool;
+    }
+    
+    public ExecutorService getSharedExtensionPool(){
+        return sharedExtensionPool;
+    }
+    
+    public ForkJoinPool getSharedMergePool(){
+        return sharedMergePool;
+    }
+    
+    /**
+     * Enable anytime mode: before starting branch and bound, complete schemes are greedily constructed with a beam
+     * search that only retains the given number of most promising partial schemes in each step, ordered by their
+     * distance to the ideotype (see {@link IdeotypeDistanceComparator}). This quickly yields initial solutions,
+     * which are returned even if the runtime limit is exceeded before branch and bound finds any solution, and
+     * which tighten the bounds used for pruning. All partial schemes created during this construction are also
+     * queued for branch and bound, so that the final Pareto frontier is the same as without anytime mode if the
+     * search completes.
+     * 
+     * @param beamWidth number of partial schemes retained in each step of the greedy construction
+     */
+    public void enableAnytimeMode(int beamWidth){
+        if(beamWidth < 1){
+            throw new IllegalArgumentException("Beam width should be positive.");
+        }
+        anytimeBeamWidth = beamWidth;
+    }
+    
+    /**
+     * Disable anytime mode, as is the default setting.
+     */
+    public void disableAnytimeMode(){
+        anytimeBeamWidth = 0;
+    }
+    
+    /**
+     * Enable or disable symmetry reduction, which is disabled by default. Initial plants with the same genotype are
+     * interchangeable, so only one of them is retained. Moreover, crossing the final plants of two schemes with the
+     * same genotype yields the same seed lot as selfing either plant, while the merged scheme retains the full
+     * ancestry of both plants (only plant nodes with the same ID are ever reused). Every extension of such a
+     * crossing is therefore matched by an extension of the selfing with at most the same generations, population
+     * sizes, linkage phase ambiguity and number of targets grown from non-uniform seed lots. When symmetry reduction
+     * is enabled, these crossings are skipped by the cross workers before the merged schemes are generated, provided
+     * that the current scheme is selfed for all of its alternatives that are considered for crossing.
+     * <p>
+     * Only these symmetries between plants with identical genotypes are removed. Crossing schemes are not
+     * canonicalised, i.e. schemes that combine the same parents in a different order or through different but
+     * equivalent subschemes are still generated separately (equivalent alternatives of the same scheme are merged
+     * in the queue, as without symmetry reduction).
+     * 
+     * @param enabled <code>true</code> if symmetry reduction is applied
+     */
+    public void setSymmetryReduction(boolean enabled){
+        symmetryReduction = enabled;
+    }
+    
     /**
      * Write intermediate output whenever the Pareto frontier is updated.
      * 
@@ -207,6 +378,16 @@ public class BranchAndBound extends SearchEngine {
     public void disableIntermediateOutput(){
         writeIntermediateOutput = false;
     }
+
+    /**
+     * Get the number of partial schemes that have been taken from the queue and extended
+     * during the last (or current) run of the search.
+     *
+     * @return number of expanded schemes
+     */
+    public int getNumExpandedSchemes(){
+        return previousSchemes == null ? 0 : previousSchemes.size();
+    }
     
     @Override
     public ParetoFrontier runSearch(long runtimeLimit, int numThreads) throws GenestackerException {
@@ -218,26 +399,78 @@ public class BranchAndBound extends SearchEngine {
         // create queue for schemes to be considered
         schemeQueue = new LinkedList<>();
         
-        // reset ids
-        SeedLotNode.resetIDs();
-        PlantNode.resetIDs();
-        CrossingNode.resetIDs();
-        CrossingSchemeAlternatives.resetIDs();
+        // reset ids (if no other searches are running)
+        resetNodeIDs();
+        // discard state of heuristics from previous runs
+        if(heuristics != null){
+            heuristics.reset();
+        }
         
         // create thread pool and completion service for scheme extension
         
         // inform user about number of cross workers used (verbose)
         logger.info(VERBOSE, "Number of threads used for extending partial schemes: {}", numThreads);
-        ExecutorService extPool = Executors.newFixedThreadPool(numThreads);
+        ExecutorService extPool = sharedExtensionPool != null ? sharedExtensionPool : Executors.newFixedThreadPool(numThreads);
         CompletionService<List<CrossingSchemeAlternatives>> extCompletionService = new ExecutorCompletionService<>(extPool);
+        // create fork join pool shared by all scheme mergers
+        mergePool = sharedMergePool != null ? sharedMergePool : new ForkJoinPool(numThreads);
+        // create cache of alignment bounds shared by all scheme mergers
+        alignmentBoundCache = new AlignmentBoundCache();
+        // create scheme extender for this run
+        schemeExtender = new SchemeExtender(seedLotConstructor, seedLotCache, unfilteredSeedLotCache,
+                                            mergePool, alignmentBoundCache, metrics);
+        // create background writer for intermediate output, if enabled
+        if(writeIntermediateOutput){
+            intermediateOutputWriter = new IntermediateOutputWriter(intermediatOutputFileName, graphFileFormat, graphColorScheme);
+            intermediateOutputWriter.setRenderDiagrams(renderDiagrams);
+        }
+        
+        try {
+            return explore(numThreads, extCompletionService);
+        } finally {
+            // shutdown thread pools (unless shared)
+            if(extPool != sharedExtensionPool){
+                extPool.shutdownNow();
+            }
+            if(mergePool != sharedMergePool){
+                mergePool.shutdownNow();
+            }
+            mergePool = null;
+            alignmentBoundCache = null;
+            schemeExtender = null;
+            // complete pending intermediate output
+            if(intermediateOutputWriter != null){
+                intermediateOutputWriter.close();
+                intermediateOutputWriter = null;
+            }
+        }
+    }
+    
+    /**
+     * Explore the search space, after all components of the current run have been created. Thread pools and
+     * the intermediate output writer are released by the caller, also if this method throws an exception.
+     * 
+     * @param numThreads number of threads used for extending partial schemes
+     * @param extCompletionService completion service through which partial schemes are extended
+     * @return Pareto frontier
+     * @throws GenestackerException if anything goes wrong during the search
+     */
+    private ParetoFrontier explore(int numThreads, CompletionService<List<CrossingSchemeAlternatives>> extCompletionService)
+                                                                                            throws GenestackerException {
         
         // initialize solution manager
         BranchAndBoundSolutionManager solutionManager = new BranchAndBoundSolutionManager(dominatesRelation, ideotype, popSizeTools,
                                                                 maxNumSeedsPerCrossing, constraints, heuristics, seedLotFilters, homozygousIdeotypeParents);
+        // record metrics of all components in those of this engine
+        solutionManager.setMetrics(metrics);
+        solutionManager.setSharedBounds(sharedBounds);
+        seedLotCache.setMetrics(metrics);
+        seedLotConstructor.setMetrics(metrics);
         // set initial Pareto frontier, if any
         if(initialFrontier != null){
             solutionManager.setFrontier(initialFrontier);
         }
+        resetFrontierSnapshot(solutionManager.getFrontier());
         
         // apply initial plant filter, if any
         if(initialPlantFilter != null){
@@ -255,6 +488,17 @@ public class BranchAndBound extends SearchEngine {
             
         }
         
+        // symmetry reduction: retain one initial plant per genotype
+        if(symmetryReduction){
+            List<Plant> distinct = new ArrayList<>(new LinkedHashSet<>(initialPlants));
+            int numDuplicates = initialPlants.size() - distinct.size();
+            if(numDuplicates > 0){
+                metrics.add("bb.initial.duplicate", numDuplicates);
+                logger.info(VERBOSE, "Discarded {} initial plants with duplicate genotypes", numDuplicates);
+                initialPlants = distinct;
+            }
+        }
+        
         // create initial partial schemes from initial plants
         List<CrossingSchemeAlternatives> initialParentSchemes = new ArrayList<>();
         for(Plant p : initialPlants){
@@ -270,12 +514,25 @@ public class BranchAndBound extends SearchEngine {
         }
         registerNewSchemes(initialParentSchemes, solutionManager);
         
+        // anytime mode: greedily construct initial solutions
+        if(anytimeBeamWidth > 0){
+            constructInitialSolutions(initialParentSchemes, solutionManager);
+        }
+        
+        long numDequeued = 0;
         // now iteratively cross schemes with previous schemes to create larger schemes,
         // until all solutions have been inspected or pruned
         while(!runtimeLimitExceeded() && !schemeQueue.isEmpty()){
             
             // get next scheme from queue
             CrossingSchemeAlternatives cur = schemeQueue.poll();
+            metrics.increment("bb.schemes.dequeued");
+            numDequeued++;
+            if(progressDue()){
+                publishProgress(new SearchProgress(System.currentTimeMillis()-getStart(), numDequeued, schemeQueue.size(),
+                                                   previousSchemes.size(), frontierSnapshot, frontierVersion));
+            }
+            SearchEvent dequeueEvent = SearchEventRecorder.begin(SearchEventType.SCHEME_DEQUEUE);
             
             // fire progression message (verbose)
             logger.info(VERBOSE, "num solutions: {} ### prog: {} ({}) ### cur scheme: {} - T = {}",
@@ -297,12 +554,15 @@ public class BranchAndBound extends SearchEngine {
             Iterator<CrossingScheme> it = cur.iterator();
             int numForCrossing = 0;
             int numForSelfing = 0;
+            // set if all alternatives considered for crossing are also selfed
+            boolean selfedIfCrossed = true;
             while(it.hasNext()){
                 CrossingScheme alt = it.next();
                 // check if alternative should be removed
                 if(previousSchemeAlternatives.contains(alt)){
                     // equivalent scheme alternative generated before, delete current alternative
                     it.remove();
+                    metrics.increment("bb.alternatives.duplicate");
                 } else if (solutionManager.pruneDequeueScheme(alt)){
                     // prune dequeued scheme (e.g. by the optimal subscheme heuristic)
                     it.remove();
@@ -317,6 +577,9 @@ public class BranchAndBound extends SearchEngine {
                         // count nr of alternatives useful for crossing or selfing
                         if(!pruneCross){
                             numForCrossing++;
+                            if(pruneSelf){
+                                selfedIfCrossed = false;
+                            }
                         }
                         if(!pruneSelf){
                             numForSelfing++;
@@ -335,20 +598,23 @@ public class BranchAndBound extends SearchEngine {
                 // if useful, cross with previous schemes
                 if(numForCrossing > 0){
                     // launch workers to combine with previous schemes
+                    int numWorkers = Math.max(1, Math.min(numThreads, numCrossWorkers));
                     Iterator<CrossingSchemeAlternatives> previousSchemesIterator = previousSchemes.iterator();
-                    for(int w=0; w<numThreads; w++){
+                    // crossings with schemes with the same final genotype can be skipped if the current scheme is selfed
+                    boolean skipSymmetric = symmetryReduction && selfedIfCrossed;
+                    for(int w=0; w<numWorkers; w++){
                         // submit worker
-                        extCompletionService.submit(new CrossWorker(previousSchemesIterator, cur, solutionManager, map));
+                        extCompletionService.submit(new CrossWorker(previousSchemesIterator, cur, solutionManager, map, skipSymmetric));
                         // very verbose
-                        logger.info(VERY_VERBOSE, "Launched cross worker {} of {}", w+1, numThreads);
+                        logger.info(VERY_VERBOSE, "Launched cross worker {} of {}", w+1, numWorkers);
                     }
                     // handle results of completed workers in the order in which they complete
-                    for(int w=0; w<numThreads; w++){
+                    for(int w=0; w<numWorkers; w++){
                         try {
                             // wait for next worker to complete and register its solutions
                             registerNewSchemes(extCompletionService.take().get(), solutionManager);
                             // very verbose
-                            logger.info(VERY_VERBOSE, "{}/{} cross workers finished", w+1, numThreads);
+                            logger.info(VERY_VERBOSE, "{}/{} cross workers finished", w+1, numWorkers);
                         } catch (InterruptedException | ExecutionException ex) {
                             // something went wrong with the cross workers
                             throw new SearchException("An error occured while extending the current scheme.", ex);
@@ -358,9 +624,14 @@ public class BranchAndBound extends SearchEngine {
                 
                 // put the scheme in the sorted set with previously considered schemes (only done if useful for later crossings)
                 previousSchemes.add(cur);
+                metrics.increment("bb.schemes.expanded");
                 // register scheme alternatives
                 previousSchemeAlternatives.addAll(cur.getAlternatives());
             }
+            
+            if(dequeueEvent != null){
+                dequeueEvent.commit(cur.getID(), cur.nrOfAlternatives(), cur.getMinNumGen(), cur.getMinPopSize(), schemeQueue.size());
+            }
         }
         
         if(runtimeLimitExceeded()){
@@ -368,8 +639,9 @@ public class BranchAndBound extends SearchEngine {
             logger.info("Runtime limit exceeded");
         }
         
-        // shutdown thread pool
-        extPool.shutdownNow();
+        // publish final progress
+        publishProgress(new SearchProgress(System.currentTimeMillis()-getStart(), numDequeued, schemeQueue.size(),
+                                           previousSchemes.size(), frontierSnapshot, frontierVersion));
         
         return solutionManager.getFrontier();
     }
@@ -395,21 +667,22 @@ public class BranchAndBound extends SearchEngine {
                     // check if alternative is a valid solution
                     if(solManager.isSolution(alt)){
                         // register new solution
+                        SearchEvent frontierEvent = SearchEventRecorder.begin(SearchEventType.FRONTIER_UPDATE);
                         boolean frontierUpdated = solManager.registerSolution(alt);
+                        if(frontierEvent != null){
+                            frontierEvent.commit(alt.getNumGenerations(), alt.getTotalPopulationSize(), alt.getLinkagePhaseAmbiguity(),
+                                                 frontierUpdated, solManager.getFrontier().getNumSchemes());
+                        }
                         if(frontierUpdated){
+                            updateFrontierSnapshot(solManager.getFrontier());
                             // info
                             logger.info("Pareto frontier updated ({} solution(s)) - T = {}",
                                             solManager.getFrontier().getNumSchemes(),
                                             TimeFormatting.formatTime(System.currentTimeMillis()-getStart()));
                             // update intermediate output file, if enabled
-                            if(writeIntermediateOutput){
-                                try {
-                                    new ZIPWriter().createZIP(solManager.getFrontier(), graphFileFormat,
-                                                              graphColorScheme, intermediatOutputFileName);
-                                    logger.info("Updated intermediate output file {}.", intermediatOutputFileName);
-                                } catch (IOException | ArchiveException ex) {
-                                    throw new SearchException("Failed to write intermediate output file." , ex);
-                                }
+                            // (written asynchronously from a snapshot of the frontier)
+                            if(intermediateOutputWriter != null){
+                                intermediateOutputWriter.update(solManager.getFrontier());
                             }
                         }
                         // debug: create diagram of new solution
@@ -431,12 +704,95 @@ public class BranchAndBound extends SearchEngine {
                 // if non-zero number of alternatives remain, add new scheme to the queue
                 if(scheme.nrOfAlternatives() > 0){
                     schemeQueue.add(scheme);
+                    metrics.increment("bb.schemes.queued");
                 }
             }
         }
 
     }
     
+    /**
+     * Anytime mode: greedily construct complete schemes, starting from the given initial partial schemes, to obtain
+     * initial solutions before running branch and bound. In each step, every scheme in the current beam is selfed
+     * and crossed with all schemes retained in previous steps (including all initial schemes), after which the most
+     * promising new schemes with distinct final plants form the next beam. New schemes are registered as usual, i.e.
+     * solutions are added to the Pareto frontier and the remaining schemes are queued for branch and bound. The
+     * construction stops when the beam is empty, when the runtime limit is exceeded, or when a step neither updates
+     * the Pareto frontier nor yields a scheme that is closer to the ideotype than all schemes considered before.
+     * 
+     * @param initialSchemes initial partial schemes, already registered
+     * @param solManager solution manager
+     * @throws GenestackerException if anything goes wrong while extending schemes or creating output
+     */
+    private void constructInitialSolutions(List<CrossingSchemeAlternatives> initialSchemes,
+                                           BranchAndBoundSolutionManager solManager) throws GenestackerException {
+        
+        // info
+        logger.info("Constructing initial solutions (beam width: {}) ...", anytimeBeamWidth);
+        
+        IdeotypeDistanceComparator comp = new IdeotypeDistanceComparator(ideotype, solManager);
+        // select initial beam, retain other initial schemes for crossing
+        List<CrossingSchemeAlternatives> beam = comp.select(initialSchemes, anytimeBeamWidth);
+        List<CrossingSchemeAlternatives> retained = new ArrayList<>();
+        for(CrossingSchemeAlternatives s : initialSchemes){
+            if(s.nrOfAlternatives() > 0 && !beam.contains(s)){
+                retained.add(s);
+            }
+        }
+        CrossingSchemeAlternatives best = beam.isEmpty() ? null : beam.get(0);
+        int numSteps = 0;
+        boolean improved = true;
+        while(improved && !beam.isEmpty() && !runtimeLimitExceeded()){
+            int version = frontierVersion;
+            // extend schemes in beam
+            List<CrossingSchemeAlternatives> newSchemes = new ArrayList<>();
+            int i = 0;
+            while(i < beam.size() && !runtimeLimitExceeded()){
+                CrossingSchemeAlternatives cur = beam.get(i);
+                // self
+                if(!SchemeExtender.pruneSelfAllAlternatives(cur, solManager)){
+                    newSchemes.addAll(selfScheme(cur, map, solManager));
+                }
+                // cross with retained schemes and preceding schemes in the beam
+                if(!SchemeExtender.pruneCrossAllAlternatives(cur, solManager)){
+                    for(CrossingSchemeAlternatives other : retained){
+                        if(!SchemeExtender.pruneCrossAllAlternatives(cur, other, solManager)){
+                            newSchemes.addAll(combineSchemes(cur, other, map, solManager));
+                        }
+                    }
+                    for(int j=0; j<i; j++){
+                        CrossingSchemeAlternatives other = beam.get(j);
+                        if(!SchemeExtender.pruneCrossAllAlternatives(cur, other, solManager)){
+                            newSchemes.addAll(combineSchemes(cur, other, map, solManager));
+                        }
+                    }
+                }
+                i++;
+            }
+            retained.addAll(beam);
+            // register new schemes (solutions are added to the frontier, other schemes are queued)
+            registerNewSchemes(newSchemes, solManager);
+            // select next beam
+            beam = comp.select(newSchemes, anytimeBeamWidth);
+            improved = frontierVersion != version;
+            if(!beam.isEmpty() && comp.compare(beam.get(0), best) < 0){
+                best = beam.get(0);
+                improved = true;
+            }
+            numSteps++;
+            metrics.increment("bb.anytime.steps");
+            publishProgress(new SearchProgress(System.currentTimeMillis()-getStart(), 0, schemeQueue.size(),
+                                               0, frontierSnapshot, frontierVersion));
+        }
+        
+        // info
+        logger.info("Constructed {} initial solution(s) in {} step(s) - T = {}",
+                        solManager.getFrontier().getNumSchemes(),
+                        numSteps,
+                        TimeFormatting.formatTime(System.currentTimeMillis()-getStart()));
+        
+    }
+    
     protected String writeDiagram(CrossingScheme scheme) throws GenestackerException {
         CrossingSchemeGraphWriter epsWriter = new CrossingSchemeGraphWriter(graphFileFormat, graphColorScheme);
         CrossingSchemeXMLWriter xmlWriter = new CrossingSchemeXMLWriter();
@@ -457,37 +813,7 @@ public class BranchAndBound extends SearchEngine {
     }
     
     protected SeedLot constructSeedLot(int generation, Plant p1, Plant p2, GeneticMap map, BranchAndBoundSolutionManager solManager) throws GenotypeException{
-        SeedLot sl;
-        if(solManager.finalGenerationReached(generation)){
-            // create partial seed lot containing the ideotype only
-            Set<Genotype> s = new HashSet<>();
-            s.add(solManager.getIdeotype());
-            sl = seedLotConstructor.partialCross(p1.getGenotype(), p2.getGenotype(), s);
-            // very verbose
-            logger.info(VERY_VERBOSE, "|-- Generated new partial seed lot (ideotype only)");
-            // note: do not cache this partial seed lot (not general)
-        }  else {
-            // lookup full seed lot in cache
-            sl = seedLotCache.getCachedSeedLot(p1.getGenotype(), p2.getGenotype());
-            if(sl == null){
-                // not yet present in cache, create full seed lot
-                sl = seedLotConstructor.cross(p1.getGenotype(), p2.getGenotype());
-                int unfiltered = sl.nrOfGenotypes();
-                // very verbose
-                logger.info(VERY_VERBOSE, "|-- Generated new seed lot: {}", unfiltered);
-                // apply seed lot filters
-                sl = solManager.filterSeedLot(sl);
-                // very verbose
-                logger.info(VERY_VERBOSE, "|-- Filtered seed lot: {} --> {}", unfiltered, sl.nrOfGenotypes());
-                // store in cache
-                seedLotCache.cache(p1.getGenotype(), p2.getGenotype(), sl);
-            } else {
-                // found seed lot in cache
-                // very verbose
-                logger.info(VERY_VERBOSE, "|-- Cached seed lot size: {}", sl.nrOfGenotypes());
-            }
-        }
-        return sl;
+        return getSchemeExtender().constructSeedLot(generation, p1, p2, map, solManager);
     }
     
     /**
@@ -505,56 +831,7 @@ public class BranchAndBound extends SearchEngine {
     public List<CrossingSchemeAlternatives> selfScheme(CrossingSchemeAlternatives scheme, GeneticMap map, BranchAndBoundSolutionManager solManager)
                                                                         throws GenotypeException,
                                                                                CrossingSchemeException {
-        
-        List<CrossingSchemeAlternatives> newSchemes = new ArrayList<>();
-        SeedLot sl = constructSeedLot(scheme.getMinNumGen()+1, scheme.getFinalPlant(), scheme.getFinalPlant(), map, solManager);
-
-        // create new schemes for each possible genotype resulting from seedlot,
-        // attached to each alternative of the given scheme
-        long[] seedLotNodeIDs = new long[scheme.nrOfAlternatives()];
-        for(int i=0; i<seedLotNodeIDs.length; i++){
-            seedLotNodeIDs[i] = SeedLotNode.genNextID();
-        }
-        for(Genotype g : sl.getGenotypes()){
-            Plant p = new Plant(g);
-            PlantDescriptor pdesc = new PlantDescriptor(
-                        p,
-                        sl.getGenotypeGroup(g.getAllelicFrequencies()).getProbabilityOfPhaseKnownGenotype(g),
-                        sl.getGenotypeGroup(g.getAllelicFrequencies()).getLinkagePhaseAmbiguity(g),
-                        sl.isUniform()
-                    );
-            if(!solManager.pruneGrowPlantFromAncestors(scheme.getAncestorDescriptors(), pdesc)){
-                // list containing alternatives of new scheme
-                List<CrossingScheme> newAlts = new ArrayList<>();
-                // go through alternatives
-                for(int i=0; i<scheme.nrOfAlternatives(); i++){
-                    CrossingScheme alt = scheme.getAlternatives().get(i);
-                    // check pruning
-                    if(!solManager.pruneSelfCurrentSchemeWithSelectedTarget(alt, pdesc)){                    
-                            // deep copy current node structure
-                            PlantNode selfed = alt.getFinalPlantNode().deepUpwardsCopy();
-                            // create new selfing node and connect with parent plant
-                            SelfingNode selfing = new SelfingNode(selfed);
-                            // create new seedlot node and connect it with the selfing node
-                            SeedLotNode sln = new SeedLotNode(sl, alt.getNumGenerations()+1, selfing, seedLotNodeIDs[i], 0);
-                            // create new plant, connect it with parent seedlot
-                            PlantNode newFinalPlantNode = new PlantNode(p, alt.getNumGenerations()+1, sln);
-                            // create new crossing scheme and resolve possible depleted seed lots
-                            CrossingScheme newScheme = new CrossingScheme(alt.getPopulationSizeTools(), newFinalPlantNode);
-                            if(!solManager.pruneCurrentScheme(newScheme)
-                                && newScheme.resolveDepletedSeedLots(solManager)){
-                                // depleted seed lots successfully resolved, satisfying constraints
-                                newAlts.add(newScheme);
-                            }
-                    }
-                }
-                // store alternatives obtaining current genotype
-                if(!newAlts.isEmpty()){
-                    newSchemes.add(new CrossingSchemeAlternatives(newAlts));
-                }
-            }
-        }
-        return newSchemes;
+        return getSchemeExtender().selfScheme(scheme, map, solManager);
     }
     
     /**
@@ -575,16 +852,20 @@ public class BranchAndBound extends SearchEngine {
                                                            GeneticMap map, BranchAndBoundSolutionManager solManager)
                                                                                 throws  GenotypeException,
                                                                                         CrossingSchemeException{
-        
-        // construct seed lot obtained from crossing (retrieved from cache if constructed before)
-        SeedLot sl = constructSeedLot(Math.max(scheme1.getMinNumGen(), scheme2.getMinNumGen())+1,
-                                        scheme1.getFinalPlant(), scheme2.getFinalPlant(), map, solManager);
-        
-        // run scheme merger
-        return new MergeFirstSchemeMerger(scheme1, scheme2, map, solManager, sl).combineSchemes();
-        
+        return getSchemeExtender().combineSchemes(scheme1, scheme2, map, solManager);
     }
     
+    /**
+     * Get the scheme extender of the current search run. Outside a search run, a new extender is created that
+     * uses the current seed lot cache of this engine and merges schemes sequentially.
+     */
+    private SchemeExtender getSchemeExtender(){
+        if(schemeExtender != null){
+            return schemeExtender;
+        }
+        return new SchemeExtender(seedLotConstructor, seedLotCache, unfilteredSeedLotCache, null, null, metrics);
+    }
+
     /**
      * Private implementation of a cross worker which is responsible for combining the currently considered
      * scheme with previously considered schemes, through an additional crossing. All cross workers operate
@@ -604,12 +885,16 @@ public class BranchAndBound extends SearchEngine {
         // genetic map
         private GeneticMap map;
         
+        // skip previous schemes with the same final genotype as the current scheme ?
+        private boolean skipSymmetric;
+        
         public CrossWorker(Iterator<CrossingSchemeAlternatives> previousSchemesIterator, CrossingSchemeAlternatives curScheme,
-                            BranchAndBoundSolutionManager solManager, GeneticMap map){
+                            BranchAndBoundSolutionManager solManager, GeneticMap map, boolean skipSymmetric){
             this.previousSchemesIterator = previousSchemesIterator;
             this.curScheme = curScheme;
             this.solManager = solManager;
             this.map = map;
+            this.skipSymmetric = skipSymmetric;
         }
 
         @Override
@@ -617,7 +902,9 @@ public class BranchAndBound extends SearchEngine {
             // cross the current scheme with previous schemes in a synchronized
             // fashion so that each previous scheme will be considered by one
             // cross worker only
+            SearchEvent event = SearchEventRecorder.begin(SearchEventType.CROSS_WORKER_BATCH);
             List<CrossingSchemeAlternatives> newSchemes = new ArrayList<>();
+            int numCombined = 0;
             boolean cont = true;
             while(cont){
                 // poll next previous scheme (synchronized)
@@ -631,25 +918,22 @@ public class BranchAndBound extends SearchEngine {
                     }
                 }
                 // cross with previous scheme
-                if(toExtend != null){
+                if(toExtend != null && skipSymmetric && toExtend.getFinalPlant().equals(curScheme.getFinalPlant())){
+                    // symmetric with selfing of current scheme
+                    metrics.increment("bb.cross.symmetric");
+                } else if(toExtend != null){
+                    numCombined++;
                     // check pruning (if all combinations are pruned, we can
                     // save some time by not constructing the obtained seed lot)
-                    boolean prune = true;
-                    Iterator<CrossingScheme> it1 = curScheme.iterator();
-                    while(prune && it1.hasNext()){
-                        CrossingScheme alt1 = it1.next();
-                        Iterator<CrossingScheme> it2 = toExtend.iterator();
-                        while(prune && it2.hasNext()){
-                            CrossingScheme alt2 = it2.next();
-                            prune = solManager.pruneCrossCurrentSchemeWithSpecificOther(alt1, alt2);
-                        }
-                    }
-                    // create new schemes
-                    if(!prune){
+                    if(!SchemeExtender.pruneCrossAllAlternatives(curScheme, toExtend, solManager)){
+                        // create new schemes
                         newSchemes.addAll(combineSchemes(curScheme, toExtend, map, solManager));
                     }
                 }
             }
+            if(event != null){
+                event.commit(curScheme.getID(), numCombined, newSchemes.size());
+            }
             return newSchemes;
         }
         
@@ -0,0 +1,252 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search.bb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.ugent.caagt.genestacker.exceptions.GenestackerException;
+import org.ugent.caagt.genestacker.exceptions.SearchException;
+import org.ugent.caagt.genestacker.search.ParetoFrontier;
+import org.ugent.caagt.genestacker.search.SearchProgress;
+import org.ugent.caagt.genestacker.util.GenestackerConstants;
+
+/**
+ * Runs a batch of branch and bound searches, e.g. for different ideotypes against the same initial plants,
+ * which share a common budget of threads. Searches are run concurrently, up to the number of available
+ * threads, and the threads are periodically redistributed among the running searches in proportion to
+ * their remaining work, estimated by the number of queued schemes: every running search may launch at
+ * least one cross worker and the remaining threads are divided according to the queue sizes (see
+ * {@link BranchAndBound#setNumCrossWorkers(int)}). All searches run their cross workers and scheme merges in
+ * two thread pools of the given size, shared by the entire batch, so that concurrent searches never use more
+ * threads than a single search would. Engines that should share seed lots or gametes are configured before
+ * they are added to the batch (see {@link GeneticMapCache}).
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class BranchAndBoundBatch {
+
+    // logger
+    private static final Logger logger = LogManager.getLogger(BranchAndBoundBatch.class);
+
+    // default interval at which threads are redistributed (milliseconds)
+    public static final long DEFAULT_REBALANCE_INTERVAL = 200;
+
+    // total number of threads
+    private final int numThreads;
+    // interval at which threads are redistributed
+    private final long rebalanceInterval;
+
+    // searches in this batch and their runtime limits
+    private final List<BranchAndBound> searches;
+    private final List<Long> runtimeLimits;
+    // currently running searches
+    private final Set<BranchAndBound> running;
+
+    public BranchAndBoundBatch(int numThreads){
+        this(numThreads, DEFAULT_REBALANCE_INTERVAL);
+    }
+
+    public BranchAndBoundBatch(int numThreads, long rebalanceInterval){
+        if(numThreads < 1){
+            throw new IllegalArgumentException("Number of threads should be positive.");
+        }
+        this.numThreads = numThreads;
+        this.rebalanceInterval = rebalanceInterval;
+        searches = new ArrayList<>();
+        runtimeLimits = new ArrayList<>();
+        running = Collections.newSetFromMap(new ConcurrentHashMap<BranchAndBound, Boolean>());
+    }
+
+    /**
+     * Add a search to this batch. The runtime limit applies to this search individually, counting from
+     * the moment when the search is started.
+     *
+     * @param engine configured branch and bound engine
+     * @param runtimeLimit runtime limit in milliseconds (or {@link GenestackerConstants#NO_RUNTIME_LIMIT})
+     */
+    public void addSearch(BranchAndBound engine, long runtimeLimit){
+        searches.add(engine);
+        runtimeLimits.add(runtimeLimit);
+    }
+
+    /**
+     * Get the searches in this batch, in the order in which they have been added.
+     *
+     * @return searches in this batch
+     */
+    public List<BranchAndBound> getSearches(){
+        return searches;
+    }
+
+    /**
+     * Run all searches in this batch and wait until they have completed. If any search fails, the remaining
+     * searches are interrupted and an exception is thrown. A batch may be run again, e.g. after reconfiguring
+     * the engines for a second run.
+     *
+     * @return Pareto frontiers of all searches, in the order in which the searches have been added
+     * @throws GenestackerException if any search fails
+     */
+    public List<ParetoFrontier> run() throws GenestackerException {
+        List<ParetoFrontier> frontiers = new ArrayList<>();
+        if(searches.isEmpty()){
+            return frontiers;
+        }
+        ExecutorService searchPool = Executors.newFixedThreadPool(Math.min(numThreads, searches.size()));
+        ScheduledExecutorService rebalancer = Executors.newSingleThreadScheduledExecutor();
+        // thread pools shared by all searches
+        ExecutorService extensionPool = Executors.newFixedThreadPool(numThreads);
+        ForkJoinPool mergePool = new ForkJoinPool(numThreads);
+        try {
+            // submit searches
+            List<Future<ParetoFrontier>> results = new ArrayList<>();
+            for(int i=0; i<searches.size(); i++){
+                final BranchAndBound engine = searches.get(i);
+                final long runtimeLimit = runtimeLimits.get(i);
+                final ExecutorService sharedExtensionPool = extensionPool;
+                final ForkJoinPool sharedMergePool = mergePool;
+                results.add(searchPool.submit(new Callable<ParetoFrontier>() {
+                    @Override
+                    public ParetoFrontier call() throws GenestackerException {
+                        // store engine settings changed by the batch
+                        int previousNumCrossWorkers = engine.getNumCrossWorkers();
+                        ExecutorService previousExtensionPool = engine.getSharedExtensionPool();
+                        ForkJoinPool previousMergePool = engine.getSharedMergePool();
+                        engine.setSharedThreadPools(sharedExtensionPool, sharedMergePool);
+                        running.add(engine);
+                        rebalance();
+                        try {
+                            return engine.search(runtimeLimit, numThreads);
+                        } finally {
+                            // restore engine settings (not changed anymore by rebalancing once removed)
+                            synchronized(BranchAndBoundBatch.this){
+                                running.remove(engine);
+                                engine.setNumCrossWorkers(previousNumCrossWorkers);
+                                engine.setSharedThreadPools(previousExtensionPool, previousMergePool);
+                            }
+                            rebalance();
+                        }
+                    }
+                }));
+            }
+            // periodically redistribute threads
+            rebalancer.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    rebalance();
+                }
+            }, rebalanceInterval, rebalanceInterval, TimeUnit.MILLISECONDS);
+            // collect results
+            for(int i=0; i<results.size(); i++){
+                try {
+                    frontiers.add(results.get(i).get());
+                } catch (ExecutionException ex){
+                    if(ex.getCause() instanceof GenestackerException){
+                        throw (GenestackerException) ex.getCause();
+                    }
+                    throw new SearchException("Search " + (i+1) + " of the batch failed.", ex.getCause());
+                } catch (InterruptedException ex){
+                    Thread.currentThread().interrupt();
+                    throw new SearchException("Interrupted while waiting for batch of searches.", ex);
+                }
+            }
+        } finally {
+            rebalancer.shutdownNow();
+            searchPool.shutdownNow();
+            extensionPool.shutdownNow();
+            mergePool.shutdownNow();
+        }
+        return frontiers;
+    }
+
+    /**
+     * Redistribute the threads among the running searches, according to their queue sizes.
+     */
+    private synchronized void rebalance(){
+        List<BranchAndBound> engines = new ArrayList<>(running);
+        if(engines.isEmpty()){
+            return;
+        }
+        long[] work = new long[engines.size()];
+        for(int i=0; i<work.length; i++){
+            SearchProgress progress = engines.get(i).getProgress();
+            work[i] = progress == null ? 1 : progress.getQueueSize();
+        }
+        int[] threads = distributeThreads(work, numThreads);
+        for(int i=0; i<threads.length; i++){
+            engines.get(i).setNumCrossWorkers(threads[i]);
+        }
+        logger.debug("Redistributed threads among {} running searches", engines.size());
+    }
+
+    /**
+     * Divide the given number of threads among searches with the given amount of remaining work. Every search
+     * receives at least one thread and the remaining threads are divided in proportion to the remaining work
+     * (largest remainder method). Searches without any remaining work only receive a single thread, unless
+     * no search has any remaining work, in which case the remaining threads are divided equally.
+     *
+     * @param work amount of remaining work of each search
+     * @param numThreads total number of threads
+     * @return number of threads assigned to each search
+     */
+    static int[] distributeThreads(long[] work, int numThreads){
+        int n = work.length;
+        int[] threads = new int[n];
+        int spare = numThreads - n;
+        long totalWork = 0;
+        for(int i=0; i<n; i++){
+            threads[i] = 1;
+            totalWork += Math.max(0, work[i]);
+        }
+        if(spare <= 0){
+            return threads;
+        }
+        // divide spare threads proportionally, rounding down
+        double[] remainders = new double[n];
+        int assigned = 0;
+        for(int i=0; i<n; i++){
+            double share = totalWork > 0 ? (double) spare * Math.max(0, work[i]) / totalWork : (double) spare / n;
+            int whole = (int) share;
+            threads[i] += whole;
+            remainders[i] = share - whole;
+            assigned += whole;
+        }
+        // assign leftover threads to the largest remainders
+        for(; assigned < spare; assigned++){
+            int best = 0;
+            for(int i=1; i<n; i++){
+                if(remainders[i] > remainders[best]){
+                    best = i;
+                }
+            }
+            threads[best]++;
+            remainders[best] = -1.0;
+        }
+        return threads;
+    }
+
+}
@@ -0,0 +1,222 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search.bb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.ugent.caagt.genestacker.exceptions.GenestackerException;
+import org.ugent.caagt.genestacker.search.CrossingScheme;
+import org.ugent.caagt.genestacker.search.CrossingSchemeDescriptor;
+import org.ugent.caagt.genestacker.search.ParetoFrontier;
+import org.ugent.caagt.genestacker.search.PopulationSizeTools;
+import org.ugent.caagt.genestacker.search.SeedLotCache;
+import org.ugent.caagt.genestacker.search.constraints.Constraint;
+import org.ugent.caagt.genestacker.search.constraints.MaxLinkagePhaseAmbiguity;
+import org.ugent.caagt.genestacker.search.constraints.MaxPopulationSizePerGeneration;
+
+/**
+ * Runs a series of searches with the same engine for different constraints and/or population size tools, e.g. to
+ * sweep the maximum number of generations or the desired success probability over a grid. Intermediate results
+ * are kept across subsequent runs in two layers:
+ * <ul>
+ *  <li>
+ *      the unfiltered seed lots obtained from each crossing (see {@link BranchAndBound#setUnfilteredSeedLotCache(SeedLotCache)}),
+ *      which only depend on the parents, and the gametes cached by the engine's seed lot constructor; these are
+ *      reused by all runs;
+ *  </li>
+ *  <li>
+ *      the filtered seed lots, which are cached separately for each combination of settings that affect seed lot
+ *      filtering (maximum linkage phase ambiguity, maximum population size per generation and population size tools),
+ *      so that runs which only differ in other constraints, such as the maximum number of generations, share the
+ *      same filtered seed lots.
+ *  </li>
+ * </ul>
+ * Moreover, the solutions found in all previous runs with equivalent population size tools that satisfy the current
+ * constraints are used as initial Pareto frontier of the next run, so that solutions found for looser constraints
+ * immediately bound the search for tighter constraints. The heuristics and seed lot filters of the engine are not
+ * changed by the session; heuristics that depend on the population size tools should be updated by the caller.
+ * If the seed lot filters are changed, {@link #clear()} should be called.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class BranchAndBoundSession {
+
+    // engine
+    private final BranchAndBound engine;
+
+    // unfiltered seed lots
+    private final SeedLotCache unfilteredSeedLots;
+    // filtered seed lots per filter settings
+    private final Map<FilterSettings, SeedLotCache> filteredSeedLots;
+
+    // frontiers of previous runs
+    private final List<ParetoFrontier> previousFrontiers;
+    // use previous solutions as initial frontier (default: true)
+    private boolean seedFromPreviousRuns = true;
+
+    /**
+     * Create a session for the given engine. If the engine does not yet share its unfiltered seed lots,
+     * a cache of unfiltered seed lots is created for this session.
+     *
+     * @param engine branch and bound engine
+     */
+    public BranchAndBoundSession(BranchAndBound engine){
+        this.engine = engine;
+        if(engine.getUnfilteredSeedLotCache() == null){
+            engine.setUnfilteredSeedLotCache(new SeedLotCache());
+        }
+        unfilteredSeedLots = engine.getUnfilteredSeedLotCache();
+        filteredSeedLots = new HashMap<>();
+        previousFrontiers = new ArrayList<>();
+    }
+
+    public BranchAndBound getEngine(){
+        return engine;
+    }
+
+    /**
+     * Enable or disable using the solutions of previous runs as initial Pareto frontier (enabled by default).
+     *
+     * @param seedFromPreviousRuns <code>true</code> if previous solutions should be used as initial frontier
+     */
+    public void setSeedFromPreviousRuns(boolean seedFromPreviousRuns){
+        this.seedFromPreviousRuns = seedFromPreviousRuns;
+    }
+
+    /**
+     * Run the engine with the given constraints and population size tools.
+     *
+     * @param constraints constraints of this run
+     * @param popSizeTools population size tools of this run
+     * @param runtimeLimit runtime limit in milliseconds
+     * @param numThreads number of threads
+     * @return Pareto frontier found in this run
+     * @throws GenestackerException if anything goes wrong during search
+     */
+    public ParetoFrontier search(List<Constraint> constraints, PopulationSizeTools popSizeTools,
+                                 long runtimeLimit, int numThreads) throws GenestackerException {
+        // update engine settings
+        engine.setConstraints(constraints);
+        engine.setPopulationSizeTools(popSizeTools);
+        // reuse filtered seed lots of previous runs with the same filter settings
+        FilterSettings settings = new FilterSettings(constraints, popSizeTools);
+        SeedLotCache filtered = filteredSeedLots.get(settings);
+        if(filtered == null){
+            filtered = new SeedLotCache();
+            filteredSeedLots.put(settings, filtered);
+        }
+        engine.setSeedLotCache(filtered);
+        // seed with valid solutions of previous runs
+        engine.setInitialFrontier(seedFromPreviousRuns ? createInitialFrontier(constraints, popSizeTools) : null);
+        // run
+        ParetoFrontier frontier = engine.search(runtimeLimit, numThreads);
+        previousFrontiers.add(frontier);
+        return frontier;
+    }
+
+    /**
+     * Discard all intermediate results and previous solutions.
+     */
+    public void clear(){
+        unfilteredSeedLots.clear();
+        filteredSeedLots.clear();
+        previousFrontiers.clear();
+    }
+
+    /**
+     * Collect all solutions of previous runs that have been evaluated with equivalent population size tools
+     * and satisfy the given constraints.
+     */
+    private ParetoFrontier createInitialFrontier(List<Constraint> constraints, PopulationSizeTools popSizeTools){
+        ParetoFrontier initial = new ParetoFrontier(engine.getDominatesRelation());
+        for(ParetoFrontier previous : previousFrontiers){
+            for(CrossingScheme s : previous.getFrontier()){
+                if(equivalent(s.getPopulationSizeTools(), popSizeTools) && satisfies(s.getDescriptor(), constraints)){
+                    initial.register(s);
+                }
+            }
+        }
+        return initial.getNumSchemes() > 0 ? initial : null;
+    }
+
+    private static boolean satisfies(CrossingSchemeDescriptor desc, List<Constraint> constraints){
+        if(constraints != null){
+            for(Constraint c : constraints){
+                if(!c.isSatisfied(desc)){
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Population size tools of the same type with the same global success rate compute the same population sizes.
+     */
+    private static boolean equivalent(PopulationSizeTools t1, PopulationSizeTools t2){
+        return t1 == t2 || (t1.getClass() == t2.getClass() && t1.getGlobalSuccessRate() == t2.getGlobalSuccessRate());
+    }
+
+    /**
+     * Settings that affect the filtering of seed lots.
+     */
+    private static class FilterSettings {
+
+        private final Double maxLinkagePhaseAmbiguity;
+        private final Integer maxPopSizePerGen;
+        private final Class<?> popSizeToolsType;
+        private final double globalSuccessRate;
+
+        public FilterSettings(List<Constraint> constraints, PopulationSizeTools popSizeTools){
+            Double maxLPA = null;
+            Integer maxPop = null;
+            if(constraints != null){
+                for(Constraint c : constraints){
+                    if(c instanceof MaxLinkagePhaseAmbiguity){
+                        maxLPA = ((MaxLinkagePhaseAmbiguity) c).getMaxLinkagePhaseAmbiguity();
+                    } else if(c instanceof MaxPopulationSizePerGeneration){
+                        maxPop = ((MaxPopulationSizePerGeneration) c).getMaxPopSizePerGen();
+                    }
+                }
+            }
+            maxLinkagePhaseAmbiguity = maxLPA;
+            maxPopSizePerGen = maxPop;
+            popSizeToolsType = popSizeTools.getClass();
+            globalSuccessRate = popSizeTools.getGlobalSuccessRate();
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if(!(o instanceof FilterSettings)){
+                return false;
+            }
+            FilterSettings f = (FilterSettings) o;
+            return Objects.equals(maxLinkagePhaseAmbiguity, f.maxLinkagePhaseAmbiguity)
+                    && Objects.equals(maxPopSizePerGen, f.maxPopSizePerGen)
+                    && popSizeToolsType == f.popSizeToolsType
+                    && globalSuccessRate == f.globalSuccessRate;
+        }
+
+        @Override
+        public int hashCode(){
+            return Objects.hash(maxLinkagePhaseAmbiguity, maxPopSizePerGen, popSizeToolsType, globalSuccessRate);
+        }
+
+    }
+
+}
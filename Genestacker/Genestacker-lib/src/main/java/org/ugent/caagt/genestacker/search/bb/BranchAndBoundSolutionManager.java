@@ -34,6 +34,7 @@ import org.ugent.caagt.genestacker.search.FuturePlantNode;
 import org.ugent.caagt.genestacker.search.ParetoFrontier;
 import org.ugent.caagt.genestacker.search.PlantNode;
 import org.ugent.caagt.genestacker.search.PopulationSizeTools;
+import org.ugent.caagt.genestacker.search.SearchMetrics;
 import org.ugent.caagt.genestacker.search.SeedLotNode;
 import org.ugent.caagt.genestacker.search.bb.heuristics.Heuristic;
 import org.ugent.caagt.genestacker.search.bb.heuristics.Heuristics;
@@ -89,6 +90,11 @@ public class BranchAndBoundSolutionManager implements PruningCriterion {
     
     // Pareto frontier
     private ParetoFrontier frontier;
+    // bounds shared with other searches (null if not used)
+    private SharedBounds sharedBounds;
+    
+    // metrics used to count pruned schemes per criterion and to time frontier checks
+    private SearchMetrics metrics;
     
     /**
      * Create a branch and bound solution manager.
@@ -121,6 +127,8 @@ public class BranchAndBoundSolutionManager implements PruningCriterion {
         this.popSizeTools = popSizeTools;
         // create Pareto frontier
         frontier = new ParetoFrontier(dominatesRelation);
+        // create metrics (usually replaced by those of the search engine)
+        metrics = new SearchMetrics();
         
         // set empty heuristics if null
         if(this.heuristics == null){
@@ -174,6 +182,63 @@ public class BranchAndBoundSolutionManager implements PruningCriterion {
         this.frontier = frontier;
     }
     
+    /**
+     * Set bounds shared with other searches. Partial schemes that are dominated by a shared bound are
+     * pruned, and the descriptors of all new solutions are registered as local bounds.
+     * 
+     * @param sharedBounds shared bounds, <code>null</code> if not used
+     */
+    public void setSharedBounds(SharedBounds sharedBounds){
+        this.sharedBounds = sharedBounds;
+    }
+    
+    public SearchMetrics getMetrics(){
+        return metrics;
+    }
+    
+    /**
+     * Set the metrics in which pruned schemes are counted per criterion (<code>prune.*</code>) and in which
+     * the time spent in frontier checks and population size computations is recorded.
+     * 
+     * @param metrics search metrics
+     */
+    public void setMetrics(SearchMetrics metrics){
+        this.metrics = metrics;
+    }
+    
+    /**
+     * Check whether the given abstract extension is dominated by a registered solution. If so,
+     * the counter with the given name is increased.
+     */
+    private boolean dominatedByFrontier(CrossingSchemeDescriptor desc, String counter){
+        long start = metrics.startTime();
+        boolean dominated = frontier.dominatedByRegisteredObject(desc)
+                            || sharedBounds != null && sharedBounds.dominated(desc);
+        metrics.recordSince("frontier.dominated", start);
+        if(dominated){
+            metrics.increment(counter);
+        }
+        return dominated;
+    }
+    
+    /**
+     * Increase the counter with the given name and return <code>true</code>.
+     */
+    private boolean pruned(String counter){
+        metrics.increment(counter);
+        return true;
+    }
+    
+    /**
+     * Compute the minimum number of seeds required to obtain the given future plant node.
+     */
+    private long computeRequiredSeedsForTargetPlant(PlantNode fpn){
+        long start = metrics.startTime();
+        long seeds = popSizeTools.computeRequiredSeedsForTargetPlant(fpn);
+        metrics.recordSince("popsize.required.seeds", start);
+        return seeds;
+    }
+    
     /**
      * Check whether a given scheme is a solution to the problem, i.e whether
      * the desired ideotype is reached in the final generation.
@@ -326,6 +391,7 @@ public class BranchAndBoundSolutionManager implements PruningCriterion {
      * @return original seed lot object after applying all filters
      */
     public SeedLot filterSeedLot(SeedLot seedlot){
+        metrics.increment("seedlot.filtered");
         // apply basic filters (non-heuristic)
         for(Genotype g : seedlot.getGenotypes()){
             GenotypeAllelicFrequencies state = g.getAllelicFrequencies();
@@ -336,7 +402,7 @@ public class BranchAndBoundSolutionManager implements PruningCriterion {
                 seedlot.filterGenotype(g);
             } else if (maxPopSizePerGen != null
                         && seedlot.getGenotypeGroup(state).getProbabilityOfPhaseKnownGenotype(g)
-                            < popSizeTools.computeTargetProbLowerBound(seedlot, maxPopSizePerGen.getMaxPopSizePerGen())){
+                            < computeTargetProbLowerBound(seedlot)){
                 // probability of genotype is so small that it would definitely violate the maximum population size per generation
                 seedlot.filterGenotype(g);
             }
@@ -351,6 +417,17 @@ public class BranchAndBoundSolutionManager implements PruningCriterion {
         return seedlot;
     }
     
+    /**
+     * Compute the lower bound on the probability of a genotype in the given seed lot, below which
+     * the maximum population size per generation would be exceeded.
+     */
+    private double computeTargetProbLowerBound(SeedLot seedlot){
+        long start = metrics.startTime();
+        double bound = popSizeTools.computeTargetProbLowerBound(seedlot, maxPopSizePerGen.getMaxPopSizePerGen());
+        metrics.recordSince("popsize.target.prob.bound", start);
+        return bound;
+    }
+    
     /**
      * Register a new solution in the Pareto frontier. Returns <code>true</code> if the presented
      * solution has been added to the Pareto frontier, else <code>false</code> (i.e. if the solution
@@ -365,7 +442,16 @@ public class BranchAndBoundSolutionManager implements PruningCriterion {
         // check constraints (if enabled, also check for homozygous ideotype parents)
         if(isSolution(newScheme) && areConstraintsSatisfied(newScheme.getDescriptor())
                 && (!homozygousIdeotypeParents || checkHomozygousIdeotypeParents(newScheme))){
-            return frontier.register(newScheme);
+            long start = metrics.startTime();
+            boolean registered = frontier.register(newScheme);
+            metrics.recordSince("frontier.register", start);
+            if(registered){
+                metrics.increment("solutions.registered");
+                if(sharedBounds != null){
+                    sharedBounds.registerLocal(newScheme);
+                }
+            }
+            return registered;
         } else {
             return false; // is no solution, or does not satisy all constraints
         }
@@ -374,35 +460,46 @@ public class BranchAndBoundSolutionManager implements PruningCriterion {
     @Override
     public boolean pruneCrossCurrentScheme(CrossingScheme scheme){
         if(heuristics.pruneCrossCurrentScheme(scheme)){
-            return true;
+            return pruned("prune.cross.heuristics");
         } else {
             // create descriptor of abstract 'best' case result when continuing 
             // to cross the current scheme with an arbitrary previous scheme
-            CrossingSchemeDescriptor desc = scheme.getDescriptor();
-            desc.setNumGenerations(desc.getNumGenerations()+1); // at least 1 extra generation
-            desc.setNumCrossings(desc.getNumCrossings()+1); // at least 1 extra crossing
-            
-            // apply any heuristic bound extensions (e.g. heuristic H6)
-            desc = heuristics.extendBoundsUponCrossing(desc, scheme);
+            CrossingSchemeDescriptor desc = computeBoundsUponCrossing(scheme);
             
             // check constraints for abstract 'best' extended scheme
             if(!areConstraintsSatisfied(desc)){
-                return true;
+                return pruned("prune.cross.constraints");
             } else {
                 // check if dominated
-                return frontier.dominatedByRegisteredObject(desc);
+                return dominatedByFrontier(desc, "prune.cross.dominated");
             }
         }
     }
 
+    /**
+     * Compute lower bounds on the descriptor of any scheme obtained by crossing the given partial scheme with an
+     * arbitrary other scheme, including heuristic bound extensions (e.g. heuristic H6). Besides being used for
+     * pruning, these bounds are used to rank partial schemes (see {@link BeamSearch}).
+     * 
+     * @param scheme partial crossing scheme
+     * @return descriptor with lower bounds for any extension of the given scheme through an additional crossing
+     */
+    public CrossingSchemeDescriptor computeBoundsUponCrossing(CrossingScheme scheme){
+        CrossingSchemeDescriptor desc = scheme.getDescriptor();
+        desc.setNumGenerations(desc.getNumGenerations()+1); // at least 1 extra generation
+        desc.setNumCrossings(desc.getNumCrossings()+1); // at least 1 extra crossing
+        // apply any heuristic bound extensions (e.g. heuristic H6)
+        return heuristics.extendBoundsUponCrossing(desc, scheme);
+    }
+    
     @Override
     public boolean pruneCrossCurrentSchemeWithSpecificOther(CrossingScheme scheme, CrossingScheme other){
         if(penultimateGenerationReached(Math.max(scheme.getNumGenerations(), other.getNumGenerations()))
                 && !ideotypeObtainableInNextGeneration(scheme.getFinalPlantNode().getPlant().getGenotype(), other.getFinalPlantNode().getPlant().getGenotype())){
             // only one generation left but desired ideotype cannot be obtained by crossing the given schemes; prune!
-            return true;
+            return pruned("prune.cross.other.ideotype");
         } else if(heuristics.pruneCrossCurrentSchemeWithSpecificOther(scheme, other)){
-            return true;
+            return pruned("prune.cross.other.heuristics");
         } else {
             // create descriptor of abstract 'best' case result when continuing 
             // to cross the current scheme with the given other scheme
@@ -432,10 +529,10 @@ public class BranchAndBoundSolutionManager implements PruningCriterion {
             
             // check constraints for abstract 'best' extended scheme
             if(!areConstraintsSatisfied(desc)){
-                return true;
+                return pruned("prune.cross.other.constraints");
             } else {
                 // check if dominated
-                return frontier.dominatedByRegisteredObject(desc);
+                return dominatedByFrontier(desc, "prune.cross.other.dominated");
             }
         }
     }
@@ -444,9 +541,9 @@ public class BranchAndBoundSolutionManager implements PruningCriterion {
     public boolean pruneCrossCurrentSchemeWithSpecificOtherWithSelectedTarget(CrossingScheme scheme, CrossingScheme other, PlantDescriptor target){
         if(pruneGrowPlantInGeneration(target.getPlant(), Math.max(scheme.getNumGenerations(), other.getNumGenerations())+1)){
             // selected target should not be grown in the newly attached generation
-            return true;
+            return pruned("prune.cross.other.target.grow");
         } else if(heuristics.pruneCrossCurrentSchemeWithSpecificOtherWithSelectedTarget(scheme, other, target)){
-            return true;
+            return pruned("prune.cross.other.target.heuristics");
         } else {
             // create descriptor of abstract 'best' case result when continuing 
             // to cross the current scheme with the given other scheme
@@ -478,7 +575,7 @@ public class BranchAndBoundSolutionManager implements PruningCriterion {
             // create future plant node
             PlantNode fpn = new FuturePlantNode(minNonUniform, target.getProb());            
             // compute min population size required for new target
-            long newTargetPopSize = popSizeTools.computeRequiredSeedsForTargetPlant(fpn);
+            long newTargetPopSize = computeRequiredSeedsForTargetPlant(fpn);
             
             // set lower bound for new total pop size
             desc.setTotalPopSize(slnBounds.getMinPopSize() + newTargetPopSize);
@@ -490,10 +587,10 @@ public class BranchAndBoundSolutionManager implements PruningCriterion {
             
             // check constraints for abstract 'best' extended scheme
             if(!areConstraintsSatisfied(desc)){
-                return true;
+                return pruned("prune.cross.other.target.constraints");
             } else {
                 // check if dominated
-                return frontier.dominatedByRegisteredObject(desc);
+                return dominatedByFrontier(desc, "prune.cross.other.target.dominated");
             }
         }
     }
@@ -603,13 +700,13 @@ public class BranchAndBoundSolutionManager implements PruningCriterion {
     public boolean pruneSelfCurrentScheme(CrossingScheme scheme){
         if(scheme.getNumGenerations() == 0 && scheme.getFinalPlantNode().getPlant().isHomozygousAtAllTargetLoci()){
             // no point in selfing homozygous initial plants, because these are supposed never to be depleted
-            return true;
+            return pruned("prune.self.homozygous");
         } else if(penultimateGenerationReached(scheme.getNumGenerations())
                     && !ideotypeObtainableInNextGeneration(scheme.getFinalPlantNode().getPlant().getGenotype(), scheme.getFinalPlantNode().getPlant().getGenotype())){
             // only one generation left but desired ideotype cannot be obtained by selfing the given parent scheme, so bound!
-            return true;
+            return pruned("prune.self.ideotype");
         } else if(heuristics.pruneSelfCurrentScheme(scheme)){
-            return true;
+            return pruned("prune.self.heuristics");
         } else {
             // create descriptor of abstract 'best' case result when 
             // selfing the current scheme
@@ -622,10 +719,10 @@ public class BranchAndBoundSolutionManager implements PruningCriterion {
 
             // check constraints for abstract 'best' extended scheme
             if(!areConstraintsSatisfied(desc)){
-                return true;
+                return pruned("prune.self.constraints");
             } else {
                 // check if dominated
-                return frontier.dominatedByRegisteredObject(desc);
+                return dominatedByFrontier(desc, "prune.self.dominated");
             }
         }
     }
@@ -634,12 +731,12 @@ public class BranchAndBoundSolutionManager implements PruningCriterion {
     public boolean pruneSelfCurrentSchemeWithSelectedTarget(CrossingScheme scheme, PlantDescriptor target) {
         if(scheme.getNumGenerations() == 0 && scheme.getFinalPlantNode().getPlant().isHomozygousAtAllTargetLoci()){
             // no point in selfing homozygous initial plants, because these are supposed never to be depleted
-            return true;
+            return pruned("prune.self.target.homozygous");
         } else if(pruneGrowPlantInGeneration(target.getPlant(), scheme.getNumGenerations()+1)){
             // selected target should not be grown in newly attached generation
-            return true;
+            return pruned("prune.self.target.grow");
         } else if(heuristics.pruneSelfCurrentSchemeWithSelectedTarget(scheme, target)){
-            return true;
+            return pruned("prune.self.target.heuristics");
         } else {
             // create descriptor of abstract 'best' case result when 
             // selfing the current scheme and attaching the selected target
@@ -658,7 +755,7 @@ public class BranchAndBoundSolutionManager implements PruningCriterion {
             // create future plant node
             PlantNode fpn = new FuturePlantNode(numNonUniform, target.getProb());
             // take into account minimum extra pop size of selected target
-            long minExtraPopSize = popSizeTools.computeRequiredSeedsForTargetPlant(fpn);
+            long minExtraPopSize = computeRequiredSeedsForTargetPlant(fpn);
             // register increased total pop size
             desc.setTotalPopSize(desc.getTotalPopSize()+minExtraPopSize);
             // update maximum pop size per generation
@@ -672,10 +769,10 @@ public class BranchAndBoundSolutionManager implements PruningCriterion {
 
             // check constraints for abstract 'best' extended scheme
             if(!areConstraintsSatisfied(desc)){
-                return true;
+                return pruned("prune.self.target.constraints");
             } else {
                 // check if dominated
-                return frontier.dominatedByRegisteredObject(desc);
+                return dominatedByFrontier(desc, "prune.self.target.dominated");
             }
         }
     }
@@ -683,7 +780,7 @@ public class BranchAndBoundSolutionManager implements PruningCriterion {
     @Override
     public boolean pruneCurrentScheme(CrossingScheme scheme){
         if(heuristics.pruneCurrentScheme(scheme)){
-            return true;
+            return pruned("prune.current.heuristics");
         } else {
             
             // create scheme descriptor
@@ -694,27 +791,27 @@ public class BranchAndBoundSolutionManager implements PruningCriterion {
             
             // check constraints
             if(!areConstraintsSatisfied(desc)){
-                return true;
+                return pruned("prune.current.constraints");
             } else {
                 // check if dominated
-                return frontier.dominatedByRegisteredObject(desc);
+                return dominatedByFrontier(desc, "prune.current.dominated");
             }
         }
     }
     
     @Override
     public boolean pruneQueueScheme(CrossingScheme scheme){
-        return heuristics.pruneQueueScheme(scheme);
+        return heuristics.pruneQueueScheme(scheme) && pruned("prune.queue.heuristics");
     }
     
     @Override
     public boolean pruneDequeueScheme(CrossingScheme scheme){
-        return heuristics.pruneDequeueScheme(scheme);
+        return heuristics.pruneDequeueScheme(scheme) && pruned("prune.dequeue.heuristics");
     }
     
     @Override
     public boolean pruneGrowPlantFromAncestors(Set<PlantDescriptor> ancestors, PlantDescriptor p){
-        return heuristics.pruneGrowPlantFromAncestors(ancestors, p);
+        return heuristics.pruneGrowPlantFromAncestors(ancestors, p) && pruned("prune.grow.ancestors.heuristics");
     }
     
     @Override
@@ -725,7 +822,7 @@ public class BranchAndBoundSolutionManager implements PruningCriterion {
         }
         // check heuristics
         if(heuristics.pruneGrowPlantInGeneration(p, generation)){
-            return true;
+            return pruned("prune.grow.generation.heuristics");
         } else {
             // prune if one of the following conditions holds:
             //  - plant grown in final generation and g is not the ideotype
@@ -33,6 +33,9 @@ import org.ugent.caagt.genestacker.SeedLot;
 import org.ugent.caagt.genestacker.exceptions.GenotypeException;
 import org.ugent.caagt.genestacker.exceptions.IncompatibleGeneticMapException;
 import org.ugent.caagt.genestacker.exceptions.IncompatibleGenotypesException;
+import org.ugent.caagt.genestacker.search.SearchEvent;
+import org.ugent.caagt.genestacker.search.SearchEventRecorder;
+import org.ugent.caagt.genestacker.search.SearchEventType;
 
 /**
  * Default seed lot constructor that creates the seed lot obtained from
@@ -47,6 +50,10 @@ public class DefaultSeedLotConstructor extends SeedLotConstructor {
         super(map);
     }
     
+    public DefaultSeedLotConstructor(GeneticMap map, Map<Genotype, List<Map<Haplotype, Double>>> gameteCache){
+        super(map, gameteCache);
+    }
+    
     private void checkCompatibility(Genotype g1, Genotype g2) throws IncompatibleGenotypesException, IncompatibleGeneticMapException{
         // check if genotypes are compatible for crossing
         if(!g1.compatibleWith(g2)){
@@ -349,6 +356,9 @@ public class DefaultSeedLotConstructor extends SeedLotConstructor {
     @Override
     public SeedLot cross(Genotype g1, Genotype g2) throws GenotypeException {
         
+        long start = metrics.startTime();
+        SearchEvent event = SearchEventRecorder.begin(SearchEventType.SEED_LOT_CONSTRUCTION);
+        
         checkCompatibility(g1, g2);
         
         // get possible haplotypes per chromosome of g1
@@ -357,6 +367,9 @@ public class DefaultSeedLotConstructor extends SeedLotConstructor {
             gametesPerChromosome1 = genGametesPerChromosome(g1);
             // store in cache
             cachedGametesPerChrom.put(g1, gametesPerChromosome1);
+            metrics.increment("seedlot.gametes.cache.miss");
+        } else {
+            metrics.increment("seedlot.gametes.cache.hit");
         }
         // repeat for g2
         List<Map<Haplotype, Double>> gametesPerChromosome2 = cachedGametesPerChrom.get(g2);
@@ -364,6 +377,9 @@ public class DefaultSeedLotConstructor extends SeedLotConstructor {
             gametesPerChromosome2 = genGametesPerChromosome(g2);
             // store in cache
             cachedGametesPerChrom.put(g2, gametesPerChromosome2);
+            metrics.increment("seedlot.gametes.cache.miss");
+        } else {
+            metrics.increment("seedlot.gametes.cache.hit");
         }
         
         // create possible diploid chromosomes by comining respective haplotypes per chromosome
@@ -397,7 +413,12 @@ public class DefaultSeedLotConstructor extends SeedLotConstructor {
         combineChromosomes(diploidChromsList, 0, 1.0, new LinkedList<DiploidChromosome>(), offspring);
         
         // generate seed lot from these genotypes
-        return genSeedLotFromGenotypes(g1, g2, offspring);
+        SeedLot sl = genSeedLotFromGenotypes(g1, g2, offspring);
+        metrics.recordSince("seedlot.cross", start);
+        if(event != null){
+            event.commit(g1 == g2, false, sl.nrOfGenotypes());
+        }
+        return sl;
         
     }
     
@@ -419,6 +440,9 @@ public class DefaultSeedLotConstructor extends SeedLotConstructor {
         
         // NOTE: do not use the cache here! (not general)
 
+        long start = metrics.startTime();
+        SearchEvent event = SearchEventRecorder.begin(SearchEventType.SEED_LOT_CONSTRUCTION);
+        
         checkCompatibility(g1, g2);
 
         // convert to set of genotype observations
@@ -465,7 +489,12 @@ public class DefaultSeedLotConstructor extends SeedLotConstructor {
         }
         
         // generate seed lot from these genotypes
-        return genSeedLotFromGenotypes(g1, g2, offspring);
+        SeedLot sl = genSeedLotFromGenotypes(g1, g2, offspring);
+        metrics.recordSince("seedlot.partialcross", start);
+        if(event != null){
+            event.commit(g1 == g2, true, sl.nrOfGenotypes());
+        }
+        return sl;
         
     }
     
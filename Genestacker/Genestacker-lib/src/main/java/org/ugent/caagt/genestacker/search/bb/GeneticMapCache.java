@@ -0,0 +1,195 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search.bb;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.ugent.caagt.genestacker.DistanceMapFunction;
+import org.ugent.caagt.genestacker.GeneticMap;
+import org.ugent.caagt.genestacker.Genotype;
+import org.ugent.caagt.genestacker.Haplotype;
+import org.ugent.caagt.genestacker.search.SeedLotCache;
+
+/**
+ * Keeps genetic maps and the gametes generated for these maps alive across subsequent searches, e.g. when
+ * running many jobs in the same JVM. Searches that use an equal genetic map (same distances and map function)
+ * receive the same map instance, of which the recombination probabilities have already been computed, and
+ * share a single cache of the gametes produced by each genotype (see {@link DefaultSeedLotConstructor}), as
+ * well as a cache of the unfiltered seed lots obtained from each crossing (see
+ * {@link BranchAndBound#setUnfilteredSeedLotCache(SeedLotCache)}). Only gametes and seed lots generated by the
+ * default seed lot constructor are shared, as these depend on the parent genotypes and genetic map only. The
+ * least recently used maps are discarded when the number of cached maps exceeds a given maximum, and a gamete
+ * or seed lot cache is replaced by an empty cache when it is requested while holding more than a given number of
+ * entries. A full cache is never cleared, as it may still be used by running searches (e.g. concurrent jobs that
+ * share a map), which keep using it until they complete. All methods may be called concurrently.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class GeneticMapCache {
+
+    // default maximum number of cached maps
+    public static final int DEFAULT_MAX_MAPS = 8;
+    // default maximum number of genotypes in a gamete cache
+    public static final int DEFAULT_MAX_GAMETE_CACHE_SIZE = 100000;
+    // default maximum number of seed lots in a seed lot cache
+    public static final int DEFAULT_MAX_SEED_LOT_CACHE_SIZE = 10000;
+
+    // cached maps in access order
+    private final LinkedHashMap<Key, Entry> entries;
+
+    // limits
+    private final int maxMaps;
+    private final int maxGameteCacheSize;
+    private final int maxSeedLotCacheSize;
+
+    public GeneticMapCache(){
+        this(DEFAULT_MAX_MAPS, DEFAULT_MAX_GAMETE_CACHE_SIZE);
+    }
+
+    public GeneticMapCache(int maxMaps, int maxGameteCacheSize){
+        this(maxMaps, maxGameteCacheSize, DEFAULT_MAX_SEED_LOT_CACHE_SIZE);
+    }
+
+    public GeneticMapCache(int maxMaps, int maxGameteCacheSize, int maxSeedLotCacheSize){
+        this.maxMaps = maxMaps;
+        this.maxGameteCacheSize = maxGameteCacheSize;
+        this.maxSeedLotCacheSize = maxSeedLotCacheSize;
+        entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Get the cached map equal to the given map, which is registered if no such map has been cached.
+     *
+     * @param map genetic map
+     * @return cached equal map
+     */
+    public GeneticMap getMap(GeneticMap map){
+        return getEntry(map).map;
+    }
+
+    /**
+     * Get the gamete cache of the given map, to be passed to a {@link DefaultSeedLotConstructor}. The map should
+     * have been obtained from {@link #getMap(GeneticMap)}. If the cache holds more than the maximum number of
+     * genotypes, it is replaced by an empty cache first.
+     *
+     * @param map genetic map
+     * @return shared gamete cache for this map
+     */
+    public synchronized Map<Genotype, List<Map<Haplotype, Double>>> getGameteCache(GeneticMap map){
+        Entry entry = getEntry(map);
+        if(entry.gametes.size() > maxGameteCacheSize){
+            entry.gametes = new ConcurrentHashMap<>();
+        }
+        return entry.gametes;
+    }
+
+    /**
+     * Get the cache of unfiltered seed lots obtained by crossing genotypes according to the given map, to be
+     * passed to a {@link BranchAndBound} engine that uses a {@link DefaultSeedLotConstructor}. The map should have
+     * been obtained from {@link #getMap(GeneticMap)}. If the cache holds more than the maximum number of seed lots,
+     * it is replaced by an empty cache first.
+     *
+     * @param map genetic map
+     * @return shared seed lot cache for this map
+     */
+    public synchronized SeedLotCache getSeedLotCache(GeneticMap map){
+        Entry entry = getEntry(map);
+        if(entry.seedLots.size() > maxSeedLotCacheSize){
+            entry.seedLots = new SeedLotCache();
+        }
+        return entry.seedLots;
+    }
+
+    /**
+     * Get the number of cached maps.
+     *
+     * @return number of cached maps
+     */
+    public synchronized int getNumMaps(){
+        return entries.size();
+    }
+
+    /**
+     * Discard all cached maps, gametes and seed lots.
+     */
+    public synchronized void clear(){
+        entries.clear();
+    }
+
+    private synchronized Entry getEntry(GeneticMap map){
+        Key key = new Key(map);
+        Entry entry = entries.get(key);
+        if(entry == null){
+            entry = new Entry(map);
+            entries.put(key, entry);
+            // discard least recently used maps
+            while(entries.size() > maxMaps){
+                entries.remove(entries.keySet().iterator().next());
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Cached map with gametes and seed lots.
+     */
+    private static class Entry {
+
+        private final GeneticMap map;
+        // replaced (never cleared) when full
+        private Map<Genotype, List<Map<Haplotype, Double>>> gametes;
+        private SeedLotCache seedLots;
+
+        public Entry(GeneticMap map){
+            this.map = map;
+            gametes = new ConcurrentHashMap<>();
+            seedLots = new SeedLotCache();
+        }
+
+    }
+
+    /**
+     * Identifies equal maps by their distances and the type of map function.
+     */
+    private static class Key {
+
+        private final double[][] distances;
+        private final Class<? extends DistanceMapFunction> mapFunction;
+
+        public Key(GeneticMap map){
+            distances = map.getDistances();
+            mapFunction = map.getDistanceMapFunction().getClass();
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if(!(o instanceof Key)){
+                return false;
+            }
+            Key k = (Key) o;
+            return mapFunction == k.mapFunction && Arrays.deepEquals(distances, k.distances);
+        }
+
+        @Override
+        public int hashCode(){
+            return 31 * mapFunction.hashCode() + Arrays.deepHashCode(distances);
+        }
+
+    }
+
+}
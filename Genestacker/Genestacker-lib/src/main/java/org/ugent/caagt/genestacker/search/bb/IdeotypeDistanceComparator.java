@@ -0,0 +1,189 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search.bb;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.ugent.caagt.genestacker.DiploidChromosome;
+import org.ugent.caagt.genestacker.Genotype;
+import org.ugent.caagt.genestacker.Haplotype;
+import org.ugent.caagt.genestacker.search.CrossingScheme;
+import org.ugent.caagt.genestacker.search.CrossingSchemeAlternatives;
+import org.ugent.caagt.genestacker.search.CrossingSchemeDescriptor;
+
+/**
+ * Orders partial schemes by how promising they are to obtain the ideotype, to guide the greedy construction
+ * of solutions. Schemes are first compared based on the distance from their final plant to the ideotype, where
+ * the haplotypes of each chromosome are matched to those of the ideotype so that the total number of mismatching
+ * loci is minimal. Ties are broken by the distance from the best haplotype of each chromosome to the closest
+ * haplotype of the ideotype, which favours plants from which the ideotype is more easily obtained through
+ * recombination, and then by the minimum population size and number of generations across all alternatives.
+ * If a solution manager is specified, the latter are replaced by the lower bounds for any extension of the
+ * scheme as computed by the solution manager, which include heuristic bounds on the population size that
+ * is still required to obtain the ideotype (e.g. heuristic H6).
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class IdeotypeDistanceComparator implements Comparator<CrossingSchemeAlternatives> {
+
+    // ideotype
+    private final Genotype ideotype;
+    // solution manager used to compute lower bounds (null if not used)
+    private final BranchAndBoundSolutionManager solManager;
+
+    public IdeotypeDistanceComparator(Genotype ideotype){
+        this(ideotype, null);
+    }
+
+    public IdeotypeDistanceComparator(Genotype ideotype, BranchAndBoundSolutionManager solManager){
+        this.ideotype = ideotype;
+        this.solManager = solManager;
+    }
+
+    @Override
+    public int compare(CrossingSchemeAlternatives s1, CrossingSchemeAlternatives s2) {
+        return compareScores(score(s1), score(s2));
+    }
+
+    /**
+     * Select the most promising schemes among those with at least one remaining alternative, where at most one
+     * scheme is selected for each final plant genotype. The score of each scheme is computed only once.
+     *
+     * @param schemes candidate schemes
+     * @param maxNumSelected maximum number of selected schemes
+     * @return selected schemes, ordered from most to least promising
+     */
+    public List<CrossingSchemeAlternatives> select(Collection<CrossingSchemeAlternatives> schemes, int maxNumSelected){
+        final Map<CrossingSchemeAlternatives, long[]> scores = new IdentityHashMap<>();
+        List<CrossingSchemeAlternatives> sorted = new ArrayList<>();
+        for(CrossingSchemeAlternatives s : schemes){
+            if(s.nrOfAlternatives() > 0){
+                scores.put(s, score(s));
+                sorted.add(s);
+            }
+        }
+        Collections.sort(sorted, new Comparator<CrossingSchemeAlternatives>() {
+            @Override
+            public int compare(CrossingSchemeAlternatives s1, CrossingSchemeAlternatives s2) {
+                return compareScores(scores.get(s1), scores.get(s2));
+            }
+        });
+        List<CrossingSchemeAlternatives> selected = new ArrayList<>();
+        Set<Genotype> finalGenotypes = new HashSet<>();
+        Iterator<CrossingSchemeAlternatives> it = sorted.iterator();
+        while(selected.size() < maxNumSelected && it.hasNext()){
+            CrossingSchemeAlternatives s = it.next();
+            if(finalGenotypes.add(s.getFinalPlant().getGenotype())){
+                selected.add(s);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Compute the score of a scheme: distance to the ideotype, haplotype distance, (bound on the) population
+     * size and (bound on the) number of generations, where lower values are better.
+     */
+    private long[] score(CrossingSchemeAlternatives s){
+        Genotype g = s.getFinalPlant().getGenotype();
+        long popSize, numGen;
+        if(solManager == null){
+            popSize = s.getMinPopSize();
+            numGen = s.getMinNumGen();
+        } else {
+            popSize = Long.MAX_VALUE;
+            numGen = Long.MAX_VALUE;
+            for(CrossingScheme alt : s.getAlternatives()){
+                CrossingSchemeDescriptor bounds = solManager.computeBoundsUponCrossing(alt);
+                popSize = Math.min(popSize, bounds.getTotalPopSize());
+                numGen = Math.min(numGen, bounds.getNumGenerations());
+            }
+        }
+        return new long[]{distance(g), haplotypeDistance(g), popSize, numGen};
+    }
+
+    private int compareScores(long[] score1, long[] score2){
+        int c = 0;
+        int i = 0;
+        while(c == 0 && i < score1.length){
+            c = Long.compare(score1[i], score2[i]);
+            i++;
+        }
+        return c;
+    }
+
+    /**
+     * Compute the number of loci at which the haplotypes of the given genotype differ from those of the ideotype,
+     * where the haplotypes of each chromosome are matched to those of the ideotype so that this number is minimal.
+     * The distance is zero if and only if the genotype is equal to the ideotype.
+     *
+     * @param g genotype
+     * @return distance to the ideotype
+     */
+    public int distance(Genotype g){
+        int d = 0;
+        List<DiploidChromosome> chroms = g.getChromosomes();
+        List<DiploidChromosome> ideoChroms = ideotype.getChromosomes();
+        for(int c=0; c<chroms.size(); c++){
+            Haplotype[] h = chroms.get(c).getHaplotypes();
+            Haplotype[] ideo = ideoChroms.get(c).getHaplotypes();
+            d += Math.min(mismatches(h[0], ideo[0]) + mismatches(h[1], ideo[1]),
+                          mismatches(h[0], ideo[1]) + mismatches(h[1], ideo[0]));
+        }
+        return d;
+    }
+
+    /**
+     * Compute the number of loci at which the best haplotype of each chromosome of the given genotype differs
+     * from the closest haplotype of the ideotype, summed over all chromosomes.
+     *
+     * @param g genotype
+     * @return distance from the best haplotypes to the ideotype
+     */
+    public int haplotypeDistance(Genotype g){
+        int d = 0;
+        List<DiploidChromosome> chroms = g.getChromosomes();
+        List<DiploidChromosome> ideoChroms = ideotype.getChromosomes();
+        for(int c=0; c<chroms.size(); c++){
+            int best = Integer.MAX_VALUE;
+            for(Haplotype h : chroms.get(c).getHaplotypes()){
+                for(Haplotype ideo : ideoChroms.get(c).getHaplotypes()){
+                    best = Math.min(best, mismatches(h, ideo));
+                }
+            }
+            d += best;
+        }
+        return d;
+    }
+
+    private int mismatches(Haplotype h1, Haplotype h2){
+        int m = 0;
+        for(int l=0; l<h1.nrOfLoci(); l++){
+            if(h1.targetPresent(l) != h2.targetPresent(l)){
+                m++;
+            }
+        }
+        return m;
+    }
+
+}
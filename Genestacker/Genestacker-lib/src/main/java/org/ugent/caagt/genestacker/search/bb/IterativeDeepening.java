@@ -0,0 +1,145 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search.bb;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.ugent.caagt.genestacker.exceptions.GenestackerException;
+import org.ugent.caagt.genestacker.search.ParetoFrontier;
+import org.ugent.caagt.genestacker.search.PopulationSizeTools;
+import org.ugent.caagt.genestacker.search.constraints.Constraint;
+import org.ugent.caagt.genestacker.search.constraints.MaxNumGenerations;
+import org.ugent.caagt.genestacker.util.GenestackerConstants;
+import org.ugent.caagt.genestacker.util.TimeFormatting;
+
+/**
+ * Runs a branch and bound engine with an increasing maximum number of generations, so that solutions with few
+ * generations are found quickly and schemes with more generations are explored as long as time allows. The
+ * subsequent runs are executed in a {@link BranchAndBoundSession}, which reuses the seed lots and gametes
+ * across depths, and the solutions found at each depth are used as initial Pareto frontier for the next depth
+ * so that they bound the deeper search from the start. As the solutions of previous depths are retained
+ * in the frontier of each run, the frontier returned after the final depth contains all solutions.
+ * <p>
+ * Any maximum number of generations that has been set for the engine is replaced by the depth of the
+ * current run; all other constraints are kept. The search stops after the maximum depth has been reached
+ * or when the runtime limit is exceeded, in which case the (incomplete) frontier of the last run is returned.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class IterativeDeepening {
+
+    // logger
+    private Logger logger = LogManager.getLogger(IterativeDeepening.class);
+
+    // session in which all depths are run
+    private final BranchAndBoundSession session;
+
+    // minimum and maximum depth (number of generations)
+    private final int minNumGen, maxNumGen;
+
+    // depth of last run
+    private int lastNumGen;
+
+    /**
+     * Create an iterative deepening driver for the given engine.
+     *
+     * @param engine branch and bound engine
+     * @param minNumGen number of generations of the first run
+     * @param maxNumGen number of generations of the last run
+     */
+    public IterativeDeepening(BranchAndBound engine, int minNumGen, int maxNumGen){
+        if(minNumGen < 0 || maxNumGen < minNumGen){
+            throw new IllegalArgumentException("Invalid range of generations: [" + minNumGen + ", " + maxNumGen + "].");
+        }
+        session = new BranchAndBoundSession(engine);
+        this.minNumGen = minNumGen;
+        this.maxNumGen = maxNumGen;
+        lastNumGen = -1;
+    }
+
+    public BranchAndBound getEngine(){
+        return session.getEngine();
+    }
+
+    /**
+     * Get the maximum number of generations of the last completed or interrupted run,
+     * or -1 if no search has been run yet.
+     *
+     * @return depth of last run
+     */
+    public int getLastNumGen(){
+        return lastNumGen;
+    }
+
+    /**
+     * Run the engine for all depths, within the given runtime limit.
+     *
+     * @param runtimeLimit runtime limit in milliseconds, for all depths together
+     * @param numThreads number of threads
+     * @return Pareto frontier of the last run
+     * @throws GenestackerException if anything goes wrong during search
+     */
+    public ParetoFrontier search(long runtimeLimit, int numThreads) throws GenestackerException {
+        BranchAndBound engine = session.getEngine();
+        PopulationSizeTools popSizeTools = engine.getPopulationSizeTools();
+        // retain all constraints except the maximum number of generations
+        List<Constraint> baseConstraints = new ArrayList<>();
+        if(engine.getConstraints() != null){
+            for(Constraint c : engine.getConstraints()){
+                if(!(c instanceof MaxNumGenerations)){
+                    baseConstraints.add(c);
+                }
+            }
+        }
+        List<Constraint> originalConstraints = engine.getConstraints();
+        long start = System.currentTimeMillis();
+        ParetoFrontier frontier = null;
+        boolean timeLeft = true;
+        int numGen = minNumGen;
+        try {
+            while(numGen <= maxNumGen && timeLeft){
+                List<Constraint> constraints = new ArrayList<>(baseConstraints);
+                constraints.add(new MaxNumGenerations(numGen));
+                // compute remaining time
+                long remaining = GenestackerConstants.NO_RUNTIME_LIMIT;
+                if(runtimeLimit != GenestackerConstants.NO_RUNTIME_LIMIT){
+                    // at least one millisecond, as negative values denote that there is no limit
+                    remaining = Math.max(1, runtimeLimit - (System.currentTimeMillis() - start));
+                }
+                // run
+                logger.info("Depth {}: searching schemes with at most {} generation(s) ...", numGen, numGen);
+                frontier = session.search(constraints, popSizeTools, remaining, numThreads);
+                lastNumGen = numGen;
+                logger.info("Depth {}: {} solution(s) - T = {}", numGen, frontier.getNumSchemes(),
+                                            TimeFormatting.formatTime(System.currentTimeMillis() - start));
+                // check if time left for next depth
+                if(runtimeLimit != GenestackerConstants.NO_RUNTIME_LIMIT){
+                    timeLeft = System.currentTimeMillis() - start < runtimeLimit;
+                }
+                numGen++;
+            }
+        } finally {
+            // restore original constraints
+            engine.setConstraints(originalConstraints);
+        }
+        if(!timeLeft){
+            logger.info("Runtime limit exceeded at depth {}", lastNumGen);
+        }
+        return frontier;
+    }
+
+}
@@ -18,10 +18,12 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
 import org.ugent.caagt.genestacker.GeneticMap;
 import org.ugent.caagt.genestacker.Genotype;
 import org.ugent.caagt.genestacker.Plant;
@@ -37,77 +39,78 @@ import org.ugent.caagt.genestacker.search.SeedLotNode;
 
 /**
  * First merges the history of the parent schemes and then attaches
- * each of the possible new plants to the merged history.
+ * each of the possible new plants to the merged history. If a fork join
+ * pool is specified, the pruning checks for all pairs of alternatives of
+ * the parent schemes, as well as the construction of the resulting schemes
+ * for each candidate genotype, are split into subtasks that are executed
+ * in parallel, so that a single heavy merge can make use of all threads.
  * 
  * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
  */
 public class MergeFirstSchemeMerger extends SchemeMerger {
 
+    // fork join pool used to execute subtasks (null if executed sequentially)
+    private final ForkJoinPool pool;
+    
+    // cache of bounds used to prune alignments (null if not used)
+    private final AlignmentBoundCache boundCache;
+    
     public MergeFirstSchemeMerger(CrossingSchemeAlternatives scheme1, CrossingSchemeAlternatives scheme2, GeneticMap map,
                                                     BranchAndBoundSolutionManager solManager, SeedLot seedLot){
+        this(scheme1, scheme2, map, solManager, seedLot, null, null);
+    }
+    
+    public MergeFirstSchemeMerger(CrossingSchemeAlternatives scheme1, CrossingSchemeAlternatives scheme2, GeneticMap map,
+                                                    BranchAndBoundSolutionManager solManager, SeedLot seedLot,
+                                                    ForkJoinPool pool, AlignmentBoundCache boundCache){
         super(scheme1, scheme2, map, solManager, seedLot);
+        this.pool = pool;
+        this.boundCache = boundCache;
     }
     
     @Override
     public List<CrossingSchemeAlternatives> combineSchemes() throws GenotypeException, CrossingSchemeException {
-                
+        
+        long start = solManager.getMetrics().startTime();
+        
         // gather descriptors of ancestors occurring in both schemes
         Set<PlantDescriptor> ancestors = new HashSet<>();
         ancestors.addAll(scheme1.getAncestorDescriptors());
         ancestors.addAll(scheme2.getAncestorDescriptors());
-        // compose set of genotypes which are allowed to be grown from with these ancestors
-        Set<Genotype> candidateGenotypes = new HashSet<>();
+        // compose list of genotypes which are allowed to be grown from with these ancestors
+        final List<Genotype> candidateGenotypes = new ArrayList<>();
+        final List<PlantDescriptor> candidateDescriptors = new ArrayList<>();
         for(Genotype g : seedLot.getGenotypes()){
-            if(!solManager.pruneGrowPlantFromAncestors(ancestors, new PlantDescriptor(
-                        new Plant(g),
-                        seedLot.getGenotypeGroup(g.getAllelicFrequencies()).getProbabilityOfPhaseKnownGenotype(g),
-                        seedLot.getGenotypeGroup(g.getAllelicFrequencies()).getLinkagePhaseAmbiguity(g),
-                        seedLot.isUniform()
-                    ))){
+            PlantDescriptor pdesc = new PlantDescriptor(
+                new Plant(g),
+                seedLot.getGenotypeGroup(g.getAllelicFrequencies()).getProbabilityOfPhaseKnownGenotype(g),
+                seedLot.getGenotypeGroup(g.getAllelicFrequencies()).getLinkagePhaseAmbiguity(g),
+                seedLot.isUniform()
+            );
+            if(!solManager.pruneGrowPlantFromAncestors(ancestors, pdesc)){
                 candidateGenotypes.add(g);
+                candidateDescriptors.add(pdesc);
             }
         }
         
         // check which combinations of scheme alternatives are pruned, and especially if any are not pruned
-        boolean[][] pruneCross = new boolean[scheme1.nrOfAlternatives()][scheme2.nrOfAlternatives()];
+        final int numAlts1 = scheme1.nrOfAlternatives();
+        final int numAlts2 = scheme2.nrOfAlternatives();
+        final boolean[][] pruneCross = new boolean[numAlts1][numAlts2];
+        forEach(numAlts1 * numAlts2, new IndexedJob() {
+            @Override
+            public void run(int i) {
+                CrossingScheme alt1 = scheme1.getAlternatives().get(i / numAlts2);
+                CrossingScheme alt2 = scheme2.getAlternatives().get(i % numAlts2);
+                pruneCross[i / numAlts2][i % numAlts2] = pruneCross(alt1, alt2, candidateDescriptors);
+            }
+        });
         boolean pruneAll = true;
-        int alt1i, alt2i;
-        Iterator<Genotype> it;
-        alt1i = 0;
-        while(alt1i<scheme1.nrOfAlternatives()){
-            CrossingScheme alt1 = scheme1.getAlternatives().get(alt1i);
-            alt2i=0;
-            while(alt2i<scheme2.nrOfAlternatives()){
-                CrossingScheme alt2 = scheme2.getAlternatives().get(alt2i);
-                // check general pruning
-                boolean prune = solManager.pruneCrossCurrentSchemeWithSpecificOther(alt1, alt2);
-                if(prune){
-                    // all extensions are definitely pruned
-                    pruneCross[alt1i][alt2i] = true;
-                } else {
-                    // not pruned yet, now check if there is any genotype in the offspring that does not
-                    // cause the extension to be pruned anyway when being attached as next target
-                    prune = true;
-                    it = candidateGenotypes.iterator();
-                    while(prune && it.hasNext()){
-                        Genotype g = it.next();
-                        PlantDescriptor pdesc = new PlantDescriptor(
-                            new Plant(g),
-                            seedLot.getGenotypeGroup(g.getAllelicFrequencies()).getProbabilityOfPhaseKnownGenotype(g),
-                            seedLot.getGenotypeGroup(g.getAllelicFrequencies()).getLinkagePhaseAmbiguity(g),
-                            seedLot.isUniform()
-                        );
-                        prune = solManager.pruneCrossCurrentSchemeWithSpecificOtherWithSelectedTarget(alt1, alt2, pdesc);
-                    }
-                    // all candidate genotypes pruned?
-                    pruneCross[alt1i][alt2i] = prune;
-                }
-                // all combinations pruned until now?
-                pruneAll = pruneAll && prune;
-                alt2i++;
+        for(int alt1i=0; alt1i<numAlts1; alt1i++){
+            for(int alt2i=0; alt2i<numAlts2; alt2i++){
+                pruneAll = pruneAll && pruneCross[alt1i][alt2i];
             }
-            alt1i++;
-        }    
+        }
         
         if(!pruneAll){
             
@@ -116,11 +119,11 @@ public class MergeFirstSchemeMerger extends SchemeMerger {
             // construct different ways of merging the history, considering all
             // pairs of alternatives of the parent schemes
             
-            MergedSchemes merged = new MergedSchemes();
+            MergedSchemes merged = new MergedSchemes(boundCache);
             
-            for(alt1i=0; alt1i<scheme1.nrOfAlternatives(); alt1i++){
+            for(int alt1i=0; alt1i<numAlts1; alt1i++){
                 CrossingScheme alt1 = scheme1.getAlternatives().get(alt1i);
-                for(alt2i=0; alt2i<scheme2.nrOfAlternatives(); alt2i++){
+                for(int alt2i=0; alt2i<numAlts2; alt2i++){
                     CrossingScheme alt2 = scheme2.getAlternatives().get(alt2i);
                     
                     // check pruning
@@ -158,8 +161,14 @@ public class MergeFirstSchemeMerger extends SchemeMerger {
                         /* MERGE HISTORY */
                         /*****************/
 
-                        merge(merged, curScheme, alt1, danglingPlantNodes1, alt1.getNumGenerations(),
+                        // skip if dominated by merges of previously considered pairs of alternatives
+                        if(!merged.pruneAlignment(curScheme, alt1, danglingPlantNodes1.values(), alt1.getNumGenerations(),
+                                                    alt2, danglingPlantNodes2.values(), alt2.getNumGenerations())){
+                            merge(merged, curScheme, alt1, danglingPlantNodes1, alt1.getNumGenerations(),
                                                     alt2, danglingPlantNodes2, alt2.getNumGenerations(), solManager);
+                        } else {
+                            solManager.getMetrics().increment("merger.alignments.pruned");
+                        }
                     
                     }
                 }
@@ -171,7 +180,8 @@ public class MergeFirstSchemeMerger extends SchemeMerger {
 
             // set unique ID for all seed lots resulting from  different history merges
             
-            for(CrossingScheme scheme : merged.getMergedSchemes()){
+            final List<CrossingScheme> mergedSchemes = new ArrayList<>(merged.getMergedSchemes());
+            for(CrossingScheme scheme : mergedSchemes){
                 scheme.getFinalPlantNode().getParent().assignNextID();
             }
             
@@ -181,50 +191,173 @@ public class MergeFirstSchemeMerger extends SchemeMerger {
 
             // now we will replace the dummy with each possible real plant grown from the new seedlot, attached
             // to the computed Pareto optimal alternatives resulting from the merging procedure
-
-            it = candidateGenotypes.iterator();
-            while(cont && it.hasNext()){
-                Genotype g = it.next();
-                Plant p = new Plant(g);
-                List<CrossingScheme> newAlts = new ArrayList<>();
-                // consider alternatives resulting from the merging procedure
-                Iterator<CrossingScheme> schemeIt = merged.getMergedSchemes().iterator();
-                while(cont && schemeIt.hasNext()){
-                    CrossingScheme scheme = schemeIt.next();
-                    // check pruning
-                    if(!solManager.pruneGrowPlantInGeneration(p, scheme.getNumGenerations())){
-                        // create deep upwards copy, and final plant node and its parent
-                        PlantNode finalPn = scheme.getFinalPlantNode().deepUpwardsCopy();
-                        SeedLotNode finalSln = finalPn.getParent();
-                        // remove final plant node (the dummy)
-                        finalSln.removeChild(finalPn);
-                        // create new plant node as child of final seedlot, replacing the dummy
-                        PlantNode newFinalPlantNode = new PlantNode(p, finalPn.getGeneration(), finalSln);
-                        // create final scheme with new final plant
-                        CrossingScheme finalScheme = new CrossingScheme(scheme.getPopulationSizeTools(), newFinalPlantNode);
-                        // register scheme if:
-                        //   - not pruned
-                        //   - depleted seedlots successfully resolved, in case final
-                        //     seedlot became depleted after replacing the dummy
-                        if(!solManager.pruneCurrentScheme(finalScheme)
-                                && finalScheme.resolveDepletedSeedLots(solManager)){
-                            newAlts.add(finalScheme);
-                        }
-                    }
+            
+            final CrossingSchemeAlternatives[] extensions = new CrossingSchemeAlternatives[candidateGenotypes.size()];
+            forEach(candidateGenotypes.size(), new IndexedJob() {
+                @Override
+                public void run(int i) throws CrossingSchemeException {
+                    extensions[i] = extend(new Plant(candidateGenotypes.get(i)), mergedSchemes);
                 }
-                // register new alternatives
-                if(!newAlts.isEmpty()){
-                    newSchemes.add(new CrossingSchemeAlternatives(newAlts));
+            });
+            // register new alternatives (in order of the candidate genotypes)
+            for(CrossingSchemeAlternatives ext : extensions){
+                if(ext != null){
+                    newSchemes.add(ext);
                 }
             }
+            solManager.getMetrics().recordSince("merger.combine", start);
+            solManager.getMetrics().add("merger.schemes.created", newSchemes.size());
             return newSchemes;
             
         } else {
             
+            solManager.getMetrics().increment("merger.combine.pruned");
             List<CrossingSchemeAlternatives> empty = Collections.emptyList();
             return empty;
         
         }
     }
+    
+    /**
+     * Check whether crossing the given alternatives is pruned, either in general or because
+     * attaching any of the candidate target plants would cause the extension to be pruned.
+     * 
+     * @param alt1 alternative of first parent scheme
+     * @param alt2 alternative of second parent scheme
+     * @param candidates descriptors of candidate target plants
+     * @return <code>true</code> if all extensions obtained from crossing both alternatives are pruned
+     */
+    private boolean pruneCross(CrossingScheme alt1, CrossingScheme alt2, List<PlantDescriptor> candidates){
+        // check general pruning
+        if(solManager.pruneCrossCurrentSchemeWithSpecificOther(alt1, alt2)){
+            // all extensions are definitely pruned
+            return true;
+        }
+        // not pruned yet, now check if there is any genotype in the offspring that does not
+        // cause the extension to be pruned anyway when being attached as next target
+        for(PlantDescriptor pdesc : candidates){
+            if(!solManager.pruneCrossCurrentSchemeWithSpecificOtherWithSelectedTarget(alt1, alt2, pdesc)){
+                return false;
+            }
+        }
+        // all candidate genotypes pruned
+        return true;
+    }
+    
+    /**
+     * Replace the dummy final plant of each merged scheme with the given plant.
+     * 
+     * @param p new final plant
+     * @param mergedSchemes merged schemes with a dummy final plant
+     * @return alternatives obtained by growing the given plant in each merged scheme,
+     *         <code>null</code> if all alternatives have been pruned
+     * @throws CrossingSchemeException if anything goes wrong while creating the final schemes
+     */
+    private CrossingSchemeAlternatives extend(Plant p, List<CrossingScheme> mergedSchemes) throws CrossingSchemeException{
+        List<CrossingScheme> newAlts = new ArrayList<>();
+        // consider alternatives resulting from the merging procedure
+        for(int i=0; cont && i<mergedSchemes.size(); i++){
+            CrossingScheme scheme = mergedSchemes.get(i);
+            // check pruning
+            if(!solManager.pruneGrowPlantInGeneration(p, scheme.getNumGenerations())){
+                // create deep upwards copy, and final plant node and its parent
+                PlantNode finalPn = scheme.getFinalPlantNode().deepUpwardsCopy();
+                SeedLotNode finalSln = finalPn.getParent();
+                // remove final plant node (the dummy)
+                finalSln.removeChild(finalPn);
+                // create new plant node as child of final seedlot, replacing the dummy
+                PlantNode newFinalPlantNode = new PlantNode(p, finalPn.getGeneration(), finalSln);
+                // create final scheme with new final plant
+                CrossingScheme finalScheme = new CrossingScheme(scheme.getPopulationSizeTools(), newFinalPlantNode);
+                // register scheme if:
+                //   - not pruned
+                //   - depleted seedlots successfully resolved, in case final
+                //     seedlot became depleted after replacing the dummy
+                if(!solManager.pruneCurrentScheme(finalScheme)
+                        && finalScheme.resolveDepletedSeedLots(solManager)){
+                    newAlts.add(finalScheme);
+                }
+            }
+        }
+        if(newAlts.isEmpty()){
+            return null;
+        }
+        return new CrossingSchemeAlternatives(newAlts);
+    }
+    
+    /**
+     * Run the given job for all indices 0, ..., n-1. If a fork join pool has been specified,
+     * the range of indices is recursively split into subtasks that are executed in parallel;
+     * else, all indices are processed sequentially in the current thread.
+     * 
+     * @param n number of indices
+     * @param job job to execute for each index
+     * @throws GenotypeException if thrown by the job
+     * @throws CrossingSchemeException if thrown by the job
+     */
+    private void forEach(int n, IndexedJob job) throws GenotypeException, CrossingSchemeException {
+        if(pool == null || n < 2){
+            for(int i=0; cont && i<n; i++){
+                job.run(i);
+            }
+        } else {
+            AtomicReference<Exception> failure = new AtomicReference<>();
+            pool.invoke(new IndexedJobTask(job, 0, n, failure));
+            // rethrow first failure, if any
+            Exception ex = failure.get();
+            if(ex instanceof GenotypeException){
+                throw (GenotypeException) ex;
+            } else if(ex instanceof CrossingSchemeException){
+                throw (CrossingSchemeException) ex;
+            }
+        }
+    }
+    
+    /**
+     * Job executed for each index within a given range.
+     */
+    private interface IndexedJob {
+        public void run(int i) throws GenotypeException, CrossingSchemeException;
+    }
+    
+    /**
+     * Fork join task which runs an indexed job for a range of indices, by recursively splitting
+     * the range in halves. The first exception thrown by the job is stored in a shared reference,
+     * after which the remaining subtasks are skipped.
+     */
+    private class IndexedJobTask extends RecursiveAction {
+        
+        // job
+        private final IndexedJob job;
+        // range of indices (from inclusive, to exclusive)
+        private final int from, to;
+        // first failure
+        private final AtomicReference<Exception> failure;
+
+        public IndexedJobTask(IndexedJob job, int from, int to, AtomicReference<Exception> failure){
+            this.job = job;
+            this.from = from;
+            this.to = to;
+            this.failure = failure;
+        }
+        
+        @Override
+        protected void compute() {
+            if(!cont || failure.get() != null){
+                return;
+            }
+            if(to - from == 1){
+                try {
+                    job.run(from);
+                } catch (GenotypeException | CrossingSchemeException ex){
+                    failure.compareAndSet(null, ex);
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new IndexedJobTask(job, from, mid, failure), new IndexedJobTask(job, mid, to, failure));
+            }
+        }
+        
+    }
 
 }
@@ -16,12 +16,14 @@ package org.ugent.caagt.genestacker.search.bb;
 
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Set;
 import org.ugent.caagt.genestacker.search.CrossingScheme;
 import org.ugent.caagt.genestacker.search.CrossingSchemeDescriptor;
 import org.ugent.caagt.genestacker.search.ParetoFrontier;
 import org.ugent.caagt.genestacker.search.PlantNode;
-import org.ugent.caagt.genestacker.search.SeedLotNode;
+import org.ugent.caagt.genestacker.search.bb.AlignmentBoundCache.BranchBound;
 
 /**
  * Represents possible ways to merge two schemes with minimum
@@ -32,9 +34,20 @@ import org.ugent.caagt.genestacker.search.SeedLotNode;
 public class MergedSchemes{
 
    ParetoFrontier pareto;
+   
+   // cache of bounds used to prune alignments (null if not used)
+   private AlignmentBoundCache boundCache;
+   // fingerprints of merged branches
+   private Map<CrossingScheme, Long> fingerprints;
 
    public MergedSchemes(){
+       this(null);
+   }
+   
+   public MergedSchemes(AlignmentBoundCache boundCache){
        pareto = new ParetoFrontier();
+       this.boundCache = boundCache;
+       fingerprints = new IdentityHashMap<>();
    }
 
    /**
@@ -82,27 +95,13 @@ public class MergedSchemes{
        // min increase in pop size and linkage phase ambiguity
 
        // scheme 1
-       Collection<PlantNode> plantNodes1 = getNodesWithAncestors(scheme1, danglingPlantNodes1, nextGen1);
-       double bestCaseLPAInc1 = 0.0;
-       for(PlantNode pn : plantNodes1){
-           bestCaseLPAInc1 = 1.0 - (1.0-bestCaseLPAInc1)*(1.0-pn.getLinkagePhaseAmbiguity());
-       }
-       Collection<SeedLotNode> seedLots1 = getAncestorSeedLots(scheme1, nextGen1);
-       int minPopSizeInc1 = 0;
-       for(SeedLotNode sln : seedLots1){
-           minPopSizeInc1 += sln.getSeedsTakenFromSeedLot();
-       }
+       BranchBound bound1 = getBound(scheme1, nextGen1);
+       double bestCaseLPAInc1 = addDanglingPlantNodes(bound1.getBestCaseLPAIncrease(), danglingPlantNodes1, nextGen1);
+       long minPopSizeInc1 = bound1.getMinPopSizeIncrease();
        // scheme 2
-       Collection<PlantNode> plantNodes2 = getNodesWithAncestors(scheme2, danglingPlantNodes2, nextGen2);
-       double bestCaseLPAInc2 = 0.0;
-       for(PlantNode pn : plantNodes2){
-           bestCaseLPAInc2 = 1.0 - (1.0-bestCaseLPAInc2)*(1.0-pn.getLinkagePhaseAmbiguity());
-       }
-       Collection<SeedLotNode> seedLots2 = getAncestorSeedLots(scheme2, nextGen2);
-       int minPopSizeInc2 = 0;
-       for(SeedLotNode sln : seedLots2){
-           minPopSizeInc2 += sln.getSeedsTakenFromSeedLot();
-       }
+       BranchBound bound2 = getBound(scheme2, nextGen2);
+       double bestCaseLPAInc2 = addDanglingPlantNodes(bound2.getBestCaseLPAIncrease(), danglingPlantNodes2, nextGen2);
+       long minPopSizeInc2 = bound2.getMinPopSizeIncrease();
 
        // get max of min pop size / LPA increase of both branches
        // --> merged scheme will have at least this increase!
@@ -114,27 +113,29 @@ public class MergedSchemes{
        return pareto.dominatedByRegisteredObject(desc);
    }
 
-   private Collection<PlantNode> getNodesWithAncestors(CrossingScheme branch, Collection<PlantNode> danglingPlantNodes, int nextGen){
-       // add all distinct ancestor plant nodes, starting at nodes which have not yet been assigend a parent
-       // in the merged scheme (including these nodes themselves)
-       Set<PlantNode> ancestors = new HashSet<>();
-       // add dangling plant nodes themselves
-       ancestors.addAll(danglingPlantNodes);
-       // add ancestors
-       for(int gen = nextGen-1; gen >= 0; gen--){
-           ancestors.addAll(branch.getPlantNodesFromGeneration(gen));
+   private BranchBound getBound(CrossingScheme branch, int nextGen){
+       if(boundCache == null){
+           return AlignmentBoundCache.computeBound(branch, nextGen);
+       }
+       // compute fingerprint only once for each branch
+       Long fingerprint = fingerprints.get(branch);
+       if(fingerprint == null){
+           fingerprint = branch.getFingerprint();
+           fingerprints.put(branch, fingerprint);
        }
-       return ancestors;
+       return boundCache.getBound(branch, fingerprint, nextGen);
    }
    
-   private Collection<SeedLotNode> getAncestorSeedLots(CrossingScheme branch, int nextGen){
-       // add all distinct ancestor seed lot nodes, starting from nextGen (up to generation 0)
-       Set<SeedLotNode> ancestors = new HashSet<>();
-       // add ancestors
-       for(int gen = nextGen; gen >= 0; gen--){
-           ancestors.addAll(branch.getSeedLotNodesFromGeneration(gen));
+   private double addDanglingPlantNodes(double lpa, Collection<PlantNode> danglingPlantNodes, int nextGen){
+       // include distinct dangling plant nodes which are not yet accounted for by the
+       // branch bound, i.e. which do not occur in any generation before nextGen
+       Set<PlantNode> dangling = new HashSet<>();
+       for(PlantNode pn : danglingPlantNodes){
+           if(pn.getGeneration() >= nextGen && dangling.add(pn)){
+               lpa = 1.0 - (1.0-lpa)*(1.0-pn.getLinkagePhaseAmbiguity());
+           }
        }
-       return ancestors;
+       return lpa;
    }
 
 }
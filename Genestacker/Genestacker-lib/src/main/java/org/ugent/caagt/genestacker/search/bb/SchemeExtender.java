@@ -0,0 +1,302 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search.bb;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.MarkerManager;
+import org.ugent.caagt.genestacker.GeneticMap;
+import org.ugent.caagt.genestacker.Genotype;
+import org.ugent.caagt.genestacker.Plant;
+import org.ugent.caagt.genestacker.SeedLot;
+import org.ugent.caagt.genestacker.exceptions.CrossingSchemeException;
+import org.ugent.caagt.genestacker.exceptions.GenotypeException;
+import org.ugent.caagt.genestacker.search.CrossingScheme;
+import org.ugent.caagt.genestacker.search.CrossingSchemeAlternatives;
+import org.ugent.caagt.genestacker.search.PlantNode;
+import org.ugent.caagt.genestacker.search.SearchEvent;
+import org.ugent.caagt.genestacker.search.SearchEventRecorder;
+import org.ugent.caagt.genestacker.search.SearchEventType;
+import org.ugent.caagt.genestacker.search.SearchMetrics;
+import org.ugent.caagt.genestacker.search.SeedLotCache;
+import org.ugent.caagt.genestacker.search.SeedLotNode;
+import org.ugent.caagt.genestacker.search.SelfingNode;
+
+/**
+ * Extends partial crossing schemes with an additional selfing or crossing, shared by the search engines in this
+ * package. The seed lots obtained from these selfings and crossings are constructed with the given seed lot
+ * constructor, filtered by the solution manager and cached, after which a new scheme is created for every
+ * genotype that can be grown from the seed lot, unless pruned by the solution manager.
+ * 
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class SchemeExtender {
+    
+    // logger
+    private Logger logger = LogManager.getLogger(SchemeExtender.class);
+    // log markers
+    private static final Marker VERBOSE = MarkerManager.getMarker("VERBOSE");
+    private static final Marker VERY_VERBOSE = MarkerManager.getMarker("VERY_VERBOSE");
+    static {
+        VERY_VERBOSE.setParents(VERBOSE);
+    }
+    
+    // seed lot constructor
+    private final SeedLotConstructor seedLotConstructor;
+    // cache of filtered seed lots
+    private final SeedLotCache seedLotCache;
+    // unfiltered seed lots shared with other searches (null if not shared)
+    private final SeedLotCache unfilteredSeedLotCache;
+    
+    // fork join pool used to parallelize the work within a single scheme merge (null if merged sequentially)
+    private final ForkJoinPool mergePool;
+    // cache of bounds used to prune alignments while merging schemes (null if not used)
+    private final AlignmentBoundCache alignmentBoundCache;
+    
+    // metrics of the current search run
+    private final SearchMetrics metrics;
+    
+    /**
+     * Create a scheme extender.
+     * 
+     * @param seedLotConstructor seed lot constructor
+     * @param seedLotCache cache of filtered seed lots
+     * @param unfilteredSeedLotCache cache of unfiltered seed lots shared with other searches, <code>null</code> if not shared
+     * @param mergePool fork join pool used to merge schemes, <code>null</code> to merge sequentially
+     * @param alignmentBoundCache cache of alignment bounds, <code>null</code> if not used
+     * @param metrics metrics of the current search run
+     */
+    public SchemeExtender(SeedLotConstructor seedLotConstructor, SeedLotCache seedLotCache, SeedLotCache unfilteredSeedLotCache,
+                          ForkJoinPool mergePool, AlignmentBoundCache alignmentBoundCache, SearchMetrics metrics){
+        this.seedLotConstructor = seedLotConstructor;
+        this.seedLotCache = seedLotCache;
+        this.unfilteredSeedLotCache = unfilteredSeedLotCache;
+        this.mergePool = mergePool;
+        this.alignmentBoundCache = alignmentBoundCache;
+        this.metrics = metrics;
+    }
+    
+    /**
+     * Construct the seed lot obtained by crossing the given plants in the given generation. If the final generation
+     * has been reached, a partial seed lot containing the ideotype only is constructed. Else, the filtered seed lot
+     * is taken from the cache, or constructed, filtered and cached if not yet present.
+     * 
+     * @param generation generation in which the plants are crossed
+     * @param p1 first parent
+     * @param p2 second parent
+     * @param map genetic map
+     * @param solManager solution manager used to filter the seed lot
+     * @return obtained seed lot
+     * @throws GenotypeException if anything goes wrong while constructing the seed lot
+     */
+    public SeedLot constructSeedLot(int generation, Plant p1, Plant p2, GeneticMap map, BranchAndBoundSolutionManager solManager) throws GenotypeException{
+        SeedLot sl;
+        if(solManager.finalGenerationReached(generation)){
+            // create partial seed lot containing the ideotype only
+            Set<Genotype> s = new HashSet<>();
+            s.add(solManager.getIdeotype());
+            sl = seedLotConstructor.partialCross(p1.getGenotype(), p2.getGenotype(), s);
+            // very verbose
+            logger.info(VERY_VERBOSE, "|-- Generated new partial seed lot (ideotype only)");
+            // note: do not cache this partial seed lot (not general)
+        }  else {
+            // lookup full seed lot in cache
+            sl = seedLotCache.getCachedSeedLot(p1.getGenotype(), p2.getGenotype());
+            if(sl == null){
+                // not yet present in cache, create full seed lot
+                sl = crossUnfiltered(p1.getGenotype(), p2.getGenotype());
+                int unfiltered = sl.nrOfGenotypes();
+                // very verbose
+                logger.info(VERY_VERBOSE, "|-- Generated new seed lot: {}", unfiltered);
+                // apply seed lot filters
+                sl = solManager.filterSeedLot(sl);
+                // very verbose
+                logger.info(VERY_VERBOSE, "|-- Filtered seed lot: {} --> {}", unfiltered, sl.nrOfGenotypes());
+                // store in cache (or use seed lot stored concurrently by another thread)
+                sl = seedLotCache.cache(p1.getGenotype(), p2.getGenotype(), sl);
+            } else {
+                // found seed lot in cache
+                // very verbose
+                logger.info(VERY_VERBOSE, "|-- Cached seed lot size: {}", sl.nrOfGenotypes());
+            }
+        }
+        return sl;
+    }
+    
+    /**
+     * Create the full seed lot obtained by crossing the given genotypes, before filtering. If unfiltered seed lots
+     * are shared with other searches, the seed lot is taken from or stored in the shared cache and a copy is
+     * returned, which can be filtered without affecting the shared seed lot.
+     */
+    private SeedLot crossUnfiltered(Genotype g1, Genotype g2) throws GenotypeException{
+        if(unfilteredSeedLotCache == null){
+            return seedLotConstructor.cross(g1, g2);
+        }
+        SeedLot sl = unfilteredSeedLotCache.getCachedSeedLot(g1, g2);
+        if(sl == null){
+            sl = unfilteredSeedLotCache.cache(g1, g2, seedLotConstructor.cross(g1, g2));
+            metrics.increment("seedlot.shared.miss");
+        } else {
+            metrics.increment("seedlot.shared.hit");
+        }
+        return sl.copy();
+    }
+    
+    /**
+     * Create all possible crossing schemes obtained by selfing the final plant of the given scheme.
+     * 
+     * @param scheme crossing scheme to be extended by a selfing of its final plant
+     * @param map genetic map
+     * @param solManager solution manager
+     * @return list of crossing scheme alternatives resulting from the extension
+     * @throws GenotypeException if something goes wrong when creating the seed lot
+     *         obtained from the performed selfing
+     * @throws CrossingSchemeException if anything goes wrong while extending the crossing
+     *         schedule with new nodes
+     */
+    public List<CrossingSchemeAlternatives> selfScheme(CrossingSchemeAlternatives scheme, GeneticMap map, BranchAndBoundSolutionManager solManager)
+                                                                        throws GenotypeException,
+                                                                               CrossingSchemeException {
+        
+        SearchEvent event = SearchEventRecorder.begin(SearchEventType.SELFING_EXPANSION);
+        List<CrossingSchemeAlternatives> newSchemes = new ArrayList<>();
+        SeedLot sl = constructSeedLot(scheme.getMinNumGen()+1, scheme.getFinalPlant(), scheme.getFinalPlant(), map, solManager);
+
+        // create new schemes for each possible genotype resulting from seedlot,
+        // attached to each alternative of the given scheme
+        long[] seedLotNodeIDs = new long[scheme.nrOfAlternatives()];
+        for(int i=0; i<seedLotNodeIDs.length; i++){
+            seedLotNodeIDs[i] = SeedLotNode.genNextID();
+        }
+        for(Genotype g : sl.getGenotypes()){
+            Plant p = new Plant(g);
+            PlantDescriptor pdesc = new PlantDescriptor(
+                        p,
+                        sl.getGenotypeGroup(g.getAllelicFrequencies()).getProbabilityOfPhaseKnownGenotype(g),
+                        sl.getGenotypeGroup(g.getAllelicFrequencies()).getLinkagePhaseAmbiguity(g),
+                        sl.isUniform()
+                    );
+            if(!solManager.pruneGrowPlantFromAncestors(scheme.getAncestorDescriptors(), pdesc)){
+                // list containing alternatives of new scheme
+                List<CrossingScheme> newAlts = new ArrayList<>();
+                // go through alternatives
+                for(int i=0; i<scheme.nrOfAlternatives(); i++){
+                    CrossingScheme alt = scheme.getAlternatives().get(i);
+                    // check pruning
+                    if(!solManager.pruneSelfCurrentSchemeWithSelectedTarget(alt, pdesc)){                    
+                            // deep copy current node structure
+                            PlantNode selfed = alt.getFinalPlantNode().deepUpwardsCopy();
+                            // create new selfing node and connect with parent plant
+                            SelfingNode selfing = new SelfingNode(selfed);
+                            // create new seedlot node and connect it with the selfing node
+                            SeedLotNode sln = new SeedLotNode(sl, alt.getNumGenerations()+1, selfing, seedLotNodeIDs[i], 0);
+                            // create new plant, connect it with parent seedlot
+                            PlantNode newFinalPlantNode = new PlantNode(p, alt.getNumGenerations()+1, sln);
+                            // create new crossing scheme and resolve possible depleted seed lots
+                            CrossingScheme newScheme = new CrossingScheme(alt.getPopulationSizeTools(), newFinalPlantNode);
+                            if(!solManager.pruneCurrentScheme(newScheme)
+                                && newScheme.resolveDepletedSeedLots(solManager)){
+                                // depleted seed lots successfully resolved, satisfying constraints
+                                newAlts.add(newScheme);
+                            }
+                    }
+                }
+                // store alternatives obtaining current genotype
+                if(!newAlts.isEmpty()){
+                    newSchemes.add(new CrossingSchemeAlternatives(newAlts));
+                }
+            }
+        }
+        if(event != null){
+            event.commit(scheme.getID(), scheme.getMinNumGen(), newSchemes.size());
+        }
+        return newSchemes;
+    }
+    
+    /**
+     * Create all possible crossing schemes obtained by crossing the final plants of the given schemes, and merging
+     * these schemes.
+     * 
+     * @param scheme1 first crossing scheme
+     * @param scheme2 second crossing scheme
+     * @param map genetic map
+     * @param solManager solution manager
+     * @return list of crossing scheme alternatives resulting from the extension
+     * @throws GenotypeException if something goes wrong when creating the seed lot
+     *         obtained from the performed crossing
+     * @throws CrossingSchemeException if anything goes wrong while extending the crossing
+     *         schedule with new nodes
+     */
+    public List<CrossingSchemeAlternatives> combineSchemes(CrossingSchemeAlternatives scheme1, CrossingSchemeAlternatives scheme2,
+                                                           GeneticMap map, BranchAndBoundSolutionManager solManager)
+                                                                                throws  GenotypeException,
+                                                                                        CrossingSchemeException{
+        
+        // construct seed lot obtained from crossing (retrieved from cache if constructed before)
+        SeedLot sl = constructSeedLot(Math.max(scheme1.getMinNumGen(), scheme2.getMinNumGen())+1,
+                                        scheme1.getFinalPlant(), scheme2.getFinalPlant(), map, solManager);
+        
+        // run scheme merger
+        return new MergeFirstSchemeMerger(scheme1, scheme2, map, solManager, sl, mergePool, alignmentBoundCache).combineSchemes();
+        
+    }
+    
+    /**
+     * Check whether selfing is pruned for all alternatives of the given scheme.
+     */
+    public static boolean pruneSelfAllAlternatives(CrossingSchemeAlternatives scheme, BranchAndBoundSolutionManager solManager){
+        for(CrossingScheme alt : scheme.getAlternatives()){
+            if(!solManager.pruneSelfCurrentScheme(alt)){
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Check whether crossing is pruned for all alternatives of the given scheme.
+     */
+    public static boolean pruneCrossAllAlternatives(CrossingSchemeAlternatives scheme, BranchAndBoundSolutionManager solManager){
+        for(CrossingScheme alt : scheme.getAlternatives()){
+            if(!solManager.pruneCrossCurrentScheme(alt)){
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Check whether crossing is pruned for all combinations of alternatives of the given schemes, in which
+     * case the seed lot obtained from this crossing does not have to be constructed.
+     */
+    public static boolean pruneCrossAllAlternatives(CrossingSchemeAlternatives scheme, CrossingSchemeAlternatives other,
+                                                    BranchAndBoundSolutionManager solManager){
+        for(CrossingScheme alt1 : scheme.getAlternatives()){
+            for(CrossingScheme alt2 : other.getAlternatives()){
+                if(!solManager.pruneCrossCurrentSchemeWithSpecificOther(alt1, alt2)){
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+}
@@ -46,7 +46,7 @@ public abstract class SchemeMerger implements Callable<List<CrossingSchemeAltern
     protected BranchAndBoundSolutionManager solManager;
     
     // continue flag
-    protected boolean cont;
+    protected volatile boolean cont;
     
     // seed lot obtained by crossing final plants of parent schemes
     protected SeedLot seedLot;
@@ -155,6 +155,7 @@ public abstract class SchemeMerger implements Callable<List<CrossingSchemeAltern
                         && curAlignment.resolveDepletedSeedLots(solManager)){
                     
                     mergedSchemes.registerMergedScheme(curAlignment);
+                    solManager.getMetrics().increment("merger.alignments.completed");
                     
                 }     
 
@@ -184,6 +185,14 @@ public abstract class SchemeMerger implements Callable<List<CrossingSchemeAltern
                     }
                 }
 
+                // before copying the current alignment again, check whether it is now dominated
+                // by alignments that have been completed while considering the previous option
+                if(nextGen1 > 0 && nextGen2 > 0
+                        && mergedSchemes.pruneAlignment(curAlignment, scheme1, danglingPlantNodes1.values(),
+                                nextGen1, scheme2, danglingPlantNodes2.values(), nextGen2)){
+                    return;
+                }
+
                 // OPTION 2: attach next generation of scheme 1 only
                 if(nextGen1 > 0){
                     extended = new CrossingScheme(curAlignment.getPopulationSizeTools(), curAlignment.getFinalPlantNode().deepShiftedUpwardsCopy());
@@ -199,6 +208,13 @@ public abstract class SchemeMerger implements Callable<List<CrossingSchemeAltern
                     }
                 }
 
+                // recheck current alignment (see above)
+                if(nextGen1 > 0 && nextGen2 > 0
+                        && mergedSchemes.pruneAlignment(curAlignment, scheme1, danglingPlantNodes1.values(),
+                                nextGen1, scheme2, danglingPlantNodes2.values(), nextGen2)){
+                    return;
+                }
+
                 // OPTION 3: attach next generation of scheme 2 only
                 if(nextGen2 > 0){
                     extended = new CrossingScheme(curAlignment.getPopulationSizeTools(), curAlignment.getFinalPlantNode().deepShiftedUpwardsCopy());
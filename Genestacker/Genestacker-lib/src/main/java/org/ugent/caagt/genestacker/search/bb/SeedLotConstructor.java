@@ -23,6 +23,7 @@ import org.ugent.caagt.genestacker.Genotype;
 import org.ugent.caagt.genestacker.Haplotype;
 import org.ugent.caagt.genestacker.SeedLot;
 import org.ugent.caagt.genestacker.exceptions.GenotypeException;
+import org.ugent.caagt.genestacker.search.SearchMetrics;
 
 /**
  * Seed lot constructor interface.
@@ -37,10 +38,35 @@ public abstract class SeedLotConstructor {
     // genetic map
     protected GeneticMap map;
     
+    // metrics used to count constructed seed lots and gamete cache hits
+    protected SearchMetrics metrics;
+    
     public SeedLotConstructor(GeneticMap map){
-        this.map = map;
         // use concurrent hash map for caching (accessed in parallel by different cross workers)
-        cachedGametesPerChrom = new ConcurrentHashMap<>();
+        this(map, new ConcurrentHashMap<Genotype, List<Map<Haplotype, Double>>>());
+    }
+    
+    /**
+     * Create a seed lot constructor that stores generated gametes in the given cache, which may be shared
+     * with other constructors that generate the same gametes for the same genetic map (see {@link GeneticMapCache}).
+     * The cache should support concurrent access.
+     * 
+     * @param map genetic map
+     * @param gameteCache cached gametes per chromosome
+     */
+    public SeedLotConstructor(GeneticMap map, Map<Genotype, List<Map<Haplotype, Double>>> gameteCache){
+        this.map = map;
+        cachedGametesPerChrom = gameteCache;
+        metrics = new SearchMetrics();
+    }
+    
+    /**
+     * Set the metrics in which constructed seed lots, construction times and gamete cache hits are recorded.
+     * 
+     * @param metrics search metrics
+     */
+    public void setMetrics(SearchMetrics metrics){
+        this.metrics = metrics;
     }
     
     public void clearCache(){
@@ -0,0 +1,127 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search.bb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.ugent.caagt.genestacker.search.CrossingScheme;
+import org.ugent.caagt.genestacker.search.CrossingSchemeDescriptor;
+import org.ugent.caagt.genestacker.search.DominatesRelation;
+import org.ugent.caagt.genestacker.search.GenericParetoFrontierWithoutDescriptor;
+
+/**
+ * Pareto frontier of solution descriptors shared by several searches for the same problem, e.g. searches run
+ * in different JVMs. Each search registers its own solutions as local bounds, which are reported to all
+ * listeners so that they can be passed on to the other searches, where their descriptors are registered
+ * as remote bounds. Any partial scheme for which all extensions are dominated by a shared bound is pruned, in
+ * the same way as if the bound were a solution in the search's own frontier (see
+ * {@link BranchAndBoundSolutionManager#setSharedBounds(SharedBounds)}).
+ * <p>
+ * Shared bounds should only be exchanged between searches with the same initial plants, ideotype, population
+ * size tools and constraints, except for the maximum number of generations: pruning against a solution with
+ * fewer generations is valid for any search that allows more generations. As solutions that are pruned against
+ * a remote bound are never found by the search itself, a remote bound should only be registered once the
+ * corresponding solution is available wherever the results of the searches are merged.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class SharedBounds {
+
+    /**
+     * Listener that is informed about the solutions of local searches.
+     */
+    public interface Listener {
+
+        /**
+         * Called when a local search has registered a new solution, before any scheme is pruned against it.
+         *
+         * @param solution new solution
+         * @param newBound <code>true</code> if the descriptor of the solution has been registered as a new bound
+         */
+        public void localSolutionAdded(CrossingScheme solution, boolean newBound);
+
+    }
+
+    // frontier of all bounds
+    private final GenericParetoFrontierWithoutDescriptor<CrossingSchemeDescriptor> bounds;
+
+    // listeners
+    private final List<Listener> listeners;
+
+    public SharedBounds(DominatesRelation<CrossingSchemeDescriptor> dominatesRelation){
+        bounds = new GenericParetoFrontierWithoutDescriptor<>(dominatesRelation);
+        listeners = new CopyOnWriteArrayList<>();
+    }
+
+    public void addListener(Listener l){
+        listeners.add(l);
+    }
+
+    public void removeListener(Listener l){
+        listeners.remove(l);
+    }
+
+    /**
+     * Register the descriptor of a solution found by a local search as a bound. All listeners are informed
+     * about the solution, also if its descriptor is dominated by a previously registered bound.
+     *
+     * @param solution solution found by a local search
+     * @return <code>true</code> if the descriptor has been registered as a new bound
+     */
+    public boolean registerLocal(CrossingScheme solution){
+        boolean registered = bounds.register(solution.getDescriptor());
+        for(Listener l : listeners){
+            l.localSolutionAdded(solution, registered);
+        }
+        return registered;
+    }
+
+    /**
+     * Register the descriptor of a solution found by a remote search. Listeners are not informed.
+     *
+     * @param bound descriptor of a solution
+     * @return <code>true</code> if the bound has been registered
+     */
+    public boolean registerRemote(CrossingSchemeDescriptor bound){
+        return bounds.register(bound);
+    }
+
+    /**
+     * Check whether the given descriptor is dominated by a registered bound.
+     *
+     * @param desc descriptor
+     * @return <code>true</code> if the descriptor is dominated by a registered bound
+     */
+    public boolean dominated(CrossingSchemeDescriptor desc){
+        return bounds.dominatedByRegisteredObject(desc);
+    }
+
+    /**
+     * Get a copy of all currently registered bounds.
+     *
+     * @return registered bounds
+     */
+    public List<CrossingSchemeDescriptor> getBounds(){
+        synchronized(bounds){
+            return new ArrayList<>(bounds.getFrontier());
+        }
+    }
+
+    public int getNumBounds(){
+        return bounds.getNumSchemes();
+    }
+
+}
@@ -158,4 +158,13 @@ public class Heuristic implements PruningCriterion {
         return false;
     }
     
+    /**
+     * Discard any state collected during a previous search run. Called by the search engine at the start of
+     * each run, so that a heuristic reused for subsequent runs (e.g. with different constraints) does not prune
+     * schemes based on schemes from earlier runs. Stateless by default.
+     */
+    public void reset(){
+        // nothing to reset
+    }
+    
 }
@@ -28,7 +28,7 @@ import org.ugent.caagt.genestacker.search.bb.PlantDescriptor;
  */
 public class Heuristics extends Heuristic {
 
-    private List<Heuristic> heuristics;
+    protected List<Heuristic> heuristics;
     
     public Heuristics(List<Heuristic> heuristics){
         this.heuristics = heuristics;
@@ -41,6 +41,13 @@ public class Heuristics extends Heuristic {
     public void removeHeuristic(Heuristic heuristic){
         heuristics.remove(heuristic);
     }
+    
+    @Override
+    public void reset(){
+        for(Heuristic h : heuristics){
+            h.reset();
+        }
+    }
 
     @Override
     public boolean pruneCrossCurrentScheme(CrossingScheme scheme) {
@@ -14,60 +14,72 @@
 
 package org.ugent.caagt.genestacker.search.bb.heuristics;
 
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
-import org.ugent.caagt.genestacker.Genotype;
 import org.ugent.caagt.genestacker.SeedLot;
 import org.ugent.caagt.genestacker.search.CrossingScheme;
-import org.ugent.caagt.genestacker.search.GenericParetoFrontier;
 import org.ugent.caagt.genestacker.search.PlantNode;
 import org.ugent.caagt.genestacker.search.SeedLotNode;
 
 /**
  * Heuristic that enforces each plant to be grown from a Pareto optimal seed lot
  * among all those which are available at the generation in question. Pareto optimality
- * of seed lots is defined in the Pareto frontiers created by the given factory class.
+ * of seed lots is defined by the dominates relations created by the given factory class.
+ * Comparisons of seed lots are looked up in a global {@link SeedLotDominanceIndex} which
+ * is shared across all checked schemes.
+ * <p>
+ * Checking a scheme still takes time proportional to the number of plant nodes times the number of
+ * seed lots available at their generation, as the set of available seed lots is specific to each
+ * scheme (and changes when schemes are merged and realigned). The index only makes each of these
+ * comparisons a lookup, and the check stops at the first plant grown from a dominated seed lot.
+ * </p>
  * 
  * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
  */
 public class OptimalSeedLotHeuristic extends Heuristic {
 
-    // seed lot Pareto frontier factory
-    private OptimalSeedLotParetoFrontierFactory frontierFactory;
+    // global index used to compare seed lots
+    private SeedLotDominanceIndex index;
     
     public OptimalSeedLotHeuristic(OptimalSeedLotParetoFrontierFactory frontierFactory){
-        this.frontierFactory = frontierFactory;
+        this(new SeedLotDominanceIndex(frontierFactory));
+    }
+    
+    public OptimalSeedLotHeuristic(SeedLotDominanceIndex index){
+        this.index = index;
     }
     
     @Override
-    public boolean pruneQueueScheme(CrossingScheme scheme){        
+    public boolean pruneQueueScheme(CrossingScheme scheme){
         boolean ok = true;
-        // map containing pareto frontier for each occuring genotype, with seed lot nodes
-        // that have been created up to the current generation
-        Map<Genotype, GenericParetoFrontier<SeedLotNode, SeedLot>> frontiers = new HashMap<>(); 
-        // init map
-        Set<Genotype> allGenotypes = getGenotypes(scheme.getPlantNodes());
-        for(Genotype g : allGenotypes){
-            frontiers.put(g, frontierFactory.createSeedLotParetoFrontier(g));
-        }
+        // distinct seed lots that have been created up to the current generation
+        Set<SeedLot> available = Collections.newSetFromMap(new IdentityHashMap<SeedLot, Boolean>());
+        List<SeedLot> availableList = new ArrayList<>();
         // go through generations
         int gen=0;
         while(ok && gen <= scheme.getNumGenerations()){
-            // update Pareto frontiers with seed lot nodes from this generation
-            for(Genotype g : allGenotypes){
-                frontiers.get(g).registerAll(scheme.getSeedLotNodesFromGeneration(gen));
+            // register seed lots from this generation
+            for(SeedLotNode sln : scheme.getSeedLotNodesFromGeneration(gen)){
+                if(available.add(sln.getSeedLot())){
+                    availableList.add(sln.getSeedLot());
+                }
             }
-            // check if plant nodes of this generation have a Pareto optimal parent, w.r.t. to
-            // their contained genotype -- as soon as one is not ok we can stop
+            // check if plant nodes of this generation have a parent seed lot that is not dominated
+            // by any available seed lot, w.r.t. to their contained genotype -- as soon as one is not
+            // ok we can stop
             Iterator<PlantNode> pnIt = scheme.getPlantNodesFromGeneration(gen).iterator();
             while(ok && pnIt.hasNext()){
                 PlantNode pn = pnIt.next();
                 if(!pn.isDummy() && !pn.isDanglingPlantNode()){
-                    ok = frontiers.get(pn.getPlant().getGenotype()).contains(pn.getParent());
+                    SeedLot parent = pn.getParent().getSeedLot();
+                    Iterator<SeedLot> slIt = availableList.iterator();
+                    while(ok && slIt.hasNext()){
+                        ok = !index.dominates(pn.getPlant().getGenotype(), slIt.next(), parent);
+                    }
                 }
             }
             gen++;
@@ -77,21 +89,4 @@ public class OptimalSeedLotHeuristic extends Heuristic {
         return !ok;
     }
     
-    /**
-     * Get a set containing all genotypes contained in the given collection of plant nodes.
-     * 
-     * @param pns collection of plant nodes
-     * @return set of genotypes contained in the given collection of plant nodes
-     */
-    private Set<Genotype> getGenotypes(Collection<PlantNode> pns){
-        Set<Genotype> plants = new HashSet<>();
-        for(PlantNode pn : pns){
-            // ignore dummy/dangling plant nodes
-            if(!pn.isDummy() && !pn.isDanglingPlantNode()){
-                plants.add(pn.getPlant().getGenotype());
-            }
-        }
-        return plants;
-    }
-    
 }
@@ -14,35 +14,44 @@
 
 package org.ugent.caagt.genestacker.search.bb.heuristics;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.ugent.caagt.genestacker.Genotype;
 import org.ugent.caagt.genestacker.Plant;
 import org.ugent.caagt.genestacker.search.CrossingNode;
 import org.ugent.caagt.genestacker.search.CrossingScheme;
 import org.ugent.caagt.genestacker.search.CrossingSchemeDescriptor;
 import org.ugent.caagt.genestacker.search.DominatesRelation;
-import org.ugent.caagt.genestacker.search.ParetoFrontier;
 import org.ugent.caagt.genestacker.search.SelfingNode;
 
 /**
  * This heuristic keeps track of a Pareto frontier for each intermediary genotype
  * and prunes partial schemes which are dominated by previous partial schemes
- * resulting in the same intermediary genotype.
+ * resulting in the same intermediary genotype. Each frontier only holds the non dominated schemes
+ * for its genotype, together with their descriptor and a structural fingerprint, so that dominance
+ * checks and duplicate detection do not need to recompute these from the schemes.
  *
  * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
  */
 public class OptimalSubschemeHeuristic extends Heuristic {
 
-    // Pareto frontiers
-    private Map<Genotype, ParetoFrontier> frontiers;
+    // Pareto frontiers per genotype
+    private final ConcurrentMap<Genotype, SubschemeFrontier> frontiers;
     
     // dominates relation
-    private DominatesRelation<CrossingSchemeDescriptor> dominatesRelation;
+    private final DominatesRelation<CrossingSchemeDescriptor> dominatesRelation;
     
     public OptimalSubschemeHeuristic(DominatesRelation<CrossingSchemeDescriptor> dominatesRelation){
         this.dominatesRelation = dominatesRelation;
-        frontiers = new HashMap<>();
+        frontiers = new ConcurrentHashMap<>();
+    }
+    
+    @Override
+    public void reset(){
+        frontiers.clear();
     }
     
     @Override
@@ -57,13 +66,15 @@ public class OptimalSubschemeHeuristic extends Heuristic {
         
         // get genotype of final plant of the scheme
         Genotype g = scheme.getFinalPlantNode().getPlant().getGenotype();
-        // check if pareto frontier already present
-        if(!frontiers.containsKey(g)){
-            // create Pareto frontier for this plant
-            frontiers.put(g, new ParetoFrontier(dominatesRelation));
+        // get the Pareto frontier for this plant (create it if not yet present)
+        SubschemeFrontier f = frontiers.get(g);
+        if(f == null){
+            f = new SubschemeFrontier();
+            SubschemeFrontier prev = frontiers.putIfAbsent(g, f);
+            if(prev != null){
+                f = prev;
+            }
         }
-        // get the Pareto frontier for this plant
-        ParetoFrontier f = frontiers.get(g);
         // try to register scheme in frontier, if not successful the scheme
         // should not be queued so true (=prune) is returned
         return !f.register(scheme);
@@ -82,9 +93,9 @@ public class OptimalSubschemeHeuristic extends Heuristic {
         // get final plant's genotype
         Genotype g = scheme.getFinalPlantNode().getPlant().getGenotype();
         // get corresponding Pareto frontier
-        ParetoFrontier f = frontiers.get(g);
+        SubschemeFrontier f = frontiers.get(g);
         // prune if scheme no longer contained in frontier
-        return !f.contains(scheme);
+        return f == null || !f.contains(scheme);
         
     }
     
@@ -105,4 +116,89 @@ public class OptimalSubschemeHeuristic extends Heuristic {
                 && ((SelfingNode)lastCrossing).getParent().getPlant().equals(finalPlant);
     }
     
+    /**
+     * Pareto frontier of schemes resulting in the same intermediary genotype.
+     */
+    private class SubschemeFrontier {
+        
+        // registered schemes
+        private final List<Entry> entries = new ArrayList<>();
+        
+        /**
+         * Register a new scheme, see {@link org.ugent.caagt.genestacker.search.GenericParetoFrontier#register(Object)}.
+         * 
+         * @param scheme new scheme
+         * @return <code>true</code> if the new scheme is included in the frontier
+         */
+        public synchronized boolean register(CrossingScheme scheme){
+            CrossingSchemeDescriptor desc = scheme.getDescriptor();
+            boolean dominated = false;
+            Iterator<Entry> it = entries.iterator();
+            while(!dominated && it.hasNext()){
+                Entry other = it.next();
+                // check if dominated by other
+                dominated = dominatesRelation.dominates(other.descriptor, desc);
+                // conversely: if new scheme dominates other, remove other
+                if(dominatesRelation.dominates(desc, other.descriptor)){
+                    it.remove();
+                }
+            }
+            if(dominated){
+                return false;
+            }
+            // register new scheme (if not already present)
+            long fingerprint = scheme.getFingerprint();
+            if(find(scheme, fingerprint) != null){
+                return false;
+            }
+            entries.add(new Entry(scheme, desc, fingerprint));
+            return true;
+        }
+        
+        /**
+         * Check whether the given scheme is currently contained in the frontier.
+         * 
+         * @param scheme crossing scheme
+         * @return <code>true</code> if the scheme is contained in the frontier
+         */
+        public synchronized boolean contains(CrossingScheme scheme){
+            return find(scheme, scheme.getFingerprint()) != null;
+        }
+        
+        /**
+         * Find the entry of a registered scheme that is equal to the given scheme. Fingerprints are only used to
+         * skip entries that certainly differ: as they may collide, a match is always confirmed by comparing the
+         * schemes themselves.
+         */
+        private Entry find(CrossingScheme scheme, long fingerprint){
+            for(Entry e : entries){
+                if(e.fingerprint == fingerprint && (e.scheme == scheme || e.scheme.equals(scheme))){
+                    return e;
+                }
+            }
+            return null;
+        }
+        
+    }
+    
+    /**
+     * Scheme registered in a frontier.
+     */
+    private static class Entry {
+        
+        // registered scheme
+        private final CrossingScheme scheme;
+        // descriptor used for comparisons
+        private final CrossingSchemeDescriptor descriptor;
+        // structural fingerprint
+        private final long fingerprint;
+        
+        public Entry(CrossingScheme scheme, CrossingSchemeDescriptor descriptor, long fingerprint){
+            this.scheme = scheme;
+            this.descriptor = descriptor;
+            this.fingerprint = fingerprint;
+        }
+        
+    }
+    
 }
@@ -0,0 +1,578 @@
+//  Copyright 2012 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search.bb.heuristics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.ugent.caagt.genestacker.Plant;
+import org.ugent.caagt.genestacker.search.CrossingScheme;
+import org.ugent.caagt.genestacker.search.CrossingSchemeDescriptor;
+import org.ugent.caagt.genestacker.search.StripedCounter;
+import org.ugent.caagt.genestacker.search.bb.PlantDescriptor;
+
+/**
+ * <p>
+ * Combines several heuristics, as {@link Heuristics}, while recording for each heuristic and for each hook
+ * (i.e. each pruning or bound extension method) the number of invocations, the total time spent and the number
+ * of prunes. As the combined heuristics stop as soon as one of the heuristics prunes, later heuristics are not
+ * always evaluated. Therefore, a random sample of the calls (1 out of 32) is fully evaluated, i.e. all heuristics
+ * are applied regardless of whether an earlier heuristic has already pruned. These samples are used to estimate
+ * the probability that each heuristic prunes, and to count redundant prunes, where a heuristic prunes after an
+ * earlier heuristic has already pruned.
+ * </p>
+ * <p>
+ * Unless disabled, the heuristics are dynamically reordered per hook so that cheap and selective heuristics are
+ * evaluated first, i.e. in ascending order of the ratio between the average time per invocation and the estimated
+ * probability to prune. This does not affect the outcome of the search, as the result of a hook does not depend on
+ * the order in which the heuristics are evaluated. The hooks applied when queueing and dequeueing schemes are never
+ * reordered nor fully evaluated, because heuristics may have side effects when being applied in these hooks (see
+ * {@link org.ugent.caagt.genestacker.search.bb.PruningCriterion#pruneQueueScheme(CrossingScheme)}). Bound extensions
+ * are applied in a chain and are therefore never reordered either.
+ * </p>
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class ProfilingHeuristics extends Heuristics {
+
+    // 1 out of SAMPLE_PERIOD calls is fully evaluated
+    private static final int SAMPLE_PERIOD = 32;
+    // heuristics are reordered, on average, once every REORDER_PERIOD samples
+    private static final int REORDER_PERIOD = 64;
+    // minimum number of samples per heuristic before reordering
+    private static final long MIN_SAMPLES = 32;
+
+    /**
+     * Hooks through which heuristics are applied.
+     */
+    public enum Hook {
+
+        CROSS(true),
+        CROSS_WITH_OTHER(true),
+        CROSS_WITH_OTHER_WITH_TARGET(true),
+        SELF(true),
+        SELF_WITH_TARGET(true),
+        CURRENT(true),
+        GROW_FROM_ANCESTORS(true),
+        GROW_IN_GENERATION(true),
+        QUEUE(false),
+        DEQUEUE(false),
+        EXTEND_CROSS(false),
+        EXTEND_CROSS_WITH_OTHER(false),
+        EXTEND_CROSS_WITH_OTHER_WITH_TARGET(false),
+        EXTEND_SELF(false),
+        EXTEND_SELF_WITH_TARGET(false),
+        EXTEND_CURRENT(false);
+
+        // heuristics may be reordered and fully evaluated
+        private final boolean reorderable;
+
+        private Hook(boolean reorderable){
+            this.reorderable = reorderable;
+        }
+
+        public boolean isReorderable(){
+            return reorderable;
+        }
+
+    }
+
+    // profiles of all heuristics that have been applied (including removed heuristics)
+    private final Map<Heuristic, Profile> profiles;
+
+    // current heuristics, profiles and evaluation orders (replaced when the list of heuristics is modified)
+    private volatile State state;
+
+    // dynamic reordering enabled
+    private final boolean reorder;
+
+    public ProfilingHeuristics(List<Heuristic> heuristics){
+        this(heuristics, true);
+    }
+
+    public ProfilingHeuristics(List<Heuristic> heuristics, boolean reorder){
+        super(heuristics);
+        this.reorder = reorder;
+        profiles = new LinkedHashMap<>();
+        update();
+    }
+
+    @Override
+    public void addHeuristic(Heuristic heuristic){
+        super.addHeuristic(heuristic);
+        update();
+    }
+
+    @Override
+    public void removeHeuristic(Heuristic heuristic){
+        super.removeHeuristic(heuristic);
+        update();
+    }
+
+    /**
+     * Update the current heuristics and reset the evaluation orders, after the list of heuristics has been modified.
+     */
+    private synchronized void update(){
+        Heuristic[] hs = heuristics.toArray(new Heuristic[heuristics.size()]);
+        Profile[] ps = new Profile[hs.length];
+        for(int i=0; i<hs.length; i++){
+            Profile p = profiles.get(hs[i]);
+            if(p == null){
+                String name = hs[i].getClass().getSimpleName();
+                if(name.isEmpty()){
+                    // anonymous class
+                    name = hs[i].getClass().getName();
+                }
+                p = new Profile(name);
+                profiles.put(hs[i], p);
+            }
+            ps[i] = p;
+        }
+        state = new State(hs, ps);
+    }
+
+    /**
+     * Get the current evaluation order of the given hook, as a list of heuristics.
+     *
+     * @param hook hook
+     * @return heuristics in the order in which they are currently evaluated
+     */
+    public List<Heuristic> getOrder(Hook hook){
+        State st = state;
+        List<Heuristic> list = new ArrayList<>();
+        for(int i : st.orders.get(hook.ordinal())){
+            list.add(st.heuristics[i]);
+        }
+        return list;
+    }
+
+    /**
+     * Apply the heuristics through the given prune hook.
+     */
+    private boolean prune(Hook hook, PruneCall call){
+        State st = state;
+        Heuristic[] hs = st.heuristics;
+        Profile[] ps = st.profiles;
+        int[] order = st.orders.get(hook.ordinal());
+        boolean sample = hook.isReorderable() && ThreadLocalRandom.current().nextInt(SAMPLE_PERIOD) == 0;
+        boolean prune = false;
+        int i=0;
+        while((!prune || sample) && i<order.length){
+            int idx = order[i];
+            long start = System.nanoTime();
+            boolean p = call.prune(hs[idx]);
+            ps[idx].record(hook, System.nanoTime()-start, p, prune, sample);
+            prune = prune || p;
+            i++;
+        }
+        if(sample && reorder && ThreadLocalRandom.current().nextInt(REORDER_PERIOD) == 0){
+            reorder(hook, st, order);
+        }
+        return prune;
+    }
+
+    /**
+     * Apply the bound extensions of all heuristics through the given hook.
+     */
+    private CrossingSchemeDescriptor extend(Hook hook, CrossingSchemeDescriptor curBounds, ExtendCall call){
+        State st = state;
+        Heuristic[] hs = st.heuristics;
+        Profile[] ps = st.profiles;
+        for(int i=0; i<hs.length; i++){
+            long start = System.nanoTime();
+            curBounds = call.extend(hs[i], curBounds);
+            ps[i].record(hook, System.nanoTime()-start, false, false, false);
+        }
+        return curBounds;
+    }
+
+    /**
+     * Reorder the heuristics for the given hook in ascending order of the ratio between the average time
+     * per invocation and the estimated probability to prune. Skipped if not enough samples are available.
+     */
+    private void reorder(Hook hook, State st, int[] order){
+        Profile[] ps = st.profiles;
+        final double[] score = new double[ps.length];
+        for(int i=0; i<ps.length; i++){
+            long samples = ps[i].getSamples(hook);
+            if(samples < MIN_SAMPLES){
+                return;
+            }
+            double pruneProb = (double) ps[i].getSampledPrunes(hook) / samples;
+            score[i] = pruneProb > 0 ? ps[i].getMeanNanos(hook) / pruneProb : Double.POSITIVE_INFINITY;
+        }
+        Integer[] newOrder = new Integer[order.length];
+        for(int i=0; i<order.length; i++){
+            newOrder[i] = order[i];
+        }
+        // stable sort: ties retain their current order
+        Arrays.sort(newOrder, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return Double.compare(score[i1], score[i2]);
+            }
+        });
+        int[] updated = new int[newOrder.length];
+        for(int i=0; i<newOrder.length; i++){
+            updated[i] = newOrder[i];
+        }
+        // only update if no other thread has reordered in the meantime (if the heuristics
+        // have been modified, the given state has been replaced and the update has no effect)
+        st.orders.compareAndSet(hook.ordinal(), order, updated);
+    }
+
+    /**
+     * Format the profile of all heuristics as a table with one line per heuristic and hook (hooks through which
+     * a heuristic has never been invoked are omitted), followed by the current evaluation order of each
+     * reorderable hook.
+     *
+     * @return formatted profile
+     */
+    public synchronized String formatProfile(){
+        StringBuilder s = new StringBuilder();
+        s.append(String.format(Locale.ROOT, "%-36s %-36s %12s %12s %10s %10s %10s %10s%n", "heuristic", "hook",
+                               "calls", "total (ms)", "mean (ns)", "prunes", "prune rate", "redundant"));
+        for(Profile p : profiles.values()){
+            for(Hook hook : Hook.values()){
+                long calls = p.getCalls(hook);
+                if(calls > 0){
+                    String pruneRate = "-";
+                    String redundant = "-";
+                    if(hook.isReorderable() && p.getSamples(hook) > 0){
+                        pruneRate = String.format(Locale.ROOT, "%.4f", (double) p.getSampledPrunes(hook) / p.getSamples(hook));
+                        redundant = String.format(Locale.ROOT, "%d", p.getRedundantPrunes(hook));
+                    }
+                    s.append(String.format(Locale.ROOT, "%-36s %-36s %12d %12.1f %10.0f %10d %10s %10s%n",
+                                           p.getName(), hook, calls, p.getNanos(hook) / 1e6, p.getMeanNanos(hook),
+                                           p.getPrunes(hook), pruneRate, redundant));
+                }
+            }
+        }
+        for(Hook hook : Hook.values()){
+            if(hook.isReorderable()){
+                s.append(String.format(Locale.ROOT, "order %-30s", hook));
+                for(Heuristic h : getOrder(hook)){
+                    s.append(" ").append(profiles.get(h).getName());
+                }
+                s.append(String.format("%n"));
+            }
+        }
+        return s.toString();
+    }
+
+    @Override
+    public boolean pruneCrossCurrentScheme(final CrossingScheme scheme) {
+        return prune(Hook.CROSS, new PruneCall() {
+            @Override
+            public boolean prune(Heuristic h) {
+                return h.pruneCrossCurrentScheme(scheme);
+            }
+        });
+    }
+
+    @Override
+    public boolean pruneCrossCurrentSchemeWithSpecificOther(final CrossingScheme scheme, final CrossingScheme other) {
+        return prune(Hook.CROSS_WITH_OTHER, new PruneCall() {
+            @Override
+            public boolean prune(Heuristic h) {
+                return h.pruneCrossCurrentSchemeWithSpecificOther(scheme, other);
+            }
+        });
+    }
+
+    @Override
+    public boolean pruneCrossCurrentSchemeWithSpecificOtherWithSelectedTarget(final CrossingScheme scheme, final CrossingScheme other,
+                                                                              final PlantDescriptor target) {
+        return prune(Hook.CROSS_WITH_OTHER_WITH_TARGET, new PruneCall() {
+            @Override
+            public boolean prune(Heuristic h) {
+                return h.pruneCrossCurrentSchemeWithSpecificOtherWithSelectedTarget(scheme, other, target);
+            }
+        });
+    }
+
+    @Override
+    public boolean pruneSelfCurrentScheme(final CrossingScheme scheme) {
+        return prune(Hook.SELF, new PruneCall() {
+            @Override
+            public boolean prune(Heuristic h) {
+                return h.pruneSelfCurrentScheme(scheme);
+            }
+        });
+    }
+
+    @Override
+    public boolean pruneSelfCurrentSchemeWithSelectedTarget(final CrossingScheme scheme, final PlantDescriptor target) {
+        return prune(Hook.SELF_WITH_TARGET, new PruneCall() {
+            @Override
+            public boolean prune(Heuristic h) {
+                return h.pruneSelfCurrentSchemeWithSelectedTarget(scheme, target);
+            }
+        });
+    }
+
+    @Override
+    public boolean pruneCurrentScheme(final CrossingScheme scheme) {
+        return prune(Hook.CURRENT, new PruneCall() {
+            @Override
+            public boolean prune(Heuristic h) {
+                return h.pruneCurrentScheme(scheme);
+            }
+        });
+    }
+
+    @Override
+    public boolean pruneGrowPlantFromAncestors(final Set<PlantDescriptor> ancestors, final PlantDescriptor p) {
+        return prune(Hook.GROW_FROM_ANCESTORS, new PruneCall() {
+            @Override
+            public boolean prune(Heuristic h) {
+                return h.pruneGrowPlantFromAncestors(ancestors, p);
+            }
+        });
+    }
+
+    @Override
+    public boolean pruneGrowPlantInGeneration(final Plant p, final int generation) {
+        return prune(Hook.GROW_IN_GENERATION, new PruneCall() {
+            @Override
+            public boolean prune(Heuristic h) {
+                return h.pruneGrowPlantInGeneration(p, generation);
+            }
+        });
+    }
+
+    @Override
+    public boolean pruneQueueScheme(final CrossingScheme s) {
+        return prune(Hook.QUEUE, new PruneCall() {
+            @Override
+            public boolean prune(Heuristic h) {
+                return h.pruneQueueScheme(s);
+            }
+        });
+    }
+
+    @Override
+    public boolean pruneDequeueScheme(final CrossingScheme s) {
+        return prune(Hook.DEQUEUE, new PruneCall() {
+            @Override
+            public boolean prune(Heuristic h) {
+                return h.pruneDequeueScheme(s);
+            }
+        });
+    }
+
+    @Override
+    public CrossingSchemeDescriptor extendBoundsUponCrossing(CrossingSchemeDescriptor curBounds, final CrossingScheme scheme) {
+        return extend(Hook.EXTEND_CROSS, curBounds, new ExtendCall() {
+            @Override
+            public CrossingSchemeDescriptor extend(Heuristic h, CrossingSchemeDescriptor bounds) {
+                return h.extendBoundsUponCrossing(bounds, scheme);
+            }
+        });
+    }
+
+    @Override
+    public CrossingSchemeDescriptor extendBoundsUponCrossingWithSpecificOther(CrossingSchemeDescriptor curBounds, final CrossingScheme scheme,
+                                                                              final CrossingScheme other) {
+        return extend(Hook.EXTEND_CROSS_WITH_OTHER, curBounds, new ExtendCall() {
+            @Override
+            public CrossingSchemeDescriptor extend(Heuristic h, CrossingSchemeDescriptor bounds) {
+                return h.extendBoundsUponCrossingWithSpecificOther(bounds, scheme, other);
+            }
+        });
+    }
+
+    @Override
+    public CrossingSchemeDescriptor extendBoundsUponCrossingWithSpecificOtherWithSelectedTarget(CrossingSchemeDescriptor curBounds,
+                                                        final CrossingScheme scheme, final CrossingScheme other, final PlantDescriptor target) {
+        return extend(Hook.EXTEND_CROSS_WITH_OTHER_WITH_TARGET, curBounds, new ExtendCall() {
+            @Override
+            public CrossingSchemeDescriptor extend(Heuristic h, CrossingSchemeDescriptor bounds) {
+                return h.extendBoundsUponCrossingWithSpecificOtherWithSelectedTarget(bounds, scheme, other, target);
+            }
+        });
+    }
+
+    @Override
+    public CrossingSchemeDescriptor extendBoundsUponSelfing(CrossingSchemeDescriptor curBounds, final CrossingScheme scheme) {
+        return extend(Hook.EXTEND_SELF, curBounds, new ExtendCall() {
+            @Override
+            public CrossingSchemeDescriptor extend(Heuristic h, CrossingSchemeDescriptor bounds) {
+                return h.extendBoundsUponSelfing(bounds, scheme);
+            }
+        });
+    }
+
+    @Override
+    public CrossingSchemeDescriptor extendBoundsUponSelfingWithSelectedTarget(CrossingSchemeDescriptor curBounds, final CrossingScheme scheme,
+                                                                              final PlantDescriptor target) {
+        return extend(Hook.EXTEND_SELF_WITH_TARGET, curBounds, new ExtendCall() {
+            @Override
+            public CrossingSchemeDescriptor extend(Heuristic h, CrossingSchemeDescriptor bounds) {
+                return h.extendBoundsUponSelfingWithSelectedTarget(bounds, scheme, target);
+            }
+        });
+    }
+
+    @Override
+    public CrossingSchemeDescriptor extendBoundsForCurrentScheme(CrossingSchemeDescriptor curBounds, final CrossingScheme scheme) {
+        return extend(Hook.EXTEND_CURRENT, curBounds, new ExtendCall() {
+            @Override
+            public CrossingSchemeDescriptor extend(Heuristic h, CrossingSchemeDescriptor bounds) {
+                return h.extendBoundsForCurrentScheme(bounds, scheme);
+            }
+        });
+    }
+
+    /**
+     * Applies a single heuristic through a prune hook.
+     */
+    private interface PruneCall {
+        public boolean prune(Heuristic h);
+    }
+
+    /**
+     * Applies the bound extension of a single heuristic.
+     */
+    private interface ExtendCall {
+        public CrossingSchemeDescriptor extend(Heuristic h, CrossingSchemeDescriptor bounds);
+    }
+
+    /**
+     * Heuristics, their profiles and the evaluation order per hook, published as a whole so that the search
+     * threads never need a lock to read them. The orders are only updated through compare-and-set.
+     */
+    private static class State {
+
+        // heuristics and their profiles (aligned)
+        private final Heuristic[] heuristics;
+        private final Profile[] profiles;
+        // evaluation order per hook (indices in the array of heuristics)
+        private final AtomicReferenceArray<int[]> orders;
+
+        public State(Heuristic[] heuristics, Profile[] profiles){
+            this.heuristics = heuristics;
+            this.profiles = profiles;
+            int[] identity = new int[heuristics.length];
+            for(int i=0; i<heuristics.length; i++){
+                identity[i] = i;
+            }
+            orders = new AtomicReferenceArray<>(Hook.values().length);
+            for(int h=0; h<orders.length(); h++){
+                orders.set(h, identity);
+            }
+        }
+
+    }
+
+    /**
+     * Profile of a single heuristic, for all hooks.
+     */
+    public static class Profile {
+
+        // name of the heuristic
+        private final String name;
+        // counters per hook
+        private final StripedCounter[] calls, nanos, prunes, samples, sampledPrunes, redundantPrunes;
+
+        public Profile(String name){
+            this.name = name;
+            int n = Hook.values().length;
+            calls = new StripedCounter[n];
+            nanos = new StripedCounter[n];
+            prunes = new StripedCounter[n];
+            samples = new StripedCounter[n];
+            sampledPrunes = new StripedCounter[n];
+            redundantPrunes = new StripedCounter[n];
+            for(int h=0; h<n; h++){
+                calls[h] = new StripedCounter();
+                nanos[h] = new StripedCounter();
+                prunes[h] = new StripedCounter();
+                samples[h] = new StripedCounter();
+                sampledPrunes[h] = new StripedCounter();
+                redundantPrunes[h] = new StripedCounter();
+            }
+        }
+
+        /**
+         * Record a single invocation.
+         *
+         * @param hook hook through which the heuristic has been applied
+         * @param time time spent (nanoseconds)
+         * @param pruned whether the heuristic pruned
+         * @param alreadyPruned whether an earlier heuristic had already pruned
+         * @param sampled whether the invocation is part of a fully evaluated sample
+         */
+        void record(Hook hook, long time, boolean pruned, boolean alreadyPruned, boolean sampled){
+            int h = hook.ordinal();
+            calls[h].increment();
+            nanos[h].add(time);
+            if(pruned){
+                prunes[h].increment();
+            }
+            if(sampled){
+                samples[h].increment();
+                if(pruned){
+                    sampledPrunes[h].increment();
+                    if(alreadyPruned){
+                        redundantPrunes[h].increment();
+                    }
+                }
+            }
+        }
+
+        public String getName(){
+            return name;
+        }
+
+        public long getCalls(Hook hook){
+            return calls[hook.ordinal()].sum();
+        }
+
+        public long getNanos(Hook hook){
+            return nanos[hook.ordinal()].sum();
+        }
+
+        public double getMeanNanos(Hook hook){
+            long c = getCalls(hook);
+            return c == 0 ? 0.0 : (double) getNanos(hook) / c;
+        }
+
+        public long getPrunes(Hook hook){
+            return prunes[hook.ordinal()].sum();
+        }
+
+        public long getSamples(Hook hook){
+            return samples[hook.ordinal()].sum();
+        }
+
+        public long getSampledPrunes(Hook hook){
+            return sampledPrunes[hook.ordinal()].sum();
+        }
+
+        public long getRedundantPrunes(Hook hook){
+            return redundantPrunes[hook.ordinal()].sum();
+        }
+
+    }
+
+}
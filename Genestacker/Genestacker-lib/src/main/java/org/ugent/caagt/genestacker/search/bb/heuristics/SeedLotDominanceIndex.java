@@ -0,0 +1,142 @@
+//  Copyright 2012 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search.bb.heuristics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.ugent.caagt.genestacker.Genotype;
+import org.ugent.caagt.genestacker.SeedLot;
+import org.ugent.caagt.genestacker.search.DominatesRelation;
+
+/**
+ * Global index used to check whether a seed lot dominates another seed lot w.r.t. a given genotype
+ * to be grown from these seed lots. The dominates relation for each genotype is created only once,
+ * using the given factory, and all evaluated comparisons are memoised so that they can be reused
+ * across all schemes in which the same seed lots occur. Seed lots are compared by identity, which
+ * suffices because seed lots obtained from the same parents are shared through the seed lot cache.
+ * The index may be accessed concurrently. To bound memory usage, all memoised comparisons are discarded
+ * when the number of stored comparisons exceeds a given maximum, after which they are evaluated again
+ * when needed.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class SeedLotDominanceIndex {
+
+    // default maximum number of memoised comparisons
+    public static final int DEFAULT_MAX_SIZE = 1000000;
+
+    // factory used to create dominates relations
+    private final OptimalSeedLotParetoFrontierFactory frontierFactory;
+
+    // dominates relation per genotype
+    private final ConcurrentMap<Genotype, DominatesRelation<SeedLot>> relations;
+
+    // memoised comparisons: genotype -> dominated seed lot -> dominating seed lot -> result
+    private final ConcurrentMap<Genotype, ConcurrentMap<SeedLot, ConcurrentMap<SeedLot, Boolean>>> memo;
+
+    // current and maximum number of memoised comparisons
+    private final AtomicInteger size;
+    private final int maxSize;
+
+    public SeedLotDominanceIndex(OptimalSeedLotParetoFrontierFactory frontierFactory){
+        this(frontierFactory, DEFAULT_MAX_SIZE);
+    }
+
+    public SeedLotDominanceIndex(OptimalSeedLotParetoFrontierFactory frontierFactory, int maxSize){
+        this.frontierFactory = frontierFactory;
+        this.maxSize = maxSize;
+        relations = new ConcurrentHashMap<>();
+        memo = new ConcurrentHashMap<>();
+        size = new AtomicInteger();
+    }
+
+    /**
+     * Check whether seed lot s1 dominates seed lot s2 w.r.t. the given genotype.
+     *
+     * @param g genotype to be grown from the seed lots
+     * @param s1 seed lot 1
+     * @param s2 seed lot 2
+     * @return <code>true</code> if s1 dominates s2 w.r.t. the given genotype
+     */
+    public boolean dominates(Genotype g, SeedLot s1, SeedLot s2){
+        if(s1 == s2){
+            // a seed lot never dominates itself
+            return false;
+        }
+        // look up memoised comparison
+        ConcurrentMap<SeedLot, ConcurrentMap<SeedLot, Boolean>> genotypeMemo = memo.get(g);
+        if(genotypeMemo == null){
+            genotypeMemo = new ConcurrentHashMap<>();
+            ConcurrentMap<SeedLot, ConcurrentMap<SeedLot, Boolean>> prev = memo.putIfAbsent(g, genotypeMemo);
+            if(prev != null){
+                genotypeMemo = prev;
+            }
+        }
+        ConcurrentMap<SeedLot, Boolean> dominated = genotypeMemo.get(s2);
+        if(dominated == null){
+            dominated = new ConcurrentHashMap<>();
+            ConcurrentMap<SeedLot, Boolean> prev = genotypeMemo.putIfAbsent(s2, dominated);
+            if(prev != null){
+                dominated = prev;
+            }
+        }
+        Boolean result = dominated.get(s1);
+        if(result == null){
+            // not yet evaluated: compare and memoise
+            result = getRelation(g).dominates(s1, s2);
+            if(dominated.putIfAbsent(s1, result) == null && size.incrementAndGet() > maxSize){
+                clear();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the dominates relation for the given genotype, creating it if necessary.
+     *
+     * @param g genotype
+     * @return dominates relation used to compare seed lots w.r.t. the given genotype
+     */
+    private DominatesRelation<SeedLot> getRelation(Genotype g){
+        DominatesRelation<SeedLot> rel = relations.get(g);
+        if(rel == null){
+            rel = frontierFactory.createDominatesRelation(g);
+            DominatesRelation<SeedLot> prev = relations.putIfAbsent(g, rel);
+            if(prev != null){
+                rel = prev;
+            }
+        }
+        return rel;
+    }
+
+    /**
+     * Discard all memoised comparisons.
+     */
+    public void clear(){
+        memo.clear();
+        size.set(0);
+    }
+
+    /**
+     * Get the current number of memoised comparisons.
+     *
+     * @return number of memoised comparisons
+     */
+    public int size(){
+        return size.get();
+    }
+
+}
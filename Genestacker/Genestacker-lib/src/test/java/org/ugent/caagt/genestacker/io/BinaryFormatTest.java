@@ -0,0 +1,297 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.io;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.ugent.caagt.genestacker.DiploidChromosome;
+import org.ugent.caagt.genestacker.GeneticMap;
+import org.ugent.caagt.genestacker.Genotype;
+import org.ugent.caagt.genestacker.Haplotype;
+import org.ugent.caagt.genestacker.Plant;
+import org.ugent.caagt.genestacker.exceptions.BinaryFormatException;
+
+/**
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class BinaryFormatTest extends TestCase {
+
+    private static final Random rg = new Random();
+
+    // number of loci on each chromosome
+    private static final int[] NUM_LOCI = {3, 1, 6};
+
+    private File tmpFile;
+
+    public BinaryFormatTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        tmpFile = File.createTempFile("genestacker-", BinaryFormat.INPUT_EXTENSION);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        tmpFile.delete();
+    }
+
+    private Genotype randomGenotype() throws Exception {
+        List<DiploidChromosome> chroms = new ArrayList<>();
+        for(int n : NUM_LOCI){
+            Haplotype[] haps = new Haplotype[2];
+            for(int h=0; h<2; h++){
+                boolean[] targets = new boolean[n];
+                for(int l=0; l<n; l++){
+                    targets[l] = rg.nextBoolean();
+                }
+                haps[h] = new Haplotype(targets);
+            }
+            chroms.add(new DiploidChromosome(haps[0], haps[1]));
+        }
+        return new Genotype(chroms);
+    }
+
+    @Test
+    public void testPackedGenotypes() throws Exception {
+
+        System.out.println("\n### TEST PACKED GENOTYPES ###\n");
+
+        PackedGenotypeCodec codec = new PackedGenotypeCodec(NUM_LOCI);
+        // 20 bits per genotype
+        assertEquals(3, codec.getNumBytes());
+        for(int i=0; i<100; i++){
+            Genotype g = randomGenotype();
+            byte[] packed = codec.encode(g);
+            assertEquals(codec.getNumBytes(), packed.length);
+            assertEquals(g, codec.decode(ByteBuffer.wrap(packed)));
+        }
+
+    }
+
+    @Test
+    public void testInputRoundTrip() throws Exception {
+
+        System.out.println("\n### TEST BINARY INPUT ROUND TRIP ###\n");
+
+        List<Plant> plants = new ArrayList<>();
+        for(int i=0; i<25; i++){
+            plants.add(new Plant(randomGenotype()));
+        }
+        Genotype ideotype = randomGenotype();
+        double[][] distances = new double[][]{{12.5, 40.0}, {}, {1.0, 2.0, 3.0, 4.0, 5.0}};
+        GeneticMap map = new GeneticMap(distances);
+
+        new GenestackerInputBinaryWriter().write(new GenestackerInput(plants, ideotype, map), tmpFile);
+        assertTrue(GenestackerInputBinaryReader.isBinaryInput(tmpFile));
+        assertFalse(ParetoFrontierBinaryReader.isBinaryResults(tmpFile));
+
+        GenestackerInput input = new GenestackerInputBinaryReader().read(tmpFile);
+        assertEquals(plants, input.getInitialPlants());
+        assertEquals(ideotype, input.getIdeotype());
+        assertTrue(Arrays.deepEquals(distances, input.getGeneticMap().getDistances()));
+
+        // results reader should reject input files
+        try {
+            new ParetoFrontierBinaryReader(tmpFile);
+            fail("Binary input accepted as binary results.");
+        } catch (BinaryFormatException ex){
+            // expected
+        }
+
+    }
+
+    private CrossingSchemeRecord randomRecord() throws Exception {
+        List<CrossingSchemeRecord.SeedLot> seedLots = new ArrayList<>();
+        int numSeedLots = 1 + rg.nextInt(4);
+        for(int s=0; s<numSeedLots; s++){
+            int numUsed = rg.nextInt(3);
+            int[] usedGenerations = new int[numUsed];
+            long[] usedAmounts = new long[numUsed];
+            for(int u=0; u<numUsed; u++){
+                usedGenerations[u] = s + u;
+                usedAmounts[u] = 1 + rg.nextInt(1000);
+            }
+            seedLots.add(new CrossingSchemeRecord.SeedLot("s" + s + "n0", s, usedGenerations, usedAmounts));
+        }
+        List<CrossingSchemeRecord.Plant> plants = new ArrayList<>();
+        int numPlants = 1 + rg.nextInt(5);
+        for(int p=0; p<numPlants; p++){
+            plants.add(new CrossingSchemeRecord.Plant("p" + p + "n0", rg.nextInt(numSeedLots), rg.nextInt(5),
+                                                      rg.nextDouble(), rg.nextDouble(), 1 + rg.nextInt(3), randomGenotype()));
+        }
+        List<CrossingSchemeRecord.Crossing> crossings = new ArrayList<>();
+        int numCrossings = rg.nextInt(4);
+        for(int c=0; c<numCrossings; c++){
+            int parent2 = rg.nextBoolean() ? -1 : rg.nextInt(numPlants);
+            crossings.add(new CrossingSchemeRecord.Crossing("c" + c, rg.nextInt(numPlants), parent2,
+                                                            rg.nextInt(numSeedLots), 1 + rg.nextInt(3)));
+        }
+        return new CrossingSchemeRecord(rg.nextDouble(), rg.nextDouble(), rg.nextDouble(), 1 + rg.nextInt(10),
+                                        rg.nextInt(10000), seedLots, plants, crossings);
+    }
+
+    private void assertRecordEquals(CrossingSchemeRecord expected, CrossingSchemeRecord actual){
+        assertEquals(expected.getGamma(), actual.getGamma());
+        assertEquals(expected.getGammaPrime(), actual.getGammaPrime());
+        assertEquals(expected.getLinkagePhaseAmbiguity(), actual.getLinkagePhaseAmbiguity());
+        assertEquals(expected.getNumGenerations(), actual.getNumGenerations());
+        assertEquals(expected.getTotalPopulationSize(), actual.getTotalPopulationSize());
+        assertEquals(expected.getSeedLots().size(), actual.getSeedLots().size());
+        for(int s=0; s<expected.getSeedLots().size(); s++){
+            CrossingSchemeRecord.SeedLot e = expected.getSeedLots().get(s);
+            CrossingSchemeRecord.SeedLot a = actual.getSeedLots().get(s);
+            assertEquals(e.getID(), a.getID());
+            assertEquals(e.getGeneration(), a.getGeneration());
+            assertTrue(Arrays.equals(e.getUsedGenerations(), a.getUsedGenerations()));
+            assertTrue(Arrays.equals(e.getUsedAmounts(), a.getUsedAmounts()));
+        }
+        assertEquals(expected.getPlants().size(), actual.getPlants().size());
+        for(int p=0; p<expected.getPlants().size(); p++){
+            CrossingSchemeRecord.Plant e = expected.getPlants().get(p);
+            CrossingSchemeRecord.Plant a = actual.getPlants().get(p);
+            assertEquals(e.getID(), a.getID());
+            assertEquals(e.getSeedLot(), a.getSeedLot());
+            assertEquals(e.getGeneration(), a.getGeneration());
+            assertEquals(e.getProbabilityOfPhaseKnownGenotype(), a.getProbabilityOfPhaseKnownGenotype());
+            assertEquals(e.getLinkagePhaseAmbiguity(), a.getLinkagePhaseAmbiguity());
+            assertEquals(e.getNumDuplicates(), a.getNumDuplicates());
+            assertEquals(e.getGenotype(), a.getGenotype());
+        }
+        assertEquals(expected.getCrossings().size(), actual.getCrossings().size());
+        for(int c=0; c<expected.getCrossings().size(); c++){
+            CrossingSchemeRecord.Crossing e = expected.getCrossings().get(c);
+            CrossingSchemeRecord.Crossing a = actual.getCrossings().get(c);
+            assertEquals(e.getID(), a.getID());
+            assertEquals(e.getParent1(), a.getParent1());
+            assertEquals(e.getParent2(), a.getParent2());
+            assertEquals(e.getSeedLot(), a.getSeedLot());
+            assertEquals(e.getNumDuplicates(), a.getNumDuplicates());
+        }
+    }
+
+    @Test
+    public void testResultsRoundTrip() throws Exception {
+
+        System.out.println("\n### TEST BINARY RESULTS ROUND TRIP ###\n");
+
+        List<CrossingSchemeRecord> schemes = new ArrayList<>();
+        for(int i=0; i<10; i++){
+            schemes.add(randomRecord());
+        }
+        new ParetoFrontierBinaryWriter().write(schemes, tmpFile);
+        assertTrue(ParetoFrontierBinaryReader.isBinaryResults(tmpFile));
+        assertFalse(GenestackerInputBinaryReader.isBinaryInput(tmpFile));
+
+        ParetoFrontierBinaryReader reader = new ParetoFrontierBinaryReader(tmpFile);
+        assertEquals(schemes.size(), reader.getNumSchemes());
+        List<CrossingSchemeRecord> read = reader.getSchemes();
+        for(int i=0; i<schemes.size(); i++){
+            assertRecordEquals(schemes.get(i), read.get(i));
+        }
+        // random access
+        assertRecordEquals(schemes.get(7), reader.getScheme(7));
+
+        // empty frontier
+        new ParetoFrontierBinaryWriter().write(new ArrayList<CrossingSchemeRecord>(), tmpFile);
+        assertEquals(0, new ParetoFrontierBinaryReader(tmpFile).getNumSchemes());
+
+    }
+
+    private void readResults(File file) throws Exception {
+        new ParetoFrontierBinaryReader(file).getSchemes();
+    }
+
+    private void readInput(File file) throws Exception {
+        new GenestackerInputBinaryReader().read(file);
+    }
+
+    @Test
+    public void testTruncatedFiles() throws Exception {
+
+        System.out.println("\n### TEST TRUNCATED AND CORRUPT BINARY FILES ###\n");
+
+        // results
+        List<CrossingSchemeRecord> schemes = new ArrayList<>();
+        for(int i=0; i<3; i++){
+            schemes.add(randomRecord());
+        }
+        new ParetoFrontierBinaryWriter().write(schemes, tmpFile);
+        byte[] results = Files.readAllBytes(tmpFile.toPath());
+        assertInvalidPrefixes(results, true);
+        assertCorruptionDetected(results, true);
+
+        // input
+        List<Plant> plants = new ArrayList<>();
+        for(int i=0; i<5; i++){
+            plants.add(new Plant(randomGenotype()));
+        }
+        GeneticMap map = new GeneticMap(new double[][]{{12.5, 40.0}, {}, {1.0, 2.0, 3.0, 4.0, 5.0}});
+        new GenestackerInputBinaryWriter().write(new GenestackerInput(plants, randomGenotype(), map), tmpFile);
+        byte[] input = Files.readAllBytes(tmpFile.toPath());
+        assertInvalidPrefixes(input, false);
+        assertCorruptionDetected(input, false);
+
+    }
+
+    // every truncated copy of a valid file should be rejected with a binary format exception
+    private void assertInvalidPrefixes(byte[] contents, boolean results) throws Exception {
+        for(int len=0; len<contents.length; len++){
+            Files.write(tmpFile.toPath(), Arrays.copyOf(contents, len));
+            try {
+                if(results){
+                    readResults(tmpFile);
+                } else {
+                    readInput(tmpFile);
+                }
+                fail("File truncated to " + len + " of " + contents.length + " bytes accepted.");
+            } catch (BinaryFormatException ex){
+                // expected
+            }
+        }
+    }
+
+    // corrupt files are either accepted or rejected with a binary format exception, never with another error
+    private void assertCorruptionDetected(byte[] contents, boolean results) throws Exception {
+        for(int i=0; i<500; i++){
+            byte[] corrupt = contents.clone();
+            for(int j=0; j<1+rg.nextInt(4); j++){
+                corrupt[rg.nextInt(corrupt.length)] = (byte) rg.nextInt(256);
+            }
+            Files.write(tmpFile.toPath(), corrupt);
+            try {
+                if(results){
+                    readResults(tmpFile);
+                } else {
+                    readInput(tmpFile);
+                }
+            } catch (BinaryFormatException ex){
+                // expected
+            }
+        }
+    }
+
+}
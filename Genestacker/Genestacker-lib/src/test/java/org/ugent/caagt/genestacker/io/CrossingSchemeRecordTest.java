@@ -0,0 +1,205 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.io;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.ugent.caagt.genestacker.DiploidChromosome;
+import org.ugent.caagt.genestacker.GeneticMap;
+import org.ugent.caagt.genestacker.Genotype;
+import org.ugent.caagt.genestacker.HaldaneMapFunction;
+import org.ugent.caagt.genestacker.Haplotype;
+import org.ugent.caagt.genestacker.Plant;
+import org.ugent.caagt.genestacker.SeedLot;
+import org.ugent.caagt.genestacker.exceptions.CrossingSchemeException;
+import org.ugent.caagt.genestacker.search.CrossingNode;
+import org.ugent.caagt.genestacker.search.CrossingScheme;
+import org.ugent.caagt.genestacker.search.DefaultPopulationSizeTools;
+import org.ugent.caagt.genestacker.search.PlantNode;
+import org.ugent.caagt.genestacker.search.PopulationSizeTools;
+import org.ugent.caagt.genestacker.search.SeedLotNode;
+import org.ugent.caagt.genestacker.search.SelfingNode;
+import org.ugent.caagt.genestacker.search.bb.DefaultSeedLotConstructor;
+import org.ugent.caagt.genestacker.search.bb.SeedLotConstructor;
+
+/**
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class CrossingSchemeRecordTest extends TestCase {
+
+    private static final double SUCCESS_PROB = 0.9;
+
+    private File tmpFile;
+    private SeedLotConstructor constructor;
+    private PopulationSizeTools popSizeTools;
+
+    public CrossingSchemeRecordTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        tmpFile = File.createTempFile("genestacker-", BinaryFormat.RESULTS_EXTENSION);
+        GeneticMap map = new GeneticMap(new double[][]{{20, 5}, {}}, new HaldaneMapFunction());
+        constructor = new DefaultSeedLotConstructor(map);
+        popSizeTools = new DefaultPopulationSizeTools(SUCCESS_PROB);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        tmpFile.delete();
+    }
+
+    private static Genotype genotype(boolean[]... haplotypes) throws Exception {
+        List<DiploidChromosome> chroms = new ArrayList<>();
+        for(int c=0; c<haplotypes.length; c+=2){
+            chroms.add(new DiploidChromosome(new Haplotype(haplotypes[c]), new Haplotype(haplotypes[c+1])));
+        }
+        return new Genotype(chroms);
+    }
+
+    private static boolean[] hap(int... targets){
+        boolean[] h = new boolean[targets.length];
+        for(int i=0; i<targets.length; i++){
+            h[i] = targets[i] == 1;
+        }
+        return h;
+    }
+
+    /**
+     * Scheme with a duplicated crossing, selfings and a seed lot that is used in two generations.
+     */
+    private CrossingScheme createScheme() throws Exception {
+        Genotype g1 = genotype(hap(1,0,0), hap(1,0,0), hap(1), hap(1));
+        Genotype g2 = genotype(hap(0,1,1), hap(0,1,1), hap(0), hap(0));
+        PlantNode a0 = new PlantNode(new Plant(g1), 0, new SeedLotNode(new SeedLot(g1), 0));
+        PlantNode b0 = new PlantNode(new Plant(g2), 0, new SeedLotNode(new SeedLot(g2), 0));
+
+        CrossingNode ab = new CrossingNode(a0, b0);
+        ab.incNumDuplicates();
+        SeedLotNode s1 = new SeedLotNode(constructor.cross(g1, g2), 1, ab);
+        PlantNode c0 = new PlantNode(new Plant(genotype(hap(1,0,0), hap(0,1,1), hap(1), hap(0))), 1, s1);
+
+        SelfingNode cc = new SelfingNode(c0);
+        SeedLotNode s2 = new SeedLotNode(constructor.self(c0.getPlant().getGenotype()), 2, cc);
+        PlantNode d0 = new PlantNode(new Plant(genotype(hap(1,1,1), hap(0,1,1), hap(1), hap(1))), 2, s2);
+        // second plant grown from s1, one generation later
+        PlantNode e0 = new PlantNode(new Plant(genotype(hap(1,0,0), hap(0,1,1), hap(1), hap(0))), 2, s1);
+
+        CrossingNode de = new CrossingNode(d0, e0);
+        SeedLotNode s3 = new SeedLotNode(constructor.cross(d0.getPlant().getGenotype(),
+                                                           e0.getPlant().getGenotype()), 3, de);
+        PlantNode f0 = new PlantNode(new Plant(genotype(hap(1,1,1), hap(1,1,1), hap(1), hap(1))), 3, s3);
+
+        return new CrossingScheme(popSizeTools, f0);
+    }
+
+    private static List<String> ids(CrossingSchemeRecord record){
+        List<String> ids = new ArrayList<>();
+        for(CrossingSchemeRecord.SeedLot sl : record.getSeedLots()){
+            ids.add(sl.getID());
+        }
+        for(CrossingSchemeRecord.Plant p : record.getPlants()){
+            ids.add(p.getID());
+        }
+        for(CrossingSchemeRecord.Crossing c : record.getCrossings()){
+            ids.add(c.getID());
+        }
+        return ids;
+    }
+
+    @Test
+    public void testRebuildScheme() throws Exception {
+
+        System.out.println("\n### TEST REBUILD SCHEME FROM RECORD ###\n");
+
+        CrossingScheme scheme = createScheme();
+        CrossingSchemeRecord record = CrossingSchemeRecord.of(scheme);
+        // record read back from binary result file, as sent by the workers of a distributed search
+        new ParetoFrontierBinaryWriter().write(Arrays.asList(record), tmpFile);
+        CrossingSchemeRecord read = new ParetoFrontierBinaryReader(tmpFile).getScheme(0);
+
+        for(CrossingSchemeRecord r : Arrays.asList(record, read)){
+            CrossingScheme rebuilt = r.toScheme(popSizeTools, constructor);
+            assertEquals(scheme, rebuilt);
+            assertEquals(scheme.getNumGenerations(), rebuilt.getNumGenerations());
+            assertEquals(scheme.getTotalPopulationSize(), rebuilt.getTotalPopulationSize());
+            assertEquals(scheme.getNumNodes(), rebuilt.getNumNodes());
+            assertEquals(scheme.getLinkagePhaseAmbiguity(), rebuilt.getLinkagePhaseAmbiguity(), 1e-12);
+            // node IDs are retained
+            assertEquals(ids(record), ids(CrossingSchemeRecord.of(rebuilt)));
+        }
+
+    }
+
+    @Test
+    public void testRebuildInvalidRecords() throws Exception {
+
+        System.out.println("\n### TEST REBUILD SCHEME FROM INVALID RECORDS ###\n");
+
+        CrossingSchemeRecord record = CrossingSchemeRecord.of(createScheme());
+
+        // different success probability
+        try {
+            record.toScheme(new DefaultPopulationSizeTools(0.99), constructor);
+            fail("Scheme rebuilt with different population size tools should be rejected.");
+        } catch (CrossingSchemeException ex){
+            System.out.println(ex.getMessage());
+        }
+
+        // crossing that does not precede its seed lot
+        List<CrossingSchemeRecord.SeedLot> seedLots = new ArrayList<>();
+        for(CrossingSchemeRecord.SeedLot sl : record.getSeedLots()){
+            seedLots.add(new CrossingSchemeRecord.SeedLot(sl.getID(), sl.getGeneration() == 0 ? 0 : sl.getGeneration()+1,
+                                                          sl.getUsedGenerations(), sl.getUsedAmounts()));
+        }
+        CrossingSchemeRecord invalid = new CrossingSchemeRecord(record.getGamma(), record.getGammaPrime(),
+                                                                record.getLinkagePhaseAmbiguity(), record.getNumGenerations(),
+                                                                record.getTotalPopulationSize(), seedLots,
+                                                                record.getPlants(), record.getCrossings());
+        try {
+            invalid.toScheme(popSizeTools, constructor);
+            fail("Crossing that does not precede its seed lot should be rejected.");
+        } catch (CrossingSchemeException ex){
+            System.out.println(ex.getMessage());
+        }
+
+        // invalid node ID
+        List<CrossingSchemeRecord.Crossing> crossings = new ArrayList<>();
+        for(CrossingSchemeRecord.Crossing c : record.getCrossings()){
+            crossings.add(new CrossingSchemeRecord.Crossing("x" + c.getID(), c.getParent1(), c.getParent2(),
+                                                            c.getSeedLot(), c.getNumDuplicates()));
+        }
+        invalid = new CrossingSchemeRecord(record.getGamma(), record.getGammaPrime(),
+                                           record.getLinkagePhaseAmbiguity(), record.getNumGenerations(),
+                                           record.getTotalPopulationSize(), record.getSeedLots(),
+                                           record.getPlants(), crossings);
+        try {
+            invalid.toScheme(popSizeTools, constructor);
+            fail("Invalid node ID should be rejected.");
+        } catch (CrossingSchemeException ex){
+            System.out.println(ex.getMessage());
+        }
+
+    }
+
+}
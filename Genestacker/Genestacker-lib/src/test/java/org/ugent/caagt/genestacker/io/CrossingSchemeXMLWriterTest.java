@@ -0,0 +1,203 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+
+package org.ugent.caagt.genestacker.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.ugent.caagt.genestacker.DiploidChromosome;
+import org.ugent.caagt.genestacker.GeneticMap;
+import org.ugent.caagt.genestacker.Genotype;
+import org.ugent.caagt.genestacker.HaldaneMapFunction;
+import org.ugent.caagt.genestacker.Haplotype;
+import org.ugent.caagt.genestacker.Plant;
+import org.ugent.caagt.genestacker.SeedLot;
+import org.ugent.caagt.genestacker.search.CrossingNode;
+import org.ugent.caagt.genestacker.search.CrossingScheme;
+import org.ugent.caagt.genestacker.search.CrossingSchemeAlternatives;
+import org.ugent.caagt.genestacker.search.DefaultPopulationSizeTools;
+import org.ugent.caagt.genestacker.search.PlantNode;
+import org.ugent.caagt.genestacker.search.PopulationSizeTools;
+import org.ugent.caagt.genestacker.search.SeedLotNode;
+import org.ugent.caagt.genestacker.search.SelfingNode;
+import org.ugent.caagt.genestacker.search.bb.DefaultSeedLotConstructor;
+import org.ugent.caagt.genestacker.search.bb.SeedLotConstructor;
+
+/**
+ * Compares the output of the crossing scheme XML writer with golden files that were written
+ * by the original DOM based writer, so that any change to the output format is detected.
+ * 
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class CrossingSchemeXMLWriterTest extends TestCase {
+
+    private static final double SUCCESS_PROB = 0.9;
+    
+    private File tmpFile;
+    
+    public CrossingSchemeXMLWriterTest(String testName) {
+        super(testName);
+    }
+    
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        tmpFile = File.createTempFile("genestacker-", ".xml");
+        // node IDs end up in the output
+        SeedLotNode.resetIDs();
+        PlantNode.resetIDs();
+        CrossingNode.resetIDs();
+        CrossingSchemeAlternatives.resetIDs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        tmpFile.delete();
+    }
+    
+    private static Genotype genotype(boolean[]... haplotypes) throws Exception {
+        List<DiploidChromosome> chroms = new ArrayList<>();
+        for(int c=0; c<haplotypes.length; c+=2){
+            chroms.add(new DiploidChromosome(new Haplotype(haplotypes[c]), new Haplotype(haplotypes[c+1])));
+        }
+        return new Genotype(chroms);
+    }
+    
+    private static boolean[] hap(int... targets){
+        boolean[] h = new boolean[targets.length];
+        for(int i=0; i<targets.length; i++){
+            h[i] = targets[i] == 1;
+        }
+        return h;
+    }
+    
+    /**
+     * Single chromosome scheme with crossings, a duplicated crossing and a final selfing.
+     */
+    private static CrossingScheme crossingsAndSelfing() throws Exception {
+        GeneticMap map = new GeneticMap(new double[][]{{10000, 10000, 1}}, new HaldaneMapFunction());
+        SeedLotConstructor constructor = new DefaultSeedLotConstructor(map);
+        PopulationSizeTools popSizeTools = new DefaultPopulationSizeTools(SUCCESS_PROB);
+        
+        Genotype g1 = genotype(hap(1,0,0,1), hap(1,0,0,1));
+        Genotype g2 = genotype(hap(0,1,1,0), hap(0,1,1,0));
+        Genotype g3 = genotype(hap(0,0,0,1), hap(0,0,0,1));
+        PlantNode a0 = new PlantNode(new Plant(g1), 0, new SeedLotNode(new SeedLot(g1), 0));
+        PlantNode b0 = new PlantNode(new Plant(g2), 0, new SeedLotNode(new SeedLot(g2), 0));
+        PlantNode c0 = new PlantNode(new Plant(g3), 0, new SeedLotNode(new SeedLot(g3), 0));
+        
+        CrossingNode ab = new CrossingNode(a0, b0);
+        SeedLotNode s1 = new SeedLotNode(constructor.cross(g1, g2), 1, ab);
+        PlantNode d0 = new PlantNode(new Plant(genotype(hap(1,0,0,1), hap(0,1,1,0))), 1, s1);
+        CrossingNode cb = new CrossingNode(c0, b0);
+        SeedLotNode s2 = new SeedLotNode(constructor.cross(g3, g2), 1, cb);
+        PlantNode e0 = new PlantNode(new Plant(genotype(hap(0,1,1,0), hap(0,0,0,1))), 1, s2);
+        
+        CrossingNode ed = new CrossingNode(e0, d0);
+        ed.incNumDuplicates();
+        SeedLotNode s3 = new SeedLotNode(constructor.cross(e0.getPlant().getGenotype(),
+                                                           d0.getPlant().getGenotype()), 2, ed);
+        PlantNode f0 = new PlantNode(new Plant(genotype(hap(1,1,1,0), hap(0,1,1,1))), 2, s3);
+        
+        SelfingNode ff = new SelfingNode(f0);
+        SeedLotNode s4 = new SeedLotNode(constructor.self(f0.getPlant().getGenotype()), 3, ff);
+        PlantNode g0 = new PlantNode(new Plant(genotype(hap(1,1,1,1), hap(1,1,1,1))), 3, s4);
+        
+        return new CrossingScheme(popSizeTools, g0);
+    }
+    
+    /**
+     * Two chromosome scheme in which a seed lot is used in two generations.
+     */
+    private static CrossingScheme reusedSeedLot() throws Exception {
+        GeneticMap map = new GeneticMap(new double[][]{{20}, {}}, new HaldaneMapFunction());
+        SeedLotConstructor constructor = new DefaultSeedLotConstructor(map);
+        PopulationSizeTools popSizeTools = new DefaultPopulationSizeTools(SUCCESS_PROB);
+        
+        Genotype g = genotype(hap(1,0), hap(0,1), hap(1), hap(0));
+        PlantNode p0 = new PlantNode(new Plant(g), 0, new SeedLotNode(new SeedLot(g), 0));
+        
+        SelfingNode pp = new SelfingNode(p0);
+        SeedLotNode s1 = new SeedLotNode(constructor.self(g), 1, pp);
+        PlantNode q0 = new PlantNode(new Plant(genotype(hap(1,1), hap(0,1), hap(1), hap(1))), 1, s1);
+        
+        SelfingNode qq = new SelfingNode(q0);
+        SeedLotNode s2 = new SeedLotNode(constructor.self(q0.getPlant().getGenotype()), 2, qq);
+        PlantNode q1 = new PlantNode(new Plant(genotype(hap(1,1), hap(1,1), hap(1), hap(1))), 2, s2);
+        // second plant grown from s1, one generation later
+        PlantNode r0 = new PlantNode(new Plant(genotype(hap(1,1), hap(1,0), hap(1), hap(0))), 2, s1);
+        
+        CrossingNode qr = new CrossingNode(q1, r0);
+        SeedLotNode s3 = new SeedLotNode(constructor.cross(q1.getPlant().getGenotype(),
+                                                           r0.getPlant().getGenotype()), 3, qr);
+        PlantNode t0 = new PlantNode(new Plant(genotype(hap(1,1), hap(1,1), hap(1), hap(1))), 3, s3);
+        
+        return new CrossingScheme(popSizeTools, t0);
+    }
+    
+    private void assertGolden(String golden, CrossingScheme scheme) throws Exception {
+        new CrossingSchemeXMLWriter().write(scheme, tmpFile);
+        byte[] expected;
+        try (InputStream in = getClass().getResourceAsStream(golden)) {
+            assertNotNull("missing golden file " + golden, in);
+            expected = readFully(in);
+        }
+        byte[] actual = Files.readAllBytes(tmpFile.toPath());
+        if(!Arrays.equals(expected, actual)){
+            // compare as text first for a readable failure message
+            assertEquals(golden, new String(expected, StandardCharsets.UTF_8),
+                                 new String(actual, StandardCharsets.UTF_8));
+            fail(golden + ": output differs from golden file");
+        }
+    }
+    
+    private static byte[] readFully(InputStream in) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int n;
+        while((n = in.read(buf)) > 0){
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testCrossingsAndSelfing() throws Exception {
+        
+        System.out.println("\n### TEST XML WRITER: CROSSINGS AND SELFING ###\n");
+        
+        assertGolden("golden-scheme-1.xml", crossingsAndSelfing());
+        
+    }
+    
+    @Test
+    public void testReusedSeedLot() throws Exception {
+        
+        System.out.println("\n### TEST XML WRITER: REUSED SEED LOT ###\n");
+        
+        assertGolden("golden-scheme-2.xml", reusedSeedLot());
+        
+    }
+    
+}
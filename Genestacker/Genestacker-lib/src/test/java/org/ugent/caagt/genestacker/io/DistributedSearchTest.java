@@ -0,0 +1,492 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.io;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.ugent.caagt.genestacker.DiploidChromosome;
+import org.ugent.caagt.genestacker.GeneticMap;
+import org.ugent.caagt.genestacker.Genotype;
+import org.ugent.caagt.genestacker.Haplotype;
+import org.ugent.caagt.genestacker.Plant;
+import org.ugent.caagt.genestacker.SeedLot;
+import org.ugent.caagt.genestacker.exceptions.GenestackerException;
+import org.ugent.caagt.genestacker.search.CrossingScheme;
+import org.ugent.caagt.genestacker.search.CrossingSchemeDescriptor;
+import org.ugent.caagt.genestacker.search.DefaultDominatesRelation;
+import org.ugent.caagt.genestacker.search.DefaultPopulationSizeTools;
+import org.ugent.caagt.genestacker.search.DominatesRelation;
+import org.ugent.caagt.genestacker.search.PlantNode;
+import org.ugent.caagt.genestacker.search.SeedLotNode;
+import org.ugent.caagt.genestacker.search.SelfingNode;
+import org.ugent.caagt.genestacker.search.bb.DefaultSeedLotConstructor;
+import org.ugent.caagt.genestacker.search.bb.SeedLotConstructor;
+import org.ugent.caagt.genestacker.search.bb.SharedBounds;
+
+/**
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class DistributedSearchTest extends TestCase {
+
+    private static final int NUM_WORKERS = 2;
+    private static final int NUM_TASKS = 5;
+    private static final String TOKEN = "secret";
+    private static final String LOCALHOST = InetAddress.getLoopbackAddress().getHostAddress();
+
+    private File inputFile;
+
+    public DistributedSearchTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        inputFile = File.createTempFile("genestacker-", ".xml");
+        Files.write(inputFile.toPath(), "<input/>".getBytes("UTF-8"));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        inputFile.delete();
+    }
+
+    // bounds only dominate bounds with the same number of generations, so that the bounds of all tasks are retained
+    private static final DominatesRelation<CrossingSchemeDescriptor> PER_GENERATION = new DominatesRelation<CrossingSchemeDescriptor>() {
+        @Override
+        public boolean dominates(CrossingSchemeDescriptor d1, CrossingSchemeDescriptor d2) {
+            return d1.getNumGenerations() == d2.getNumGenerations() && d1.getTotalPopSize() < d2.getTotalPopSize();
+        }
+    };
+
+    // descriptor with the given number of generations and total population size
+    private CrossingSchemeDescriptor bound(int numGen, long popSize){
+        return new CrossingSchemeDescriptor(numGen, numGen, 1, popSize, popSize, 0.0, 0);
+    }
+
+    // scheme in which a homozygous plant is selfed in each of the given number of generations
+    private CrossingScheme scheme(int numGen) throws GenestackerException {
+        Haplotype hap = new Haplotype(new boolean[]{true});
+        Genotype g = new Genotype(Arrays.asList(new DiploidChromosome(hap, hap)));
+        SeedLotConstructor constructor = new DefaultSeedLotConstructor(new GeneticMap(new double[][]{{}}));
+        PlantNode p = new PlantNode(new Plant(g), 0, new SeedLotNode(new SeedLot(g), 0));
+        for(int gen=1; gen<=numGen; gen++){
+            SeedLotNode sl = new SeedLotNode(constructor.self(g), gen, new SelfingNode(p));
+            p = new PlantNode(new Plant(g), gen, sl);
+        }
+        return new CrossingScheme(new DefaultPopulationSizeTools(0.9), p);
+    }
+
+    // single solution in the binary result format
+    private byte[] encode(CrossingScheme solution) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new ParetoFrontierBinaryWriter().write(Arrays.asList(CrossingSchemeRecord.of(solution)), bytes);
+        return bytes.toByteArray();
+    }
+
+    // connect to the given coordinator, authenticate and skip the input file
+    private DataInputStream connect(Socket socket) throws IOException {
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        byte[] challenge = DistributedProtocol.createChallenge();
+        out.writeInt(DistributedProtocol.VERSION);
+        out.write(challenge);
+        out.flush();
+        byte[] coordinatorChallenge = DistributedProtocol.readChallenge(in);
+        DistributedProtocol.verifyResponse(in, TOKEN, DistributedProtocol.COORDINATOR_ROLE, challenge);
+        out.write(DistributedProtocol.respond(TOKEN, DistributedProtocol.WORKER_ROLE, coordinatorChallenge));
+        out.flush();
+        assertEquals(DistributedProtocol.INPUT, in.readByte());
+        in.readUTF();
+        DistributedProtocol.readBytes(in);
+        return in;
+    }
+
+    // wait until the given condition holds (at most 10 seconds)
+    private interface Condition {
+        public boolean holds();
+    }
+
+    private void await(Condition c) throws InterruptedException {
+        long stop = System.currentTimeMillis() + 10000;
+        while(!c.holds() && System.currentTimeMillis() < stop){
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testDistributedSearch() throws Exception {
+
+        System.out.println("\n### TEST DISTRIBUTED SEARCH ###\n");
+
+        // bound found by coordinator before workers connect
+        final SharedBounds coordBounds = new SharedBounds(PER_GENERATION);
+        coordBounds.registerLocal(scheme(NUM_TASKS+1));
+        // tasks
+        List<List<String>> tasks = new ArrayList<>();
+        for(int t=1; t<=NUM_TASKS; t++){
+            tasks.add(Arrays.asList("-g", Integer.toString(t)));
+        }
+        final byte[] expectedInput = Files.readAllBytes(inputFile.toPath());
+        final List<List<String>> completed = Collections.synchronizedList(new ArrayList<List<String>>());
+        final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+        try (DistributedCoordinator coord = new DistributedCoordinator(coordBounds, 0, TOKEN, inputFile, tasks)) {
+            coord.start();
+            // start workers
+            List<Thread> threads = new ArrayList<>();
+            for(int w=0; w<NUM_WORKERS; w++){
+                final SharedBounds bounds = new SharedBounds(new DefaultDominatesRelation());
+                final DistributedWorker worker = new DistributedWorker(LOCALHOST, coord.getPort(), TOKEN, bounds,
+                                                                       new DistributedWorker.TaskRunner() {
+                    @Override
+                    public void run(List<String> task, File input, SharedBounds b) throws Exception {
+                        if(!Arrays.equals(expectedInput, Files.readAllBytes(input.toPath()))){
+                            failures.add("input differs");
+                        }
+                        if(b.getNumBounds() < 1){
+                            failures.add("initial bound not received");
+                        }
+                        // each task finds a solution with a distinct number of generations
+                        int g = Integer.parseInt(task.get(1));
+                        b.registerLocal(scheme(g));
+                        completed.add(task);
+                    }
+                    @Override
+                    public void stop() {
+                        failures.add("worker stopped");
+                    }
+                });
+                Thread t = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            worker.run();
+                        } catch (Exception ex){
+                            failures.add(ex.getMessage());
+                        }
+                    }
+                });
+                threads.add(t);
+                t.start();
+            }
+            for(Thread t : threads){
+                t.join(10000);
+            }
+            assertEquals(Collections.emptyList(), failures);
+            // every task has been run exactly once
+            assertEquals(NUM_TASKS, completed.size());
+            for(List<String> task : tasks){
+                assertTrue(completed.contains(task));
+            }
+            assertEquals(0, coord.getNumRemainingTasks());
+            assertEquals(0, coord.getNumRunningTasks());
+            // solutions of all tasks have been received by the coordinator
+            List<Integer> numGen = new ArrayList<>();
+            for(CrossingSchemeRecord solution : coord.getSolutions()){
+                numGen.add(solution.getNumGenerations());
+            }
+            Collections.sort(numGen);
+            assertEquals(Arrays.asList(1, 2, 3, 4, 5), numGen);
+            // all bounds have been received by the coordinator
+            await(new Condition() {
+                @Override
+                public boolean holds() {
+                    return coordBounds.getNumBounds() == NUM_TASKS+1;
+                }
+            });
+            assertEquals(NUM_TASKS+1, coordBounds.getNumBounds());
+            // bounds are pruned by shared bounds
+            long popSize = scheme(1).getTotalPopulationSize();
+            assertTrue(coordBounds.dominated(bound(1, popSize+1)));
+            assertFalse(coordBounds.dominated(bound(1, popSize)));
+        }
+
+    }
+
+    @Test
+    public void testAuthentication() throws Exception {
+
+        System.out.println("\n### TEST DISTRIBUTED SEARCH AUTHENTICATION ###\n");
+
+        List<List<String>> tasks = new ArrayList<>();
+        tasks.add(Arrays.asList("-g", "1"));
+        try (DistributedCoordinator coord = new DistributedCoordinator(new SharedBounds(new DefaultDominatesRelation()),
+                                                                          0, TOKEN, inputFile, tasks)) {
+            coord.start();
+            // worker with wrong token does not accept the coordinator and never runs a task
+            final List<List<String>> received = new ArrayList<>();
+            DistributedWorker worker = new DistributedWorker(LOCALHOST, coord.getPort(), "wrong",
+                                                             new SharedBounds(new DefaultDominatesRelation()),
+                                                             new DistributedWorker.TaskRunner() {
+                @Override
+                public void run(List<String> task, File input, SharedBounds b) throws Exception {
+                    received.add(task);
+                }
+                @Override
+                public void stop() {
+                }
+            });
+            try {
+                worker.run();
+                fail("Worker should not accept coordinator with different token.");
+            } catch (IOException ex){
+                System.out.println("Worker: " + ex.getMessage());
+            }
+            assertTrue(received.isEmpty());
+            // client with invalid response is disconnected before receiving the input
+            try (Socket socket = new Socket(LOCALHOST, coord.getPort())) {
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                out.writeInt(DistributedProtocol.VERSION);
+                out.write(DistributedProtocol.createChallenge());
+                out.flush();
+                in.readFully(new byte[2*DistributedProtocol.CHALLENGE_SIZE]);
+                out.write(new byte[DistributedProtocol.CHALLENGE_SIZE]);
+                out.flush();
+                try {
+                    assertEquals(-1, in.read());
+                } catch (SocketException ex){
+                    // connection reset
+                }
+            }
+            assertEquals(1, coord.getNumRemainingTasks());
+            assertEquals(0, coord.getNumWorkers());
+        }
+
+    }
+
+    @Test
+    public void testSlowWorker() throws Exception {
+
+        System.out.println("\n### TEST DISTRIBUTED SEARCH WITH SLOW WORKER ###\n");
+
+        List<List<String>> tasks = new ArrayList<>();
+        tasks.add(Arrays.asList("-g", "1"));
+        try (final DistributedCoordinator coord = new DistributedCoordinator(new SharedBounds(new DefaultDominatesRelation()),
+                                                                                0, TOKEN, inputFile, tasks);
+             Socket socket = new Socket(LOCALHOST, coord.getPort())) {
+            coord.start();
+            // authenticated worker that never reads any further messages
+            connect(socket);
+            await(new Condition() {
+                @Override
+                public boolean holds() {
+                    return coord.getNumWorkers() == 1;
+                }
+            });
+            assertEquals(1, coord.getNumWorkers());
+            // broadcasting far more bounds than fit in the socket buffers does not block the local search
+            final CrossingScheme solution = scheme(1);
+            Thread search = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for(int i=0; i<200000; i++){
+                        coord.localSolutionAdded(solution, true);
+                    }
+                }
+            });
+            search.start();
+            search.join(10000);
+            assertFalse(search.isAlive());
+        }
+
+    }
+
+    @Test
+    public void testSolutionBeforeBound() throws Exception {
+
+        System.out.println("\n### TEST DISTRIBUTED SEARCH SOLUTIONS RECEIVED BEFORE BOUNDS ###\n");
+
+        final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+        final List<DistributedCoordinator> coordinator = new ArrayList<>();
+        // bounds that check that the solution of every remote bound has been received
+        final SharedBounds coordBounds = new SharedBounds(PER_GENERATION){
+            @Override
+            public boolean registerRemote(CrossingSchemeDescriptor bound) {
+                boolean received = false;
+                for(CrossingSchemeRecord s : coordinator.get(0).getSolutions()){
+                    received = received || s.getNumGenerations() == bound.getNumGenerations();
+                }
+                if(!received){
+                    failures.add("bound registered before its solution");
+                }
+                return super.registerRemote(bound);
+            }
+        };
+        List<List<String>> tasks = new ArrayList<>();
+        tasks.add(Arrays.asList("-g", "1"));
+        try (final DistributedCoordinator coord = new DistributedCoordinator(coordBounds, 0, TOKEN, inputFile, tasks);
+             Socket socket = new Socket(LOCALHOST, coord.getPort())) {
+            coordinator.add(coord);
+            coord.start();
+            connect(socket);
+            // messages are written at once when flushed
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            // invalid solution is ignored, and its descriptor is not registered
+            CrossingScheme s1 = scheme(1);
+            out.writeByte(DistributedProtocol.SOLUTION);
+            DistributedProtocol.writeDescriptor(out, s1.getDescriptor());
+            DistributedProtocol.writeBytes(out, new byte[]{1, 2, 3});
+            // solution that does not match its descriptor is ignored
+            out.writeByte(DistributedProtocol.SOLUTION);
+            DistributedProtocol.writeDescriptor(out, scheme(2).getDescriptor());
+            DistributedProtocol.writeBytes(out, encode(s1));
+            // valid solution
+            out.writeByte(DistributedProtocol.SOLUTION);
+            DistributedProtocol.writeDescriptor(out, s1.getDescriptor());
+            DistributedProtocol.writeBytes(out, encode(s1));
+            out.flush();
+            await(new Condition() {
+                @Override
+                public boolean holds() {
+                    return coordBounds.getNumBounds() == 1;
+                }
+            });
+            assertEquals(1, coordBounds.getNumBounds());
+            assertEquals(1, coord.getSolutions().size());
+            assertEquals(1, coord.getSolutions().get(0).getNumGenerations());
+            // bare bounds are not accepted from workers
+            out.writeByte(DistributedProtocol.BOUND);
+            DistributedProtocol.writeDescriptor(out, scheme(3).getDescriptor());
+            out.flush();
+            await(new Condition() {
+                @Override
+                public boolean holds() {
+                    return coord.getNumWorkers() == 0;
+                }
+            });
+            assertEquals(0, coord.getNumWorkers());
+            assertEquals(1, coordBounds.getNumBounds());
+            assertEquals(Collections.emptyList(), failures);
+        }
+
+    }
+
+    @Test
+    public void testLostWorker() throws Exception {
+
+        System.out.println("\n### TEST DISTRIBUTED SEARCH WITH LOST WORKER ###\n");
+
+        List<String> task = Arrays.asList("-g", "1");
+        final List<List<String>> completed = Collections.synchronizedList(new ArrayList<List<String>>());
+        try (final DistributedCoordinator coord = new DistributedCoordinator(new SharedBounds(PER_GENERATION),
+                                                                                0, TOKEN, inputFile, Arrays.asList(task))) {
+            coord.start();
+            // worker that takes the only task and disconnects
+            try (Socket socket = new Socket(LOCALHOST, coord.getPort())) {
+                DataInputStream in = connect(socket);
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.writeByte(DistributedProtocol.READY);
+                out.flush();
+                assertEquals(DistributedProtocol.TASK, in.readByte());
+                assertEquals(task, DistributedProtocol.readStrings(in));
+                assertEquals(0, coord.getNumRemainingTasks());
+                assertEquals(1, coord.getNumRunningTasks());
+                // other worker waits for the running task instead of finishing
+                final DistributedWorker worker = new DistributedWorker(LOCALHOST, coord.getPort(), TOKEN,
+                                                                       new SharedBounds(new DefaultDominatesRelation()),
+                                                                       new DistributedWorker.TaskRunner() {
+                    @Override
+                    public void run(List<String> task, File input, SharedBounds b) throws Exception {
+                        completed.add(task);
+                    }
+                    @Override
+                    public void stop() {
+                    }
+                });
+                Thread t = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            worker.run();
+                        } catch (IOException ex){
+                            // checked below
+                        }
+                    }
+                });
+                t.start();
+                await(new Condition() {
+                    @Override
+                    public boolean holds() {
+                        return coord.getNumWorkers() == 2;
+                    }
+                });
+                assertEquals(2, coord.getNumWorkers());
+                assertTrue(t.isAlive());
+                socket.close();
+                // task of lost worker is handed out again
+                t.join(10000);
+                assertFalse(t.isAlive());
+            }
+            assertEquals(Arrays.asList(task), completed);
+            assertEquals(0, coord.getNumRemainingTasks());
+            assertEquals(0, coord.getNumRunningTasks());
+        }
+
+    }
+
+    @Test
+    public void testMessageSizeLimits() throws IOException {
+
+        System.out.println("\n### TEST DISTRIBUTED SEARCH MESSAGE SIZE LIMITS ###\n");
+
+        int[] invalidSizes = {-1, DistributedProtocol.MAX_BYTES+1, Integer.MAX_VALUE};
+        for(int size : invalidSizes){
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            new DataOutputStream(bytes).writeInt(size);
+            try {
+                DistributedProtocol.readBytes(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+                fail("Byte array of size " + size + " should be rejected.");
+            } catch (EOFException ex){
+                fail("Byte array of size " + size + " should be rejected before reading its content.");
+            } catch (IOException ex){
+                // expected
+            }
+        }
+        int[] invalidCounts = {-1, DistributedProtocol.MAX_STRINGS+1, Integer.MAX_VALUE};
+        for(int count : invalidCounts){
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            new DataOutputStream(bytes).writeInt(count);
+            try {
+                DistributedProtocol.readStrings(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+                fail("List of " + count + " strings should be rejected.");
+            } catch (EOFException ex){
+                fail("List of " + count + " strings should be rejected before reading its content.");
+            } catch (IOException ex){
+                // expected
+            }
+        }
+
+    }
+
+}
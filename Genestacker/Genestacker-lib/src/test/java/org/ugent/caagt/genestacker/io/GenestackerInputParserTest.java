@@ -0,0 +1,198 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+
+package org.ugent.caagt.genestacker.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.ugent.caagt.genestacker.DiploidChromosome;
+import org.ugent.caagt.genestacker.GeneticMap;
+import org.ugent.caagt.genestacker.Genotype;
+import org.ugent.caagt.genestacker.Haplotype;
+import org.ugent.caagt.genestacker.KosambiMapFunction;
+import org.ugent.caagt.genestacker.Plant;
+import org.ugent.caagt.genestacker.exceptions.XMLFormatException;
+import org.ugent.caagt.genestacker.search.bb.heuristics.DefaultDuplicatePlantFilter;
+import org.ugent.caagt.genestacker.search.bb.heuristics.DefaultPlantImprovement;
+import org.ugent.caagt.genestacker.search.bb.heuristics.InitialPlantFilter;
+import org.ugent.caagt.genestacker.search.bb.heuristics.WeakGenotypeImprovement;
+
+/**
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class GenestackerInputParserTest extends TestCase {
+
+    // genetic map with one target on the first and three targets on the second chromosome
+    private static final String MAP = "<genetic_map><distances_on_chromosome/>"
+                                    + "<distances_on_chromosome><dist cM=\"31\"/><dist cM=\"42\"/></distances_on_chromosome>"
+                                    + "</genetic_map>";
+    
+    private File tmpFile;
+    
+    public GenestackerInputParserTest(String testName) {
+        super(testName);
+    }
+    
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        tmpFile = File.createTempFile("genestacker-", ".xml");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        tmpFile.delete();
+    }
+    
+    /**
+     * Genotype element, e.g. "1/0 101/010" for two chromosomes with one and three targets.
+     */
+    private static String genotype(String genotype){
+        StringBuilder xml = new StringBuilder("<genotype>");
+        for(String chrom : genotype.split(" ")){
+            xml.append("<chromosome>");
+            for(String hap : chrom.split("/")){
+                xml.append("<haplotype targets=\"").append(hap).append("\"/>");
+            }
+            xml.append("</chromosome>");
+        }
+        return xml.append("</genotype>").toString();
+    }
+    
+    private static String input(String ideotype, String map, String... plants){
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<genestacker_input><initial_plants>");
+        for(String p : plants){
+            xml.append("<plant>").append(genotype(p)).append("</plant>");
+        }
+        xml.append("</initial_plants>");
+        if(ideotype != null){
+            xml.append("<ideotype>").append(genotype(ideotype)).append("</ideotype>");
+        }
+        return xml.append(map).append("</genestacker_input>").toString();
+    }
+    
+    private GenestackerInput parse(String xml, boolean useKosambiMap) throws Exception {
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8)) {
+            w.write(xml);
+        }
+        return new GenestackerInputParser().parse(tmpFile, useKosambiMap);
+    }
+    
+    private static Genotype parseGenotype(String genotype) throws Exception {
+        String[] chroms = genotype.split(" ");
+        DiploidChromosome[] diploid = new DiploidChromosome[chroms.length];
+        for(int c=0; c<chroms.length; c++){
+            String[] haps = chroms[c].split("/");
+            Haplotype[] haplotypes = new Haplotype[2];
+            for(int h=0; h<2; h++){
+                boolean[] targets = new boolean[haps[h].length()];
+                for(int l=0; l<targets.length; l++){
+                    targets[l] = haps[h].charAt(l) == '1';
+                }
+                haplotypes[h] = new Haplotype(targets);
+            }
+            diploid[c] = new DiploidChromosome(haplotypes[0], haplotypes[1]);
+        }
+        return new Genotype(Arrays.asList(diploid));
+    }
+    
+    private void assertInvalid(String message, String xml) throws Exception {
+        try {
+            parse(xml, false);
+            fail(message);
+        } catch (XMLFormatException ex){
+            System.out.println(message + ": " + ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testValidInput() throws Exception {
+        
+        System.out.println("\n### TEST PARSE VALID INPUT ###\n");
+        
+        GenestackerInput input = parse(input("1/1 111/101", MAP, "0/0 101/010", "0/1 000/001"), false);
+        
+        List<Plant> plants = input.getInitialPlants();
+        assertEquals(2, plants.size());
+        assertEquals(parseGenotype("0/0 101/010"), plants.get(0).getGenotype());
+        assertEquals(parseGenotype("0/1 000/001"), plants.get(1).getGenotype());
+        assertEquals(parseGenotype("1/1 111/101"), input.getIdeotype());
+        
+        GeneticMap map = input.getGeneticMap();
+        assertEquals(2, map.nrOfChromosomes());
+        assertEquals(0, map.getDistances()[0].length);
+        assertEquals(31.0, map.getDistances()[1][0]);
+        assertEquals(42.0, map.getDistances()[1][1]);
+        assertFalse(map.getDistanceMapFunction() instanceof KosambiMapFunction);
+        
+        // Kosambi map
+        input = parse(input("1/1 111/101", MAP, "0/0 101/010"), true);
+        assertTrue(input.getGeneticMap().getDistanceMapFunction() instanceof KosambiMapFunction);
+        
+    }
+    
+    @Test
+    public void testInvalidInput() throws Exception {
+        
+        System.out.println("\n### TEST PARSE INVALID INPUT ###\n");
+        
+        assertInvalid("malformed XML", input("1/1 111/101", MAP, "0/0 101/010").replace("</initial_plants>", ""));
+        assertInvalid("missing ideotype", input(null, MAP, "0/0 101/010"));
+        assertInvalid("missing genetic map", input("1/1 111/101", "", "0/0 101/010"));
+        assertInvalid("no initial plants", input("1/1 111/101", MAP));
+        assertInvalid("invalid target", input("1/1 111/101", MAP, "0/0 102/010"));
+        assertInvalid("three haplotypes", input("1/1 111/101", MAP, "0/0/1 101/010"));
+        assertInvalid("haplotype lengths differ", input("1/1 111/101", MAP, "0/0 101/01"));
+        assertInvalid("invalid distance", input("1/1 111/101", MAP.replace("42", "far"), "0/0 101/010"));
+        
+    }
+    
+    @Test
+    public void testFilteredInput() throws Exception {
+        
+        System.out.println("\n### TEST PARSE AND FILTER INPUT ###\n");
+        
+        String a = "1/1 111/000";
+        String b = "1/0 111/000";
+        String c = "1/1 000/000";
+        String d = "0/0 101/101";
+        GenestackerInput input = parse(input("1/1 111/111", MAP, a, b, a, d, c), false);
+        
+        // parser retains all plants, in order of appearance
+        List<Plant> plants = input.getInitialPlants();
+        assertEquals(5, plants.size());
+        assertEquals(plants.get(0), plants.get(2));
+        
+        // duplicate and dominated plants are removed by the initial plant filter (H0)
+        InitialPlantFilter filter = new InitialPlantFilter(new DefaultDuplicatePlantFilter(),
+                new DefaultPlantImprovement(new WeakGenotypeImprovement(input.getIdeotype())));
+        List<Plant> filtered = new ArrayList<>(filter.filter(plants));
+        assertEquals(2, filtered.size());
+        assertEquals(parseGenotype(a), filtered.get(0).getGenotype());
+        assertEquals(parseGenotype(d), filtered.get(1).getGenotype());
+        
+    }
+    
+}
@@ -0,0 +1,216 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import junit.framework.TestCase;
+import org.apache.commons.compress.archivers.ArchiveException;
+import org.junit.Test;
+import org.ugent.caagt.genestacker.DiploidChromosome;
+import org.ugent.caagt.genestacker.Genotype;
+import org.ugent.caagt.genestacker.Haplotype;
+import org.ugent.caagt.genestacker.Plant;
+import org.ugent.caagt.genestacker.SeedLot;
+import org.ugent.caagt.genestacker.search.CrossingScheme;
+import org.ugent.caagt.genestacker.search.CrossingSchemeDescriptor;
+import org.ugent.caagt.genestacker.search.DefaultPopulationSizeTools;
+import org.ugent.caagt.genestacker.search.DominatesRelation;
+import org.ugent.caagt.genestacker.search.ParetoFrontier;
+import org.ugent.caagt.genestacker.search.PlantNode;
+import org.ugent.caagt.genestacker.search.PopulationSizeTools;
+import org.ugent.caagt.genestacker.search.SeedLotNode;
+
+/**
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class IntermediateOutputWriterTest extends TestCase {
+
+    private final PopulationSizeTools popSizeTools = new DefaultPopulationSizeTools(0.9);
+
+    private File dir;
+    private File outputFile;
+    private RecordingZIPWriter zipWriter;
+    private IntermediateOutputWriter writer;
+
+    public IntermediateOutputWriterTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        dir = Files.createTempDirectory("genestacker-").toFile();
+        outputFile = new File(dir, "out.zip");
+        zipWriter = new RecordingZIPWriter();
+        // only write Graphviz sources, which does not require Graphviz to be installed
+        zipWriter.setRenderDiagrams(false);
+        writer = new IntermediateOutputWriter(outputFile.getPath(), GraphFileFormat.PDF, GraphColorScheme.COLORED, zipWriter);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        writer.close();
+        for(File f : dir.listFiles()){
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    /**
+     * ZIP writer that records which schemes are rendered and how many schemes are contained in each written
+     * package. Rendering can be blocked to simulate a slow package.
+     */
+    private static class RecordingZIPWriter extends ZIPWriter {
+
+        // rendered schemes
+        private final List<CrossingScheme> rendered = Collections.synchronizedList(new ArrayList<CrossingScheme>());
+        // number of schemes per written package
+        private final List<Integer> packages = Collections.synchronizedList(new ArrayList<Integer>());
+        // released when a package has been written
+        private final Semaphore written = new Semaphore(0);
+        // if set, rendering signals started and waits until released
+        private volatile CountDownLatch started, release;
+
+        private RecordingZIPWriter(){
+            super(1);
+        }
+
+        @Override
+        public SchemeFiles render(CrossingScheme s, CrossingSchemeGraphWriter graphWriter, CrossingSchemeXMLWriter xmlWriter,
+                                  ExecutorService renderPool) {
+            rendered.add(s);
+            if(release != null){
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex){
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return super.render(s, graphWriter, xmlWriter, renderPool);
+        }
+
+        @Override
+        public void writeZIP(List<SchemeFiles> files, GraphFileFormat format, File zipFile, String inZIPFolder)
+                throws IOException, ArchiveException {
+            super.writeZIP(files, format, zipFile, inZIPFolder);
+            packages.add(files.size());
+            written.release();
+        }
+
+    }
+
+    // single plant scheme with the given genotype
+    private CrossingScheme scheme(boolean[] hap1, boolean[] hap2) throws Exception {
+        Genotype g = new Genotype(Arrays.asList(new DiploidChromosome(new Haplotype(hap1), new Haplotype(hap2))));
+        return new CrossingScheme(popSizeTools, new PlantNode(new Plant(g), 0, new SeedLotNode(new SeedLot(g), 0)));
+    }
+
+    // frontier retaining all registered schemes
+    private ParetoFrontier frontier(CrossingScheme... schemes){
+        ParetoFrontier frontier = new ParetoFrontier(new DominatesRelation<CrossingSchemeDescriptor>() {
+            @Override
+            public boolean dominates(CrossingSchemeDescriptor o1, CrossingSchemeDescriptor o2) {
+                return false;
+            }
+        });
+        frontier.registerAll(Arrays.asList(schemes));
+        return frontier;
+    }
+
+    private List<String> entries() throws IOException {
+        List<String> names = new ArrayList<>();
+        try (ZipFile zip = new ZipFile(outputFile)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while(entries.hasMoreElements()){
+                names.add(entries.nextElement().getName());
+            }
+        }
+        return names;
+    }
+
+    @Test
+    public void testCoalesceUpdates() throws Exception {
+
+        System.out.println("\n### TEST COALESCE INTERMEDIATE OUTPUT UPDATES ###\n");
+
+        CrossingScheme s1 = scheme(new boolean[]{true, true}, new boolean[]{false, false});
+        CrossingScheme s2 = scheme(new boolean[]{true, false}, new boolean[]{false, true});
+        CrossingScheme s3 = scheme(new boolean[]{true, true}, new boolean[]{true, true});
+
+        // block first package while the frontier is updated several times
+        zipWriter.started = new CountDownLatch(1);
+        zipWriter.release = new CountDownLatch(1);
+        writer.update(frontier(s1));
+        assertTrue(zipWriter.started.await(10, TimeUnit.SECONDS));
+        writer.update(frontier(s1, s2));
+        writer.update(frontier(s1, s2, s3));
+        zipWriter.release.countDown();
+        writer.close();
+
+        // intermediate snapshot is skipped, only the most recent one is written after the first package
+        assertEquals(Arrays.asList(1, 3), zipWriter.packages);
+        assertEquals(3, zipWriter.rendered.size());
+        // final package contains XML and Graphviz source of all schemes (no diagrams)
+        assertEquals(Arrays.asList("out/scheme1.xml", "out/scheme1.graphviz",
+                                   "out/scheme2.xml", "out/scheme2.graphviz",
+                                   "out/scheme3.xml", "out/scheme3.graphviz"), entries());
+        // no temporary files are left behind
+        assertEquals(1, dir.listFiles().length);
+
+    }
+
+    @Test
+    public void testReuseUnchangedSchemes() throws Exception {
+
+        System.out.println("\n### TEST REUSE UNCHANGED SCHEMES IN INTERMEDIATE OUTPUT ###\n");
+
+        CrossingScheme s1 = scheme(new boolean[]{true, true}, new boolean[]{false, false});
+        CrossingScheme s2 = scheme(new boolean[]{true, false}, new boolean[]{false, true});
+        CrossingScheme s3 = scheme(new boolean[]{true, true}, new boolean[]{true, true});
+
+        writer.update(frontier(s1, s2));
+        assertTrue(zipWriter.written.tryAcquire(10, TimeUnit.SECONDS));
+        assertEquals(2, zipWriter.rendered.size());
+        // s2 is replaced by s3, s1 is retained
+        writer.update(frontier(s1, s3));
+        assertTrue(zipWriter.written.tryAcquire(10, TimeUnit.SECONDS));
+        writer.update(frontier(s1, s3));
+        writer.close();
+
+        assertEquals(Arrays.asList(2, 2, 2), zipWriter.packages);
+        // only s3 is rendered in addition to the schemes of the first package, equal scheme not rendered again
+        assertEquals(3, zipWriter.rendered.size());
+        assertTrue(zipWriter.rendered.contains(s3));
+        assertEquals(4, entries().size());
+
+    }
+
+}
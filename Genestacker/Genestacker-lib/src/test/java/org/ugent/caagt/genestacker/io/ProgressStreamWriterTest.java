@@ -0,0 +1,177 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.ugent.caagt.genestacker.DiploidChromosome;
+import org.ugent.caagt.genestacker.GeneticMap;
+import org.ugent.caagt.genestacker.Genotype;
+import org.ugent.caagt.genestacker.Haplotype;
+import org.ugent.caagt.genestacker.Plant;
+import org.ugent.caagt.genestacker.exceptions.GenestackerException;
+import org.ugent.caagt.genestacker.search.DefaultDominatesRelation;
+import org.ugent.caagt.genestacker.search.DefaultPopulationSizeTools;
+import org.ugent.caagt.genestacker.search.ParetoFrontier;
+import org.ugent.caagt.genestacker.search.bb.BranchAndBound;
+import org.ugent.caagt.genestacker.search.bb.DefaultSeedLotConstructor;
+import org.ugent.caagt.genestacker.search.bb.heuristics.Heuristic;
+import org.ugent.caagt.genestacker.search.bb.heuristics.Heuristics;
+import org.ugent.caagt.genestacker.search.bb.heuristics.OptimalSubschemeHeuristic;
+import org.ugent.caagt.genestacker.search.constraints.Constraint;
+import org.ugent.caagt.genestacker.search.constraints.MaxNumGenerations;
+import org.ugent.caagt.genestacker.util.GenestackerConstants;
+
+/**
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class ProgressStreamWriterTest extends TestCase {
+
+    private BranchAndBound engine;
+
+    public ProgressStreamWriterTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // three homozygous parents, each with one target
+        List<Plant> plants = new ArrayList<>();
+        plants.add(new Plant(homozygous(new boolean[]{true, false, false})));
+        plants.add(new Plant(homozygous(new boolean[]{false, true, false})));
+        plants.add(new Plant(homozygous(new boolean[]{false, false, true})));
+        Genotype ideotype = homozygous(new boolean[]{true, true, true});
+        GenestackerInput input = new GenestackerInput(plants, ideotype, new GeneticMap(new double[][]{{20.0, 30.0}}));
+        List<Heuristic> heur = new ArrayList<>();
+        heur.add(new OptimalSubschemeHeuristic(new DefaultDominatesRelation()));
+        List<Constraint> constraints = new ArrayList<>();
+        constraints.add(new MaxNumGenerations(4));
+        engine = new BranchAndBound(input, new DefaultPopulationSizeTools(0.9), constraints, null,
+                                    new Heuristics(heur), null, null, new DefaultSeedLotConstructor(input.getGeneticMap()));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    private Genotype homozygous(boolean[] targets) throws GenestackerException {
+        List<DiploidChromosome> chroms = new ArrayList<>();
+        chroms.add(new DiploidChromosome(new Haplotype(targets), new Haplotype(targets)));
+        return new Genotype(chroms);
+    }
+
+    @Test
+    public void testEvents() throws Exception {
+
+        System.out.println("\n### TEST PROGRESS STREAM EVENTS ###\n");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ProgressStreamWriter writer = new ProgressStreamWriter(engine, bytes, 10);
+        ParetoFrontier f = null;
+        for(int run=1; run<=2; run++){
+            f = engine.search(GenestackerConstants.NO_RUNTIME_LIMIT, 2);
+        }
+        writer.close();
+
+        String[] lines = bytes.toString("UTF-8").split("\n");
+        for(String line : lines){
+            assertTrue(line.startsWith("{\"event\":\"") && line.endsWith("}"));
+        }
+        // both runs are reported from start to end
+        assertEquals("{\"event\":\"started\",\"run\":1}", lines[0]);
+        assertTrue(lines[lines.length-1].startsWith("{\"event\":\"stopped\",\"run\":2,"));
+        int numStarted = 0, numStopped = 0, numFrontier = 0;
+        String lastProgress = null, lastFrontier = null;
+        for(String line : lines){
+            if(line.startsWith("{\"event\":\"started\"")){
+                numStarted++;
+            } else if(line.startsWith("{\"event\":\"stopped\"")){
+                numStopped++;
+            } else if(line.startsWith("{\"event\":\"frontier\"")){
+                numFrontier++;
+                lastFrontier = line;
+            } else if(line.startsWith("{\"event\":\"progress\"")){
+                lastProgress = line;
+            }
+        }
+        assertEquals(2, numStarted);
+        assertEquals(2, numStopped);
+        // final frontier is reported in each run
+        assertTrue(numFrontier >= 2);
+        assertEquals(f.getNumSchemes(), lastFrontier.split("\"generations\"").length - 1);
+        // final progress line reports final state of the second run
+        assertTrue(lastProgress.contains("\"run\":2"));
+        assertTrue(lastProgress.contains("\"queue_size\":0"));
+        assertTrue(lastProgress.contains("\"frontier_size\":" + f.getNumSchemes()));
+        assertTrue(lastProgress.contains("\"runtime_limit_ms\":null"));
+
+        // nothing is written after closing
+        int size = bytes.size();
+        engine.search(GenestackerConstants.NO_RUNTIME_LIMIT, 2);
+        assertEquals(size, bytes.size());
+
+    }
+
+    @Test
+    public void testCloseBlockedStream() throws Exception {
+
+        System.out.println("\n### TEST CLOSE BLOCKED PROGRESS STREAM ###\n");
+
+        // stream that blocks all writes (also when interrupted) until it is closed
+        final Object lock = new Object();
+        final boolean[] closed = new boolean[1];
+        OutputStream blocking = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                synchronized(lock){
+                    while(!closed[0]){
+                        try {
+                            lock.wait();
+                        } catch (InterruptedException ex){
+                            // ignore
+                        }
+                    }
+                }
+                throw new IOException("stream closed");
+            }
+            @Override
+            public void close(){
+                synchronized(lock){
+                    closed[0] = true;
+                    lock.notifyAll();
+                }
+            }
+        };
+        ProgressStreamWriter writer = new ProgressStreamWriter(engine, blocking, 10);
+        engine.search(GenestackerConstants.NO_RUNTIME_LIMIT, 2);
+        long start = System.currentTimeMillis();
+        writer.close();
+        // close does not hang on the blocked write, and the stream has been closed
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        synchronized(lock){
+            assertTrue(closed[0]);
+        }
+
+    }
+
+}
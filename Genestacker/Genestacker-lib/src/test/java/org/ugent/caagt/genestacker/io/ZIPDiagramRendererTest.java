@@ -0,0 +1,109 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.ZipFile;
+import junit.framework.TestCase;
+import org.apache.commons.compress.utils.IOUtils;
+import org.junit.Test;
+
+import static org.ugent.caagt.genestacker.io.ZIPWriterTest.*;
+
+/**
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class ZIPDiagramRendererTest extends TestCase {
+
+    private static final int NUM_SCHEMES = 3;
+
+    private File dir;
+    private File zip;
+
+    public ZIPDiagramRendererTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        dir = Files.createTempDirectory("genestacker-").toFile();
+        // package without diagrams
+        zip = new File(dir, "out.zip");
+        ZIPWriter writer = new ZIPWriter();
+        writer.setRenderDiagrams(false);
+        writer.createZIP(frontier(NUM_SCHEMES), GraphFileFormat.SVG, GraphColorScheme.COLORED, zip.getPath());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        for(File f : dir.listFiles()){
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    private static byte[] read(File zipFile, String name) throws IOException {
+        try (ZipFile z = new ZipFile(zipFile);
+                InputStream in = z.getInputStream(z.getEntry(name))) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+
+    @Test
+    public void testRenderPackage() throws Exception {
+
+        System.out.println("\n### TEST RENDER DIAGRAMS OF PACKAGE ###\n");
+
+        File rendered = new File(dir, "rendered.zip");
+        int numRendered = new ZIPDiagramRenderer(2).render(zip, rendered, GraphFileFormat.SVG);
+
+        // diagrams are inserted before the Graphviz sources, if Graphviz is installed
+        boolean graphviz = graphvizAvailable();
+        System.out.println("Graphviz available: " + graphviz);
+        assertEquals(graphviz ? NUM_SCHEMES : 0, numRendered);
+        assertEquals(expectedEntries("out", NUM_SCHEMES, GraphFileFormat.SVG, graphviz), entries(rendered));
+        // all other entries are copied unchanged
+        for(String name : entries(zip)){
+            assertTrue(Arrays.equals(read(zip, name), read(rendered, name)));
+        }
+        // input package is not modified
+        assertEquals(expectedEntries("out", NUM_SCHEMES, GraphFileFormat.SVG, false), entries(zip));
+
+        // existing diagrams are not rendered again
+        assertEquals(0, new ZIPDiagramRenderer(2).render(rendered, rendered, GraphFileFormat.SVG));
+        assertEquals(expectedEntries("out", NUM_SCHEMES, GraphFileFormat.SVG, graphviz), entries(rendered));
+
+    }
+
+    @Test
+    public void testRenderInPlace() throws Exception {
+
+        System.out.println("\n### TEST RENDER DIAGRAMS OF PACKAGE IN PLACE ###\n");
+
+        new ZIPDiagramRenderer().render(zip, zip, GraphFileFormat.SVG);
+        assertEquals(expectedEntries("out", NUM_SCHEMES, GraphFileFormat.SVG, graphvizAvailable()), entries(zip));
+        // no temporary files are left behind
+        assertEquals(1, dir.listFiles().length);
+
+    }
+
+}
@@ -0,0 +1,154 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.ugent.caagt.genestacker.DiploidChromosome;
+import org.ugent.caagt.genestacker.Genotype;
+import org.ugent.caagt.genestacker.Haplotype;
+import org.ugent.caagt.genestacker.Plant;
+import org.ugent.caagt.genestacker.SeedLot;
+import org.ugent.caagt.genestacker.exceptions.GenestackerException;
+import org.ugent.caagt.genestacker.search.CrossingScheme;
+import org.ugent.caagt.genestacker.search.CrossingSchemeDescriptor;
+import org.ugent.caagt.genestacker.search.DefaultPopulationSizeTools;
+import org.ugent.caagt.genestacker.search.DominatesRelation;
+import org.ugent.caagt.genestacker.search.ParetoFrontier;
+import org.ugent.caagt.genestacker.search.PlantNode;
+import org.ugent.caagt.genestacker.search.SeedLotNode;
+
+/**
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class ZIPWriterTest extends TestCase {
+
+    private File dir;
+
+    public ZIPWriterTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        dir = Files.createTempDirectory("genestacker-").toFile();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        for(File f : dir.listFiles()){
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    /**
+     * Check whether the configured DOT program can be executed.
+     */
+    static boolean graphvizAvailable() throws GenestackerException {
+        return new File(GenestackerResourceBundle.getConfig("dot.path")).canExecute();
+    }
+
+    /**
+     * Pareto frontier containing the given number of single plant schemes.
+     */
+    static ParetoFrontier frontier(int numSchemes) throws GenestackerException {
+        ParetoFrontier frontier = new ParetoFrontier(new DominatesRelation<CrossingSchemeDescriptor>() {
+            @Override
+            public boolean dominates(CrossingSchemeDescriptor o1, CrossingSchemeDescriptor o2) {
+                return false;
+            }
+        });
+        for(int i=0; i<numSchemes; i++){
+            boolean[] hap = new boolean[numSchemes];
+            hap[i] = true;
+            Genotype g = new Genotype(Arrays.asList(new DiploidChromosome(new Haplotype(hap), new Haplotype(hap))));
+            frontier.register(new CrossingScheme(new DefaultPopulationSizeTools(0.9),
+                                                 new PlantNode(new Plant(g), 0, new SeedLotNode(new SeedLot(g), 0))));
+        }
+        return frontier;
+    }
+
+    /**
+     * List the names of the entries of a ZIP file, in order.
+     */
+    static List<String> entries(File zipFile) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while(entries.hasMoreElements()){
+                names.add(entries.nextElement().getName());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Expected entries of a package with the given number of schemes, with or without diagrams.
+     */
+    static List<String> expectedEntries(String folder, int numSchemes, GraphFileFormat format, boolean diagrams){
+        List<String> names = new ArrayList<>();
+        for(int s=1; s<=numSchemes; s++){
+            names.add(folder + "/scheme" + s + ".xml");
+            if(diagrams){
+                names.add(folder + "/scheme" + s + "." + format);
+            }
+            names.add(folder + "/scheme" + s + ".graphviz");
+        }
+        return names;
+    }
+
+    @Test
+    public void testEntryOrderWithoutDiagrams() throws Exception {
+
+        System.out.println("\n### TEST ZIP ENTRY ORDER WITHOUT DIAGRAMS ###\n");
+
+        ZIPWriter writer = new ZIPWriter(2);
+        writer.setRenderDiagrams(false);
+        // extension is appended
+        writer.createZIP(frontier(3), GraphFileFormat.PDF, GraphColorScheme.COLORED, new File(dir, "out").getPath());
+        File zip = new File(dir, "out.zip");
+        assertEquals(expectedEntries("out", 3, GraphFileFormat.PDF, false), entries(zip));
+
+    }
+
+    @Test
+    public void testEntryOrderWithDiagrams() throws Exception {
+
+        System.out.println("\n### TEST ZIP ENTRY ORDER WITH DIAGRAMS ###\n");
+
+        ZIPWriter writer = new ZIPWriter(2);
+        File zip = new File(dir, "out.zip");
+        writer.createZIP(frontier(3), GraphFileFormat.SVG, GraphColorScheme.COLORED, zip.getPath());
+        // diagrams are only included if Graphviz is installed
+        boolean graphviz = graphvizAvailable();
+        System.out.println("Graphviz available: " + graphviz);
+        assertEquals(expectedEntries("out", 3, GraphFileFormat.SVG, graphviz), entries(zip));
+
+    }
+
+}
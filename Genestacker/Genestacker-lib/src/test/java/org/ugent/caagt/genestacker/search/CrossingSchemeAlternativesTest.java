@@ -0,0 +1,151 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.ugent.caagt.genestacker.DiploidChromosome;
+import org.ugent.caagt.genestacker.GeneticMap;
+import org.ugent.caagt.genestacker.Genotype;
+import org.ugent.caagt.genestacker.Haplotype;
+import org.ugent.caagt.genestacker.Plant;
+import org.ugent.caagt.genestacker.SeedLot;
+import org.ugent.caagt.genestacker.exceptions.GenestackerException;
+import org.ugent.caagt.genestacker.search.bb.DefaultSeedLotConstructor;
+import org.ugent.caagt.genestacker.search.bb.SeedLotConstructor;
+
+/**
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class CrossingSchemeAlternativesTest extends TestCase {
+
+    private PopulationSizeTools popSizeTools;
+    private SeedLotConstructor seedLotConstructor;
+
+    // heterozygous initial plant and homozygous target
+    private Genotype het, hom;
+
+    public CrossingSchemeAlternativesTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        popSizeTools = new DefaultPopulationSizeTools(0.9);
+        seedLotConstructor = new DefaultSeedLotConstructor(new GeneticMap(new double[][]{{20.0}}));
+        het = genotype(new boolean[]{true, true}, new boolean[]{false, false});
+        hom = genotype(new boolean[]{true, true}, new boolean[]{true, true});
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    private Genotype genotype(boolean[] hap1, boolean[] hap2) throws GenestackerException {
+        List<DiploidChromosome> chroms = new ArrayList<>();
+        chroms.add(new DiploidChromosome(new Haplotype(hap1), new Haplotype(hap2)));
+        return new Genotype(chroms);
+    }
+
+    // scheme consisting of the heterozygous initial plant only
+    private CrossingScheme initial(){
+        SeedLotNode sln = new SeedLotNode(new SeedLot(het), 0);
+        return new CrossingScheme(popSizeTools, new PlantNode(new Plant(het), 0, sln));
+    }
+
+    // extend scheme by selfing its final plant and growing the given genotype
+    private CrossingScheme self(CrossingScheme scheme, Genotype g) throws GenestackerException {
+        Genotype parent = scheme.getFinalPlantNode().getPlant().getGenotype();
+        SeedLot sl = seedLotConstructor.cross(parent, parent);
+        PlantNode selfed = scheme.getFinalPlantNode().deepUpwardsCopy();
+        SeedLotNode sln = new SeedLotNode(sl, scheme.getNumGenerations()+1, new SelfingNode(selfed));
+        return new CrossingScheme(popSizeTools, new PlantNode(new Plant(g), scheme.getNumGenerations()+1, sln));
+    }
+
+    // check reported bounds against a full scan of the current alternatives
+    private void assertBounds(CrossingSchemeAlternatives alts){
+        int minGen = Integer.MAX_VALUE, maxGen = 0;
+        long minPop = Long.MAX_VALUE, maxPop = 0;
+        double minLPA = Double.MAX_VALUE, maxLPA = 0;
+        for(CrossingScheme s : alts.getAlternatives()){
+            minGen = Math.min(minGen, s.getNumGenerations());
+            maxGen = Math.max(maxGen, s.getNumGenerations());
+            minPop = Math.min(minPop, s.getTotalPopulationSize());
+            maxPop = Math.max(maxPop, s.getTotalPopulationSize());
+            minLPA = Math.min(minLPA, s.getLinkagePhaseAmbiguity());
+            maxLPA = Math.max(maxLPA, s.getLinkagePhaseAmbiguity());
+        }
+        assertEquals(minGen, alts.getMinNumGen());
+        assertEquals(maxGen, alts.getMaxNumGen());
+        assertEquals(minPop, alts.getMinPopSize());
+        assertEquals(maxPop, alts.getMaxPopSize());
+        assertEquals(minLPA, alts.getMinLinkagePhaseAmbiguity());
+        assertEquals(maxLPA, alts.getMaxLinkagePhaseAmbiguity());
+    }
+
+    @Test
+    public void testBoundsAfterRemoval() throws GenestackerException {
+
+        System.out.println("\n### TEST BOUNDS AFTER REMOVAL ###\n");
+
+        // three ways to obtain the homozygous target
+        List<CrossingScheme> schemes = new ArrayList<>();
+        schemes.add(self(initial(), hom));
+        schemes.add(self(self(initial(), het), hom));
+        schemes.add(self(self(initial(), hom), hom));
+        CrossingSchemeAlternatives alts = new CrossingSchemeAlternatives(schemes);
+        assertBounds(alts);
+        assertEquals(1, alts.getMinNumGen());
+        assertEquals(2, alts.getMaxNumGen());
+
+        // remove alternatives one by one (last one first)
+        while(alts.nrOfAlternatives() > 1){
+            Iterator<CrossingScheme> it = alts.iterator();
+            CrossingScheme last = null;
+            while(it.hasNext()){
+                last = it.next();
+            }
+            it.remove();
+            assertFalse(alts.getAlternatives().contains(last));
+            assertBounds(alts);
+        }
+        assertEquals(1, alts.getMinNumGen());
+        assertEquals(1, alts.getMaxNumGen());
+
+    }
+
+    @Test
+    public void testUnmodifiableAlternatives() throws GenestackerException {
+
+        System.out.println("\n### TEST UNMODIFIABLE ALTERNATIVES ###\n");
+
+        CrossingSchemeAlternatives alts = new CrossingSchemeAlternatives(self(initial(), hom));
+        try {
+            alts.getAlternatives().clear();
+            fail("Alternatives should only be removed through the iterator.");
+        } catch (UnsupportedOperationException ex){
+            // expected
+        }
+        assertEquals(1, alts.nrOfAlternatives());
+
+    }
+
+}
@@ -22,6 +22,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import junit.framework.TestCase;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -43,6 +44,7 @@ import org.ugent.caagt.genestacker.io.GenestackerInput;
 import org.ugent.caagt.genestacker.search.bb.BranchAndBound;
 import org.ugent.caagt.genestacker.search.bb.BranchAndBoundSolutionManager;
 import org.ugent.caagt.genestacker.search.bb.DefaultSeedLotConstructor;
+import org.ugent.caagt.genestacker.search.bb.AlignmentBoundCache;
 import org.ugent.caagt.genestacker.search.bb.MergeFirstSchemeMerger;
 import org.ugent.caagt.genestacker.search.bb.PlantDescriptor;
 import org.ugent.caagt.genestacker.search.bb.SchemeMerger;
@@ -224,6 +226,14 @@ public class CrossingSchemeTest extends TestCase {
         // create copy of scheme s
         CrossingScheme schemeCopy = new CrossingScheme(scheme.getPopulationSizeTools(), G0.deepUpwardsCopy());
         schemeCopy.print();
+        
+        // copy should be equivalent and have the same fingerprint
+        assertEquals(scheme, schemeCopy);
+        assertEquals(scheme.getFingerprint(), schemeCopy.getFingerprint());
+        
+        // subscheme ending in F0 is different
+        CrossingScheme subscheme = new CrossingScheme(popSizeTools, F0.deepUpwardsCopy());
+        assertFalse(scheme.getFingerprint() == subscheme.getFingerprint());
     }
     
     @Test
@@ -714,6 +724,22 @@ public class CrossingSchemeTest extends TestCase {
         assertTrue(mergedIndividual.contains(sfinal_1));
         assertTrue(mergedIndividual.contains(sfinal_2));
         
+        // repeat with cached alignment bounds and a fork join pool: should yield the same alignments
+        AlignmentBoundCache boundCache = new AlignmentBoundCache();
+        ForkJoinPool pool = new ForkJoinPool(2);
+        merger = new MergeFirstSchemeMerger(new CrossingSchemeAlternatives(s1_1g_no_shift), new CrossingSchemeAlternatives(s2_2g),
+                                                                                        map, solManager, c4sl_2, pool, boundCache);
+        merged = merger.combineSchemes();
+        pool.shutdown();
+        mergedIndividual.clear();
+        for(CrossingSchemeAlternatives ca : merged){
+            mergedIndividual.addAll(ca.getAlternatives());
+        }
+        assertEquals(2, mergedIndividual.size());
+        assertTrue(mergedIndividual.contains(sfinal_1));
+        assertTrue(mergedIndividual.contains(sfinal_2));
+        assertTrue(boundCache.size() > 0);
+        
     }
     
     @Test
@@ -0,0 +1,130 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+/**
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class JfrSearchEventRecorderTest extends TestCase {
+
+    public JfrSearchEventRecorderTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        SearchEventRecorder.setRecorder(null);
+    }
+
+    // field values of the given event type
+    private static Object[] values(SearchEventType type){
+        Object[] values = new Object[type.getNumFields()];
+        for(int i=0; i<values.length; i++){
+            Class<?> t = type.getFieldType(i);
+            if(t == int.class){
+                values[i] = i;
+            } else if(t == long.class){
+                values[i] = (long) i;
+            } else if(t == double.class){
+                values[i] = (double) i;
+            } else if(t == boolean.class){
+                values[i] = i % 2 == 0;
+            } else {
+                fail("Unexpected field type " + t);
+            }
+        }
+        return values;
+    }
+
+    @Test
+    public void testWithoutJfr() throws Exception {
+
+        System.out.println("\n### TEST SEARCH EVENTS WITHOUT JFR ###\n");
+
+        // class loader of a Java version without the JFR event API
+        ClassLoader noJfr = new ClassLoader(JfrSearchEventRecorder.class.getClassLoader()) {
+            @Override
+            protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+                if(name.startsWith("jdk.jfr.")){
+                    throw new ClassNotFoundException(name);
+                }
+                return super.loadClass(name, resolve);
+            }
+        };
+        try {
+            new JfrSearchEventRecorder(noJfr);
+            fail("Recorder should not be created if the JFR event API is not available.");
+        } catch (ClassNotFoundException ex){
+            System.out.println("JFR not available: " + ex.getMessage());
+        }
+        // no recorder installed: events are not started
+        SearchEventRecorder.setRecorder(null);
+        for(SearchEventType type : SearchEventType.values()){
+            assertNull(SearchEventRecorder.begin(type));
+        }
+
+    }
+
+    @Test
+    public void testEvents() throws Exception {
+
+        System.out.println("\n### TEST JFR SEARCH EVENTS ###\n");
+
+        JfrSearchEventRecorder recorder;
+        Class<?> recordingClass;
+        try {
+            recorder = new JfrSearchEventRecorder();
+            recordingClass = Class.forName("jdk.jfr.Recording");
+        } catch (ReflectiveOperationException ex){
+            System.out.println("JFR not available on this Java version: " + ex.getMessage());
+            return;
+        }
+        SearchEventRecorder.setRecorder(recorder);
+
+        // not started while no recording is running
+        for(SearchEventType type : SearchEventType.values()){
+            assertNull(SearchEventRecorder.begin(type));
+        }
+
+        // enable all events in a recording
+        Object recording = recordingClass.newInstance();
+        try {
+            for(SearchEventType type : SearchEventType.values()){
+                recordingClass.getMethod("enable", String.class).invoke(recording, "org.ugent.caagt.genestacker." + type.getName());
+            }
+            recordingClass.getMethod("start").invoke(recording);
+            for(SearchEventType type : SearchEventType.values()){
+                SearchEvent event = SearchEventRecorder.begin(type);
+                assertNotNull(event);
+                event.commit(values(type));
+            }
+            recordingClass.getMethod("stop").invoke(recording);
+        } finally {
+            recordingClass.getMethod("close").invoke(recording);
+        }
+
+        // no longer started after the recording has stopped
+        for(SearchEventType type : SearchEventType.values()){
+            assertNull(SearchEventRecorder.begin(type));
+        }
+
+    }
+
+}
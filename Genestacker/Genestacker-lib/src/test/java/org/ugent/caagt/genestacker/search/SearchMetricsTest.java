@@ -0,0 +1,177 @@
+//  Copyright 2012 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search;
+
+import java.util.ArrayList;
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.ugent.caagt.genestacker.Plant;
+import org.ugent.caagt.genestacker.util.GenestackerConstants;
+
+/**
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class SearchMetricsTest extends TestCase {
+
+    public SearchMetricsTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    @Test
+    public void testCounters() throws InterruptedException {
+
+        System.out.println("\n### TEST SEARCH METRICS COUNTERS ###\n");
+
+        final SearchMetrics metrics = new SearchMetrics();
+        final int numThreads = 4;
+        final int increments = 10000;
+
+        // increment same counter concurrently
+        Thread[] threads = new Thread[numThreads];
+        for(int t=0; t<numThreads; t++){
+            threads[t] = new Thread(){
+                @Override
+                public void run(){
+                    for(int i=0; i<increments; i++){
+                        metrics.increment("test.counter");
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for(Thread t : threads){
+            t.join();
+        }
+        assertEquals(numThreads * increments, metrics.getCount("test.counter"));
+        assertEquals(0, metrics.getCount("test.unknown"));
+
+        // reset
+        metrics.reset();
+        assertEquals(0, metrics.getCount("test.counter"));
+        assertTrue(metrics.getCounts().isEmpty());
+
+    }
+
+    @Test
+    public void testDisabled() {
+
+        System.out.println("\n### TEST DISABLED SEARCH METRICS ###\n");
+
+        SearchMetrics metrics = new SearchMetrics();
+        metrics.increment("test.counter");
+        // updates are ignored while disabled
+        metrics.setEnabled(false);
+        assertEquals(0, metrics.startTime());
+        metrics.increment("test.counter");
+        metrics.add("test.counter", 5);
+        metrics.add("test.other", 5);
+        metrics.recordSince("test.timer", metrics.startTime());
+        assertEquals(1, metrics.getCount("test.counter"));
+        assertEquals(0, metrics.getCount("test.other"));
+        assertTrue(metrics.getTimers().isEmpty());
+        // enable again
+        metrics.setEnabled(true);
+        metrics.add("test.counter", 5);
+        metrics.recordSince("test.timer", metrics.startTime());
+        assertEquals(6, metrics.getCount("test.counter"));
+        assertEquals(1, metrics.getTimers().get("test.timer").getCount());
+
+    }
+
+    @Test
+    public void testListeners() throws Exception {
+
+        System.out.println("\n### TEST SEARCH METRICS LISTENERS ###\n");
+
+        final SearchMetrics[] received = new SearchMetrics[1];
+        SearchEngine engine = new SearchEngine(new ArrayList<Plant>(), null, null) {
+            @Override
+            protected ParetoFrontier runSearch(long runtimeLimit, int numThreads) {
+                metrics.increment("test.counter");
+                return null;
+            }
+        };
+        // plain search listeners are not required to handle metrics
+        engine.addSearchListener(new SearchListener() {
+            @Override
+            public void searchMessage(String message) {
+            }
+            @Override
+            public void searchStarted() {
+            }
+            @Override
+            public void searchStopped() {
+            }
+        });
+        engine.addSearchListener(new AbstractSearchListener() {
+            @Override
+            public void searchMetrics(SearchMetrics metrics) {
+                received[0] = metrics;
+            }
+        });
+        engine.search(GenestackerConstants.NO_RUNTIME_LIMIT, 1);
+        assertSame(engine.getMetrics(), received[0]);
+        assertEquals(1, received[0].getCount("test.counter"));
+
+    }
+
+    @Test
+    public void testHistogram() {
+
+        System.out.println("\n### TEST LATENCY HISTOGRAM ###\n");
+
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.getPercentile(50));
+
+        // record 1, 2, ..., 1000
+        for(int v=1; v<=1000; v++){
+            h.record(v);
+        }
+        assertEquals(1000, h.getCount());
+        assertEquals(500500, h.getTotal());
+        assertEquals(500.5, h.getMean(), 1e-9);
+        assertEquals(1000, h.getMax());
+
+        // percentiles are exact up to 1/16
+        long p50 = h.getPercentile(50);
+        assertTrue(p50 >= 500 && p50 <= 500 + 500/16);
+        long p99 = h.getPercentile(99);
+        assertTrue(p99 >= 990 && p99 <= 1000);
+        assertEquals(1000, h.getPercentile(100));
+        assertEquals(1, h.getPercentile(0));
+
+        // large values
+        h.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, h.getPercentile(100));
+
+        // reset
+        h.reset();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getMax());
+
+    }
+
+}
@@ -0,0 +1,92 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search.bb;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.ugent.caagt.genestacker.GeneticMap;
+import org.ugent.caagt.genestacker.Genotype;
+import org.ugent.caagt.genestacker.Plant;
+import org.ugent.caagt.genestacker.SeedLot;
+import org.ugent.caagt.genestacker.exceptions.GenestackerException;
+import org.ugent.caagt.genestacker.search.CrossingScheme;
+import org.ugent.caagt.genestacker.search.DefaultPopulationSizeTools;
+import org.ugent.caagt.genestacker.search.PlantNode;
+import org.ugent.caagt.genestacker.search.PopulationSizeTools;
+import org.ugent.caagt.genestacker.search.SeedLotNode;
+import org.ugent.caagt.genestacker.search.SelfingNode;
+import org.ugent.caagt.genestacker.search.bb.AlignmentBoundCache.BranchBound;
+
+import static org.ugent.caagt.genestacker.search.bb.SearchTestFixture.*;
+
+/**
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class AlignmentBoundCacheTest extends TestCase {
+
+    private final PopulationSizeTools popSizeTools = new DefaultPopulationSizeTools(0.9);
+    private SeedLotConstructor seedLotConstructor;
+
+    public AlignmentBoundCacheTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        seedLotConstructor = new DefaultSeedLotConstructor(new GeneticMap(new double[][]{{20.0}}));
+    }
+
+    // branch that selfs the given parent to obtain the given child
+    private CrossingScheme selfing(Genotype parent, Genotype child) throws GenestackerException {
+        PlantNode p = new PlantNode(new Plant(parent), 0, new SeedLotNode(new SeedLot(parent), 0));
+        SelfingNode s = new SelfingNode(p);
+        SeedLotNode sln = new SeedLotNode(seedLotConstructor.self(parent), 1, s);
+        return new CrossingScheme(popSizeTools, new PlantNode(new Plant(child), 1, sln));
+    }
+
+    @Test
+    public void testFingerprintCollision() throws GenestackerException {
+
+        System.out.println("\n### TEST ALIGNMENT BOUND CACHE FINGERPRINT COLLISION ###\n");
+
+        Genotype hom = homozygous(new boolean[]{true, true});
+        Genotype het = genotype(new boolean[]{true, true}, new boolean[]{false, false});
+        // reproduce homozygous plant (certain) and obtain homozygous plant from heterozygous parent
+        CrossingScheme a = selfing(hom, hom);
+        CrossingScheme b = selfing(het, hom);
+        BranchBound expectedA = AlignmentBoundCache.computeBound(a, 1);
+        BranchBound expectedB = AlignmentBoundCache.computeBound(b, 1);
+        assertTrue(expectedA.getMinPopSizeIncrease() < expectedB.getMinPopSizeIncrease());
+
+        // both branches are given the same fingerprint
+        long fingerprint = 42;
+        AlignmentBoundCache cache = new AlignmentBoundCache();
+        BranchBound boundA = cache.getBound(a, fingerprint, 1);
+        assertEquals(expectedA.getMinPopSizeIncrease(), boundA.getMinPopSizeIncrease());
+        // colliding branch does not get the bound of the cached branch
+        BranchBound boundB = cache.getBound(b, fingerprint, 1);
+        assertEquals(expectedB.getMinPopSizeIncrease(), boundB.getMinPopSizeIncrease());
+        assertEquals(expectedB.getBestCaseLPAIncrease(), boundB.getBestCaseLPAIncrease());
+        // cached bound is still used for the original branch and for equal branches
+        assertSame(boundA, cache.getBound(a, fingerprint, 1));
+        CrossingScheme copy = new CrossingScheme(popSizeTools, a.getFinalPlantNode().deepUpwardsCopy());
+        assertSame(boundA, cache.getBound(copy, fingerprint, 1));
+        assertEquals(1, cache.size());
+
+    }
+
+}
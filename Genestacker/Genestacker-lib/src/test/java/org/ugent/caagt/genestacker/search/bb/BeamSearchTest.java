@@ -0,0 +1,78 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search.bb;
+
+import static org.ugent.caagt.genestacker.search.bb.SearchTestFixture.*;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.ugent.caagt.genestacker.exceptions.GenestackerException;
+import org.ugent.caagt.genestacker.io.GenestackerInput;
+import org.ugent.caagt.genestacker.search.CrossingScheme;
+import org.ugent.caagt.genestacker.search.ParetoFrontier;
+import org.ugent.caagt.genestacker.util.GenestackerConstants;
+
+/**
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class BeamSearchTest extends TestCase {
+
+    private GenestackerInput input;
+
+    public BeamSearchTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        input = threeDonors();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    @Test
+    public void testBeamSearch() throws GenestackerException {
+
+        System.out.println("\n### TEST BEAM SEARCH ###\n");
+
+        // no solutions with less than 3 generations
+        for(int maxGen = 3; maxGen <= 5; maxGen++){
+            ParetoFrontier expected = createEngine(input, maxGenerations(maxGen)).search(GenestackerConstants.NO_RUNTIME_LIMIT, 2);
+            for(int beamWidth : new int[]{1, 2, BeamSearch.DEFAULT_BEAM_WIDTH}){
+                BeamSearch engine = createBeamSearch(input, maxGenerations(maxGen), beamWidth);
+                ParetoFrontier f = engine.search(GenestackerConstants.NO_RUNTIME_LIMIT, 2);
+                System.out.println("max gen = " + maxGen + ", beam width = " + beamWidth + ": " + costs(f) + " (B&B: " + costs(expected) + ")");
+                // at least one solution found
+                assertTrue(f.getNumSchemes() > 0);
+                assertTrue(engine.getMetrics().getCount("beam.steps") > 0);
+                // constraints satisfied
+                for(CrossingScheme s : f.getFrontier()){
+                    assertTrue(s.getNumGenerations() <= maxGen);
+                }
+                // wide beam is exhaustive for this small instance
+                if(beamWidth == BeamSearch.DEFAULT_BEAM_WIDTH){
+                    assertEquals(costs(expected), costs(f));
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,105 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search.bb;
+
+import static org.ugent.caagt.genestacker.search.bb.SearchTestFixture.*;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.ugent.caagt.genestacker.Genotype;
+import org.ugent.caagt.genestacker.exceptions.GenestackerException;
+import org.ugent.caagt.genestacker.io.GenestackerInput;
+import org.ugent.caagt.genestacker.search.ParetoFrontier;
+import org.ugent.caagt.genestacker.util.GenestackerConstants;
+
+/**
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class BranchAndBoundAnytimeTest extends TestCase {
+
+    private GenestackerInput input;
+
+    public BranchAndBoundAnytimeTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        input = threeDonors();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    @Test
+    public void testIdeotypeDistance() throws GenestackerException {
+
+        System.out.println("\n### TEST IDEOTYPE DISTANCE ###\n");
+
+        IdeotypeDistanceComparator comp = new IdeotypeDistanceComparator(input.getIdeotype());
+        boolean[] h111 = {true, true, true};
+        boolean[] h110 = {true, true, false};
+        boolean[] h100 = {true, false, false};
+        boolean[] h011 = {false, true, true};
+        boolean[] h000 = {false, false, false};
+
+        assertEquals(0, comp.distance(input.getIdeotype()));
+        assertEquals(0, comp.haplotypeDistance(input.getIdeotype()));
+        // same number of targets, different linkage
+        Genotype coupling = genotype(h111, h000);
+        Genotype repulsion = genotype(h100, h011);
+        assertEquals(3, comp.distance(coupling));
+        assertEquals(3, comp.distance(repulsion));
+        assertEquals(0, comp.haplotypeDistance(coupling));
+        assertEquals(1, comp.haplotypeDistance(repulsion));
+        // haplotypes are matched with those of the ideotype
+        assertEquals(1, comp.distance(genotype(h110, h111)));
+        assertEquals(1, comp.distance(genotype(h111, h110)));
+
+    }
+
+    @Test
+    public void testAnytimeMode() throws GenestackerException {
+
+        System.out.println("\n### TEST ANYTIME MODE ###\n");
+
+        for(int maxGen = 2; maxGen <= 4; maxGen++){
+            // complete search yields same frontier as without anytime mode
+            BranchAndBound engine = createEngine(input, maxGenerations(maxGen));
+            ParetoFrontier expected = engine.search(GenestackerConstants.NO_RUNTIME_LIMIT, 2);
+            engine = createEngine(input, maxGenerations(maxGen));
+            engine.enableAnytimeMode(BranchAndBound.DEFAULT_ANYTIME_BEAM_WIDTH);
+            ParetoFrontier f = engine.search(GenestackerConstants.NO_RUNTIME_LIMIT, 2);
+            System.out.println("max gen = " + maxGen + ": " + costs(f));
+            assertEquals(costs(expected), costs(f));
+            assertTrue(engine.getMetrics().getCount("bb.anytime.steps") > 0);
+        }
+
+        // narrow beam
+        BranchAndBound engine = createEngine(input, maxGenerations(3));
+        ParetoFrontier expected = engine.search(GenestackerConstants.NO_RUNTIME_LIMIT, 2);
+        engine = createEngine(input, maxGenerations(3));
+        engine.enableAnytimeMode(1);
+        ParetoFrontier f = engine.search(GenestackerConstants.NO_RUNTIME_LIMIT, 2);
+        System.out.println("beam width 1: " + costs(f));
+        assertEquals(costs(expected), costs(f));
+
+    }
+
+}
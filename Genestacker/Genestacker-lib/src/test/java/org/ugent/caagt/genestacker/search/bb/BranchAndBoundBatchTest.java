@@ -0,0 +1,140 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search.bb;
+
+import static org.ugent.caagt.genestacker.search.bb.SearchTestFixture.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.ugent.caagt.genestacker.DiploidChromosome;
+import org.ugent.caagt.genestacker.GeneticMap;
+import org.ugent.caagt.genestacker.Genotype;
+import org.ugent.caagt.genestacker.Haplotype;
+import org.ugent.caagt.genestacker.SeedLot;
+import org.ugent.caagt.genestacker.exceptions.GenestackerException;
+import org.ugent.caagt.genestacker.exceptions.GenotypeException;
+import org.ugent.caagt.genestacker.io.GenestackerInput;
+import org.ugent.caagt.genestacker.search.ParetoFrontier;
+import org.ugent.caagt.genestacker.util.GenestackerConstants;
+
+/**
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class BranchAndBoundBatchTest extends TestCase {
+
+    public BranchAndBoundBatchTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    @Test
+    public void testDistributeThreads() {
+
+        System.out.println("\n### TEST DISTRIBUTE THREADS ###\n");
+
+        // proportional to remaining work
+        int[] threads = BranchAndBoundBatch.distributeThreads(new long[]{300, 100}, 10);
+        System.out.println(Arrays.toString(threads));
+        assertTrue(Arrays.equals(new int[]{7, 3}, threads));
+
+        // every search receives at least one thread
+        threads = BranchAndBoundBatch.distributeThreads(new long[]{1000, 0, 0}, 4);
+        assertTrue(Arrays.equals(new int[]{2, 1, 1}, threads));
+        threads = BranchAndBoundBatch.distributeThreads(new long[]{5, 5, 5}, 2);
+        assertTrue(Arrays.equals(new int[]{1, 1, 1}, threads));
+
+        // no remaining work: divide equally
+        threads = BranchAndBoundBatch.distributeThreads(new long[]{0, 0}, 5);
+        assertEquals(5, threads[0] + threads[1]);
+        assertTrue(Math.abs(threads[0] - threads[1]) <= 1);
+
+        // all threads are assigned (largest remainder)
+        threads = BranchAndBoundBatch.distributeThreads(new long[]{1, 1, 1}, 8);
+        assertEquals(8, threads[0] + threads[1] + threads[2]);
+
+    }
+
+    @Test
+    public void testSharedUnfilteredSeedLots() throws GenotypeException {
+
+        System.out.println("\n### TEST SHARED UNFILTERED SEED LOTS ###\n");
+
+        Haplotype h1 = new Haplotype(new boolean[]{true, false});
+        Haplotype h2 = new Haplotype(new boolean[]{false, true});
+        List<DiploidChromosome> chroms = new ArrayList<>();
+        chroms.add(new DiploidChromosome(h1, h2));
+        Genotype g = new Genotype(chroms);
+
+        GeneticMapCache cache = new GeneticMapCache();
+        GeneticMap map = cache.getMap(new GeneticMap(new double[][]{{20.0}}));
+        SeedLot sl = new DefaultSeedLotConstructor(map, cache.getGameteCache(map)).cross(g, g);
+        cache.getSeedLotCache(map).cache(g, g, sl);
+        int n = sl.nrOfGenotypes();
+
+        // filtering a copy does not affect the shared seed lot
+        SeedLot copy = cache.getSeedLotCache(map).getCachedSeedLot(g, g).copy();
+        assertEquals(n, copy.nrOfGenotypes());
+        assertTrue(copy.filterGenotype(g));
+        assertEquals(n-1, copy.nrOfGenotypes());
+        assertFalse(copy.contains(g));
+        assertEquals(n, sl.nrOfGenotypes());
+        assertTrue(sl.contains(g));
+        assertEquals(sl.getGenotypeGroup(g.getAllelicFrequencies()).getProbabilityOfGenotypeWithArbitraryLinkagePhase(),
+                     copy.getGenotypeGroup(g.getAllelicFrequencies()).getProbabilityOfGenotypeWithArbitraryLinkagePhase());
+
+    }
+
+    @Test
+    public void testRunBatch() throws GenestackerException {
+
+        System.out.println("\n### TEST RUN BATCH ###\n");
+
+        GenestackerInput input = threeDonors();
+        int[] maxGens = {2, 3, 4};
+        BranchAndBoundBatch batch = new BranchAndBoundBatch(2);
+        for(int maxGen : maxGens){
+            batch.addSearch(createEngine(input, maxGenerations(maxGen)), GenestackerConstants.NO_RUNTIME_LIMIT);
+        }
+        batch.getSearches().get(0).setNumCrossWorkers(5);
+        List<ParetoFrontier> frontiers = batch.run();
+
+        for(int i=0; i<maxGens.length; i++){
+            // same result as a standalone search
+            ParetoFrontier expected = createEngine(input, maxGenerations(maxGens[i])).search(GenestackerConstants.NO_RUNTIME_LIMIT, 2);
+            System.out.println("max gen = " + maxGens[i] + ": " + costs(frontiers.get(i)));
+            assertEquals(costs(expected), costs(frontiers.get(i)));
+            // settings changed by the batch are restored
+            BranchAndBound engine = batch.getSearches().get(i);
+            assertEquals(i == 0 ? 5 : Integer.MAX_VALUE, engine.getNumCrossWorkers());
+            assertNull(engine.getSharedExtensionPool());
+            assertNull(engine.getSharedMergePool());
+        }
+
+    }
+
+}
@@ -0,0 +1,90 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search.bb;
+
+import static org.ugent.caagt.genestacker.search.bb.SearchTestFixture.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.ugent.caagt.genestacker.exceptions.GenestackerException;
+import org.ugent.caagt.genestacker.io.GenestackerInput;
+import org.ugent.caagt.genestacker.search.DefaultPopulationSizeTools;
+import org.ugent.caagt.genestacker.search.ParetoFrontier;
+import org.ugent.caagt.genestacker.search.constraints.Constraint;
+import org.ugent.caagt.genestacker.search.constraints.MaxPopulationSizePerGeneration;
+import org.ugent.caagt.genestacker.util.GenestackerConstants;
+
+/**
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class BranchAndBoundSessionTest extends TestCase {
+
+    private GenestackerInput input;
+
+    public BranchAndBoundSessionTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        input = threeDonors();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    private List<Constraint> constraints(int maxGen, int maxPopSizePerGen){
+        List<Constraint> constraints = maxGenerations(maxGen);
+        if(maxPopSizePerGen > 0){
+            constraints.add(new MaxPopulationSizePerGeneration(maxPopSizePerGen));
+        }
+        return constraints;
+    }
+
+    @Test
+    public void testConstraintSweep() throws GenestackerException {
+
+        System.out.println("\n### TEST CONSTRAINT SWEEP ###\n");
+
+        BranchAndBoundSession session = new BranchAndBoundSession(createEngine(input, new ArrayList<Constraint>()));
+        double[] successProbs = {0.9, 0.95};
+        int[] maxPopSizes = {0, 100};
+        int[] maxGens = {4, 3, 2};
+        for(double p : successProbs){
+            for(int maxPop : maxPopSizes){
+                for(int maxGen : maxGens){
+                    // run in session
+                    ParetoFrontier f = session.search(constraints(maxGen, maxPop), new DefaultPopulationSizeTools(p),
+                                                      GenestackerConstants.NO_RUNTIME_LIMIT, 2);
+                    // run with fresh engine
+                    BranchAndBound engine = createEngine(input, new ArrayList<Constraint>());
+                    engine.setConstraints(constraints(maxGen, maxPop));
+                    engine.setPopulationSizeTools(new DefaultPopulationSizeTools(p));
+                    ParetoFrontier expected = engine.search(GenestackerConstants.NO_RUNTIME_LIMIT, 2);
+                    System.out.println("p = " + p + ", max pop = " + maxPop + ", max gen = " + maxGen + ": " + costs(f));
+                    assertEquals(costs(expected), costs(f));
+                }
+            }
+        }
+
+    }
+
+}
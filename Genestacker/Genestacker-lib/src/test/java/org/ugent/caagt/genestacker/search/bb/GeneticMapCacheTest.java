@@ -0,0 +1,161 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search.bb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.ugent.caagt.genestacker.GeneticMap;
+import org.ugent.caagt.genestacker.Genotype;
+import org.ugent.caagt.genestacker.Haplotype;
+import org.ugent.caagt.genestacker.KosambiMapFunction;
+import org.ugent.caagt.genestacker.SeedLot;
+import org.ugent.caagt.genestacker.search.SeedLotCache;
+
+import static org.ugent.caagt.genestacker.search.bb.SearchTestFixture.*;
+
+/**
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class GeneticMapCacheTest extends TestCase {
+
+    public GeneticMapCacheTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    @Test
+    public void testSharedMaps() {
+
+        System.out.println("\n### TEST SHARED GENETIC MAPS ###\n");
+
+        GeneticMapCache cache = new GeneticMapCache(2, 10);
+
+        GeneticMap map1 = new GeneticMap(new double[][]{{10.0, 20.0}, {}});
+        GeneticMap map1b = new GeneticMap(new double[][]{{10.0, 20.0}, {}});
+        GeneticMap map1k = new GeneticMap(new double[][]{{10.0, 20.0}, {}}, new KosambiMapFunction());
+        GeneticMap map2 = new GeneticMap(new double[][]{{5.0}});
+
+        // equal maps share the same instance and gametes
+        assertSame(map1, cache.getMap(map1));
+        assertSame(map1, cache.getMap(map1b));
+        assertSame(cache.getGameteCache(map1), cache.getGameteCache(map1b));
+        // different map function
+        assertSame(map1k, cache.getMap(map1k));
+        assertNotSame(cache.getGameteCache(map1), cache.getGameteCache(map1k));
+        assertEquals(2, cache.getNumMaps());
+
+        // least recently used map (map1) is discarded
+        cache.getMap(map2);
+        assertEquals(2, cache.getNumMaps());
+        assertSame(map1b, cache.getMap(map1b));
+        assertSame(map2, cache.getMap(map2));
+
+    }
+
+    @Test
+    public void testFullCachesReplaced() throws Exception {
+
+        System.out.println("\n### TEST FULL SHARED CACHES REPLACED ###\n");
+
+        GeneticMapCache cache = new GeneticMapCache(2, 1, 1);
+        GeneticMap map = cache.getMap(new GeneticMap(new double[][]{{10.0}}));
+        Genotype g1 = homozygous(new boolean[]{true, false});
+        Genotype g2 = homozygous(new boolean[]{false, true});
+
+        // seed lots: full cache held by a running search is replaced, not cleared
+        SeedLotCache seedLots = cache.getSeedLotCache(map);
+        seedLots.cache(g1, g1, new SeedLot(g1));
+        seedLots.cache(g2, g2, new SeedLot(g2));
+        SeedLotCache replaced = cache.getSeedLotCache(map);
+        assertNotSame(seedLots, replaced);
+        assertEquals(0, replaced.size());
+        assertEquals(2, seedLots.size());
+        assertSame(replaced, cache.getSeedLotCache(map));
+
+        // gametes
+        Map<Genotype, List<Map<Haplotype, Double>>> gametes = cache.getGameteCache(map);
+        gametes.put(g1, new ArrayList<Map<Haplotype, Double>>());
+        gametes.put(g2, new ArrayList<Map<Haplotype, Double>>());
+        Map<Genotype, List<Map<Haplotype, Double>>> replacedGametes = cache.getGameteCache(map);
+        assertNotSame(gametes, replacedGametes);
+        assertTrue(replacedGametes.isEmpty());
+        assertEquals(2, gametes.size());
+
+    }
+
+    @Test
+    public void testConcurrentSeedLotCache() throws Exception {
+
+        System.out.println("\n### TEST CONCURRENT SEED LOT CACHE ###\n");
+
+        final SeedLotCache seedLots = new SeedLotCache();
+        final List<Genotype> genotypes = new ArrayList<>();
+        for(int i=0; i<8; i++){
+            genotypes.add(homozygous(new boolean[]{(i & 1) != 0, (i & 2) != 0, (i & 4) != 0}));
+        }
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        final long stop = System.currentTimeMillis() + 500;
+        List<Thread> threads = new ArrayList<>();
+        for(int t=0; t<4; t++){
+            final boolean clearing = t == 0;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        int i = 0;
+                        while(System.currentTimeMillis() < stop){
+                            if(clearing){
+                                seedLots.clear();
+                            } else {
+                                Genotype g1 = genotypes.get(i % genotypes.size());
+                                Genotype g2 = genotypes.get((i/genotypes.size()) % genotypes.size());
+                                // stored seed lot or previously cached one is returned
+                                SeedLot sl = seedLots.cache(g1, g2, new SeedLot(g1));
+                                assertNotNull(sl);
+                                seedLots.getCachedSeedLot(g2, g1);
+                            }
+                            i++;
+                        }
+                    } catch (Throwable ex){
+                        errors.add(ex);
+                    }
+                }
+            }));
+        }
+        for(Thread t : threads){
+            t.start();
+        }
+        for(Thread t : threads){
+            t.join();
+        }
+        assertEquals(Collections.emptyList(), errors);
+
+    }
+
+}
@@ -0,0 +1,72 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search.bb;
+
+import static org.ugent.caagt.genestacker.search.bb.SearchTestFixture.*;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.ugent.caagt.genestacker.exceptions.GenestackerException;
+import org.ugent.caagt.genestacker.io.GenestackerInput;
+import org.ugent.caagt.genestacker.search.ParetoFrontier;
+import org.ugent.caagt.genestacker.search.constraints.MaxNumGenerations;
+import org.ugent.caagt.genestacker.util.GenestackerConstants;
+
+/**
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class IterativeDeepeningTest extends TestCase {
+
+    private GenestackerInput input;
+
+    public IterativeDeepeningTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        input = threeDonors();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    @Test
+    public void testIterativeDeepening() throws GenestackerException {
+
+        System.out.println("\n### TEST ITERATIVE DEEPENING ###\n");
+
+        for(int maxGen = 1; maxGen <= 5; maxGen++){
+            // run with fresh engine
+            BranchAndBound engine = createEngine(input, maxGenerations(maxGen));
+            ParetoFrontier expected = engine.search(GenestackerConstants.NO_RUNTIME_LIMIT, 2);
+            // iterative deepening
+            engine = createEngine(input, maxGenerations(maxGen));
+            IterativeDeepening id = new IterativeDeepening(engine, 1, maxGen);
+            ParetoFrontier f = id.search(GenestackerConstants.NO_RUNTIME_LIMIT, 2);
+            System.out.println("max gen = " + maxGen + ": " + costs(f));
+            assertEquals(costs(expected), costs(f));
+            assertEquals(maxGen, id.getLastNumGen());
+            // original constraints are restored
+            assertEquals(maxGen, ((MaxNumGenerations) engine.getConstraints().get(0)).getMaxNumGenerations());
+        }
+
+    }
+
+}
@@ -144,6 +144,7 @@ public class OptimalSeedLotHeuristicTest extends TestCase {
         /******************/
         
         assertFalse(heur.pruneCurrentScheme(scheme));
+        assertFalse(heur.pruneQueueScheme(scheme));
         
         /***************/
         /* TEST CASE 2 */
@@ -162,6 +163,27 @@ public class OptimalSeedLotHeuristicTest extends TestCase {
         /******************/
         
         assertFalse(heur.pruneCurrentScheme(scheme));
+        assertFalse(heur.pruneQueueScheme(scheme));
+        
+        /***************/
+        /* TEST CASE 3 */
+        /***************/
+        
+        // grow plant p3 in generation 2 from the seed lot obtained by crossing p3 with p1,
+        // although p3 can be obtained with certainty from seed lot s3 which is also available
+        CrossingNode cr3 = new CrossingNode(pn3, pn4);
+        SeedLotNode sln5 = new SeedLotNode(s4, 2, cr3);
+        PlantNode pn6 = new PlantNode(p3, 2, sln5);
+        
+        // create scheme
+        scheme = new CrossingScheme(popSizeTools, pn6);
+        scheme.print();
+        
+        /******************/
+        /* TEST HEURISTIC */
+        /******************/
+        
+        assertTrue(heur.pruneQueueScheme(scheme));
                 
     }
 
@@ -0,0 +1,101 @@
+//  Copyright 2012 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search.bb;
+
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.ugent.caagt.genestacker.Plant;
+import org.ugent.caagt.genestacker.search.bb.heuristics.Heuristic;
+import org.ugent.caagt.genestacker.search.bb.heuristics.Heuristics;
+import org.ugent.caagt.genestacker.search.bb.heuristics.ProfilingHeuristics;
+import org.ugent.caagt.genestacker.search.bb.heuristics.ProfilingHeuristics.Hook;
+
+/**
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class ProfilingHeuristicsTest extends TestCase {
+
+    public ProfilingHeuristicsTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    @Test
+    public void testProfile() {
+
+        System.out.println("\n### TEST PROFILING HEURISTICS ###\n");
+
+        // slow heuristic which prunes odd generations
+        Heuristic slow = new Heuristic(){
+            @Override
+            public boolean pruneGrowPlantInGeneration(Plant p, int generation){
+                long start = System.nanoTime();
+                while(System.nanoTime() - start < 20000){
+                    // busy wait
+                }
+                return generation % 2 == 1;
+            }
+        };
+        // fast heuristic which prunes all generations divisible by 3
+        Heuristic fast = new Heuristic(){
+            @Override
+            public boolean pruneGrowPlantInGeneration(Plant p, int generation){
+                return generation % 3 == 0;
+            }
+        };
+        List<Heuristic> list = new ArrayList<>();
+        list.add(slow);
+        list.add(fast);
+        Heuristics plain = new Heuristics(new ArrayList<>(list));
+        ProfilingHeuristics profiling = new ProfilingHeuristics(new ArrayList<>(list));
+
+        // results should be identical to those of plain heuristics
+        int n = 20000;
+        for(int g=0; g<n; g++){
+            assertEquals(plain.pruneGrowPlantInGeneration(null, g), profiling.pruneGrowPlantInGeneration(null, g));
+        }
+
+        System.out.println(profiling.formatProfile());
+
+        // fast heuristic should now be applied first
+        List<Heuristic> order = profiling.getOrder(Hook.GROW_IN_GENERATION);
+        assertEquals(fast, order.get(0));
+        assertEquals(slow, order.get(1));
+
+        // removing a heuristic resets the order
+        profiling.removeHeuristic(slow);
+        order = profiling.getOrder(Hook.GROW_IN_GENERATION);
+        assertEquals(1, order.size());
+        assertEquals(fast, order.get(0));
+
+        // hooks with side effects are never reordered
+        assertFalse(Hook.QUEUE.isReorderable());
+        assertFalse(Hook.DEQUEUE.isReorderable());
+
+    }
+
+}
@@ -0,0 +1,133 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+
+package org.ugent.caagt.genestacker.search.bb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.ugent.caagt.genestacker.DiploidChromosome;
+import org.ugent.caagt.genestacker.GeneticMap;
+import org.ugent.caagt.genestacker.Genotype;
+import org.ugent.caagt.genestacker.Haplotype;
+import org.ugent.caagt.genestacker.Plant;
+import org.ugent.caagt.genestacker.exceptions.GenestackerException;
+import org.ugent.caagt.genestacker.io.GenestackerInput;
+import org.ugent.caagt.genestacker.search.CrossingScheme;
+import org.ugent.caagt.genestacker.search.DefaultDominatesRelation;
+import org.ugent.caagt.genestacker.search.DefaultPopulationSizeTools;
+import org.ugent.caagt.genestacker.search.ParetoFrontier;
+import org.ugent.caagt.genestacker.search.bb.heuristics.Heuristic;
+import org.ugent.caagt.genestacker.search.bb.heuristics.Heuristics;
+import org.ugent.caagt.genestacker.search.bb.heuristics.OptimalSubschemeHeuristic;
+import org.ugent.caagt.genestacker.search.constraints.Constraint;
+import org.ugent.caagt.genestacker.search.constraints.MaxNumGenerations;
+
+/**
+ * Shared input, engines and tools used by the search engine tests. Frontiers are compared through
+ * their sorted costs, as the exact schemes may differ when equivalent solutions are found in a
+ * different order.
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+final class SearchTestFixture {
+
+    private SearchTestFixture(){
+    }
+
+    /**
+     * Create a genotype with a single chromosome consisting of the given haplotypes.
+     */
+    static Genotype genotype(boolean[] hap1, boolean[] hap2) throws GenestackerException {
+        List<DiploidChromosome> chroms = new ArrayList<>();
+        chroms.add(new DiploidChromosome(new Haplotype(hap1), new Haplotype(hap2)));
+        return new Genotype(chroms);
+    }
+
+    /**
+     * Create a homozygous genotype with a single chromosome.
+     */
+    static Genotype homozygous(boolean[] targets) throws GenestackerException {
+        return genotype(targets, targets);
+    }
+
+    /**
+     * Create an input with three homozygous parents, each with one of three targets on a single chromosome,
+     * and a homozygous ideotype.
+     */
+    static GenestackerInput threeDonors() throws GenestackerException {
+        List<Plant> plants = new ArrayList<>();
+        plants.add(new Plant(homozygous(new boolean[]{true, false, false})));
+        plants.add(new Plant(homozygous(new boolean[]{false, true, false})));
+        plants.add(new Plant(homozygous(new boolean[]{false, false, true})));
+        return createInput(plants);
+    }
+
+    /**
+     * Create an input with the given initial plants and the homozygous ideotype of {@link #threeDonors()}.
+     */
+    static GenestackerInput createInput(List<Plant> plants) throws GenestackerException {
+        Genotype ideotype = homozygous(new boolean[]{true, true, true});
+        return new GenestackerInput(plants, ideotype, new GeneticMap(new double[][]{{20.0, 30.0}}));
+    }
+
+    /**
+     * Create a list containing a single constraint on the number of generations.
+     */
+    static List<Constraint> maxGenerations(int maxGen){
+        List<Constraint> constraints = new ArrayList<>();
+        constraints.add(new MaxNumGenerations(maxGen));
+        return constraints;
+    }
+
+    /**
+     * Create the heuristics used by all engines (optimal subscheme heuristic only).
+     */
+    static Heuristics heuristics(){
+        List<Heuristic> heur = new ArrayList<>();
+        heur.add(new OptimalSubschemeHeuristic(new DefaultDominatesRelation()));
+        return new Heuristics(heur);
+    }
+
+    /**
+     * Create a branch and bound engine with success probability 0.9 and the given constraints.
+     */
+    static BranchAndBound createEngine(GenestackerInput input, List<Constraint> constraints){
+        return new BranchAndBound(input, new DefaultPopulationSizeTools(0.9), constraints, null,
+                                  heuristics(), null, null, new DefaultSeedLotConstructor(input.getGeneticMap()));
+    }
+
+    /**
+     * Create a beam search engine with success probability 0.9, the given constraints and beam width.
+     */
+    static BeamSearch createBeamSearch(GenestackerInput input, List<Constraint> constraints, int beamWidth){
+        return new BeamSearch(input, new DefaultPopulationSizeTools(0.9), constraints, null, heuristics(), null, null,
+                              new DefaultSeedLotConstructor(input.getGeneticMap()), beamWidth);
+    }
+
+    /**
+     * Get the sorted costs (number of generations, total population size and linkage phase ambiguity)
+     * of all schemes in the given frontier.
+     */
+    static List<String> costs(ParetoFrontier frontier){
+        List<String> costs = new ArrayList<>();
+        for(CrossingScheme s : frontier.getFrontier()){
+            costs.add(s.getNumGenerations() + "/" + s.getTotalPopulationSize() + "/" + s.getLinkagePhaseAmbiguity());
+        }
+        Collections.sort(costs);
+        return costs;
+    }
+
+}
@@ -0,0 +1,116 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search.bb;
+
+import static org.ugent.caagt.genestacker.search.bb.SearchTestFixture.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.ugent.caagt.genestacker.exceptions.GenestackerException;
+import org.ugent.caagt.genestacker.io.GenestackerInput;
+import org.ugent.caagt.genestacker.search.CrossingScheme;
+import org.ugent.caagt.genestacker.search.CrossingSchemeDescriptor;
+import org.ugent.caagt.genestacker.search.DefaultDominatesRelation;
+import org.ugent.caagt.genestacker.search.ParetoFrontier;
+import org.ugent.caagt.genestacker.util.GenestackerConstants;
+
+/**
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class SharedBoundsTest extends TestCase {
+
+    private GenestackerInput input;
+
+    public SharedBoundsTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        input = threeDonors();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    private BranchAndBound createBoundedEngine(int maxGen, SharedBounds bounds){
+        BranchAndBound engine = createEngine(input, maxGenerations(maxGen));
+        engine.setSharedBounds(bounds);
+        return engine;
+    }
+
+    @Test
+    public void testLocalBounds() throws GenestackerException {
+
+        System.out.println("\n### TEST LOCAL BOUNDS ###\n");
+
+        final List<CrossingScheme> reported = new ArrayList<>();
+        final List<CrossingSchemeDescriptor> reportedBounds = new ArrayList<>();
+        SharedBounds bounds = new SharedBounds(new DefaultDominatesRelation());
+        bounds.addListener(new SharedBounds.Listener() {
+            @Override
+            public void localSolutionAdded(CrossingScheme solution, boolean newBound) {
+                synchronized(reported){
+                    reported.add(solution);
+                    if(newBound){
+                        reportedBounds.add(solution.getDescriptor());
+                    }
+                }
+            }
+        });
+        ParetoFrontier f = createBoundedEngine(4, bounds).search(GenestackerConstants.NO_RUNTIME_LIMIT, 2);
+        // all final solutions have been reported and registered as local bounds
+        assertEquals(f.getNumSchemes(), bounds.getNumBounds());
+        assertTrue(reportedBounds.size() >= f.getNumSchemes());
+        for(CrossingScheme s : f.getFrontier()){
+            assertTrue(reported.contains(s));
+            assertFalse(bounds.dominated(s.getDescriptor()));
+        }
+        // remote bounds are not reported
+        int numReported = reported.size();
+        bounds.registerRemote(new CrossingSchemeDescriptor(1, 1, 1, 1, 1, 0.0, 0));
+        assertEquals(numReported, reported.size());
+
+    }
+
+    @Test
+    public void testRemoteBounds() throws GenestackerException {
+
+        System.out.println("\n### TEST REMOTE BOUNDS ###\n");
+
+        for(int maxGen = 3; maxGen <= 5; maxGen++){
+            // search without shared bounds
+            ParetoFrontier expected = createEngine(input, maxGenerations(maxGen)).search(GenestackerConstants.NO_RUNTIME_LIMIT, 2);
+            // share solutions of a search with fewer generations as remote bounds
+            SharedBounds bounds = new SharedBounds(new DefaultDominatesRelation());
+            ParetoFrontier shallow = createEngine(input, maxGenerations(maxGen-1)).search(GenestackerConstants.NO_RUNTIME_LIMIT, 2);
+            for(CrossingScheme s : shallow.getFrontier()){
+                bounds.registerRemote(s.getDescriptor());
+            }
+            // same Pareto frontier is obtained
+            ParetoFrontier f = createBoundedEngine(maxGen, bounds).search(GenestackerConstants.NO_RUNTIME_LIMIT, 2);
+            System.out.println("max gen = " + maxGen + ": " + costs(f));
+            assertEquals(costs(expected), costs(f));
+        }
+
+    }
+
+}
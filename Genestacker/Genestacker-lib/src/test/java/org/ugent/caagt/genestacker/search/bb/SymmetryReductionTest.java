@@ -0,0 +1,141 @@
+//  Copyright 2014 Herman De Beukelaer
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+
+package org.ugent.caagt.genestacker.search.bb;
+
+import static org.ugent.caagt.genestacker.search.bb.SearchTestFixture.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.ugent.caagt.genestacker.Plant;
+import org.ugent.caagt.genestacker.exceptions.GenestackerException;
+import org.ugent.caagt.genestacker.io.GenestackerInput;
+import org.ugent.caagt.genestacker.search.ParetoFrontier;
+import org.ugent.caagt.genestacker.search.SearchMetrics;
+import org.ugent.caagt.genestacker.util.GenestackerConstants;
+
+/**
+ *
+ * @author <a href="mailto:herman.debeukelaer@ugent.be">Herman De Beukelaer</a>
+ */
+public class SymmetryReductionTest extends TestCase {
+
+    // haplotypes
+    private static final boolean[] H000 = {false, false, false};
+    private static final boolean[] H100 = {true, false, false};
+    private static final boolean[] H010 = {false, true, false};
+    private static final boolean[] H001 = {false, false, true};
+    private static final boolean[] H110 = {true, true, false};
+
+    public SymmetryReductionTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    /**
+     * Run branch and bound with and without symmetry reduction, check that the same Pareto frontier is obtained
+     * and return the metrics of the search with symmetry reduction. Both searches use a single thread so that
+     * the number of expanded schemes does not depend on the order in which cross workers finish.
+     */
+    private SearchMetrics compareFrontiers(GenestackerInput input, int maxGen) throws GenestackerException {
+        // without symmetry reduction (default)
+        BranchAndBound engine = createEngine(input, maxGenerations(maxGen));
+        ParetoFrontier expected = engine.search(GenestackerConstants.NO_RUNTIME_LIMIT, 1);
+        int expandedWithout = engine.getNumExpandedSchemes();
+        assertEquals(0, engine.getMetrics().getCount("bb.initial.duplicate"));
+        assertEquals(0, engine.getMetrics().getCount("bb.cross.symmetric"));
+        // with symmetry reduction
+        engine = createEngine(input, maxGenerations(maxGen));
+        engine.setSymmetryReduction(true);
+        ParetoFrontier f = engine.search(GenestackerConstants.NO_RUNTIME_LIMIT, 1);
+        SearchMetrics metrics = engine.getMetrics();
+        System.out.println("max gen = " + maxGen + ": " + costs(f)
+                            + " (skipped " + metrics.getCount("bb.cross.symmetric") + " symmetric crossings)");
+        // same Pareto frontier
+        assertEquals(costs(expected), costs(f));
+        assertTrue(engine.getNumExpandedSchemes() <= expandedWithout);
+        return metrics;
+    }
+
+    @Test
+    public void testDistinctDonors() throws GenestackerException {
+
+        System.out.println("\n### TEST SYMMETRY REDUCTION: DISTINCT DONORS ###\n");
+
+        GenestackerInput input = threeDonors();
+        for(int maxGen = 2; maxGen <= 4; maxGen++){
+            SearchMetrics metrics = compareFrontiers(input, maxGen);
+            assertEquals(0, metrics.getCount("bb.initial.duplicate"));
+        }
+
+    }
+
+    @Test
+    public void testDuplicateDonors() throws GenestackerException {
+
+        System.out.println("\n### TEST SYMMETRY REDUCTION: DUPLICATE DONORS ###\n");
+
+        // two copies of each homozygous parent, and a heterozygous parent
+        List<Plant> plants = new ArrayList<>();
+        for(int i=0; i<2; i++){
+            plants.add(new Plant(homozygous(H100)));
+            plants.add(new Plant(homozygous(H010)));
+            plants.add(new Plant(homozygous(H001)));
+        }
+        plants.add(new Plant(genotype(H110, H000)));
+        GenestackerInput input = createInput(plants);
+        for(int maxGen = 2; maxGen <= 4; maxGen++){
+            SearchMetrics metrics = compareFrontiers(input, maxGen);
+            // duplicate donors are discarded
+            assertEquals(3, metrics.getCount("bb.initial.duplicate"));
+            if(maxGen > 2){
+                // plants with the same genotype are obtained in different ways
+                assertTrue(metrics.getCount("bb.cross.symmetric") > 0);
+            }
+        }
+
+    }
+
+    @Test
+    public void testHeterozygousDonors() throws GenestackerException {
+
+        System.out.println("\n### TEST SYMMETRY REDUCTION: HETEROZYGOUS DONORS ###\n");
+
+        // heterozygous parents only, including two copies of the same genotype
+        // and a copy with swapped haplotypes
+        List<Plant> plants = new ArrayList<>();
+        plants.add(new Plant(genotype(H110, H000)));
+        plants.add(new Plant(genotype(H110, H000)));
+        plants.add(new Plant(genotype(H100, H001)));
+        plants.add(new Plant(genotype(H001, H100)));
+        GenestackerInput input = createInput(plants);
+        for(int maxGen = 2; maxGen <= 4; maxGen++){
+            SearchMetrics metrics = compareFrontiers(input, maxGen);
+            assertEquals(2, metrics.getCount("bb.initial.duplicate"));
+        }
+
+    }
+
+}